@@ -0,0 +1,47 @@
+package com.playgon.benchmark;
+
+import com.playgon.PlaygonBackendApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts the application against the embedded H2 database of the dev profile for use in benchmarks.
+ */
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Starts the application on a random free port.
+     *
+     * @param properties additional properties as {@code key=value} pairs, overriding the profile
+     * @return the running application context
+     */
+    public static ConfigurableApplicationContext start(String... properties) {
+        Map<String, String> overrides = new LinkedHashMap<>();
+        overrides.put("server.port", "0");
+        overrides.put("spring.jpa.show-sql", "false");
+        overrides.put("logging.level.root", "WARN");
+        overrides.put("logging.level.org.springframework", "WARN");
+        overrides.put("spring.datasource.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        overrides.put("app.rate-limit.redirect.capacity", "1000000000");
+        overrides.put("app.rate-limit.create.capacity", "1000000000");
+        for (String property : properties) {
+            int separator = property.indexOf('=');
+            overrides.put(property.substring(0, separator), property.substring(separator + 1));
+        }
+
+        // Passed as command line arguments so that they take precedence over the profile properties
+        String[] args = overrides.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+
+        SpringApplication application = new SpringApplication(PlaygonBackendApplication.class);
+        application.setAdditionalProfiles("dev");
+        return application.run(args);
+    }
+}
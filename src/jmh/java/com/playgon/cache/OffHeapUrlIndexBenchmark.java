@@ -0,0 +1,115 @@
+package com.playgon.cache;
+
+import com.playgon.shortcode.Base62;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency of {@link OffHeapUrlIndex} against the same links held on the heap, in a plain
+ * {@code HashMap<String, String>} and in the Caffeine-backed {@link ShortUrlCache}. The memory per entry
+ * is printed during setup: for the index it is the direct memory allocated, for the on-heap stores the
+ * growth of the used heap after a full GC, which is an approximation. The index materializes a new String
+ * on every hit, which the on-heap stores do not; run with {@code -prof gc} to see that allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+@State(Scope.Benchmark)
+public class OffHeapUrlIndexBenchmark {
+
+    private static final String LONG_URL = "https://example.com/campaigns/2024/spring?utm_source=newsletter&utm_medium=email&id=";
+
+    @Param({"1000000"})
+    private int entries;
+
+    private String[] shortUrls;
+    private OffHeapUrlIndex offHeapIndex;
+    private Map<String, String> heapMap;
+    private ShortUrlCache heapCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        shortUrls = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            shortUrls[i] = Base62.encode(i * 7919L, 7);
+        }
+
+        offHeapIndex = new OffHeapUrlIndex(entries, 64 << 20);
+        for (int i = 0; i < entries; i++) {
+            offHeapIndex.put(shortUrls[i], LONG_URL + i);
+        }
+        System.out.printf("%nOff-heap index: %.1f bytes per entry%n", (double) offHeapIndex.memoryUsed() / entries);
+
+        long before = usedHeap();
+        heapMap = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            // Fresh strings, as the cache would hold them after a database lookup
+            heapMap.put(new String(shortUrls[i]), LONG_URL + i);
+        }
+        long afterMap = usedHeap();
+        System.out.printf("HashMap: %.1f bytes per entry (approximate)%n", (double) (afterMap - before) / entries);
+
+        heapCache = new ShortUrlCache(entries, Duration.ofDays(1), Duration.ofSeconds(30), new SimpleMeterRegistry());
+        for (int i = 0; i < entries; i++) {
+            heapCache.put(new String(shortUrls[i]), LONG_URL + i);
+        }
+        System.out.printf("ShortUrlCache on heap: %.1f bytes per entry (approximate)%n",
+                (double) (usedHeap() - afterMap) / entries);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private String randomShortUrl() {
+        return shortUrls[ThreadLocalRandom.current().nextInt(shortUrls.length)];
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String offHeapGet() {
+        return offHeapIndex.get(randomShortUrl());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String heapMapGet() {
+        return heapMap.get(randomShortUrl());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object heapCacheGet() {
+        return heapCache.getIfPresent(randomShortUrl());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String offHeapGetConcurrent() {
+        return offHeapIndex.get(randomShortUrl());
+    }
+}
@@ -0,0 +1,96 @@
+package com.playgon.controller;
+
+import com.playgon.benchmark.BenchmarkApplication;
+import com.playgon.service.UrlShortenerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redirect throughput over HTTP at high concurrency, with requests served on platform threads
+ * (the default Tomcat worker pool) and on virtual threads (the {@code virtual} profile settings).
+ *
+ * The resolution cache is disabled so that every redirect reaches the database, which makes the
+ * JDBC pool the shared bottleneck in both models.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedirectThroughputBenchmark {
+
+    private static final int PRELOADED_URLS = 1_000;
+
+    @Param({"platform", "virtual"})
+    public String threadModel;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private URI[] redirectUris;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> properties = new ArrayList<>(List.of(
+                "app.cache.max-size=0",
+                "app.datasource.max-total=50",
+                "app.datasource.max-wait=PT2S"));
+        if ("virtual".equals(threadModel)) {
+            properties.add("spring.threads.virtual.enabled=true");
+            properties.add("server.tomcat.max-connections=20000");
+            properties.add("server.tomcat.accept-count=1000");
+        }
+        context = BenchmarkApplication.start(properties.toArray(String[]::new));
+
+        UrlShortenerService urlShortenerService = context.getBean(UrlShortenerService.class);
+        List<String> longUrls = new ArrayList<>(PRELOADED_URLS);
+        for (int i = 0; i < PRELOADED_URLS; i++) {
+            longUrls.add("https://example.com/landing?id=" + i);
+        }
+        String port = context.getEnvironment().getProperty("local.server.port");
+        redirectUris = urlShortenerService.createShortUrls(longUrls).stream()
+                .map(shortUrl -> URI.create("http://127.0.0.1:" + port + "/" + shortUrl))
+                .toArray(URI[]::new);
+
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(400)
+    public int redirect() throws IOException, InterruptedException {
+        URI uri = redirectUris[ThreadLocalRandom.current().nextInt(redirectUris.length)];
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
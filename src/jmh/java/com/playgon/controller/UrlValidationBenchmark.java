@@ -0,0 +1,47 @@
+package com.playgon.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link UrlShortenerController#isValidUrl(String)} for valid and invalid input.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlValidationBenchmark {
+
+    private static final String VALID_URL = "https://example.com/campaigns/2024/spring?utm_source=newsletter&utm_medium=email";
+    private static final String INVALID_URL = "example.com/campaigns/2024/spring";
+
+    @Benchmark
+    @Threads(1)
+    public boolean isValidUrl() {
+        return UrlShortenerController.isValidUrl(VALID_URL);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean isValidUrlRejected() {
+        return UrlShortenerController.isValidUrl(INVALID_URL);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean isValidUrlConcurrent() {
+        return UrlShortenerController.isValidUrl(VALID_URL);
+    }
+}
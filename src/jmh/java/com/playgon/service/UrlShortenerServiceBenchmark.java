@@ -0,0 +1,114 @@
+package com.playgon.service;
+
+import com.playgon.benchmark.BenchmarkApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the shorten and redirect paths of {@link UrlShortenerServiceImpl} against the
+ * embedded H2 database, single-threaded and with one thread per core.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlShortenerServiceBenchmark {
+
+    private static final int PRELOADED_URLS = 10_000;
+    private static final int BATCH_SIZE = 1000;
+    private static final String LONG_URL = "https://example.com/campaigns/2024/spring?utm_source=newsletter&utm_medium=email";
+
+    private ConfigurableApplicationContext context;
+    private UrlShortenerServiceImpl urlShortenerService;
+    private String[] shortUrls;
+    private List<String> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        urlShortenerService = context.getBean(UrlShortenerServiceImpl.class);
+
+        List<String> longUrls = new ArrayList<>(PRELOADED_URLS);
+        for (int i = 0; i < PRELOADED_URLS; i++) {
+            longUrls.add(LONG_URL + "&id=" + i);
+        }
+        shortUrls = urlShortenerService.createShortUrls(longUrls).toArray(String[]::new);
+        batch = longUrls.subList(0, BATCH_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private String randomShortUrl() {
+        return shortUrls[ThreadLocalRandom.current().nextInt(shortUrls.length)];
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String createShortUrl() {
+        return urlShortenerService.createShortUrl(LONG_URL);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String createShortUrlConcurrent() {
+        return urlShortenerService.createShortUrl(LONG_URL);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<String> createShortUrls() {
+        return urlShortenerService.createShortUrls(batch);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String getOriginalUrl() {
+        return urlShortenerService.getOriginalUrl(randomShortUrl());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String getOriginalUrlConcurrent() {
+        return urlShortenerService.getOriginalUrl(randomShortUrl());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String generateShortUrl() {
+        return urlShortenerService.generateShortUrl();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String generateShortUrlConcurrent() {
+        return urlShortenerService.generateShortUrl();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String sanitizeUrl() {
+        return urlShortenerService.sanitizeUrl(LONG_URL);
+    }
+}
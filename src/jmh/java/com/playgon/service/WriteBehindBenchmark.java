@@ -0,0 +1,66 @@
+package com.playgon.service;
+
+import com.playgon.benchmark.BenchmarkApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@code createShortUrl} under a burst of concurrent creations, with every mapping saved in its
+ * own transaction and with write-behind, where callers wait for a group fsync of the local log and the
+ * mappings are inserted in batches in the background. The log is written to the default temporary directory,
+ * so the result depends on the fsync latency of that file system.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBehindBenchmark {
+
+    private static final String LONG_URL = "https://example.com/campaigns/2024/spring?utm_source=newsletter&utm_medium=email";
+
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    private ConfigurableApplicationContext context;
+    private UrlShortenerServiceImpl urlShortenerService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkApplication.start(
+                "app.write-behind.enabled=" + writeBehind,
+                "app.write-behind.directory=" + Files.createTempDirectory("write-behind-benchmark"),
+                "app.write-behind.max-pending=10000000",
+                "app.datasource.max-total=16");
+        urlShortenerService = context.getBean(UrlShortenerServiceImpl.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String createShortUrlBurst() {
+        return urlShortenerService.createShortUrl(LONG_URL);
+    }
+}
@@ -0,0 +1,176 @@
+package com.playgon.cache;
+
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preloads the hottest mappings into the resolution cache on boot, so that a fresh node does not
+ * send its first burst of redirects to the database.
+ *
+ * Once the application context has started, up to {@code app.cache.warmup.size} mappings are streamed
+ * into the cache on a background thread, in descending order of access count. When
+ * {@code app.cache.warmup.recent-window} is set, the mappings clicked most within that window are loaded
+ * first, and the access count fills the rest. The size is capped at {@code app.cache.max-size}, since
+ * more entries would only evict each other.
+ *
+ * While loading, this indicator reports {@code OUT_OF_SERVICE}, and as it is part of the readiness health
+ * group, {@code /actuator/health/readiness} keeps load balancers from routing traffic to the node until the
+ * cache is warm. A failed warm-up is logged and reported as done, so that it never keeps a node out of
+ * service. Progress is logged per page and published as {@code shortener.cache.warmup.loaded}, and the
+ * duration as {@code shortener.cache.warmup.duration}.
+ */
+@Component
+public class CacheWarmer implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private final UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+    private final ShortUrlCache shortUrlCache;
+    private final int size;
+    private final int pageSize;
+    private final Duration recentWindow;
+    private final Clock clock;
+    private final AtomicLong loaded = new AtomicLong();
+    private volatile boolean warming;
+    private volatile Duration duration = Duration.ZERO;
+    private volatile String failure;
+
+    /**
+     * Constructor to inject the JDBC repository, the cache, the warm-up configuration and the meter registry.
+     *
+     * @param urlMappingsJdbcRepository the repository the mappings are read from
+     * @param shortUrlCache             the cache the mappings are loaded into
+     * @param enabled                   whether the cache is warmed on boot
+     * @param size                      the maximum number of mappings loaded
+     * @param pageSize                  the number of rows fetched per round trip
+     * @param recentWindow              how far back recent clicks rank mappings first, or zero to rank by access count only
+     * @param maxCacheSize              the size of the cache, which caps the number of mappings loaded
+     * @param meterRegistry             the registry the warm-up metrics are published to
+     */
+    @Autowired
+    public CacheWarmer(UrlMappingsJdbcRepository urlMappingsJdbcRepository, ShortUrlCache shortUrlCache,
+                       @Value("${app.cache.warmup.enabled:true}") boolean enabled,
+                       @Value("${app.cache.warmup.size:10000}") int size,
+                       @Value("${app.cache.warmup.page-size:1000}") int pageSize,
+                       @Value("${app.cache.warmup.recent-window:PT0S}") Duration recentWindow,
+                       @Value("${app.cache.max-size:100000}") long maxCacheSize,
+                       MeterRegistry meterRegistry) {
+        this(urlMappingsJdbcRepository, shortUrlCache, enabled, size, pageSize, recentWindow, maxCacheSize,
+                meterRegistry, Clock.systemUTC());
+    }
+
+    CacheWarmer(UrlMappingsJdbcRepository urlMappingsJdbcRepository, ShortUrlCache shortUrlCache, boolean enabled,
+                int size, int pageSize, Duration recentWindow, long maxCacheSize, MeterRegistry meterRegistry,
+                Clock clock) {
+        this.urlMappingsJdbcRepository = urlMappingsJdbcRepository;
+        this.shortUrlCache = shortUrlCache;
+        this.size = (int) Math.min(size, maxCacheSize);
+        this.pageSize = pageSize;
+        this.recentWindow = recentWindow;
+        this.clock = clock;
+        // Not ready until the warm-up has run, including the time before the context has started
+        this.warming = enabled && size > 0;
+
+        Gauge.builder("shortener.cache.warmup.loaded", loaded, AtomicLong::get)
+                .description("Mappings preloaded into the resolution cache on boot")
+                .register(meterRegistry);
+        TimeGauge.builder("shortener.cache.warmup.duration", this, TimeUnit.MILLISECONDS, w -> w.duration.toMillis())
+                .description("Time taken to preload the resolution cache on boot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the warm-up on a background thread, so that the rest of the startup is not held up.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        if (warming) {
+            Thread.ofPlatform().name("cache-warmer").daemon().start(this::warm);
+        }
+    }
+
+    /**
+     * Loads the hottest mappings into the cache and marks the warm-up as done, whether or not it succeeded.
+     */
+    void warm() {
+        Instant start = clock.instant();
+        log.info("Warming the resolution cache with up to {} mappings", size);
+        try {
+            if (recentWindow.isZero() || recentWindow.isNegative()) {
+                urlMappingsJdbcRepository.forEachMostAccessed(size, pageSize, this::load);
+            } else {
+                // Codes loaded by the first pass are skipped by the second, which may return them again
+                Set<String> recent = new HashSet<>();
+                urlMappingsJdbcRepository.forEachMostClickedSince(start.minus(recentWindow), size, (shortUrl, longUrl) -> {
+                    recent.add(shortUrl);
+                    load(shortUrl, longUrl);
+                });
+                if (recent.size() < size) {
+                    urlMappingsJdbcRepository.forEachMostAccessed(size, pageSize, (shortUrl, longUrl) -> {
+                        if (loaded.get() < size && !recent.contains(shortUrl)) {
+                            load(shortUrl, longUrl);
+                        }
+                    });
+                }
+            }
+        } catch (RuntimeException e) {
+            failure = e.toString();
+            log.warn("Failed to warm the resolution cache, serving from a partially warm cache", e);
+        } finally {
+            duration = Duration.between(start, clock.instant());
+            warming = false;
+        }
+        log.info("Resolution cache warmed with {} mappings in {} ms", loaded.get(), duration.toMillis());
+    }
+
+    private void load(String shortUrl, String longUrl) {
+        shortUrlCache.put(shortUrl, longUrl);
+        long count = loaded.incrementAndGet();
+        if (count % pageSize == 0) {
+            log.info("Warming the resolution cache: {} of up to {} mappings loaded", count, size);
+        }
+    }
+
+    /**
+     * @return whether the warm-up has not finished yet
+     */
+    public boolean isWarming() {
+        return warming;
+    }
+
+    @Override
+    public Health health() {
+        if (warming) {
+            return Health.outOfService()
+                    .withDetail("loaded", loaded.get())
+                    .withDetail("target", size)
+                    .build();
+        }
+        Health.Builder health = Health.up()
+                .withDetail("loaded", loaded.get())
+                .withDetail("durationMs", duration.toMillis());
+        if (failure != null) {
+            health.withDetail("error", failure);
+        }
+        return health.build();
+    }
+}
@@ -0,0 +1,158 @@
+package com.playgon.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.playgon.model.ShortUrlMapping;
+import com.playgon.repository.UrlMappingsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Finds the existing short code of a long URL, for the optional deduplication of creations
+ * ({@code app.dedup.enabled}).
+ *
+ * The long URL column is not indexed, so every mapping stores a fixed-width hash of its sanitized long URL
+ * in an indexed column, and lookups compare the long URLs of the few rows with a matching hash. In front
+ * of that, the codes of recently created or looked up URLs are kept by hash, so that resubmitting the same
+ * URL does not reach the database at all. The hash is taken from SHA-256, so colliding URLs cannot be crafted,
+ * and the chance of two of the recent URLs sharing a hash is negligible.
+ *
+ * Deduplication is best effort: two concurrent creations of the same new URL may both insert a row, and
+ * URLs created before the hash column existed are not found.
+ */
+@Component
+public class LongUrlIndex {
+
+    static final String CACHE_NAME = "recentLongUrls";
+
+    private static final MessageDigest SHA_256;
+
+    static {
+        try {
+            SHA_256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final UrlMappingsRepository urlMappingRepository;
+    private final boolean enabled;
+    private final Cache<Long, String> recent;
+
+    /**
+     * Constructor to inject the repository, the deduplication configuration and the meter registry.
+     *
+     * @param urlMappingRepository the repository mappings are looked up in
+     * @param enabled              whether creations return the code of an identical long URL
+     * @param recentSize           the maximum number of recent URLs kept in memory
+     * @param recentTtl            how long a recent URL is kept in memory
+     * @param meterRegistry        the registry the cache metrics are published to
+     */
+    @Autowired
+    public LongUrlIndex(UrlMappingsRepository urlMappingRepository,
+                        @Value("${app.dedup.enabled:false}") boolean enabled,
+                        @Value("${app.dedup.recent-size:100000}") long recentSize,
+                        @Value("${app.dedup.recent-ttl:PT1H}") Duration recentTtl,
+                        MeterRegistry meterRegistry) {
+        this.urlMappingRepository = urlMappingRepository;
+        this.enabled = enabled;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(recentSize)
+                .expireAfterWrite(recentTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, recent, CACHE_NAME);
+    }
+
+    /**
+     * @return whether creations are deduplicated
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the value stored in the hash column for the given long URL: the first 8 bytes of its SHA-256.
+     *
+     * @param longUrl the sanitized long URL
+     * @return the hash of the long URL
+     */
+    public static long hash(String longUrl) {
+        MessageDigest digest;
+        try {
+            // Cloning the prototype skips the provider lookup of MessageDigest.getInstance
+            digest = (MessageDigest) SHA_256.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        return ByteBuffer.wrap(digest.digest(longUrl.getBytes(StandardCharsets.UTF_8))).getLong();
+    }
+
+    /**
+     * Returns the short code of an existing mapping of the given long URL.
+     *
+     * @param longUrl the sanitized long URL
+     * @param hash    the hash of the long URL
+     * @return the oldest known short code of the long URL, or an empty Optional if there is none
+     */
+    public Optional<String> find(String longUrl, long hash) {
+        return Optional.ofNullable(findAll(List.of(longUrl), new long[]{hash}).get(longUrl));
+    }
+
+    /**
+     * Returns the short codes of existing mappings of the given long URLs, with a single query for all
+     * URLs that were not created or looked up recently.
+     *
+     * @param longUrls the sanitized long URLs
+     * @param hashes   the hashes of the long URLs, in the same order
+     * @return the oldest known short code per long URL, for the long URLs that have one
+     */
+    public Map<String, String> findAll(List<String> longUrls, long[] hashes) {
+        Map<String, String> found = new HashMap<>();
+        Map<Long, String> missing = new HashMap<>();
+        for (int i = 0; i < longUrls.size(); i++) {
+            String shortUrl = recent.getIfPresent(hashes[i]);
+            if (shortUrl != null) {
+                found.put(longUrls.get(i), shortUrl);
+            } else {
+                missing.put(hashes[i], longUrls.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+        for (ShortUrlMapping mapping : urlMappingRepository.findByLongUrlHashIn(new ArrayList<>(missing.keySet()))) {
+            // Rows are ordered by id, so the oldest code of a URL wins
+            long hash = hash(mapping.longUrl());
+            if (mapping.longUrl().equals(missing.get(hash)) && !found.containsKey(mapping.longUrl())) {
+                found.put(mapping.longUrl(), mapping.shortUrl());
+                recent.put(hash, mapping.shortUrl());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Remembers the code of a long URL that was just created.
+     *
+     * @param hash     the hash of the long URL
+     * @param shortUrl the short code
+     */
+    public void put(long hash, String shortUrl) {
+        recent.put(hash, shortUrl);
+    }
+}
@@ -0,0 +1,606 @@
+package com.playgon.cache;
+
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import com.playgon.shortcode.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Node-local, memory-mapped copy of the short code to long URL table, so that redirects keep working
+ * when the database is slow or down.
+ *
+ * The snapshot consists of two files in {@code app.snapshot.directory}:
+ * <ul>
+ *     <li>{@code mappings.dat}, an append-only log of (code, long URL) records behind a small header that
+ *     holds the committed end of the log and the id watermark. The log is mapped in segments of 1 GiB,
+ *     and a record never straddles two segments.</li>
+ *     <li>{@code mappings.idx}, an open-addressing table with linear probing. Each slot is a single long
+ *     holding 24 bits of the code's hash and the 40-bit offset of its latest record, so the index costs
+ *     8 bytes per slot and is kept at most 70% full. When full, a table of twice the size is written next
+ *     to it and swapped in.</li>
+ * </ul>
+ * Both files live outside the heap, so the snapshot adds nothing to GC work however many links it holds,
+ * and lookups read straight from the page cache. A lookup only allocates the resulting long URL.
+ *
+ * The snapshot is refreshed every {@code app.snapshot.refresh-interval-ms} by reading the rows after the
+ * id watermark in pages. Ids are handed out to nodes in blocks, so rows may commit out of id order, and
+ * every refresh rereads the last {@code app.snapshot.id-overlap} ids. When sharded, every shard is read
+ * from a watermark of its own. Lookups never block: a single writer appends records and publishes index
+ * slots with release stores, which lookups read with acquire loads. If the process dies during a refresh,
+ * the index is rebuilt from the log on the next start.
+ *
+ * By default the snapshot only answers redirects when the circuit breaker is open or the database fails.
+ * With {@code app.snapshot.primary=true}, cache misses are looked up in the snapshot first, and only codes
+ * it does not know yet reach the database.
+ */
+@Component
+public class MappingSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(MappingSnapshot.class);
+
+    static final String DATA_FILE = "mappings.dat";
+    static final String INDEX_FILE = "mappings.idx";
+
+    private static final int DATA_MAGIC = 0x50474431; // PGD1
+    private static final int INDEX_MAGIC = 0x50474931; // PGI1
+    private static final int HEADER_SIZE = 64;
+    private static final int WATERMARK_OFFSET = 8;
+    private static final int END_OFFSET = 16;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int SIZE_OFFSET = 8;
+    private static final int INDEXED_END_OFFSET = 16;
+    // Code length and long URL length
+    private static final int RECORD_HEADER_SIZE = 6;
+    private static final int DEFAULT_SEGMENT_BITS = 30;
+    private static final int INITIAL_MAPPING_SIZE = 1 << 20;
+    private static final int MAX_CAPACITY = 1 << 27;
+    private static final double MAX_LOAD = 0.7;
+    private static final long OFFSET_MASK = (1L << 40) - 1;
+    private static final VarHandle SLOT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+    private final boolean enabled;
+    private final boolean primary;
+    private final Path directory;
+    private final int initialCapacity;
+    private final int pageSize;
+    private final long idOverlap;
+    private final int segmentBits;
+    private final long segmentSize;
+    private final Counter hits;
+    private final Counter misses;
+    // Single writer: refreshes, index growth and closing
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel dataChannel;
+    private FileLock fileLock;
+    private volatile MappedByteBuffer[] segments;
+    private volatile Index index;
+    private volatile boolean open;
+    private volatile long end;
+    private long watermark = Long.MIN_VALUE;
+    private long[] shardWatermarks = new long[0];
+    private boolean full;
+
+    /**
+     * Constructor to inject the JDBC repository, the snapshot configuration and the meter registry.
+     *
+     * @param urlMappingsJdbcRepository the repository the mappings are read from
+     * @param enabled                   whether the snapshot is kept at all
+     * @param primary                   whether cache misses are looked up in the snapshot before the database
+     * @param directory                 the directory of the snapshot files
+     * @param initialCapacity           the number of index slots of a new snapshot
+     * @param pageSize                  the number of rows read per query while refreshing
+     * @param idOverlap                 how many ids below the watermark every refresh rereads
+     * @param meterRegistry             the registry the snapshot metrics are published to
+     */
+    @Autowired
+    public MappingSnapshot(UrlMappingsJdbcRepository urlMappingsJdbcRepository,
+                           @Value("${app.snapshot.enabled:false}") boolean enabled,
+                           @Value("${app.snapshot.primary:false}") boolean primary,
+                           @Value("${app.snapshot.directory:${java.io.tmpdir}/playgon-snapshot}") Path directory,
+                           @Value("${app.snapshot.initial-capacity:1048576}") int initialCapacity,
+                           @Value("${app.snapshot.page-size:10000}") int pageSize,
+                           @Value("${app.snapshot.id-overlap:10000}") long idOverlap,
+                           MeterRegistry meterRegistry) {
+        this(urlMappingsJdbcRepository, enabled, primary, directory, initialCapacity, pageSize, idOverlap,
+                meterRegistry, DEFAULT_SEGMENT_BITS);
+    }
+
+    MappingSnapshot(UrlMappingsJdbcRepository urlMappingsJdbcRepository, boolean enabled, boolean primary,
+                    Path directory, int initialCapacity, int pageSize, long idOverlap, MeterRegistry meterRegistry,
+                    int segmentBits) {
+        this.urlMappingsJdbcRepository = urlMappingsJdbcRepository;
+        this.enabled = enabled;
+        this.primary = enabled && primary;
+        this.directory = directory;
+        this.initialCapacity = Math.min(MAX_CAPACITY, Integer.highestOneBit(Math.max(16, initialCapacity - 1)) << 1);
+        this.pageSize = pageSize;
+        this.idOverlap = idOverlap;
+        this.segmentBits = segmentBits;
+        this.segmentSize = 1L << segmentBits;
+
+        this.hits = Counter.builder("shortener.snapshot.lookups")
+                .description("Lookups in the mapping snapshot")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("shortener.snapshot.lookups")
+                .description("Lookups in the mapping snapshot")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("shortener.snapshot.entries", this, MappingSnapshot::size)
+                .description("Codes in the mapping snapshot")
+                .register(meterRegistry);
+        Gauge.builder("shortener.snapshot.size", this, snapshot -> snapshot.end)
+                .description("Size of the mapping snapshot log")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return whether cache misses are looked up in the snapshot before the database
+     */
+    public boolean isPrimary() {
+        return primary && open;
+    }
+
+    /**
+     * Returns the long URL of the given code as of the last refresh.
+     *
+     * @param shortUrl the short code
+     * @return the long URL, or an empty Optional if the snapshot does not know the code or is not open
+     */
+    public Optional<String> find(String shortUrl) {
+        if (!open) {
+            return Optional.empty();
+        }
+        byte[] code = shortUrl.getBytes(StandardCharsets.UTF_8);
+        long offset = offsetOf(index, code, Hashing.hash(shortUrl));
+        if (offset < 0) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(readLongUrl(offset));
+    }
+
+    /**
+     * @return the number of codes in the snapshot
+     */
+    public long size() {
+        Index current = index;
+        return current == null ? 0 : current.size;
+    }
+
+    /**
+     * Opens or creates the snapshot files. On failure, or if another process holds the snapshot, the
+     * snapshot stays closed and redirects work as if it were disabled.
+     */
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            Files.createDirectories(directory);
+            dataChannel = FileChannel.open(directory.resolve(DATA_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            fileLock = dataChannel.tryLock();
+            if (fileLock == null) {
+                throw new IOException("Snapshot is in use by another process");
+            }
+            segments = new MappedByteBuffer[0];
+            boolean created = dataChannel.size() < HEADER_SIZE;
+            mapUpTo(HEADER_SIZE);
+            MappedByteBuffer header = segments[0];
+            if (created || header.getInt(0) != DATA_MAGIC) {
+                header.putInt(0, DATA_MAGIC);
+                header.putLong(WATERMARK_OFFSET, Long.MIN_VALUE);
+                header.putLong(END_OFFSET, HEADER_SIZE);
+            }
+            watermark = header.getLong(WATERMARK_OFFSET);
+            shardWatermarks = new long[0];
+            end = header.getLong(END_OFFSET);
+            mapUpTo(end);
+            index = openIndex();
+            open = true;
+            log.info("Mapping snapshot opened with {} codes up to id {}", index.size, watermark);
+        } catch (IOException | OverlappingFileLockException | UncheckedIOException e) {
+            log.warn("Failed to open the mapping snapshot in {}, redirects will not fall back to it", directory, e);
+            closeQuietly();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the mappings created or changed since the previous refresh, page by page.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.snapshot.refresh-interval-ms:10000}")
+    public void refresh() {
+        if (!open || !writeLock.tryLock()) {
+            return;
+        }
+        try {
+            if (shardWatermarks.length != urlMappingsJdbcRepository.shardCount()) {
+                shardWatermarks = new long[urlMappingsJdbcRepository.shardCount()];
+                Arrays.fill(shardWatermarks, watermark);
+            }
+            long appended = 0;
+            markIndexDirty();
+            for (int shard = 0; shard < shardWatermarks.length; shard++) {
+                appended += refresh(shard);
+            }
+            // Every shard has ids of its own; the log header keeps the lowest watermark, so a restart rereads the others
+            watermark = Arrays.stream(shardWatermarks).min().orElse(watermark);
+            if (appended > 0) {
+                segments[segments.length - 1].force();
+                index.slots.force();
+                log.debug("Mapping snapshot refreshed with {} codes up to id {}", appended, watermark);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh the mapping snapshot, will retry", e);
+        } finally {
+            commit();
+            writeLock.unlock();
+        }
+    }
+
+    private long refresh(int shard) {
+        long shardWatermark = shardWatermarks[shard];
+        long afterId = shardWatermark == Long.MIN_VALUE
+                ? Long.MIN_VALUE : Math.max(Long.MIN_VALUE + idOverlap, shardWatermark) - idOverlap;
+        long appended = 0;
+        while (!full) {
+            long[] page = {afterId, 0, 0};
+            urlMappingsJdbcRepository.forEachMappingAfter(shard, afterId, pageSize, (id, shortUrl, longUrl) -> {
+                try {
+                    if (put(shortUrl, longUrl)) {
+                        page[2]++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                page[0] = id;
+                page[1]++;
+            });
+            shardWatermarks[shard] = Math.max(shardWatermarks[shard], page[0]);
+            appended += page[2];
+            if (page[1] < pageSize) {
+                break;
+            }
+            afterId = page[0];
+        }
+        return appended;
+    }
+
+    /**
+     * Writes the headers and releases the files.
+     */
+    @PreDestroy
+    public void close() {
+        writeLock.lock();
+        try {
+            if (open) {
+                commit();
+                open = false;
+            }
+        } finally {
+            closeQuietly();
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends a record for the given mapping unless the snapshot already has it.
+     *
+     * @return whether a record was appended
+     */
+    boolean put(String shortUrl, String longUrl) throws IOException {
+        byte[] code = shortUrl.getBytes(StandardCharsets.UTF_8);
+        byte[] url = longUrl.getBytes(StandardCharsets.UTF_8);
+        long hash = Hashing.hash(shortUrl);
+        long existing = offsetOf(index, code, hash);
+        if (existing >= 0 && urlEquals(existing, url)) {
+            return false;
+        }
+        int length = RECORD_HEADER_SIZE + code.length + url.length;
+        if (code.length == 0 || code.length > Short.MAX_VALUE || length > segmentSize) {
+            log.warn("Skipping mapping {} that does not fit in a snapshot record", shortUrl);
+            return false;
+        }
+        if (existing < 0 && index.size + 1 > index.capacity() * MAX_LOAD) {
+            if (index.capacity() >= MAX_CAPACITY) {
+                full = true;
+                log.warn("Mapping snapshot is full at {} codes, no longer refreshing it", index.size);
+                return false;
+            }
+            index = rebuildIndex(index.capacity() * 2);
+            markIndexDirty();
+        }
+        long offset = end;
+        long segmentEnd = ((offset >>> segmentBits) + 1) << segmentBits;
+        if (offset + length > segmentEnd) {
+            // Leave the rest of the segment unused, marked with a zero code length where it fits
+            if (segmentEnd - offset >= RECORD_HEADER_SIZE) {
+                mapUpTo(offset + RECORD_HEADER_SIZE);
+                segment(offset).putShort(position(offset), (short) 0);
+            }
+            offset = segmentEnd;
+        }
+        mapUpTo(offset + length);
+        MappedByteBuffer segment = segment(offset);
+        int position = position(offset);
+        segment.putShort(position, (short) code.length);
+        segment.putInt(position + 2, url.length);
+        segment.put(position + RECORD_HEADER_SIZE, code);
+        segment.put(position + RECORD_HEADER_SIZE + code.length, url);
+        end = offset + length;
+        insert(index, code, hash, offset);
+        return true;
+    }
+
+    private long offsetOf(Index current, byte[] code, long hash) {
+        long tag = hash >>> 40;
+        int mask = current.mask;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            long slot = (long) SLOT.getAcquire(current.slots, slotPosition(i));
+            if (slot == 0) {
+                return -1;
+            }
+            if (slot >>> 40 == tag && codeEquals(slot & OFFSET_MASK, code)) {
+                return slot & OFFSET_MASK;
+            }
+        }
+    }
+
+    private void insert(Index current, byte[] code, long hash, long offset) {
+        long tag = hash >>> 40;
+        int mask = current.mask;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            long slot = (long) SLOT.get(current.slots, slotPosition(i));
+            if (slot == 0) {
+                SLOT.setRelease(current.slots, slotPosition(i), tag << 40 | offset);
+                current.size++;
+                return;
+            }
+            if (slot >>> 40 == tag && codeEquals(slot & OFFSET_MASK, code)) {
+                SLOT.setRelease(current.slots, slotPosition(i), tag << 40 | offset);
+                return;
+            }
+        }
+    }
+
+    private boolean codeEquals(long offset, byte[] code) {
+        MappedByteBuffer segment = segment(offset);
+        int position = position(offset);
+        if (segment.getShort(position) != code.length) {
+            return false;
+        }
+        for (int i = 0; i < code.length; i++) {
+            if (segment.get(position + RECORD_HEADER_SIZE + i) != code[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean urlEquals(long offset, byte[] url) {
+        MappedByteBuffer segment = segment(offset);
+        int position = position(offset);
+        if (segment.getInt(position + 2) != url.length) {
+            return false;
+        }
+        int start = position + RECORD_HEADER_SIZE + segment.getShort(position);
+        for (int i = 0; i < url.length; i++) {
+            if (segment.get(start + i) != url[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readLongUrl(long offset) {
+        MappedByteBuffer segment = segment(offset);
+        int position = position(offset);
+        byte[] url = new byte[segment.getInt(position + 2)];
+        segment.get(position + RECORD_HEADER_SIZE + segment.getShort(position), url);
+        return new String(url, StandardCharsets.UTF_8);
+    }
+
+    private MappedByteBuffer segment(long offset) {
+        return segments[(int) (offset >>> segmentBits)];
+    }
+
+    private int position(long offset) {
+        return (int) (offset & (segmentSize - 1));
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * Long.BYTES;
+    }
+
+    /**
+     * Maps the log up to the given offset, growing the last mapped segment by doubling.
+     */
+    private void mapUpTo(long limit) throws IOException {
+        MappedByteBuffer[] current = segments;
+        int last = (int) ((limit - 1) >>> segmentBits);
+        if (last < current.length - 1
+                || (last == current.length - 1 && current[last].capacity() >= limit - ((long) last << segmentBits))) {
+            return;
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(current, last + 1);
+        for (int i = Math.max(0, current.length - 1); i <= last; i++) {
+            long needed = i < last ? segmentSize : limit - ((long) i << segmentBits);
+            long size = Math.min(segmentSize, Math.max(INITIAL_MAPPING_SIZE, Long.highestOneBit(needed - 1) << 1));
+            if (grown[i] == null || grown[i].capacity() < needed) {
+                grown[i] = dataChannel.map(FileChannel.MapMode.READ_WRITE, (long) i << segmentBits, size);
+            }
+        }
+        // Lookups holding the previous array keep reading the same pages through the old mappings
+        segments = grown;
+    }
+
+    /**
+     * Opens the index, rebuilding it from the log if it is missing or does not cover the committed log.
+     */
+    private Index openIndex() throws IOException {
+        Path path = directory.resolve(INDEX_FILE);
+        if (Files.exists(path) && Files.size(path) >= HEADER_SIZE) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                int capacity = header.getInt(CAPACITY_OFFSET);
+                if (header.getInt(0) == INDEX_MAGIC && header.getLong(INDEXED_END_OFFSET) == end
+                        && Integer.bitCount(capacity) == 1 && channel.size() == slotPosition(capacity)) {
+                    MappedByteBuffer slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, slotPosition(capacity));
+                    return new Index(slots, capacity - 1, (int) header.getLong(SIZE_OFFSET));
+                }
+            }
+            log.info("Mapping snapshot index does not match the log, rebuilding it");
+        }
+        int capacity = initialCapacity;
+        long records = countRecords();
+        while (capacity < MAX_CAPACITY && records > capacity * MAX_LOAD) {
+            capacity <<= 1;
+        }
+        return rebuildIndex(capacity);
+    }
+
+    /**
+     * Writes a new index of the given capacity from the records of the log, and replaces the index file with it.
+     */
+    private Index rebuildIndex(int capacity) throws IOException {
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        Index rebuilt;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            rebuilt = new Index(channel.map(FileChannel.MapMode.READ_WRITE, 0, slotPosition(capacity)), capacity - 1, 0);
+        }
+        forEachRecord(offset -> {
+            MappedByteBuffer segment = segment(offset);
+            int position = position(offset);
+            byte[] code = new byte[segment.getShort(position)];
+            segment.get(position + RECORD_HEADER_SIZE, code);
+            // Later records of a code replace earlier ones
+            insert(rebuilt, code, Hashing.hash(new String(code, StandardCharsets.UTF_8)), offset);
+        });
+        writeIndexHeader(rebuilt);
+        rebuilt.slots.force();
+        Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return rebuilt;
+    }
+
+    private long countRecords() {
+        long[] count = {0};
+        forEachRecord(offset -> count[0]++);
+        return count[0];
+    }
+
+    private void forEachRecord(LongConsumer consumer) {
+        long offset = HEADER_SIZE;
+        while (offset < end) {
+            long segmentEnd = ((offset >>> segmentBits) + 1) << segmentBits;
+            int length = segmentEnd - offset < RECORD_HEADER_SIZE ? 0 : segment(offset).getShort(position(offset));
+            if (length <= 0) {
+                offset = segmentEnd;
+                continue;
+            }
+            consumer.accept(offset);
+            offset += RECORD_HEADER_SIZE + length + segment(offset).getInt(position(offset) + 2);
+        }
+    }
+
+    /**
+     * Publishes the appended records: the log header first, then the index header claiming to cover them.
+     */
+    private void commit() {
+        MappedByteBuffer header = segments[0];
+        header.putLong(WATERMARK_OFFSET, watermark);
+        header.putLong(END_OFFSET, end);
+        writeIndexHeader(index);
+    }
+
+    /**
+     * Marks the index as not matching the log while it is being changed, so that it is rebuilt if the
+     * process dies before the next commit.
+     */
+    private void markIndexDirty() {
+        index.slots.putLong(INDEXED_END_OFFSET, -1);
+    }
+
+    private void writeIndexHeader(Index current) {
+        current.slots.putInt(0, INDEX_MAGIC);
+        current.slots.putInt(CAPACITY_OFFSET, current.capacity());
+        current.slots.putLong(SIZE_OFFSET, current.size);
+        current.slots.putLong(INDEXED_END_OFFSET, end);
+    }
+
+    private void closeQuietly() {
+        open = false;
+        try {
+            if (fileLock != null) {
+                fileLock.release();
+            }
+            if (dataChannel != null) {
+                dataChannel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close the mapping snapshot", e);
+        }
+        fileLock = null;
+        dataChannel = null;
+    }
+
+    /**
+     * Index table; the size is only changed by the writer.
+     */
+    private static final class Index {
+
+        private final MappedByteBuffer slots;
+        private final int mask;
+        private volatile int size;
+
+        private Index(MappedByteBuffer slots, int mask, int size) {
+            this.slots = slots;
+            this.mask = mask;
+            this.size = size;
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+    }
+}
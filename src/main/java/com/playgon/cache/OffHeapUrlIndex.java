@@ -0,0 +1,215 @@
+package com.playgon.cache;
+
+import com.playgon.shortcode.Base62;
+import com.playgon.shortcode.Hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-capacity map of short code to long URL held outside the heap, so that millions of resolved
+ * links neither take gigabytes of heap nor add work to every GC cycle.
+ *
+ * A base62 code is decoded into a long, with its length in the low 4 bits so that codes differing only
+ * in leading zeros stay apart. Keys go into an open-addressing table with linear probing in a direct
+ * buffer, 16 bytes per slot: the key and a reference to the UTF-8 long URL, which is appended to one of
+ * a list of direct slabs. An entry therefore costs 16 bytes per slot (at most 70% of slots are used) plus
+ * 4 bytes and the long URL, against roughly 150 bytes of object headers, String and node overhead plus
+ * the URL twice over in a {@code HashMap<String, String>}.
+ *
+ * Writers are serialized, and lookups never block. A writer fills in the reference before publishing
+ * the key with a release store, and lookups read the key with an acquire load before the reference.
+ * Removed keys are left as tombstones that are never reused. This means a lookup that has matched a key
+ * can never read the reference of another code. Removed and replaced URLs stay in their slab. Mappings
+ * never change, so removals are rare, and the space is not reclaimed. {@link #put} returns false, and
+ * callers keep the entry elsewhere, in three cases: the table is full, the code is not base62, or the
+ * code decodes to 2^59 or more (codes of up to 9 characters always fit).
+ */
+public final class OffHeapUrlIndex {
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final int SLOT_SIZE = 16;
+    private static final double MAX_LOAD = 0.7;
+    private static final long MAX_DECODED = 1L << 59;
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer table;
+    private final int mask;
+    private final int maxUsedSlots;
+    private final int slabSize;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    // Only changed by the writer; slots holding a key or a tombstone
+    private int usedSlots;
+    private volatile int size;
+    private int slabPosition;
+
+    /**
+     * @param capacity the number of entries the table is sized for
+     * @param slabSize the size of each direct buffer the long URLs are appended to
+     */
+    public OffHeapUrlIndex(int capacity, int slabSize) {
+        long slots = Long.highestOneBit(Math.max(16, (long) Math.ceil(capacity / MAX_LOAD)) - 1) << 1;
+        if (slots * SLOT_SIZE > Integer.MAX_VALUE || slabSize < 8) {
+            throw new IllegalArgumentException("Invalid off-heap index sizing: " + capacity + " entries, slabs of " + slabSize);
+        }
+        this.table = ByteBuffer.allocateDirect((int) (slots * SLOT_SIZE)).order(ByteOrder.nativeOrder());
+        this.mask = (int) slots - 1;
+        this.maxUsedSlots = (int) (slots * MAX_LOAD);
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * Returns the long URL stored for the given code.
+     *
+     * @param shortUrl the short code
+     * @return the long URL, or null if the code is not stored
+     */
+    public String get(String shortUrl) {
+        long key = key(shortUrl);
+        if (key == EMPTY) {
+            return null;
+        }
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        long reference = (long) LONG.getAcquire(table, slot * SLOT_SIZE + 8);
+        ByteBuffer slab = slabs[(int) (reference >>> 32)];
+        int position = (int) reference;
+        byte[] url = new byte[slab.getInt(position)];
+        slab.get(position + 4, url);
+        return new String(url, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stores the long URL of the given code, replacing any previous one.
+     *
+     * @param shortUrl the short code
+     * @param longUrl  the long URL
+     * @return whether the entry was stored; false if the code cannot be keyed or the index is full
+     */
+    public boolean put(String shortUrl, String longUrl) {
+        long key = key(shortUrl);
+        byte[] url = longUrl.getBytes(StandardCharsets.UTF_8);
+        if (key == EMPTY || url.length + 4 > slabSize) {
+            return false;
+        }
+        writeLock.lock();
+        try {
+            int slot = find(key);
+            if (slot < 0) {
+                if (usedSlots >= maxUsedSlots) {
+                    return false;
+                }
+                slot = freeSlot(key);
+            }
+            long reference = append(url);
+            LONG.setRelease(table, slot * SLOT_SIZE + 8, reference);
+            if ((long) LONG.get(table, slot * SLOT_SIZE) != key) {
+                LONG.setRelease(table, slot * SLOT_SIZE, key);
+                usedSlots++;
+                size++;
+            }
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the given code.
+     *
+     * @param shortUrl the short code
+     * @return whether the code was stored
+     */
+    public boolean remove(String shortUrl) {
+        long key = key(shortUrl);
+        if (key == EMPTY) {
+            return false;
+        }
+        writeLock.lock();
+        try {
+            int slot = find(key);
+            if (slot < 0) {
+                return false;
+            }
+            LONG.setRelease(table, slot * SLOT_SIZE, TOMBSTONE);
+            size--;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of stored entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the bytes of direct memory allocated for the table and the slabs
+     */
+    public long memoryUsed() {
+        return table.capacity() + (long) slabs.length * slabSize;
+    }
+
+    private int find(long key) {
+        for (int i = (int) Hashing.mix(key) & mask; ; i = (i + 1) & mask) {
+            long slotKey = (long) LONG.getAcquire(table, i * SLOT_SIZE);
+            if (slotKey == key) {
+                return i;
+            }
+            if (slotKey == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private int freeSlot(long key) {
+        for (int i = (int) Hashing.mix(key) & mask; ; i = (i + 1) & mask) {
+            if ((long) LONG.get(table, i * SLOT_SIZE) == EMPTY) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Appends the length-prefixed URL to the current slab, starting a new one when it does not fit.
+     */
+    private long append(byte[] url) {
+        ByteBuffer[] current = slabs;
+        if (current.length == 0 || slabPosition + 4 + url.length > slabSize) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = ByteBuffer.allocateDirect(slabSize);
+            slabPosition = 0;
+            // Published before the slot that refers to it
+            slabs = current;
+        }
+        ByteBuffer slab = current[current.length - 1];
+        slab.putInt(slabPosition, url.length);
+        slab.put(slabPosition + 4, url);
+        long reference = (long) (current.length - 1) << 32 | slabPosition;
+        slabPosition += 4 + url.length;
+        return reference;
+    }
+
+    /**
+     * @return the decoded code with its length in the low 4 bits, or {@link #EMPTY} if it cannot be keyed
+     */
+    static long key(String shortUrl) {
+        long decoded = Base62.decode(shortUrl);
+        if (decoded < 0 || decoded >= MAX_DECODED) {
+            return EMPTY;
+        }
+        return decoded << 4 | shortUrl.length();
+    }
+}
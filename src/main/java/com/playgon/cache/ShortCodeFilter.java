@@ -0,0 +1,230 @@
+package com.playgon.cache;
+
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import com.playgon.shortcode.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Node-local Bloom filter of all existing short codes, so that lookups of random codes are answered
+ * with a 404 without touching the cache or the database.
+ *
+ * The filter is sized for {@code app.bloom.expected-insertions} codes at a false-positive rate of
+ * {@code app.bloom.fpp}. It is built once the application is ready by reading the codes in pages of
+ * {@code app.bloom.page-size}, and codes created on this node are added right away. Codes created on
+ * other nodes are picked up by a periodic scan of the recently created rows, so they may be answered
+ * with a 404 on this node for up to {@code app.bloom.refresh-interval-ms}. Until the first build
+ * succeeds, and when disabled, the filter lets every code through.
+ *
+ * The false-positive rate expected from the current fill is published as
+ * {@code shortener.bloom.false.positive.rate{type=expected}} next to the configured one, and lookups
+ * that passed the filter but were not found as {@code shortener.bloom.false.positives}.
+ */
+@Component
+public class ShortCodeFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShortCodeFilter.class);
+
+    private final UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+    private final boolean enabled;
+    private final int pageSize;
+    private final Duration refreshOverlap;
+    private final Clock clock;
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong setBits = new AtomicLong();
+    private final Counter rejected;
+    private final Counter falsePositives;
+    // Keeps the scheduled refresh from starting a second build while the startup build is running
+    private final ReentrantLock buildLock = new ReentrantLock();
+    private volatile boolean ready;
+    // Creation time from which the next refresh scans, minus the overlap; only accessed by build and refresh
+    private Instant refreshedUntil;
+
+    /**
+     * Constructor to inject the JDBC repository, the filter configuration and the meter registry.
+     *
+     * @param urlMappingsJdbcRepository the repository the codes are read from
+     * @param enabled                   whether lookups are filtered at all
+     * @param expectedInsertions        the number of codes the filter is sized for
+     * @param fpp                       the false-positive rate at the expected number of codes
+     * @param pageSize                  the number of codes read per query while building
+     * @param refreshOverlap            how far before the previous refresh the next one starts, to cover
+     *                                  transactions that commit late and clock skew between nodes
+     * @param meterRegistry             the registry the filter metrics are published to
+     */
+    @Autowired
+    public ShortCodeFilter(UrlMappingsJdbcRepository urlMappingsJdbcRepository,
+                           @Value("${app.bloom.enabled:true}") boolean enabled,
+                           @Value("${app.bloom.expected-insertions:10000000}") long expectedInsertions,
+                           @Value("${app.bloom.fpp:0.001}") double fpp,
+                           @Value("${app.bloom.page-size:10000}") int pageSize,
+                           @Value("${app.bloom.refresh-overlap:PT1M}") Duration refreshOverlap,
+                           MeterRegistry meterRegistry) {
+        this(urlMappingsJdbcRepository, enabled, expectedInsertions, fpp, pageSize, refreshOverlap, meterRegistry,
+                Clock.systemUTC());
+    }
+
+    ShortCodeFilter(UrlMappingsJdbcRepository urlMappingsJdbcRepository, boolean enabled, long expectedInsertions,
+                    double fpp, int pageSize, Duration refreshOverlap, MeterRegistry meterRegistry, Clock clock) {
+        if (expectedInsertions < 1 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter sizing: " + expectedInsertions + " codes at " + fpp);
+        }
+        this.urlMappingsJdbcRepository = urlMappingsJdbcRepository;
+        this.enabled = enabled;
+        this.pageSize = pageSize;
+        this.refreshOverlap = refreshOverlap;
+        this.clock = clock;
+        // Optimal size and number of hash functions for the expected insertions and rate
+        long bits = enabled ? (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2))) : 64;
+        this.words = new AtomicLongArray(Math.toIntExact((bits + 63) / 64));
+        this.bitCount = words.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+
+        this.rejected = Counter.builder("shortener.bloom.rejected")
+                .description("Lookups answered with 404 by the short code filter")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("shortener.bloom.false.positives")
+                .description("Lookups that passed the short code filter but were not found")
+                .register(meterRegistry);
+        Gauge.builder("shortener.bloom.false.positive.rate", this, ShortCodeFilter::expectedFpp)
+                .description("False-positive rate of the short code filter")
+                .tag("type", "expected")
+                .register(meterRegistry);
+        Gauge.builder("shortener.bloom.false.positive.rate", () -> fpp)
+                .description("False-positive rate of the short code filter")
+                .tag("type", "configured")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns whether the given code may exist. A false answer is definite, and is counted as a rejection.
+     *
+     * @param shortUrl the short code
+     * @return false if the code certainly does not exist, true if it may
+     */
+    public boolean mightContain(String shortUrl) {
+        if (!ready) {
+            return true;
+        }
+        long hash = Hashing.hash(shortUrl);
+        long step = Hashing.mix(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash + i * step, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                rejected.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a code that was just created.
+     *
+     * @param shortUrl the short code
+     */
+    public void put(String shortUrl) {
+        if (!enabled) {
+            return;
+        }
+        long hash = Hashing.hash(shortUrl);
+        long step = Hashing.mix(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash + i * step, bitCount);
+            long mask = 1L << bit;
+            if ((words.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m) & mask) == 0) {
+                setBits.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Counts a lookup that passed the filter but was not found in the database.
+     */
+    public void recordFalsePositive() {
+        if (ready) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * @return the false-positive rate expected from the fraction of bits set
+     */
+    public double expectedFpp() {
+        return Math.pow((double) setBits.get() / bitCount, hashCount);
+    }
+
+    /**
+     * Adds all existing codes, page by page, and starts filtering lookups. On failure lookups keep
+     * being let through, and the build is retried on the next refresh.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled || ready || !buildLock.tryLock()) {
+            return;
+        }
+        Instant start = clock.instant();
+        try {
+            long codes = 0;
+            for (int shard = 0; shard < urlMappingsJdbcRepository.shardCount(); shard++) {
+                long lastId = Long.MIN_VALUE;
+                while (true) {
+                    long[] page = {lastId, 0};
+                    urlMappingsJdbcRepository.forEachShortUrlAfter(shard, lastId, pageSize, (shortUrl, id) -> {
+                        put(shortUrl);
+                        page[0] = id;
+                        page[1]++;
+                    });
+                    codes += page[1];
+                    if (page[1] < pageSize) {
+                        break;
+                    }
+                    lastId = page[0];
+                }
+            }
+            refreshedUntil = start.minus(refreshOverlap);
+            ready = true;
+            log.info("Short code filter built with {} codes, expected false-positive rate {}", codes, expectedFpp());
+        } catch (RuntimeException e) {
+            log.warn("Failed to build the short code filter, letting all lookups through", e);
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    /**
+     * Adds the codes created since the previous refresh, including the ones created on other nodes.
+     */
+    @Scheduled(fixedDelayString = "${app.bloom.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!ready) {
+            build();
+            return;
+        }
+        Instant start = clock.instant();
+        try {
+            urlMappingsJdbcRepository.forEachShortUrlCreatedSince(refreshedUntil, this::put);
+            refreshedUntil = start.minus(refreshOverlap);
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh the short code filter, will retry", e);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.playgon.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.playgon.model.ResolvedUrl;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded, in-process read-through cache of short code to long URL.
+ *
+ * Mappings never change once created, so resolved URLs are kept for a long time and only
+ * evicted by size or age. Unknown codes are cached as well (as an empty value) but for a much
+ * shorter time, so that repeated lookups of a missing code do not hit the database while a code
+ * that gets created shortly afterwards still becomes visible quickly. Links with an expiry are kept
+ * until they expire at the latest, and always on the heap.
+ *
+ * With {@code app.cache.store=offheap}, resolved URLs are kept in an {@link OffHeapUrlIndex} of
+ * {@code app.cache.offheap.capacity} entries instead, without expiry, so that the full link set can be
+ * cached without growing the heap. Unknown codes, codes the index cannot key, and entries that arrive
+ * once it is full still go to the on-heap cache.
+ *
+ * Hit, miss and eviction counts of the on-heap cache are published to the meter registry under the
+ * {@code cache.*} metrics with the tag {@code cache=shortUrlCache}. The off-heap store is published as
+ * {@code shortener.cache.offheap.entries} and {@code shortener.cache.offheap.memory}.
+ */
+@Component
+public class ShortUrlCache {
+
+    static final String CACHE_NAME = "shortUrlCache";
+
+    // Values carry the expiry of the link, so that redirects are not cached past it
+    private final Cache<String, Optional<ResolvedUrl>> cache;
+    // Sets the expiry of entries for links that expire before the ttl is over
+    private final Policy.VarExpiration<String, Optional<ResolvedUrl>> expiration;
+    private final long ttlMillis;
+    // Null unless app.cache.store=offheap
+    private final OffHeapUrlIndex offHeap;
+
+    @Autowired
+    public ShortUrlCache(@Value("${app.cache.max-size:100000}") long maxSize,
+                         @Value("${app.cache.ttl:PT1H}") Duration ttl,
+                         @Value("${app.cache.negative-ttl:PT30S}") Duration negativeTtl,
+                         @Value("${app.cache.store:heap}") String store,
+                         @Value("${app.cache.offheap.capacity:10000000}") int offHeapCapacity,
+                         @Value("${app.cache.offheap.slab-size:67108864}") int offHeapSlabSize,
+                         MeterRegistry meterRegistry) {
+        this(maxSize, ttl, negativeTtl, switch (store) {
+            case "heap" -> null;
+            case "offheap" -> new OffHeapUrlIndex(offHeapCapacity, offHeapSlabSize);
+            default -> throw new IllegalArgumentException("Unknown cache store: " + store);
+        }, meterRegistry);
+    }
+
+    public ShortUrlCache(long maxSize, Duration ttl, Duration negativeTtl, MeterRegistry meterRegistry) {
+        this(maxSize, ttl, negativeTtl, null, meterRegistry);
+    }
+
+    ShortUrlCache(long maxSize, Duration ttl, Duration negativeTtl, OffHeapUrlIndex offHeap,
+                  MeterRegistry meterRegistry) {
+        this(maxSize, ttl, negativeTtl, offHeap, Ticker.systemTicker(), meterRegistry);
+    }
+
+    ShortUrlCache(long maxSize, Duration ttl, Duration negativeTtl, OffHeapUrlIndex offHeap, Ticker ticker,
+                  MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .ticker(ticker)
+                .expireAfter(new PositiveNegativeExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                .recordStats()
+                .build();
+        this.expiration = cache.policy().expireVariably().orElseThrow();
+        this.ttlMillis = ttl.toMillis();
+        this.offHeap = offHeap;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        if (offHeap != null) {
+            Gauge.builder("shortener.cache.offheap.entries", offHeap, OffHeapUrlIndex::size)
+                    .description("Entries of the off-heap resolution cache")
+                    .register(meterRegistry);
+            Gauge.builder("shortener.cache.offheap.memory", offHeap, OffHeapUrlIndex::memoryUsed)
+                    .description("Direct memory allocated by the off-heap resolution cache")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Returns the long URL cached for the given short code, invoking the loader on a miss.
+     *
+     * The loader runs outside the cache's internal locks: a blocking database call inside them would
+     * pin the carrier thread when requests are served on virtual threads. Concurrent misses for the
+     * same code may therefore each invoke the loader, which is harmless since mappings never change.
+     *
+     * @param shortUrl the short code
+     * @param loader   the function used to resolve the code on a miss, returning an empty Optional for
+     *                 unknown and expired codes
+     * @return the long URL, or an empty Optional if the code is unknown
+     */
+    public Optional<String> get(String shortUrl, Function<String, Optional<ResolvedUrl>> loader) {
+        return resolve(shortUrl, loader).map(ResolvedUrl::longUrl);
+    }
+
+    /**
+     * Like {@link #get}, but also returns when the link expires.
+     *
+     * @param shortUrl the short code
+     * @param loader   the function used to resolve the code on a miss
+     * @return the resolved URL, or an empty Optional if the code is unknown
+     */
+    public Optional<ResolvedUrl> resolve(String shortUrl, Function<String, Optional<ResolvedUrl>> loader) {
+        Optional<ResolvedUrl> resolved = resolveIfPresent(shortUrl);
+        if (resolved == null) {
+            resolved = loader.apply(shortUrl);
+            putLookup(shortUrl, resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the cached lookup result for the given short code without loading it, for callers
+     * that resolve misses asynchronously and report the result with {@link #putLookup}.
+     *
+     * @param shortUrl the short code
+     * @return the long URL, an empty Optional if the code is cached as unknown, or null if it is not cached
+     */
+    public Optional<String> getIfPresent(String shortUrl) {
+        Optional<ResolvedUrl> resolved = resolveIfPresent(shortUrl);
+        return resolved != null ? resolved.map(ResolvedUrl::longUrl) : null;
+    }
+
+    /**
+     * Like {@link #getIfPresent}, but also returns when the link expires.
+     *
+     * @param shortUrl the short code
+     * @return the resolved URL, an empty Optional if the code is cached as unknown, or null if it is not cached
+     */
+    public Optional<ResolvedUrl> resolveIfPresent(String shortUrl) {
+        if (offHeap != null) {
+            String longUrl = offHeap.get(shortUrl);
+            if (longUrl != null) {
+                // Only links that never expire are kept off-heap
+                return Optional.of(ResolvedUrl.permanent(longUrl));
+            }
+        }
+        return cache.getIfPresent(shortUrl);
+    }
+
+    /**
+     * Stores the result of a lookup made outside of {@link #get}, including unknown codes. An unknown code
+     * is only cached if nothing is cached for it yet: a lookup that missed, e.g. on a lagging replica, must
+     * not replace the entry stored when the code was created meanwhile.
+     *
+     * @param shortUrl the short code
+     * @param resolved the resolved URL, or an empty Optional if the code is unknown
+     */
+    public void putLookup(String shortUrl, Optional<ResolvedUrl> resolved) {
+        if (resolved.isPresent()) {
+            put(shortUrl, resolved.get().longUrl(), resolved.get().expiresAt());
+        } else {
+            cache.asMap().putIfAbsent(shortUrl, Optional.empty());
+        }
+    }
+
+    /**
+     * Stores a freshly created mapping so that its first redirect is already a hit.
+     *
+     * @param shortUrl the short code
+     * @param longUrl  the long URL
+     */
+    public void put(String shortUrl, String longUrl) {
+        if (offHeap != null && offHeap.put(shortUrl, longUrl)) {
+            // Drops a negative entry cached before the code was created
+            cache.invalidate(shortUrl);
+        } else {
+            cache.put(shortUrl, Optional.of(ResolvedUrl.permanent(longUrl)));
+        }
+    }
+
+    /**
+     * Stores a mapping that may expire. A link with an expiry is kept on the heap until it expires at
+     * the latest, and an expired one is cached as unknown.
+     *
+     * @param shortUrl  the short code
+     * @param longUrl   the long URL
+     * @param expiresAt when the link stops resolving, or null if it never expires
+     */
+    public void put(String shortUrl, String longUrl, Timestamp expiresAt) {
+        if (expiresAt == null) {
+            put(shortUrl, longUrl);
+            return;
+        }
+        long remaining = expiresAt.getTime() - System.currentTimeMillis();
+        if (remaining <= 0) {
+            cache.put(shortUrl, Optional.empty());
+        } else {
+            expiration.put(shortUrl, Optional.of(new ResolvedUrl(longUrl, expiresAt)),
+                    Duration.ofMillis(Math.min(remaining, ttlMillis)));
+        }
+    }
+
+    /**
+     * Removes the given short code from the cache.
+     *
+     * @param shortUrl the short code
+     */
+    public void invalidate(String shortUrl) {
+        if (offHeap != null) {
+            offHeap.remove(shortUrl);
+        }
+        cache.invalidate(shortUrl);
+    }
+
+    /**
+     * @return a snapshot of the hit, miss and eviction counters
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the approximate number of cached entries
+     */
+    public long size() {
+        return cache.estimatedSize() + (offHeap != null ? offHeap.size() : 0);
+    }
+
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    /**
+     * Expires positive entries after {@code ttl} and negative (empty) entries after {@code negativeTtl}.
+     */
+    private record PositiveNegativeExpiry(long ttlNanos, long negativeTtlNanos)
+            implements Expiry<String, Optional<ResolvedUrl>> {
+
+        @Override
+        public long expireAfterCreate(String key, Optional<ResolvedUrl> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<ResolvedUrl> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<ResolvedUrl> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
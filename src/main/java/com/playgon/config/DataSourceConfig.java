@@ -1,13 +1,31 @@
 package com.playgon.config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 
 import javax.sql.DataSource;
-import org.apache.commons.dbcp2.BasicDataSource;
-import org.springframework.context.annotation.Profile;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Hikari connection pools for the primary database and, when {@code app.datasource.replica.url} is set,
+ * a read replica. Read-only transactions are then routed to the replica and everything else to the
+ * primary. When {@code app.sharding.urls} lists further databases, each gets a pool of its own and
+ * connections are routed to the shard selected by {@link com.playgon.shard.ShardContext}, the primary
+ * and its replica being shard 0. Pool metrics are published as {@code hikaricp_*} with a {@code pool}
+ * tag of {@code primary}, {@code replica} or {@code shard-<n>}.
+ */
 @Configuration
 public class DataSourceConfig {
 
@@ -23,26 +41,116 @@ public class DataSourceConfig {
     @Value("${spring.datasource.driver-class-name}")
     private String driverClassName;
 
+    // Upper bound on concurrent database work; with virtual threads this is the effective concurrency limit
+    @Value("${app.datasource.max-total:8}")
+    private int maxTotal;
+
+    @Value("${app.datasource.min-idle:2}")
+    private int minIdle;
+
+    @Value("${app.datasource.max-wait:PT30S}")
+    private Duration maxWait;
+
+    @Value("${app.datasource.idle-timeout:PT10M}")
+    private Duration idleTimeout;
+
+    // Below the server's connection timeout (wait_timeout on MySQL), so connections are retired before the server drops them
+    @Value("${app.datasource.max-lifetime:PT30M}")
+    private Duration maxLifetime;
+
+    // Prepared statements cached per connection by the driver
+    @Value("${app.datasource.statement-cache-size:250}")
+    private int statementCacheSize;
+
+    @Value("${app.datasource.replica.url:}")
+    private String replicaUrl;
+
+    @Value("${app.datasource.replica.username:${spring.datasource.username}}")
+    private String replicaUsername;
+
+    @Value("${app.datasource.replica.password:${spring.datasource.password}}")
+    private String replicaPassword;
+
+    @Value("${app.datasource.replica.max-total:${app.datasource.max-total:8}}")
+    private int replicaMaxTotal;
+
+    @Value("${app.sharding.urls:}")
+    private List<String> shardUrls;
+
+    @Value("${app.sharding.username:${spring.datasource.username}}")
+    private String shardUsername;
+
+    @Value("${app.sharding.password:${spring.datasource.password}}")
+    private String shardPassword;
+
+    // The routing proxy does not close its targets
+    private final List<HikariDataSource> pools = new CopyOnWriteArrayList<>();
+
     @Bean
     @Profile("dev")
-    public DataSource h2DataSource() {
-        BasicDataSource dataSource = new BasicDataSource();
-        dataSource.setUrl(url);
-        dataSource.setUsername(username);
-        dataSource.setPassword(password);
-        dataSource.setDriverClassName(driverClassName);
-        return dataSource;
+    public DataSource h2DataSource(MeterRegistry meterRegistry) {
+        // H2 keeps parsed statements in a per-session query cache
+        return dataSource(Map.of("QUERY_CACHE_SIZE", String.valueOf(statementCacheSize)), meterRegistry);
     }
 
     @Bean
     @Profile("prod")
-    public DataSource mysqlDataSource() {
-        BasicDataSource dataSource = new BasicDataSource();
-        dataSource.setUrl(url);
-        dataSource.setUsername(username);
-        dataSource.setPassword(password);
-        dataSource.setDriverClassName(driverClassName);
-        return dataSource;
+    public DataSource mysqlDataSource(MeterRegistry meterRegistry) {
+        return dataSource(Map.of(
+                "cachePrepStmts", "true",
+                "prepStmtCacheSize", String.valueOf(statementCacheSize),
+                "prepStmtCacheSqlLimit", "2048",
+                "useServerPrepStmts", "true"), meterRegistry);
+    }
+
+    private DataSource dataSource(Map<String, String> driverProperties, MeterRegistry meterRegistry) {
+        DataSource shard0 = primaryDataSource(driverProperties, meterRegistry);
+        List<String> urls = shardUrls.stream().filter(shardUrl -> !shardUrl.isBlank()).toList();
+        if (urls.isEmpty()) {
+            return shard0;
+        }
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(shard0);
+        for (String shardUrl : urls) {
+            shards.add(pool("shard-" + shards.size(), shardUrl, shardUsername, shardPassword, maxTotal,
+                    driverProperties, meterRegistry));
+        }
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shards));
+    }
+
+    private DataSource primaryDataSource(Map<String, String> driverProperties, MeterRegistry meterRegistry) {
+        HikariDataSource primary = pool("primary", url, username, password, maxTotal, driverProperties, meterRegistry);
+        if (replicaUrl.isBlank()) {
+            return primary;
+        }
+        HikariDataSource replica = pool("replica", replicaUrl, replicaUsername, replicaPassword, replicaMaxTotal,
+                driverProperties, meterRegistry);
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica));
+    }
+
+    private HikariDataSource pool(String name, String jdbcUrl, String user, String pass, int maxPoolSize,
+                                  Map<String, String> driverProperties, MeterRegistry meterRegistry) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(user);
+        config.setPassword(pass);
+        config.setDriverClassName(driverClassName);
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setMinimumIdle(Math.min(minIdle, maxPoolSize));
+        config.setConnectionTimeout(maxWait.toMillis());
+        config.setIdleTimeout(idleTimeout.toMillis());
+        config.setMaxLifetime(maxLifetime.toMillis());
+        driverProperties.forEach(config::addDataSourceProperty);
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        HikariDataSource pool = new HikariDataSource(config);
+        pools.add(pool);
+        return pool;
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
     }
 
 }
@@ -0,0 +1,47 @@
+package com.playgon.config;
+
+import com.playgon.invalidation.InvalidationTransport;
+import com.playgon.invalidation.LoopbackInvalidationTransport;
+import com.playgon.invalidation.UdpInvalidationTransport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Selects how cache invalidations reach the other nodes with {@code app.invalidation.transport}.
+ * {@code loopback} keeps them in this JVM, for a single node and for tests; {@code udp} sends them as
+ * datagrams to the {@code host:port} peers listed in {@code app.invalidation.udp.peers}.
+ */
+@Configuration
+public class InvalidationConfig {
+
+    // Closed by InvalidationBus, after its last flush
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(name = "app.invalidation.transport", havingValue = "loopback", matchIfMissing = true)
+    public InvalidationTransport loopbackInvalidationTransport() {
+        return new LoopbackInvalidationTransport();
+    }
+
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(name = "app.invalidation.transport", havingValue = "udp")
+    public InvalidationTransport udpInvalidationTransport(@Value("${app.invalidation.udp.port:7600}") int port,
+                                                          @Value("${app.invalidation.udp.peers:}") List<String> peers,
+                                                          @Value("${app.invalidation.udp.max-datagram-size:1400}") int maxDatagramSize) {
+        List<InetSocketAddress> addresses = peers.stream()
+                .filter(peer -> !peer.isBlank())
+                .map(peer -> {
+                    int separator = peer.lastIndexOf(':');
+                    if (separator < 0) {
+                        throw new IllegalArgumentException("Invalidation peer must be host:port: " + peer);
+                    }
+                    return new InetSocketAddress(peer.substring(0, separator).trim(),
+                            Integer.parseInt(peer.substring(separator + 1).trim()));
+                })
+                .toList();
+        return new UdpInvalidationTransport(port, addresses, maxDatagramSize);
+    }
+}
@@ -0,0 +1,50 @@
+package com.playgon.config;
+
+import com.playgon.ratelimit.BucketStore;
+import com.playgon.ratelimit.JCacheBucketStore;
+import com.playgon.ratelimit.LocalBucketStore;
+import io.github.bucket4j.grid.GridBucketState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.AccessedExpiryPolicy;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selects where rate limit buckets are kept with {@code app.rate-limit.backend}.
+ * {@code local} keeps them in memory on each node, {@code jcache} keeps them in a JCache cache
+ * provided by whichever JSR 107 implementation is on the classpath, so they can be shared across nodes.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.rate-limit.backend", havingValue = "local", matchIfMissing = true)
+    public BucketStore localBucketStore(@Value("${app.rate-limit.max-clients:100000}") long maxClients,
+                                        @Value("${app.rate-limit.idle-timeout:PT10M}") Duration idleTimeout) {
+        return new LocalBucketStore(maxClients, idleTimeout);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.rate-limit.backend", havingValue = "jcache")
+    public BucketStore jcacheBucketStore(@Value("${app.rate-limit.jcache.cache-name:rate-limit-buckets}") String cacheName,
+                                         @Value("${app.rate-limit.idle-timeout:PT10M}") Duration idleTimeout) {
+        CacheManager cacheManager = Caching.getCachingProvider().getCacheManager();
+        Cache<String, GridBucketState> cache = cacheManager.getCache(cacheName, String.class, GridBucketState.class);
+        if (cache == null) {
+            MutableConfiguration<String, GridBucketState> configuration = new MutableConfiguration<String, GridBucketState>()
+                    .setTypes(String.class, GridBucketState.class)
+                    .setExpiryPolicyFactory(AccessedExpiryPolicy.factoryOf(
+                            new javax.cache.expiry.Duration(TimeUnit.MILLISECONDS, idleTimeout.toMillis())));
+            cache = cacheManager.createCache(cacheName, configuration);
+        }
+        return new JCacheBucketStore(cache);
+    }
+}
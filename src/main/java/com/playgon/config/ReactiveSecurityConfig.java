@@ -0,0 +1,33 @@
+package com.playgon.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+/**
+ * The rules of {@link SecurityConfig} for the WebFlux stack of the reactive profile.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@Profile("reactive")
+public class ReactiveSecurityConfig {
+
+    @Bean
+    SecurityWebFilterChain defaultSecurityWebFilterChain(ServerHttpSecurity http) {
+        http.csrf((csrf) -> csrf.disable())
+                .authorizeExchange((exchanges) -> exchanges
+                        .pathMatchers("/hello", "/{shortUrl}").permitAll()
+                        .pathMatchers("/actuator/**").permitAll()
+                        .pathMatchers("/shorten", "/api/stats/**").permitAll()  // Permit all for testing; adjust as needed
+                        .anyExchange().authenticated()
+                )
+                .formLogin(Customizer.withDefaults())
+                .httpBasic(Customizer.withDefaults());
+        return http.build();
+    }
+
+}
@@ -2,12 +2,14 @@ package com.playgon.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
 
 
 @Configuration
+@Profile("!reactive")
 public class SecurityConfig {
 
 
@@ -18,7 +20,7 @@ public class SecurityConfig {
                         .requestMatchers("/hello", "/{shortUrl}").permitAll()
                         .requestMatchers("/actuator/**").permitAll()
                         .requestMatchers("/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**").permitAll()
-                        .requestMatchers("/shorten", "/api/stats/**").permitAll()  // Permit all for testing; adjust as needed
+                        .requestMatchers("/shorten", "/shorten/batch", "/api/stats/**").permitAll()  // Permit all for testing; adjust as needed
                         .anyRequest().authenticated()
                 )
                 .formLogin(Customizer.withDefaults())
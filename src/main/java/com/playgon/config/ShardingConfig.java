@@ -0,0 +1,88 @@
+package com.playgon.config;
+
+import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.shard.ShardContext;
+import com.playgon.shard.ShardRouter;
+import com.playgon.shard.ShardingRepositoryInterceptor;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.jpa.boot.spi.JpaSettings;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wires the shards of {@code app.sharding.urls} into JPA: {@code UrlMappingsRepository} calls are routed
+ * by {@link ShardingRepositoryInterceptor}, and the schema management configured with
+ * {@code spring.jpa.hibernate.ddl-auto} is applied to every shard, not only to shard 0. Nothing is
+ * changed when there is a single shard.
+ */
+@Configuration
+public class ShardingConfig {
+
+    // Static, so that the repository factory beans are post-processed however early they are created
+    @Bean
+    public static BeanPostProcessor shardingRepositoryPostProcessor(ObjectProvider<ShardRouter> shardRouter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean
+                        && factoryBean.getObjectType() == UrlMappingsRepository.class) {
+                    ShardRouter router = shardRouter.getObject();
+                    if (router.isSharded()) {
+                        // First in the chain, so that each shard is called in a transaction of its own
+                        ShardingRepositoryInterceptor interceptor = new ShardingRepositoryInterceptor(router);
+                        factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                                (proxy, repositoryInformation) -> proxy.addAdvice(0, interceptor)));
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(ShardRouter shardRouter) {
+        return properties -> {
+            if (shardRouter.isSharded()) {
+                properties.put(JpaSettings.INTEGRATOR_PROVIDER,
+                        (IntegratorProvider) () -> List.of(new ShardSchemaIntegrator(shardRouter.shardCount())));
+            }
+        };
+    }
+
+    /**
+     * Runs Hibernate's schema management against shards 1 and up; Hibernate itself only manages shard 0.
+     */
+    private record ShardSchemaIntegrator(int shardCount) implements Integrator {
+
+        @Override
+        public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                              SessionFactoryImplementor sessionFactory) {
+            ServiceRegistry serviceRegistry = sessionFactory.getServiceRegistry();
+            Map<String, Object> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+            for (int shard = 1; shard < shardCount; shard++) {
+                ShardContext.runOn(shard, () -> SchemaManagementToolCoordinator.process(metadata, serviceRegistry,
+                        settings, dropAction -> {
+                        }));
+            }
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
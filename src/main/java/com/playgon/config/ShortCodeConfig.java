@@ -0,0 +1,54 @@
+package com.playgon.config;
+
+import com.playgon.shard.ShardRouter;
+import com.playgon.shortcode.BlockAllocatingShortCodeGenerator;
+import com.playgon.shortcode.FeistelPermutation;
+import com.playgon.shortcode.IdBlockAllocator;
+import com.playgon.shortcode.RandomShortCodeGenerator;
+import com.playgon.shortcode.ShortCodeGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects the short code generation strategy with {@code app.shortcode.strategy}.
+ * The default {@code block} strategy hands out collision-free codes from a shared counter,
+ * {@code random} keeps the original random alphanumeric codes. When sharded, either strategy's
+ * codes are prefixed with their shard.
+ *
+ * The block strategy permutes its counter with the key in {@code app.shortcode.secret} so that codes are
+ * not sequential. Anyone who knows the key can invert the permutation and enumerate every link, so the
+ * application refuses to start with permutation enabled and no key set.
+ */
+@Configuration
+public class ShortCodeConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.shortcode.strategy", havingValue = "block", matchIfMissing = true)
+    public ShortCodeGenerator blockAllocatingShortCodeGenerator(IdBlockAllocator idBlockAllocator, ShardRouter shardRouter,
+                                                                @Value("${app.shortcode.block-size:1000}") int blockSize,
+                                                                @Value("${app.shortcode.permute:true}") boolean permute,
+                                                                @Value("${app.shortcode.secret:}") String secret) {
+        FeistelPermutation permutation = permute ? new FeistelPermutation(parseSecret(secret)) : null;
+        return shardRouter.assigning(new BlockAllocatingShortCodeGenerator(idBlockAllocator, blockSize, permutation));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.shortcode.strategy", havingValue = "random")
+    public ShortCodeGenerator randomShortCodeGenerator(ShardRouter shardRouter,
+                                                       @Value("${app.shortcode.length:6}") int length) {
+        return shardRouter.assigning(new RandomShortCodeGenerator(length));
+    }
+
+    static long parseSecret(String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("app.shortcode.permute requires app.shortcode.secret (SHORTCODE_SECRET in production)");
+        }
+        try {
+            return Long.parseLong(secret.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("app.shortcode.secret must be a 64-bit integer", e);
+        }
+    }
+}
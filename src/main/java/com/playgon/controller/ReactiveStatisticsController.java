@@ -0,0 +1,118 @@
+package com.playgon.controller;
+
+import com.playgon.model.ClickResolution;
+import com.playgon.model.TopUrl;
+import com.playgon.repository.ReactiveUrlMappingsRepository;
+import com.playgon.stats.AccessCountAggregator;
+import com.playgon.stats.ClickAnalytics;
+import com.playgon.stats.TopUrlsLeaderboard;
+import com.playgon.stats.UniqueVisitorCounter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * WebFlux counterpart of {@link StatisticsController} for the reactive profile.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/stats")
+public class ReactiveStatisticsController {
+
+    private final ReactiveUrlMappingsRepository urlMappingRepository;
+    private final AccessCountAggregator accessCountAggregator;
+    private final TopUrlsLeaderboard topUrlsLeaderboard;
+    private final ClickAnalytics clickAnalytics;
+    private final UniqueVisitorCounter uniqueVisitorCounter;
+
+    /**
+     * Constructor to inject the ReactiveUrlMappingsRepository, AccessCountAggregator, TopUrlsLeaderboard, ClickAnalytics and UniqueVisitorCounter dependencies.
+     *
+     * @param urlMappingRepository  the R2DBC URL mappings repository
+     * @param accessCountAggregator the batched access counter holding not yet flushed accesses
+     * @param topUrlsLeaderboard    the in-memory leaderboard of the most accessed URLs
+     * @param clickAnalytics        the per-link click time series
+     * @param uniqueVisitorCounter  the per-link unique visitor sketches
+     */
+    @Autowired
+    public ReactiveStatisticsController(ReactiveUrlMappingsRepository urlMappingRepository,
+                                        AccessCountAggregator accessCountAggregator, TopUrlsLeaderboard topUrlsLeaderboard,
+                                        ClickAnalytics clickAnalytics, UniqueVisitorCounter uniqueVisitorCounter) {
+        this.urlMappingRepository = urlMappingRepository;
+        this.accessCountAggregator = accessCountAggregator;
+        this.topUrlsLeaderboard = topUrlsLeaderboard;
+        this.clickAnalytics = clickAnalytics;
+        this.uniqueVisitorCounter = uniqueVisitorCounter;
+    }
+
+    /**
+     * Gets the top N accessed URLs from the in-memory leaderboard, without querying the database.
+     *
+     * @param n the number of URLs to return, at most {@code app.stats.top.capacity}
+     * @return the top accessed URLs in descending order of access count
+     */
+    @GetMapping("/top")
+    public Flux<TopUrl> getTopUrls(@RequestParam(defaultValue = "10") int n) {
+        return Flux.fromIterable(topUrlsLeaderboard.top(n));
+    }
+
+    /**
+     * Gets the access count for a specific short URL, including accesses that have not been flushed yet.
+     *
+     * @param shortUrl the short URL
+     * @return the access count of the short URL or a 404 status if not found
+     */
+    @GetMapping("/count/{shortUrl}")
+    public Mono<ResponseEntity<?>> getUrlAccessCount(@PathVariable String shortUrl) {
+        return urlMappingRepository.findByShortUrl(shortUrl)
+                .<ResponseEntity<?>>map(mapping -> ResponseEntity.ok(mapping.getAccessCount() + accessCountAggregator.pendingCount(shortUrl)))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND).body("URL not found"));
+    }
+
+    /**
+     * Gets the clicks of a short URL per minute or hour. The JDBC query runs on the bounded elastic scheduler.
+     *
+     * @param shortUrl   the short URL
+     * @param resolution {@code minute} or {@code hour}
+     * @param from       the start of the range, inclusive; defaults to one hour (minute) or seven days (hour) before {@code to}
+     * @param to         the end of the range, exclusive; defaults to now
+     * @return the non-empty buckets in chronological order, or a 400 status if the parameters are invalid
+     */
+    @GetMapping("/clicks/{shortUrl}")
+    public Mono<ResponseEntity<?>> getClickSeries(@PathVariable String shortUrl,
+                                                  @RequestParam(defaultValue = "hour") String resolution,
+                                                  @RequestParam(required = false) Instant from,
+                                                  @RequestParam(required = false) Instant to) {
+        return Mono.<ResponseEntity<?>>fromCallable(() ->
+                        ResponseEntity.ok(clickAnalytics.series(shortUrl, ClickResolution.fromName(resolution), from, to)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().body(e.getMessage())));
+    }
+
+    /**
+     * Gets the estimated number of distinct visitors of a short URL over a range of UTC days. The JDBC
+     * query runs on the bounded elastic scheduler.
+     *
+     * @param shortUrl the short URL
+     * @param from     the first day, inclusive; defaults to seven days before {@code to}
+     * @param to       the last day, exclusive; defaults to tomorrow, i.e. including today
+     * @return the estimated number of unique visitors, or a 400 status if the range is invalid
+     */
+    @GetMapping("/visitors/{shortUrl}")
+    public Mono<ResponseEntity<?>> getUniqueVisitors(@PathVariable String shortUrl,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return Mono.<ResponseEntity<?>>fromCallable(() -> ResponseEntity.ok(uniqueVisitorCounter.count(shortUrl, from, to)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().body(e.getMessage())));
+    }
+}
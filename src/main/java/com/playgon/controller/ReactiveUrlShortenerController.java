@@ -0,0 +1,110 @@
+package com.playgon.controller;
+
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.model.UrlRequest;
+import com.playgon.model.UrlResponse;
+import com.playgon.ratelimit.RateLimitedOperation;
+import com.playgon.ratelimit.RateLimiter;
+import com.playgon.service.ReactiveUrlShortenerService;
+import com.playgon.stats.UniqueVisitorCounter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * WebFlux counterpart of {@link UrlShortenerController} for the reactive profile. Requests are served
+ * on the event loop without a thread per connection, with the same per-client rate limits.
+ */
+@RestController
+@Profile("reactive")
+public class ReactiveUrlShortenerController {
+
+    private final ReactiveUrlShortenerService urlShortenerService;
+    private final RateLimiter rateLimiter;
+    private final ShortenerMetrics metrics;
+    private final UniqueVisitorCounter uniqueVisitorCounter;
+    private final RedirectPolicy redirectPolicy;
+
+    @Autowired
+    public ReactiveUrlShortenerController(ReactiveUrlShortenerService urlShortenerService, RateLimiter rateLimiter,
+                                          ShortenerMetrics metrics, UniqueVisitorCounter uniqueVisitorCounter,
+                                          RedirectPolicy redirectPolicy) {
+        this.urlShortenerService = urlShortenerService;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+        this.uniqueVisitorCounter = uniqueVisitorCounter;
+        this.redirectPolicy = redirectPolicy;
+    }
+
+    @GetMapping("/hello")
+    public String hello() {
+        return "hello world";
+    }
+
+    /**
+     * Creates a shortened URL for the given long URL, optionally expiring at {@code expiresAt}.
+     *
+     * @param request     the original long URL and optional expiry embedded in request body
+     * @param httpRequest the HTTP request, used to identify the client for rate limiting
+     * @return the shortened URL
+     */
+    @PostMapping("/shorten")
+    public Mono<ResponseEntity<UrlResponse>> shortenUrl(@RequestBody UrlRequest request, ServerHttpRequest httpRequest) {
+        if (!rateLimiter.tryConsume(RateLimitedOperation.CREATE, httpRequest, 1)) {
+            metrics.recordRateLimited(RateLimitedOperation.CREATE);
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(new UrlResponse("Too many requests")));
+        }
+        if (!UrlShortenerController.isValidUrl(request.getLongUrl())) {
+            return Mono.just(ResponseEntity.badRequest().body(new UrlResponse("Invalid URL format")));
+        }
+        if (!UrlShortenerController.isValidExpiry(request.getExpiresAt())) {
+            return Mono.just(ResponseEntity.badRequest().body(new UrlResponse("Invalid expiry")));
+        }
+
+        String baseUrl = UriComponentsBuilder.fromUri(httpRequest.getURI()).replacePath(null).replaceQuery(null).toUriString();
+        return urlShortenerService.createShortUrl(request.getLongUrl(), request.getExpiresAt())
+                .map(shortUrl -> ResponseEntity.ok(new UrlResponse(baseUrl + "/" + shortUrl)));
+    }
+
+    /**
+     * Redirects to the original URL corresponding to the given shortened URL, with the status and
+     * caching headers of the {@link RedirectPolicy}.
+     *
+     * @param shortUrl the shortened URL
+     * @param exchange the exchange, used to identify the client for rate limiting and to check {@code If-None-Match}
+     * @return a redirect to the original URL, 304 if the client's copy is current, or a 404 status if not found
+     */
+    @GetMapping("/{shortUrl}")
+    public Mono<ResponseEntity<Void>> redirectUrl(@PathVariable String shortUrl, ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!rateLimiter.tryConsume(RateLimitedOperation.REDIRECT, request, 1)) {
+            metrics.recordRateLimited(RateLimitedOperation.REDIRECT);
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build());
+        }
+        return urlShortenerService.resolveUrl(shortUrl)
+                .map(resolved -> {
+                    uniqueVisitorCounter.recordVisit(shortUrl, request);
+                    String etag = redirectPolicy.etag(resolved.longUrl());
+                    CacheControl cacheControl = redirectPolicy.cacheControl(resolved);
+                    if (exchange.checkNotModified(etag)) {
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .cacheControl(cacheControl).eTag(etag).<Void>build();
+                    }
+                    return ResponseEntity.status(redirectPolicy.status()).cacheControl(cacheControl)
+                            .eTag(etag).location(URI.create(resolved.longUrl())).<Void>build();
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    metrics.recordNotFound();
+                    return ResponseEntity.notFound().build();
+                }));
+    }
+}
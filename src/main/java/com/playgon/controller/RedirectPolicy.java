@@ -0,0 +1,98 @@
+package com.playgon.controller;
+
+import com.playgon.model.ResolvedUrl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Status and caching headers of redirects, configured with {@code app.redirect.status}.
+ *
+ * A permanent redirect (301 or 308) may be cached by browsers and CDNs for {@code app.redirect.max-age},
+ * so repeat clicks are answered at the edge and are not counted. A temporary redirect (302 or 307) is
+ * sent with {@code Cache-Control: no-cache}: caches may keep it, but revalidate every click, so every
+ * click still reaches the application and is counted. Either way the redirect carries an ETag, and a
+ * revalidation whose {@code If-None-Match} matches is answered with 304 and no body. A permanent redirect
+ * of a link that expires is cached no longer than until the link expires.
+ */
+@Component
+public class RedirectPolicy {
+
+    private final HttpStatus status;
+    private final Duration maxAge;
+    private final CacheControl cacheControl;
+
+    /**
+     * Constructor to inject the redirect configuration.
+     *
+     * @param status the status of redirects: 301, 302, 307 or 308
+     * @param maxAge how long permanent redirects may be cached
+     */
+    @Autowired
+    public RedirectPolicy(@Value("${app.redirect.status:302}") int status,
+                          @Value("${app.redirect.max-age:PT1H}") Duration maxAge) {
+        this.status = switch (status) {
+            case 301, 302, 307, 308 -> HttpStatus.valueOf(status);
+            default -> throw new IllegalArgumentException("Unsupported redirect status: " + status);
+        };
+        this.maxAge = maxAge;
+        this.cacheControl = isPermanent() ? CacheControl.maxAge(maxAge).cachePublic() : CacheControl.noCache();
+    }
+
+    /**
+     * @return the status of redirects
+     */
+    public HttpStatus status() {
+        return status;
+    }
+
+    /**
+     * @return whether redirects are permanent and cached for {@code app.redirect.max-age}
+     */
+    public boolean isPermanent() {
+        return status == HttpStatus.MOVED_PERMANENTLY || status == HttpStatus.PERMANENT_REDIRECT;
+    }
+
+    /**
+     * @return the caching directives of redirects, also sent with 304 responses
+     */
+    public CacheControl cacheControl() {
+        return cacheControl;
+    }
+
+    /**
+     * @param resolved the target of the redirect
+     * @return the caching directives of the redirect to the given target
+     */
+    public CacheControl cacheControl(ResolvedUrl resolved) {
+        return cacheControl(resolved, System.currentTimeMillis());
+    }
+
+    CacheControl cacheControl(ResolvedUrl resolved, long now) {
+        if (!isPermanent() || resolved.expiresAt() == null) {
+            return cacheControl;
+        }
+        long remainingSeconds = (resolved.expiresAt().getTime() - now) / 1000;
+        if (remainingSeconds <= 0) {
+            return CacheControl.noCache();
+        }
+        return remainingSeconds < maxAge.toSeconds()
+                ? CacheControl.maxAge(Duration.ofSeconds(remainingSeconds)).cachePublic()
+                : cacheControl;
+    }
+
+    /**
+     * Mappings never change, so the status and target are the only versions of a redirect an ETag has
+     * to tell apart, and a cheap hash of them is enough.
+     *
+     * @param longUrl the target of the redirect
+     * @return the strong ETag of the redirect
+     */
+    public String etag(String longUrl) {
+        return "\"" + Integer.toHexString((status.value() + " " + longUrl).hashCode()) + "\"";
+    }
+}
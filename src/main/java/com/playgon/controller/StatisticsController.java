@@ -1,12 +1,22 @@
 package com.playgon.controller;
 
+import com.playgon.model.ClickResolution;
+import com.playgon.model.TopUrl;
 import com.playgon.model.UrlMappings;
 import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.stats.AccessCountAggregator;
+import com.playgon.stats.ClickAnalytics;
+import com.playgon.stats.TopUrlsLeaderboard;
+import com.playgon.stats.UniqueVisitorCounter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,34 +24,48 @@ import java.util.Optional;
  * REST controller for handling URL statistics.
  */
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/stats")
 public class StatisticsController {
 
     private final UrlMappingsRepository urlMappingRepository;
+    private final AccessCountAggregator accessCountAggregator;
+    private final TopUrlsLeaderboard topUrlsLeaderboard;
+    private final ClickAnalytics clickAnalytics;
+    private final UniqueVisitorCounter uniqueVisitorCounter;
 
     /**
-     * Constructor to inject the UrlMappingsRepository dependency.
+     * Constructor to inject the UrlMappingsRepository, AccessCountAggregator, TopUrlsLeaderboard, ClickAnalytics and UniqueVisitorCounter dependencies.
      *
-     * @param urlMappingRepository the URL mappings repository
+     * @param urlMappingRepository  the URL mappings repository
+     * @param accessCountAggregator the batched access counter holding not yet flushed accesses
+     * @param topUrlsLeaderboard    the in-memory leaderboard of the most accessed URLs
+     * @param clickAnalytics        the per-link click time series
+     * @param uniqueVisitorCounter  the per-link unique visitor sketches
      */
     @Autowired
-    public StatisticsController(UrlMappingsRepository urlMappingRepository) {
+    public StatisticsController(UrlMappingsRepository urlMappingRepository, AccessCountAggregator accessCountAggregator,
+                                TopUrlsLeaderboard topUrlsLeaderboard, ClickAnalytics clickAnalytics, UniqueVisitorCounter uniqueVisitorCounter) {
         this.urlMappingRepository = urlMappingRepository;
+        this.accessCountAggregator = accessCountAggregator;
+        this.topUrlsLeaderboard = topUrlsLeaderboard;
+        this.clickAnalytics = clickAnalytics;
+        this.uniqueVisitorCounter = uniqueVisitorCounter;
     }
 
     /**
-     * Gets the top 10 accessed URLs.
+     * Gets the top N accessed URLs from the in-memory leaderboard, without querying the database.
      *
-     * @return a list of UrlMappings representing the top accessed URLs
+     * @param n the number of URLs to return, at most {@code app.stats.top.capacity}
+     * @return the top accessed URLs in descending order of access count
      */
     @GetMapping("/top")
-    public List<UrlMappings> getTopUrls() {
-        // Implement logic to return top accessed URLs
-        return urlMappingRepository.findTop10ByOrderByAccessCountDesc();
+    public List<TopUrl> getTopUrls(@RequestParam(defaultValue = "10") int n) {
+        return topUrlsLeaderboard.top(n);
     }
 
     /**
-     * Gets the access count for a specific short URL.
+     * Gets the access count for a specific short URL, including accesses that have not been flushed yet.
      *
      * @param shortUrl the short URL
      * @return the access count of the short URL or a 404 status if not found
@@ -51,9 +75,52 @@ public class StatisticsController {
         // Implement logic to return the count of accesses for a given short URL
         Optional<UrlMappings> mapping = urlMappingRepository.findByShortUrl(shortUrl);
         if (mapping.isPresent()) {
-            return ResponseEntity.ok(mapping.get().getAccessCount());
+            return ResponseEntity.ok(mapping.get().getAccessCount() + accessCountAggregator.pendingCount(shortUrl));
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("URL not found");
         }
     }
+
+    /**
+     * Gets the clicks of a short URL per minute or hour, e.g.
+     * {@code /api/stats/clicks/abc123?resolution=hour&from=2024-05-06T00:00:00Z&to=2024-05-13T00:00:00Z}.
+     *
+     * @param shortUrl   the short URL
+     * @param resolution {@code minute} or {@code hour}
+     * @param from       the start of the range, inclusive; defaults to one hour (minute) or seven days (hour) before {@code to}
+     * @param to         the end of the range, exclusive; defaults to now
+     * @return the non-empty buckets in chronological order, or a 400 status if the parameters are invalid
+     */
+    @GetMapping("/clicks/{shortUrl}")
+    public ResponseEntity<?> getClickSeries(@PathVariable String shortUrl,
+                                            @RequestParam(defaultValue = "hour") String resolution,
+                                            @RequestParam(required = false) Instant from,
+                                            @RequestParam(required = false) Instant to) {
+        try {
+            return ResponseEntity.ok(clickAnalytics.series(shortUrl, ClickResolution.fromName(resolution), from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the estimated number of distinct visitors of a short URL over a range of UTC days, e.g.
+     * {@code /api/stats/visitors/abc123?from=2024-05-06&to=2024-05-13}. The estimate has a standard error
+     * of about 1.6% with the default {@code app.analytics.unique.precision}.
+     *
+     * @param shortUrl the short URL
+     * @param from     the first day, inclusive; defaults to seven days before {@code to}
+     * @param to       the last day, exclusive; defaults to tomorrow, i.e. including today
+     * @return the estimated number of unique visitors, or a 400 status if the range is invalid
+     */
+    @GetMapping("/visitors/{shortUrl}")
+    public ResponseEntity<?> getUniqueVisitors(@PathVariable String shortUrl,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(uniqueVisitorCounter.count(shortUrl, from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
 }
@@ -1,51 +1,79 @@
 package com.playgon.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.model.ResolvedUrl;
 import com.playgon.model.UrlRequest;
 import com.playgon.model.UrlResponse;
+import com.playgon.ratelimit.RateLimitedOperation;
+import com.playgon.ratelimit.RateLimiter;
+import com.playgon.service.UrlSanitizer;
 import com.playgon.service.UrlShortenerService;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Bucket4j;
-import io.github.bucket4j.Refill;
+import com.playgon.stats.UniqueVisitorCounter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
-import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * This controller handles URL shortening and redirection functionality.
  * It uses the Bucket4j library to enforce rate limiting on the API endpoints.
  *
  * Bucket4j is a Java library for rate limiting that allows you to define limits
- * on how many requests can be made within a given period. In this controller,
- * we define a rate limit of 10 requests per minute. Each request consumes a token
- * from the bucket. If the bucket has no tokens left, subsequent requests will
+ * on how many requests can be made within a given period. Each client (API key or
+ * IP address) has its own buckets, one for redirects and one for creating short URLs,
+ * with limits configured under {@code app.rate-limit}. Each request consumes a token
+ * from the matching bucket. If the bucket has no tokens left, subsequent requests will
  * receive a "429 Too Many Requests" response until tokens are refilled.
  */
 @RestController
+@Profile("!reactive")
 public class UrlShortenerController {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final UrlShortenerService urlShortenerService;
-    private final Bucket bucket;
+    private final ObjectMapper objectMapper;
+    private final RateLimiter rateLimiter;
+    private final ShortenerMetrics metrics;
+    private final UniqueVisitorCounter uniqueVisitorCounter;
+    private final RedirectPolicy redirectPolicy;
 
     @Value("${app.base-url}")
     private String baseUrl;
 
-    @Autowired
-    public UrlShortenerController(UrlShortenerService urlShortenerService) {
-        this.urlShortenerService = urlShortenerService;
+    @Value("${app.batch.chunk-size:500}")
+    private int batchChunkSize;
 
-        // Define a rate limit of 10 requests per minute using Bucket4j
-        Bandwidth limit = Bandwidth.classic(10, Refill.greedy(10, Duration.ofMinutes(1)));
+    @Value("${app.batch.max-size:10000}")
+    private int batchMaxSize;
 
-        // Create a bucket with the defined rate limit
-        this.bucket = Bucket4j.builder().addLimit(limit).build();
+    @Autowired
+    public UrlShortenerController(UrlShortenerService urlShortenerService, ObjectMapper objectMapper,
+                                  RateLimiter rateLimiter, ShortenerMetrics metrics,
+                                  UniqueVisitorCounter uniqueVisitorCounter, RedirectPolicy redirectPolicy) {
+        this.urlShortenerService = urlShortenerService;
+        this.objectMapper = objectMapper;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+        this.uniqueVisitorCounter = uniqueVisitorCounter;
+        this.redirectPolicy = redirectPolicy;
     }
 
     @GetMapping("/hello")
@@ -54,57 +82,153 @@ public class UrlShortenerController {
     }
 
     /**
-     * Creates a shortened URL for the given long URL.
+     * Creates a shortened URL for the given long URL, optionally expiring at {@code expiresAt}.
      *
-     * @param request the original long URL embedded in request body
+     * @param request     the original long URL and optional expiry embedded in request body
+     * @param httpRequest the HTTP request, used to identify the client for rate limiting
      * @return the shortened URL
      */
     @PostMapping("/shorten")
-    public ResponseEntity<UrlResponse> shortenUrl(@RequestBody UrlRequest request) {
+    public ResponseEntity<UrlResponse> shortenUrl(@RequestBody UrlRequest request, HttpServletRequest httpRequest) {
 
-        // Create a bucket with the defined rate limit
-        if (bucket.tryConsume(1)) {
+        // Consume a token from the client's create bucket to enforce rate limiting
+        if (rateLimiter.tryConsume(RateLimitedOperation.CREATE, httpRequest, 1)) {
             if (!isValidUrl(request.getLongUrl())) {
                 return ResponseEntity.badRequest().body(new UrlResponse("Invalid URL format"));
             }
+            if (!isValidExpiry(request.getExpiresAt())) {
+                return ResponseEntity.badRequest().body(new UrlResponse("Invalid expiry"));
+            }
 
-            String shortUrl = urlShortenerService.createShortUrl(request.getLongUrl());
+            String shortUrl = urlShortenerService.createShortUrl(request.getLongUrl(), request.getExpiresAt());
             String baseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString();
 
             return ResponseEntity.ok(new UrlResponse(baseUrl + "/" + shortUrl));
         } else {
+            metrics.recordRateLimited(RateLimitedOperation.CREATE);
             return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(new UrlResponse("Too many requests"));
         }
     }
 
     /**
-     * Retrieves the original URL corresponding to the given shortened URL.
+     * Creates shortened URLs for a batch of long URLs. The body is either a JSON array or
+     * newline-delimited JSON ({@code application/x-ndjson}) of {@link UrlRequest}s; the response uses
+     * the same format and holds one {@link UrlResponse} per request, in input order.
+     *
+     * The body is read and answered in chunks, so neither side needs to hold the whole batch in memory.
+     * Each chunk is validated in parallel and persisted with JDBC batch inserts; invalid URLs are answered
+     * with "Invalid URL format" and expiries that are not in the future with "Invalid expiry" in place.
+     * The whole batch consumes a single rate limit token. Only the first {@code app.batch.max-size}
+     * requests are shortened; each request beyond them is answered with "Batch too large".
+     *
+     * @param request  the request carrying the batch
+     * @param response the response the results are streamed to
+     */
+    @PostMapping(value = "/shorten/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public void shortenBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!rateLimiter.tryConsume(RateLimitedOperation.CREATE, request, 1)) {
+            metrics.recordRateLimited(RateLimitedOperation.CREATE);
+            response.sendError(429, "Too many requests");
+            return;
+        }
+        boolean ndjson = request.getContentType().startsWith(APPLICATION_NDJSON_VALUE);
+        String baseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString();
+
+        response.setContentType(ndjson ? APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        try (MappingIterator<UrlRequest> requests = objectMapper.readerFor(UrlRequest.class).readValues(request.getInputStream());
+             SequenceWriter writer = ndjson
+                     ? objectMapper.writer().withRootValueSeparator("\n").writeValues(response.getOutputStream())
+                     : objectMapper.writer().writeValuesAsArray(response.getOutputStream())) {
+            int processed = 0;
+            while (processed < batchMaxSize && requests.hasNextValue()) {
+                List<UrlRequest> chunk = nextChunk(requests, Math.min(batchChunkSize, batchMaxSize - processed));
+                writer.writeAll(shortenChunk(chunk, baseUrl));
+                writer.flush();
+                processed += chunk.size();
+            }
+            UrlResponse tooLarge = new UrlResponse("Batch too large");
+            while (requests.hasNextValue()) {
+                requests.nextValue();
+                writer.write(tooLarge);
+            }
+        }
+    }
+
+    private static List<UrlRequest> nextChunk(Iterator<UrlRequest> requests, int size) {
+        List<UrlRequest> chunk = new ArrayList<>(size);
+        while (chunk.size() < size && requests.hasNext()) {
+            chunk.add(requests.next());
+        }
+        return chunk;
+    }
+
+    private List<UrlResponse> shortenChunk(List<UrlRequest> chunk, String baseUrl) {
+        List<String> errors = chunk.parallelStream()
+                .map(urlRequest -> !isValidUrl(urlRequest.getLongUrl()) ? "Invalid URL format"
+                        : !isValidExpiry(urlRequest.getExpiresAt()) ? "Invalid expiry" : "")
+                .toList();
+        List<String> longUrls = new ArrayList<>(chunk.size());
+        List<Instant> expiresAt = new ArrayList<>(chunk.size());
+        boolean expiring = false;
+        for (int i = 0; i < chunk.size(); i++) {
+            if (errors.get(i).isEmpty()) {
+                longUrls.add(chunk.get(i).getLongUrl());
+                expiresAt.add(chunk.get(i).getExpiresAt());
+                expiring |= chunk.get(i).getExpiresAt() != null;
+            }
+        }
+        Iterator<String> shortUrls = longUrls.isEmpty()
+                ? List.<String>of().iterator()
+                : expiring
+                ? urlShortenerService.createShortUrls(longUrls, expiresAt).iterator()
+                : urlShortenerService.createShortUrls(longUrls).iterator();
+
+        List<UrlResponse> responses = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            responses.add(errors.get(i).isEmpty()
+                    ? new UrlResponse(baseUrl + "/" + shortUrls.next())
+                    : new UrlResponse(errors.get(i)));
+        }
+        return responses;
+    }
+
+    /**
+     * Retrieves the original URL corresponding to the given shortened URL. The redirect status and
+     * caching headers follow the {@link RedirectPolicy}; a revalidation with a matching
+     * {@code If-None-Match} is answered with 304, and still counted as a click.
      *
      * @param shortUrl the shortened URL
      * @return the original URL, or null if not found
      */
     @GetMapping("/{shortUrl}")
-    public void redirectUrl(@PathVariable String shortUrl, HttpServletResponse response) throws IOException {
-        // Consume a token from the bucket to enforce rate limiting
-        if (bucket.tryConsume(1)) {
-            String longUrl = urlShortenerService.getOriginalUrl(shortUrl);
-            if (longUrl != null) {
-                response.sendRedirect(longUrl);
+    public void redirectUrl(@PathVariable String shortUrl, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Consume a token from the client's redirect bucket to enforce rate limiting
+        if (rateLimiter.tryConsume(RateLimitedOperation.REDIRECT, request, 1)) {
+            ResolvedUrl resolved = urlShortenerService.resolveUrl(shortUrl);
+            if (resolved != null) {
+                uniqueVisitorCounter.recordVisit(shortUrl, request);
+                response.setHeader(HttpHeaders.CACHE_CONTROL, redirectPolicy.cacheControl(resolved).getHeaderValue());
+                if (!new ServletWebRequest(request, response).checkNotModified(redirectPolicy.etag(resolved.longUrl()))) {
+                    response.setStatus(redirectPolicy.status().value());
+                    response.setHeader(HttpHeaders.LOCATION, resolved.longUrl());
+                }
             } else {
+                metrics.recordNotFound();
                 response.sendError(HttpServletResponse.SC_NOT_FOUND);
             }
         } else {
+            metrics.recordRateLimited(RateLimitedOperation.REDIRECT);
             response.sendError(429, "Too many requests");
         }
     }
 
-    private boolean isValidUrl(String url) {
-        try {
-            new java.net.URL(url);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+    static boolean isValidUrl(String url) {
+        return UrlSanitizer.isValid(url);
+    }
+
+    // An expiry is optional, but one that has already passed would create a link that never resolves
+    static boolean isValidExpiry(Instant expiresAt) {
+        return expiresAt == null || expiresAt.isAfter(Instant.now());
     }
 
 }
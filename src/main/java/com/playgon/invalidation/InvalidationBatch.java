@@ -0,0 +1,17 @@
+package com.playgon.invalidation;
+
+import java.util.List;
+
+/**
+ * Cache changes of one node, sent to the other nodes in one message.
+ *
+ * @param origin      the id of the node that sent the batch
+ * @param invalidated the short codes that must no longer be served from cache
+ * @param created     the short codes that were just created
+ */
+public record InvalidationBatch(long origin, List<String> invalidated, List<String> created) {
+
+    public boolean isEmpty() {
+        return invalidated.isEmpty() && created.isEmpty();
+    }
+}
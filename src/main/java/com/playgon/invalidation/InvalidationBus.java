@@ -0,0 +1,163 @@
+package com.playgon.invalidation;
+
+import com.playgon.cache.ShortCodeFilter;
+import com.playgon.cache.ShortUrlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the per-node caches of short codes coherent across nodes.
+ *
+ * Invalidations drop a code from the resolution cache of this node right away and of the other nodes
+ * once they receive them. Creation hints let the other nodes add a new code to their short code filter
+ * and drop an unknown-code entry they may have cached for it, so the code resolves there without waiting
+ * for the next filter refresh. Both are queued in memory, coalesced per code, and sent by the
+ * {@link InvalidationTransport} every {@code app.invalidation.flush-interval-ms} in batches of at most
+ * {@code app.invalidation.max-batch-size} codes. Delivery is best effort; the cache TTLs bound how long
+ * a lost invalidation leaves an entry stale.
+ */
+@Component
+public class InvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+    private final InvalidationTransport transport;
+    private final ShortUrlCache shortUrlCache;
+    private final ShortCodeFilter shortCodeFilter;
+    private final int maxBatchSize;
+    // Identifies the batches of this node, which are not applied again when the transport echoes them
+    private final long origin = ThreadLocalRandom.current().nextLong();
+    // Guards the codes waiting to be sent
+    private final ReentrantLock lock = new ReentrantLock();
+    private Set<String> invalidated = new LinkedHashSet<>();
+    private Set<String> created = new LinkedHashSet<>();
+    private final Counter sent;
+    private final Counter received;
+
+    /**
+     * Constructor to inject the transport, the caches and the batching configuration.
+     *
+     * @param transport       the channel to the other nodes
+     * @param shortUrlCache   the resolution cache of this node
+     * @param shortCodeFilter the short code filter of this node
+     * @param maxBatchSize    the maximum number of codes per batch
+     * @param meterRegistry   the registry the metrics are published to
+     */
+    @Autowired
+    public InvalidationBus(InvalidationTransport transport, ShortUrlCache shortUrlCache, ShortCodeFilter shortCodeFilter,
+                           @Value("${app.invalidation.max-batch-size:1000}") int maxBatchSize,
+                           MeterRegistry meterRegistry) {
+        this.transport = transport;
+        this.shortUrlCache = shortUrlCache;
+        this.shortCodeFilter = shortCodeFilter;
+        this.maxBatchSize = maxBatchSize;
+        this.sent = Counter.builder("shortener.invalidation.sent")
+                .description("Short codes sent to the other nodes")
+                .register(meterRegistry);
+        this.received = Counter.builder("shortener.invalidation.received")
+                .description("Short codes received from the other nodes")
+                .register(meterRegistry);
+        transport.subscribe(this::apply);
+    }
+
+    /**
+     * Drops the code from the resolution cache of this node now, and of the other nodes with the next batch.
+     *
+     * @param shortUrl the short code
+     */
+    public void invalidate(String shortUrl) {
+        shortUrlCache.invalidate(shortUrl);
+        lock.lock();
+        try {
+            invalidated.add(shortUrl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tells the other nodes about a code that was just created and committed.
+     *
+     * @param shortUrl the short code
+     */
+    public void created(String shortUrl) {
+        lock.lock();
+        try {
+            created.add(shortUrl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the queued codes. A batch that fails to be sent is dropped.
+     */
+    @Scheduled(fixedDelayString = "${app.invalidation.flush-interval-ms:100}")
+    public void flush() {
+        List<String> invalidatedCodes;
+        List<String> createdCodes;
+        lock.lock();
+        try {
+            if (invalidated.isEmpty() && created.isEmpty()) {
+                return;
+            }
+            invalidatedCodes = new ArrayList<>(invalidated);
+            createdCodes = new ArrayList<>(created);
+            invalidated = new LinkedHashSet<>();
+            created = new LinkedHashSet<>();
+        } finally {
+            lock.unlock();
+        }
+        // An invalidation already drops the entry a creation hint would
+        createdCodes.removeAll(Set.copyOf(invalidatedCodes));
+        int total = invalidatedCodes.size() + createdCodes.size();
+        for (int start = 0; start < total; start += maxBatchSize) {
+            int end = Math.min(start + maxBatchSize, total);
+            InvalidationBatch batch = new InvalidationBatch(origin,
+                    List.copyOf(invalidatedCodes.subList(Math.min(start, invalidatedCodes.size()),
+                            Math.min(end, invalidatedCodes.size()))),
+                    List.copyOf(createdCodes.subList(Math.max(start - invalidatedCodes.size(), 0),
+                            Math.max(end - invalidatedCodes.size(), 0))));
+            try {
+                transport.send(batch);
+                sent.increment(end - start);
+            } catch (RuntimeException e) {
+                log.warn("Failed to send {} invalidations", end - start, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+        transport.close();
+    }
+
+    private void apply(InvalidationBatch batch) {
+        if (batch.origin() == origin) {
+            return;
+        }
+        for (String shortUrl : batch.invalidated()) {
+            shortUrlCache.invalidate(shortUrl);
+        }
+        for (String shortUrl : batch.created()) {
+            shortCodeFilter.put(shortUrl);
+            shortUrlCache.invalidate(shortUrl);
+        }
+        received.increment(batch.invalidated().size() + batch.created().size());
+    }
+}
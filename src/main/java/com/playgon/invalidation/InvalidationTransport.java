@@ -0,0 +1,28 @@
+package com.playgon.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link InvalidationBatch}es between the nodes. Delivery is best effort: a batch that is lost
+ * leaves stale entries until they expire from the caches.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /**
+     * Sends the batch to every node, which may include this one.
+     *
+     * @param batch the batch to send
+     */
+    void send(InvalidationBatch batch);
+
+    /**
+     * Registers a listener for the batches received from any node, including this one.
+     *
+     * @param listener receives each batch, possibly on a thread of the transport
+     */
+    void subscribe(Consumer<InvalidationBatch> listener);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,27 @@
+package com.playgon.invalidation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers batches to the listeners in this JVM, on the sending thread. On a single node this only
+ * echoes batches back to their sender; several buses sharing one transport behave like a cluster,
+ * which is what tests use it for.
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    private final List<Consumer<InvalidationBatch>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void send(InvalidationBatch batch) {
+        for (Consumer<InvalidationBatch> listener : listeners) {
+            listener.accept(batch);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationBatch> listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,193 @@
+package com.playgon.invalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Sends batches as UDP datagrams to a fixed list of peers, usually every node including this one, and
+ * receives them on {@code app.invalidation.udp.port}. A batch is split into datagrams of at most
+ * {@code maxDatagramSize} bytes, so that they are not fragmented on the way. There are no
+ * acknowledgements or retries; the port must only be reachable from the private network of the nodes.
+ *
+ * A datagram is a 4-byte magic number, the 8-byte origin, the 2-byte counts of invalidated and of created
+ * codes, followed by each code as one length byte and its UTF-8 bytes.
+ */
+public class UdpInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(UdpInvalidationTransport.class);
+
+    static final int MAGIC = 0x504c4731;
+    private static final int HEADER_SIZE = 16;
+    private static final int MAX_CODE_LENGTH = 255;
+    private static final int MAX_UDP_PAYLOAD = 65507;
+
+    private final DatagramSocket socket;
+    private final List<InetSocketAddress> peers;
+    private final int maxDatagramSize;
+    private final List<Consumer<InvalidationBatch>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread receiver;
+
+    /**
+     * @param port            the port to receive on, or 0 for any free port
+     * @param peers           the nodes batches are sent to
+     * @param maxDatagramSize the maximum size of a datagram in bytes
+     */
+    public UdpInvalidationTransport(int port, List<InetSocketAddress> peers, int maxDatagramSize) {
+        if (maxDatagramSize < HEADER_SIZE + 1 + MAX_CODE_LENGTH || maxDatagramSize > MAX_UDP_PAYLOAD) {
+            throw new IllegalArgumentException("Datagram size must be between " + (HEADER_SIZE + 1 + MAX_CODE_LENGTH)
+                    + " and " + MAX_UDP_PAYLOAD + ": " + maxDatagramSize);
+        }
+        try {
+            this.socket = new DatagramSocket(port);
+        } catch (SocketException e) {
+            throw new UncheckedIOException("Failed to open invalidation port " + port, e);
+        }
+        this.peers = List.copyOf(peers);
+        this.maxDatagramSize = maxDatagramSize;
+        this.receiver = Thread.ofPlatform().daemon().name("invalidation-receiver").start(this::receiveLoop);
+    }
+
+    /**
+     * @return the port batches are received on
+     */
+    public int port() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public void send(InvalidationBatch batch) {
+        for (byte[] datagram : encode(batch, maxDatagramSize)) {
+            for (InetSocketAddress peer : peers) {
+                try {
+                    socket.send(new DatagramPacket(datagram, datagram.length, peer));
+                } catch (IOException e) {
+                    log.warn("Failed to send invalidations to {}", peer, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationBatch> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+        try {
+            receiver.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void receiveLoop() {
+        byte[] buffer = new byte[MAX_UDP_PAYLOAD];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (!socket.isClosed()) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                InvalidationBatch batch = decode(packet.getData(), packet.getLength());
+                for (Consumer<InvalidationBatch> listener : listeners) {
+                    listener.accept(batch);
+                }
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    log.warn("Failed to receive invalidations", e);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Dropped invalidation datagram from {}", packet.getSocketAddress(), e);
+            }
+        }
+    }
+
+    /**
+     * Splits the batch into datagrams of at most {@code maxSize} bytes. Codes longer than 255 bytes are
+     * never handed out and are skipped.
+     */
+    static List<byte[]> encode(InvalidationBatch batch, int maxSize) {
+        List<byte[]> datagrams = new ArrayList<>();
+        List<byte[]> invalidated = new ArrayList<>();
+        List<byte[]> created = new ArrayList<>();
+        int size = HEADER_SIZE;
+        int total = batch.invalidated().size() + batch.created().size();
+        for (int i = 0; i < total; i++) {
+            boolean isInvalidated = i < batch.invalidated().size();
+            String code = isInvalidated ? batch.invalidated().get(i) : batch.created().get(i - batch.invalidated().size());
+            byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length == 0 || bytes.length > MAX_CODE_LENGTH) {
+                continue;
+            }
+            if (size + 1 + bytes.length > maxSize) {
+                datagrams.add(write(batch.origin(), invalidated, created, size));
+                invalidated.clear();
+                created.clear();
+                size = HEADER_SIZE;
+            }
+            (isInvalidated ? invalidated : created).add(bytes);
+            size += 1 + bytes.length;
+        }
+        if (size > HEADER_SIZE) {
+            datagrams.add(write(batch.origin(), invalidated, created, size));
+        }
+        return datagrams;
+    }
+
+    private static byte[] write(long origin, List<byte[]> invalidated, List<byte[]> created, int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(size)
+                .putInt(MAGIC)
+                .putLong(origin)
+                .putShort((short) invalidated.size())
+                .putShort((short) created.size());
+        for (byte[] code : invalidated) {
+            buffer.put((byte) code.length).put(code);
+        }
+        for (byte[] code : created) {
+            buffer.put((byte) code.length).put(code);
+        }
+        return buffer.array();
+    }
+
+    static InvalidationBatch decode(byte[] data, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an invalidation datagram");
+            }
+            long origin = buffer.getLong();
+            int invalidatedCount = Short.toUnsignedInt(buffer.getShort());
+            int createdCount = Short.toUnsignedInt(buffer.getShort());
+            List<String> invalidated = readCodes(buffer, invalidatedCount);
+            List<String> created = readCodes(buffer, createdCount);
+            return new InvalidationBatch(origin, invalidated, created);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated invalidation datagram", e);
+        }
+    }
+
+    private static List<String> readCodes(ByteBuffer buffer, int count) {
+        List<String> codes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] code = new byte[Byte.toUnsignedInt(buffer.get())];
+            buffer.get(code);
+            codes.add(new String(code, StandardCharsets.UTF_8));
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,174 @@
+package com.playgon.metrics;
+
+import com.playgon.ratelimit.RateLimitedOperation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Domain metrics of the URL shortener, published through Micrometer (and from there on
+ * {@code /actuator/prometheus}).
+ *
+ * <ul>
+ *     <li>{@code shortener.redirect} - time to resolve a short URL, tagged with {@code result=found|not_found}</li>
+ *     <li>{@code shortener.create} - time to create short URLs, tagged with {@code mode=single|batch}</li>
+ *     <li>{@code shortener.access.flush} - time to write a batch of access counts to the database</li>
+ *     <li>{@code shortener.not.found} - redirects answered with 404</li>
+ *     <li>{@code shortener.rate.limited} - requests answered with 429, tagged with the limited operation</li>
+ *     <li>{@code shortener.fallback} - circuit breaker fallbacks, tagged with the protected method</li>
+ * </ul>
+ *
+ * All timers publish percentile histograms. Repository call latency is recorded by Spring Boot
+ * as {@code spring.data.repository.invocations}.
+ */
+@Component
+public class ShortenerMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Timer redirectFound;
+    private final Timer redirectNotFound;
+    private final Timer createSingle;
+    private final Timer createBatch;
+    private final Timer accessCountFlush;
+    private final Counter notFound;
+    private final Counter deduplicated;
+    private final Counter expiredPurged;
+    private final Map<RateLimitedOperation, Counter> rateLimited = new EnumMap<>(RateLimitedOperation.class);
+
+    /**
+     * Constructor to inject the MeterRegistry dependency.
+     *
+     * @param meterRegistry the registry the metrics are published to
+     */
+    @Autowired
+    public ShortenerMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.redirectFound = timer("shortener.redirect", "Time to resolve a short URL", "result", "found");
+        this.redirectNotFound = timer("shortener.redirect", "Time to resolve a short URL", "result", "not_found");
+        this.createSingle = timer("shortener.create", "Time to create short URLs", "mode", "single");
+        this.createBatch = timer("shortener.create", "Time to create short URLs", "mode", "batch");
+        this.accessCountFlush = timer("shortener.access.flush", "Time to write a batch of access counts");
+        this.notFound = Counter.builder("shortener.not.found")
+                .description("Redirects answered with 404")
+                .register(meterRegistry);
+        this.deduplicated = Counter.builder("shortener.create.deduplicated")
+                .description("Short URL creations answered with the code of an identical long URL")
+                .register(meterRegistry);
+        this.expiredPurged = Counter.builder("shortener.expired.purged")
+                .description("Expired short URLs deleted by the background purge")
+                .register(meterRegistry);
+        for (RateLimitedOperation operation : RateLimitedOperation.values()) {
+            rateLimited.put(operation, Counter.builder("shortener.rate.limited")
+                    .description("Requests answered with 429")
+                    .tag("operation", operation.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Resolves a short URL and records the time under {@code shortener.redirect}.
+     *
+     * @param resolution the resolution, returning null if the short URL is unknown
+     * @return the result of the resolution
+     */
+    public <T> T timeRedirect(Supplier<T> resolution) {
+        long start = System.nanoTime();
+        T resolved = resolution.get();
+        recordRedirect(System.nanoTime() - start, resolved != null);
+        return resolved;
+    }
+
+    /**
+     * Records the time of a short URL resolution that was not run through {@link #timeRedirect},
+     * e.g. a non-blocking one.
+     *
+     * @param elapsedNanos the time the resolution took
+     * @param found        whether the short URL was known
+     */
+    public void recordRedirect(long elapsedNanos, boolean found) {
+        (found ? redirectFound : redirectNotFound).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the timer for creating a single short URL
+     */
+    public Timer createTimer() {
+        return createSingle;
+    }
+
+    /**
+     * @return the timer for creating a batch of short URLs
+     */
+    public Timer createBatchTimer() {
+        return createBatch;
+    }
+
+    /**
+     * @return the timer for writing a batch of access counts
+     */
+    public Timer accessCountFlushTimer() {
+        return accessCountFlush;
+    }
+
+    /**
+     * Counts short URL creations answered with the code of an identical long URL.
+     *
+     * @param count the number of deduplicated creations
+     */
+    public void recordDeduplicated(int count) {
+        deduplicated.increment(count);
+    }
+
+    /**
+     * Counts expired short URLs deleted by the background purge.
+     *
+     * @param count the number of deleted short URLs
+     */
+    public void recordExpiredPurged(int count) {
+        expiredPurged.increment(count);
+    }
+
+    /**
+     * Counts a redirect answered with 404.
+     */
+    public void recordNotFound() {
+        notFound.increment();
+    }
+
+    /**
+     * Counts a request answered with 429.
+     *
+     * @param operation the operation that was limited
+     */
+    public void recordRateLimited(RateLimitedOperation operation) {
+        rateLimited.get(operation).increment();
+    }
+
+    /**
+     * Counts a circuit breaker fallback.
+     *
+     * @param method the name of the protected method
+     */
+    public void recordFallback(String method) {
+        Counter.builder("shortener.fallback")
+                .description("Circuit breaker fallbacks")
+                .tag("method", method)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,87 @@
+package com.playgon.model;
+
+import jakarta.persistence.*;
+
+import java.sql.Timestamp;
+
+/**
+ * Clicks of one short URL within one minute or hour, as counted by one node. A bucket may be
+ * stored in several rows (one per node, or a partial one written at shutdown), which are summed
+ * when queried.
+ */
+@Entity
+@Table(name = "ClickBuckets", // Specify the table name explicitly
+        indexes = {
+                @Index(name = "idx_click_buckets_series", columnList = "short_url, resolution, bucket_start"),
+                @Index(name = "idx_click_buckets_age", columnList = "resolution, bucket_start")
+        })
+public class ClickBucket {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String shortUrl;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private ClickResolution resolution;
+
+    @Column(nullable = false)
+    private Timestamp bucketStart;
+
+    @Column(nullable = false)
+    private long clicks;
+
+    public ClickBucket() {
+    }
+
+    public ClickBucket(String shortUrl, ClickResolution resolution, Timestamp bucketStart, long clicks) {
+        this.shortUrl = shortUrl;
+        this.resolution = resolution;
+        this.bucketStart = bucketStart;
+        this.clicks = clicks;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getShortUrl() {
+        return shortUrl;
+    }
+
+    public void setShortUrl(String shortUrl) {
+        this.shortUrl = shortUrl;
+    }
+
+    public ClickResolution getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(ClickResolution resolution) {
+        this.resolution = resolution;
+    }
+
+    public Timestamp getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(Timestamp bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public long getClicks() {
+        return clicks;
+    }
+
+    public void setClicks(long clicks) {
+        this.clicks = clicks;
+    }
+}
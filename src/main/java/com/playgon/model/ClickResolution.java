@@ -0,0 +1,57 @@
+package com.playgon.model;
+
+import java.time.Duration;
+
+/**
+ * Width of the time buckets clicks are aggregated into.
+ */
+public enum ClickResolution {
+
+    MINUTE(Duration.ofMinutes(1), Duration.ofHours(1)),
+    HOUR(Duration.ofHours(1), Duration.ofDays(7));
+
+    private final Duration width;
+    private final Duration defaultRange;
+
+    ClickResolution(Duration width, Duration defaultRange) {
+        this.width = width;
+        this.defaultRange = defaultRange;
+    }
+
+    /**
+     * @param name the resolution name, in any case
+     * @return the matching resolution
+     * @throws IllegalArgumentException if there is no resolution of that name
+     */
+    public static ClickResolution fromName(String name) {
+        for (ClickResolution resolution : values()) {
+            if (resolution.name().equalsIgnoreCase(name)) {
+                return resolution;
+            }
+        }
+        throw new IllegalArgumentException("Unknown resolution: " + name);
+    }
+
+    /**
+     * @return the width of a bucket
+     */
+    public Duration width() {
+        return width;
+    }
+
+    /**
+     * @return the time range returned when a query does not specify one
+     */
+    public Duration defaultRange() {
+        return defaultRange;
+    }
+
+    /**
+     * @param epochMillis a point in time
+     * @return the start of the bucket containing it, in epoch milliseconds
+     */
+    public long bucketStart(long epochMillis) {
+        long widthMillis = width.toMillis();
+        return Math.floorDiv(epochMillis, widthMillis) * widthMillis;
+    }
+}
@@ -0,0 +1,12 @@
+package com.playgon.model;
+
+import java.time.Instant;
+
+/**
+ * A point of a click time series.
+ *
+ * @param start  the start of the bucket
+ * @param clicks the number of clicks within the bucket
+ */
+public record ClickTimeBucket(Instant start, long clicks) {
+}
@@ -0,0 +1,42 @@
+package com.playgon.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Cluster-wide counter from which each node reserves blocks of ids.
+ */
+@Entity
+@Table(name = "IdBlocks") // Specify the table name explicitly
+public class IdBlock {
+
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private long nextValue;
+
+    public IdBlock() {
+    }
+
+    public IdBlock(String name, long nextValue) {
+        this.name = name;
+        this.nextValue = nextValue;
+    }
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getNextValue() {
+        return nextValue;
+    }
+
+    public void setNextValue(long nextValue) {
+        this.nextValue = nextValue;
+    }
+}
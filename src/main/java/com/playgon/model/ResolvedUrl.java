@@ -0,0 +1,28 @@
+package com.playgon.model;
+
+import java.sql.Timestamp;
+
+/**
+ * Long URL a short code resolves to, with the time the link expires.
+ *
+ * @param longUrl   the long URL
+ * @param expiresAt when the link stops resolving, or null if it never expires
+ */
+public record ResolvedUrl(String longUrl, Timestamp expiresAt) {
+
+    /**
+     * @param longUrl the long URL
+     * @return the resolution of a link that never expires
+     */
+    public static ResolvedUrl permanent(String longUrl) {
+        return new ResolvedUrl(longUrl, null);
+    }
+
+    /**
+     * @param now the current time, in epoch milliseconds
+     * @return whether the link has expired at the given time
+     */
+    public boolean isExpired(long now) {
+        return expiresAt != null && expiresAt.getTime() <= now;
+    }
+}
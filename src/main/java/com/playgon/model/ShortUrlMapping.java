@@ -0,0 +1,10 @@
+package com.playgon.model;
+
+/**
+ * Short URL and long URL of a mapping, without the rest of the entity.
+ *
+ * @param shortUrl the short URL
+ * @param longUrl  the long URL
+ */
+public record ShortUrlMapping(String shortUrl, String longUrl) {
+}
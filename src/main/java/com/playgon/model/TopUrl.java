@@ -0,0 +1,11 @@
+package com.playgon.model;
+
+/**
+ * An entry of the most accessed URLs leaderboard.
+ *
+ * @param shortUrl    the short URL
+ * @param longUrl     the original long URL
+ * @param accessCount the number of flushed accesses
+ */
+public record TopUrl(String shortUrl, String longUrl, long accessCount) {
+}
@@ -0,0 +1,14 @@
+package com.playgon.model;
+
+import java.time.LocalDate;
+
+/**
+ * Estimated number of distinct visitors of a short URL over a range of UTC days.
+ *
+ * @param shortUrl       the short URL
+ * @param from           the first day of the range, inclusive
+ * @param to             the end of the range, exclusive
+ * @param uniqueVisitors the estimated number of distinct visitors
+ */
+public record UniqueVisitors(String shortUrl, LocalDate from, LocalDate to, long uniqueVisitors) {
+}
@@ -6,25 +6,41 @@ import org.hibernate.annotations.GenericGenerator;
 import java.sql.Timestamp;
 
 @Entity
-@Table(name = "UrlMappings") // Specify the table name explicitly
+@Table(name = "UrlMappings", // Specify the table name explicitly
+        indexes = {
+                @Index(name = "idx_url_mappings_created_at", columnList = "created_at"),
+                @Index(name = "idx_url_mappings_long_url_hash", columnList = "long_url_hash"),
+                @Index(name = "idx_url_mappings_expires_at", columnList = "expires_at")
+        })
 public class UrlMappings {
 
+    // Width of the long_url column, the longest URL that can be shortened
+    public static final int MAX_LONG_URL_LENGTH = 255;
+
+    // Sequence ids are fetched in pooled blocks, which keeps Hibernate insert batching enabled
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "url_mappings_seq")
+    @SequenceGenerator(name = "url_mappings_seq", sequenceName = "url_mappings_seq", allocationSize = 100)
     private Long id;
 
     @Column(nullable = false, unique = true)
     private String shortUrl;
 
-    @Column(nullable = false)
+    @Column(nullable = false, length = MAX_LONG_URL_LENGTH)
     private String longUrl;
 
+    // Fixed-width hash of longUrl, so that identical URLs can be found through an index; null for rows created before it
+    private Long longUrlHash;
+
     @Column(nullable = false)
     private Timestamp createdAt;
 
     @Column(nullable = false)
     private int accessCount;
 
+    // When the link stops resolving and becomes eligible for purging; null for links that never expire
+    private Timestamp expiresAt;
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -50,6 +66,14 @@ public class UrlMappings {
         this.longUrl = longUrl;
     }
 
+    public Long getLongUrlHash() {
+        return longUrlHash;
+    }
+
+    public void setLongUrlHash(Long longUrlHash) {
+        this.longUrlHash = longUrlHash;
+    }
+
     public Timestamp getCreatedAt() {
         return createdAt;
     }
@@ -65,4 +89,12 @@ public class UrlMappings {
     public void setAccessCount(int accessCount) {
         this.accessCount = accessCount;
     }
+
+    public Timestamp getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Timestamp expiresAt) {
+        this.expiresAt = expiresAt;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.playgon.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.sql.Timestamp;
+
+/**
+ * Read model of the {@code url_mappings} table for the R2DBC repository of the reactive profile.
+ * Rows are written through the {@link UrlMappings} JPA entity, which owns the id sequence.
+ */
+@Table("url_mappings")
+public class UrlMappingsRow {
+
+    @Id
+    private Long id;
+
+    private String shortUrl;
+
+    private String longUrl;
+
+    private Timestamp createdAt;
+
+    private int accessCount;
+
+    private Timestamp expiresAt;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getShortUrl() {
+        return shortUrl;
+    }
+
+    public void setShortUrl(String shortUrl) {
+        this.shortUrl = shortUrl;
+    }
+
+    public String getLongUrl() {
+        return longUrl;
+    }
+
+    public void setLongUrl(String longUrl) {
+        this.longUrl = longUrl;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public int getAccessCount() {
+        return accessCount;
+    }
+
+    public void setAccessCount(int accessCount) {
+        this.accessCount = accessCount;
+    }
+
+    public Timestamp getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Timestamp expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
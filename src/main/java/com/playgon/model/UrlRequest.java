@@ -1,7 +1,11 @@
 package com.playgon.model;
 
+import java.time.Instant;
+
 public class UrlRequest {
     private String longUrl;
+    // Optional; the short URL stops resolving at this time
+    private Instant expiresAt;
 
     // Getters and Setters
     public String getLongUrl() {
@@ -11,4 +15,12 @@ public class UrlRequest {
     public void setLongUrl(String longUrl) {
         this.longUrl = longUrl;
     }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
 }
@@ -0,0 +1,83 @@
+package com.playgon.model;
+
+import jakarta.persistence.*;
+
+import java.sql.Timestamp;
+
+/**
+ * Serialized HyperLogLog sketch of the visitors of one short URL on one UTC day, as seen by one
+ * node. Each node only ever writes its own row, so the rows of a day are merged when queried.
+ */
+@Entity
+@Table(name = "VisitorSketches", // Specify the table name explicitly
+        indexes = @Index(name = "idx_visitor_sketches_window", columnList = "short_url, window_start"))
+public class VisitorSketch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String shortUrl;
+
+    @Column(nullable = false)
+    private Timestamp windowStart;
+
+    @Column(nullable = false, length = 36)
+    private String nodeId;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] registers;
+
+    public VisitorSketch() {
+    }
+
+    public VisitorSketch(String shortUrl, Timestamp windowStart, String nodeId, byte[] registers) {
+        this.shortUrl = shortUrl;
+        this.windowStart = windowStart;
+        this.nodeId = nodeId;
+        this.registers = registers;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getShortUrl() {
+        return shortUrl;
+    }
+
+    public void setShortUrl(String shortUrl) {
+        this.shortUrl = shortUrl;
+    }
+
+    public Timestamp getWindowStart() {
+        return windowStart;
+    }
+
+    public void setWindowStart(Timestamp windowStart) {
+        this.windowStart = windowStart;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public byte[] getRegisters() {
+        return registers;
+    }
+
+    public void setRegisters(byte[] registers) {
+        this.registers = registers;
+    }
+}
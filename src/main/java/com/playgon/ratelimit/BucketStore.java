@@ -0,0 +1,21 @@
+package com.playgon.ratelimit;
+
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+
+import java.util.function.Supplier;
+
+/**
+ * Holds one token bucket per rate limit key.
+ */
+public interface BucketStore {
+
+    /**
+     * Returns the bucket for the given key, creating it from the configuration if it does not exist yet.
+     *
+     * @param key           the rate limit key
+     * @param configuration supplies the configuration of a new bucket
+     * @return the bucket for the key
+     */
+    Bucket bucket(String key, Supplier<BucketConfiguration> configuration);
+}
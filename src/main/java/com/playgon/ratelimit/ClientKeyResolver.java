@@ -0,0 +1,76 @@
+package com.playgon.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Derives the rate limit key of a request: the API key if the client sent one of those configured in
+ * {@code app.rate-limit.api-keys}, its IP address otherwise. Unknown keys are ignored, so that a client
+ * cannot get a fresh bucket by sending a new key with every request.
+ */
+@Component
+public class ClientKeyResolver {
+
+    static final String API_KEY_HEADER = "X-API-Key";
+    private static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+    private final boolean trustForwardedFor;
+    private final Set<String> apiKeys;
+
+    /**
+     * @param trustForwardedFor whether to take the client IP from X-Forwarded-For, which is only
+     *                          safe behind a proxy that overwrites the header
+     * @param apiKeys           the API keys that identify a client of their own
+     */
+    @Autowired
+    public ClientKeyResolver(@Value("${app.rate-limit.trust-forwarded-for:false}") boolean trustForwardedFor,
+                             @Value("${app.rate-limit.api-keys:}") List<String> apiKeys) {
+        this.trustForwardedFor = trustForwardedFor;
+        this.apiKeys = apiKeys.stream().map(String::trim).filter(key -> !key.isEmpty()).collect(Collectors.toUnmodifiableSet());
+    }
+
+    public ClientKeyResolver(boolean trustForwardedFor) {
+        this(trustForwardedFor, List.of());
+    }
+
+    /**
+     * @param request the incoming request
+     * @return the key identifying the client of the request
+     */
+    public String resolve(HttpServletRequest request) {
+        return resolve(request.getHeader(API_KEY_HEADER), request.getHeader(FORWARDED_FOR_HEADER), request.getRemoteAddr());
+    }
+
+    /**
+     * @param request the incoming request of the reactive stack
+     * @return the key identifying the client of the request
+     */
+    public String resolve(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return resolve(request.getHeaders().getFirst(API_KEY_HEADER), request.getHeaders().getFirst(FORWARDED_FOR_HEADER),
+                remoteAddress == null ? null : remoteAddress.getHostString());
+    }
+
+    private String resolve(String apiKey, String forwardedFor, String remoteAddr) {
+        if (apiKey != null && apiKeys.contains(apiKey)) {
+            return "key:" + apiKey;
+        }
+        return "ip:" + clientIp(forwardedFor, remoteAddr);
+    }
+
+    private String clientIp(String forwardedFor, String remoteAddr) {
+        if (trustForwardedFor && forwardedFor != null && !forwardedFor.isBlank()) {
+            int comma = forwardedFor.indexOf(',');
+            return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+        }
+        return remoteAddr;
+    }
+}
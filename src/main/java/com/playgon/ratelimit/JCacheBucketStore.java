@@ -0,0 +1,33 @@
+package com.playgon.ratelimit;
+
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Bucket4j;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.grid.GridBucketState;
+import io.github.bucket4j.grid.ProxyManager;
+import io.github.bucket4j.grid.jcache.JCache;
+
+import javax.cache.Cache;
+import java.util.function.Supplier;
+
+/**
+ * Keeps bucket state in a JCache (JSR 107) cache. With a clustered provider such as Hazelcast or
+ * Infinispan every node consumes from the same buckets, so limits hold across the whole cluster.
+ * Idle eviction is left to the expiry policy of the cache.
+ */
+public class JCacheBucketStore implements BucketStore {
+
+    private final ProxyManager<String> proxyManager;
+
+    /**
+     * @param cache the cache holding the bucket state
+     */
+    public JCacheBucketStore(Cache<String, GridBucketState> cache) {
+        this.proxyManager = Bucket4j.extension(JCache.class).proxyManagerForCache(cache);
+    }
+
+    @Override
+    public Bucket bucket(String key, Supplier<BucketConfiguration> configuration) {
+        return proxyManager.getProxy(key, configuration);
+    }
+}
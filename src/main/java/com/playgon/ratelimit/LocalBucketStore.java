@@ -0,0 +1,44 @@
+package com.playgon.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Bucket4j;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.local.LocalBucketBuilder;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Keeps buckets in a bounded in-process map. Buckets that have not been used for the idle timeout
+ * are dropped; as long as the timeout is not shorter than the refill period a dropped bucket would
+ * have been full again anyway. Limits only apply per node.
+ */
+public class LocalBucketStore implements BucketStore {
+
+    private final Cache<String, Bucket> buckets;
+
+    /**
+     * @param maxKeys     the maximum number of buckets kept
+     * @param idleTimeout the time after which an unused bucket is dropped
+     */
+    public LocalBucketStore(long maxKeys, Duration idleTimeout) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    @Override
+    public Bucket bucket(String key, Supplier<BucketConfiguration> configuration) {
+        return buckets.get(key, k -> {
+            LocalBucketBuilder builder = Bucket4j.builder();
+            for (Bandwidth bandwidth : configuration.get().getBandwidths()) {
+                builder.addLimit(bandwidth);
+            }
+            return builder.build();
+        });
+    }
+}
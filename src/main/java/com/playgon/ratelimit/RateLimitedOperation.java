@@ -0,0 +1,9 @@
+package com.playgon.ratelimit;
+
+/**
+ * The operations that are rate limited independently of each other.
+ */
+public enum RateLimitedOperation {
+    REDIRECT,
+    CREATE
+}
@@ -0,0 +1,77 @@
+package com.playgon.ratelimit;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket4j;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.Refill;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Enforces per-client rate limits with Bucket4j.
+ *
+ * Every client (API key or IP address) gets its own token bucket per {@link RateLimitedOperation},
+ * so one noisy client cannot throttle the others and redirects do not compete with link creation.
+ * Where the buckets live is up to the configured {@link BucketStore}.
+ */
+@Component
+public class RateLimiter {
+
+    private final BucketStore bucketStore;
+    private final ClientKeyResolver clientKeyResolver;
+    private final Map<RateLimitedOperation, BucketConfiguration> configurations = new EnumMap<>(RateLimitedOperation.class);
+
+    @Autowired
+    public RateLimiter(BucketStore bucketStore, ClientKeyResolver clientKeyResolver,
+                       @Value("${app.rate-limit.redirect.capacity:1000}") long redirectCapacity,
+                       @Value("${app.rate-limit.redirect.period:PT1M}") Duration redirectPeriod,
+                       @Value("${app.rate-limit.create.capacity:10}") long createCapacity,
+                       @Value("${app.rate-limit.create.period:PT1M}") Duration createPeriod) {
+        this.bucketStore = bucketStore;
+        this.clientKeyResolver = clientKeyResolver;
+        configurations.put(RateLimitedOperation.REDIRECT, configuration(redirectCapacity, redirectPeriod));
+        configurations.put(RateLimitedOperation.CREATE, configuration(createCapacity, createPeriod));
+    }
+
+    /**
+     * Tries to consume tokens from the bucket of the requesting client for the given operation.
+     *
+     * @param operation the operation being performed
+     * @param request   the incoming request, used to identify the client
+     * @param tokens    the number of tokens to consume
+     * @return true if the tokens were consumed, false if the client is over its limit
+     */
+    public boolean tryConsume(RateLimitedOperation operation, HttpServletRequest request, long tokens) {
+        return tryConsume(operation, clientKeyResolver.resolve(request), tokens);
+    }
+
+    /**
+     * Reactive stack variant of {@link #tryConsume(RateLimitedOperation, HttpServletRequest, long)}.
+     *
+     * @param operation the operation being performed
+     * @param request   the incoming request, used to identify the client
+     * @param tokens    the number of tokens to consume
+     * @return true if the tokens were consumed, false if the client is over its limit
+     */
+    public boolean tryConsume(RateLimitedOperation operation, ServerHttpRequest request, long tokens) {
+        return tryConsume(operation, clientKeyResolver.resolve(request), tokens);
+    }
+
+    private boolean tryConsume(RateLimitedOperation operation, String clientKey, long tokens) {
+        String key = operation.name() + ":" + clientKey;
+        return bucketStore.bucket(key, () -> configurations.get(operation)).tryConsume(tokens);
+    }
+
+    private static BucketConfiguration configuration(long capacity, Duration period) {
+        return Bucket4j.configurationBuilder()
+                .addLimit(Bandwidth.classic(capacity, Refill.greedy(capacity, period)))
+                .build();
+    }
+}
@@ -0,0 +1,95 @@
+package com.playgon.repository;
+
+import com.playgon.model.ClickBucket;
+import com.playgon.model.ClickResolution;
+import com.playgon.model.ClickTimeBucket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plain JDBC access to the ClickBuckets table. Buckets are only ever inserted and deleted, so
+ * nodes never contend on the same rows.
+ */
+@Repository
+public class ClickBucketJdbcRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO click_buckets (short_url, resolution, bucket_start, clicks) VALUES (?, ?, ?, ?)";
+    private static final String SERIES_SQL =
+            "SELECT bucket_start, SUM(clicks) FROM click_buckets"
+                    + " WHERE short_url = ? AND resolution = ? AND bucket_start >= ? AND bucket_start < ?"
+                    + " GROUP BY bucket_start ORDER BY bucket_start";
+    // Range scan of the (resolution, bucket_start) index, so a purge batch never reads more rows than it deletes
+    private static final String OLDER_THAN_SQL =
+            "SELECT id FROM click_buckets WHERE resolution = ? AND bucket_start < ? ORDER BY bucket_start LIMIT ?";
+    private static final String DELETE_BY_IDS_SQL = "DELETE FROM click_buckets WHERE id IN (";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor to inject the JdbcTemplate dependency.
+     *
+     * @param jdbcTemplate the JDBC template bound to the application DataSource
+     */
+    @Autowired
+    public ClickBucketJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the given buckets in a single JDBC batch.
+     *
+     * @param buckets the buckets to insert
+     */
+    public void insertAll(List<ClickBucket> buckets) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, buckets, buckets.size(), (ps, bucket) -> {
+            ps.setString(1, bucket.getShortUrl());
+            ps.setString(2, bucket.getResolution().name());
+            ps.setTimestamp(3, bucket.getBucketStart());
+            ps.setLong(4, bucket.getClicks());
+        });
+    }
+
+    /**
+     * Reads the clicks of a short URL per bucket. Buckets without clicks are omitted.
+     *
+     * @param shortUrl   the short URL
+     * @param resolution the bucket width
+     * @param from       the start of the range, inclusive
+     * @param to         the end of the range, exclusive
+     * @return the non-empty buckets in the range, in chronological order
+     */
+    @Transactional(readOnly = true)
+    public List<ClickTimeBucket> findSeries(String shortUrl, ClickResolution resolution, Instant from, Instant to) {
+        return jdbcTemplate.query(SERIES_SQL,
+                (rs, rowNum) -> new ClickTimeBucket(rs.getTimestamp(1).toInstant(), rs.getLong(2)),
+                shortUrl, resolution.name(), Timestamp.from(from), Timestamp.from(to));
+    }
+
+    /**
+     * Deletes one batch of the buckets of the given resolution that start before the given time. The rows
+     * are found through the (resolution, bucket_start) index and deleted by primary key in a single short
+     * statement, so only the deleted rows are locked, and only briefly.
+     *
+     * @param resolution the bucket width
+     * @param cutoff     the start of the oldest bucket to keep
+     * @param limit      the maximum number of rows to delete
+     * @return the number of deleted rows, below {@code limit} once no older rows are left
+     */
+    public int deleteOlderThan(ClickResolution resolution, Instant cutoff, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList(OLDER_THAN_SQL, Long.class, resolution.name(),
+                Timestamp.from(cutoff), limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(DELETE_BY_IDS_SQL + String.join(",", Collections.nCopies(ids.size(), "?")) + ")",
+                ids.toArray());
+    }
+}
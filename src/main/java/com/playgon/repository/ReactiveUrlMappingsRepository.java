@@ -0,0 +1,24 @@
+package com.playgon.repository;
+
+import com.playgon.model.ResolvedUrl;
+import com.playgon.model.UrlMappingsRow;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link UrlMappingsRepository}, backed by R2DBC in the reactive profile.
+ */
+@Repository
+public interface ReactiveUrlMappingsRepository extends R2dbcRepository<UrlMappingsRow, Long> {
+    Mono<UrlMappingsRow> findByShortUrl(String shortUrl);
+
+    // Selects only the target URL and expiry for redirects
+    @Query("SELECT long_url, expires_at FROM url_mappings WHERE short_url = :shortUrl")
+    Mono<ResolvedUrl> findLongUrlByShortUrl(String shortUrl);
+
+    // This will gather top 10 accessed URLs
+    Flux<UrlMappingsRow> findTop10ByOrderByAccessCountDesc();
+}
@@ -0,0 +1,301 @@
+package com.playgon.repository;
+
+import com.playgon.model.TopUrl;
+import com.playgon.shard.ShardContext;
+import com.playgon.shard.ShardRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Plain JDBC access to the UrlMappings table for the hot paths where going through
+ * the JPA persistence context would cost more than the statement itself. When sharded, writes
+ * are routed by short code and reads over the whole table run on every shard.
+ */
+@Repository
+public class UrlMappingsJdbcRepository {
+
+    private static final String INCREMENT_ACCESS_COUNT_SQL =
+            "UPDATE url_mappings SET access_count = access_count + ? WHERE short_url = ?";
+    private static final String TOP_ACCESSED_SQL =
+            "SELECT short_url, long_url, access_count FROM url_mappings ORDER BY access_count DESC LIMIT ?";
+    // Warm-up and snapshot reads skip links that expire, which are only ever cached until they do
+    private static final String MOST_ACCESSED_SQL =
+            "SELECT short_url, long_url FROM url_mappings WHERE expires_at IS NULL ORDER BY access_count DESC LIMIT ?";
+    private static final String MOST_ACCESSED_COUNTED_SQL = "SELECT short_url, long_url, access_count FROM url_mappings"
+            + " WHERE expires_at IS NULL ORDER BY access_count DESC LIMIT ?";
+    private static final String MOST_CLICKED_SINCE_SQL =
+            "SELECT m.short_url, m.long_url FROM click_buckets b JOIN url_mappings m ON m.short_url = b.short_url"
+                    + " WHERE b.resolution = 'HOUR' AND b.bucket_start >= ? AND m.expires_at IS NULL"
+                    + " GROUP BY m.short_url, m.long_url ORDER BY SUM(b.clicks) DESC LIMIT ?";
+    // When sharded, the click buckets on shard 0 are ranked first and the long URLs read from the shards
+    private static final String MOST_CLICKED_CODES_SINCE_SQL =
+            "SELECT short_url FROM click_buckets WHERE resolution = 'HOUR' AND bucket_start >= ?"
+                    + " GROUP BY short_url ORDER BY SUM(clicks) DESC LIMIT ?";
+    private static final String LONG_URLS_SQL =
+            "SELECT short_url, long_url FROM url_mappings WHERE expires_at IS NULL AND short_url IN (";
+    private static final String ANY_LONG_URLS_SQL = "SELECT short_url, long_url FROM url_mappings WHERE short_url IN (";
+    private static final String SHORT_URLS_AFTER_SQL =
+            "SELECT short_url, id FROM url_mappings WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String MAPPINGS_AFTER_SQL =
+            "SELECT id, short_url, long_url FROM url_mappings WHERE id > ? AND expires_at IS NULL ORDER BY id LIMIT ?";
+    private static final String SHORT_URLS_CREATED_SINCE_SQL =
+            "SELECT short_url FROM url_mappings WHERE created_at >= ?";
+    // Range scan of the expires_at index, so a purge batch never reads more rows than it deletes
+    private static final String EXPIRED_SQL =
+            "SELECT id, short_url FROM url_mappings WHERE expires_at <= ? ORDER BY expires_at LIMIT ?";
+    private static final String DELETE_BY_IDS_SQL = "DELETE FROM url_mappings WHERE id IN (";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+
+    /**
+     * Constructor to inject the JdbcTemplate and shard routing dependencies.
+     *
+     * @param jdbcTemplate the JDBC template bound to the application DataSource
+     * @param shardRouter  the router spreading the mappings over the shards
+     */
+    @Autowired
+    public UrlMappingsJdbcRepository(JdbcTemplate jdbcTemplate, ShardRouter shardRouter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * @return the number of shards the mappings are spread over
+     */
+    public int shardCount() {
+        return shardRouter.shardCount();
+    }
+
+    /**
+     * Adds the given deltas to the access counts of their short URLs in a single JDBC batch per shard.
+     * Deltas that update no row on their shard are applied on shard 0, which holds the codes created
+     * before sharding.
+     *
+     * @param deltas the access count delta per short URL
+     */
+    public void incrementAccessCounts(List<Map.Entry<String, Long>> deltas) {
+        List<Map.Entry<String, Long>> unsharded = new ArrayList<>();
+        shardRouter.groupByShard(deltas, Map.Entry::getKey).forEach((shard, batch) -> {
+            int[] updated = ShardContext.callOn(shard, () -> batchIncrement(batch));
+            if (shard != 0) {
+                for (int i = 0; i < batch.size(); i++) {
+                    // Drivers that do not report row counts return SUCCESS_NO_INFO instead
+                    if (updated[i] == 0) {
+                        unsharded.add(batch.get(i));
+                    }
+                }
+            }
+        });
+        if (!unsharded.isEmpty()) {
+            ShardContext.runOn(0, () -> batchIncrement(unsharded));
+        }
+    }
+
+    private int[] batchIncrement(List<Map.Entry<String, Long>> batch) {
+        return Arrays.stream(jdbcTemplate.batchUpdate(INCREMENT_ACCESS_COUNT_SQL, batch, batch.size(), (ps, delta) -> {
+            ps.setLong(1, delta.getValue());
+            ps.setString(2, delta.getKey());
+        })).flatMapToInt(Arrays::stream).toArray();
+    }
+
+    /**
+     * Looks up the long URLs of the given short URLs with one query per shard, expiring links included.
+     * Codes missing on their shard are looked up on shard 0, which holds the codes created before sharding.
+     *
+     * @param shortUrls the short URLs
+     * @return the long URL per short URL, for the short URLs that exist
+     */
+    public Map<String, String> findLongUrls(Collection<String> shortUrls) {
+        return findLongUrls(ANY_LONG_URLS_SQL, shortUrls);
+    }
+
+    private Map<String, String> findLongUrls(String sql, Collection<String> shortUrls) {
+        Map<String, String> longUrls = new HashMap<>();
+        if (shortUrls.isEmpty()) {
+            return longUrls;
+        }
+        List<String> unsharded = new ArrayList<>();
+        shardRouter.groupByShard(shortUrls, shortUrl -> shortUrl).forEach((shard, codes) -> {
+            ShardContext.runOn(shard, () -> queryLongUrls(sql, codes, longUrls));
+            if (shard != 0) {
+                codes.stream().filter(code -> !longUrls.containsKey(code)).forEach(unsharded::add);
+            }
+        });
+        if (!unsharded.isEmpty()) {
+            ShardContext.runOn(0, () -> queryLongUrls(sql, unsharded, longUrls));
+        }
+        return longUrls;
+    }
+
+    private void queryLongUrls(String sql, List<String> codes, Map<String, String> longUrls) {
+        jdbcTemplate.query(sql + String.join(",", Collections.nCopies(codes.size(), "?")) + ")", rs -> {
+            longUrls.put(rs.getString(1), rs.getString(2));
+        }, codes.toArray());
+    }
+
+    /**
+     * Reads the most accessed URLs. This sorts the whole table, so it is only meant for periodic use.
+     * When sharded, the top of every shard is read concurrently and merged.
+     *
+     * @param limit the maximum number of URLs to return
+     * @return the most accessed URLs, in descending order of access count
+     */
+    @Transactional(readOnly = true)
+    public List<TopUrl> findTopAccessed(int limit) {
+        return shardRouter.gatherTop(() -> jdbcTemplate.query(TOP_ACCESSED_SQL,
+                (rs, rowNum) -> new TopUrl(rs.getString(1), rs.getString(2), rs.getLong(3)), limit),
+                TopUrl::accessCount, limit);
+    }
+
+    /**
+     * Reads one page of short URLs of a shard in id order, passing each row to the consumer as it is read.
+     * Keyset pagination keeps every page an index range scan, however far into the table it is. Every
+     * shard has ids of its own, so each shard is paged through separately.
+     *
+     * @param shard    the shard to read, below {@link #shardCount()}
+     * @param afterId  the id of the last row of the previous page
+     * @param limit    the maximum number of rows to read
+     * @param consumer receives the short URL and id of each row
+     */
+    public void forEachShortUrlAfter(int shard, long afterId, int limit, ObjLongConsumer<String> consumer) {
+        ShardContext.runOn(shard, () -> jdbcTemplate.query(SHORT_URLS_AFTER_SQL, rs -> {
+            consumer.accept(rs.getString(1), rs.getLong(2));
+        }, afterId, limit));
+    }
+
+    /**
+     * Reads one page of mappings of a shard in id order, passing each row to the consumer as it is read.
+     *
+     * @param shard    the shard to read, below {@link #shardCount()}
+     * @param afterId  the id of the last row of the previous page
+     * @param limit    the maximum number of rows to read
+     * @param consumer receives the id, short URL and long URL of each row
+     */
+    public void forEachMappingAfter(int shard, long afterId, int limit, MappingRowConsumer consumer) {
+        ShardContext.runOn(shard, () -> jdbcTemplate.query(MAPPINGS_AFTER_SQL, rs -> {
+            consumer.accept(rs.getLong(1), rs.getString(2), rs.getString(3));
+        }, afterId, limit));
+    }
+
+    /**
+     * Reads the short URLs created at or after the given time, passing each to the consumer as it is read.
+     *
+     * @param since    the earliest creation time
+     * @param consumer receives each short URL
+     */
+    public void forEachShortUrlCreatedSince(Instant since, Consumer<String> consumer) {
+        shardRouter.forEachShard(shard -> jdbcTemplate.query(SHORT_URLS_CREATED_SINCE_SQL, rs -> {
+            consumer.accept(rs.getString(1));
+        }, Timestamp.from(since)));
+    }
+
+    /**
+     * Reads the most accessed mappings, passing each row to the consumer as it is fetched. The
+     * database sorts once, and the rows are fetched in round trips of {@code fetchSize} (for MySQL,
+     * this needs {@code useCursorFetch=true} on the connection URL). When sharded, the top of every
+     * shard is read concurrently and merged by access count before it is passed on.
+     *
+     * @param limit     the maximum number of rows to read
+     * @param fetchSize the number of rows fetched per round trip
+     * @param consumer  receives the short URL and long URL of each row, in descending order of access count
+     */
+    public void forEachMostAccessed(int limit, int fetchSize, BiConsumer<String, String> consumer) {
+        if (shardRouter.isSharded()) {
+            shardRouter.gatherTop(() -> jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(MOST_ACCESSED_COUNTED_SQL);
+                ps.setFetchSize(fetchSize);
+                ps.setInt(1, limit);
+                return ps;
+            }, (rs, rowNum) -> new TopUrl(rs.getString(1), rs.getString(2), rs.getLong(3))), TopUrl::accessCount, limit)
+                    .forEach(top -> consumer.accept(top.shortUrl(), top.longUrl()));
+            return;
+        }
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(MOST_ACCESSED_SQL);
+            ps.setFetchSize(fetchSize);
+            ps.setInt(1, limit);
+            return ps;
+        }, rs -> {
+            consumer.accept(rs.getString(1), rs.getString(2));
+        });
+    }
+
+    /**
+     * Reads the mappings with the most clicks in the hour buckets since the given time.
+     *
+     * @param since    the start of the first hour bucket to count
+     * @param limit    the maximum number of rows to read
+     * @param consumer receives the short URL and long URL of each row, in descending order of clicks
+     */
+    public void forEachMostClickedSince(Instant since, int limit, BiConsumer<String, String> consumer) {
+        if (!shardRouter.isSharded()) {
+            jdbcTemplate.query(MOST_CLICKED_SINCE_SQL, rs -> {
+                consumer.accept(rs.getString(1), rs.getString(2));
+            }, Timestamp.from(since), limit);
+            return;
+        }
+        List<String> shortUrls = jdbcTemplate.queryForList(MOST_CLICKED_CODES_SINCE_SQL, String.class,
+                Timestamp.from(since), limit);
+        Map<String, String> longUrls = findLongUrls(LONG_URLS_SQL, shortUrls);
+        for (String shortUrl : shortUrls) {
+            String longUrl = longUrls.get(shortUrl);
+            if (longUrl != null) {
+                consumer.accept(shortUrl, longUrl);
+            }
+        }
+    }
+
+    /**
+     * Deletes one batch of expired mappings of a shard. The rows are found through the expires_at index
+     * and deleted by primary key in a single short statement, so only the deleted rows are locked, and
+     * only briefly.
+     *
+     * @param shard    the shard to purge, below {@link #shardCount()}
+     * @param now      the current time; mappings expiring at or before it are deleted
+     * @param limit    the maximum number of rows to delete
+     * @param consumer receives the short URL of each deleted row
+     * @return the number of rows deleted, below {@code limit} once the shard has no expired rows left
+     */
+    public int deleteExpired(int shard, Instant now, int limit, Consumer<String> consumer) {
+        return ShardContext.callOn(shard, () -> {
+            List<Long> ids = new ArrayList<>(limit);
+            List<String> shortUrls = new ArrayList<>(limit);
+            jdbcTemplate.query(EXPIRED_SQL, rs -> {
+                ids.add(rs.getLong(1));
+                shortUrls.add(rs.getString(2));
+            }, Timestamp.from(now), limit);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            jdbcTemplate.update(DELETE_BY_IDS_SQL + String.join(",", Collections.nCopies(ids.size(), "?")) + ")",
+                    ids.toArray());
+            shortUrls.forEach(consumer);
+            return ids.size();
+        });
+    }
+
+    /**
+     * Receives the rows read by {@link #forEachMappingAfter}.
+     */
+    @FunctionalInterface
+    public interface MappingRowConsumer {
+        void accept(long id, String shortUrl, String longUrl);
+    }
+}
@@ -1,17 +1,46 @@
 package com.playgon.repository;
 
+import com.playgon.model.ResolvedUrl;
+import com.playgon.model.ShortUrlMapping;
 import com.playgon.model.UrlMappings;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Optional;
 
 import java.util.List;
 
 @Repository
 public interface UrlMappingsRepository extends JpaRepository<UrlMappings, Long> {
+    // Read-only transactions are served by the read replica when one is configured
+    @Transactional(readOnly = true)
     Optional<UrlMappings> findByShortUrl(String shortUrl);
 
+    // Selects only the target URL and expiry, so redirects neither hydrate nor track a managed entity
+    @Transactional(readOnly = true)
+    @Query("select new com.playgon.model.ResolvedUrl(m.longUrl, m.expiresAt) from UrlMappings m where m.shortUrl = :shortUrl")
+    Optional<ResolvedUrl> findLongUrlByShortUrl(@Param("shortUrl") String shortUrl);
+
+    // Same as findLongUrlByShortUrl, but always on the primary, for codes not replicated yet
+    @Transactional
+    @Query("select new com.playgon.model.ResolvedUrl(m.longUrl, m.expiresAt) from UrlMappings m where m.shortUrl = :shortUrl")
+    Optional<ResolvedUrl> findLongUrlByShortUrlOnPrimary(@Param("shortUrl") String shortUrl);
+
+    // Candidates for identical long URLs, found through the hash index; callers compare the long URLs.
+    // Expiring links are never shared, so only links that never expire are candidates
+    @Query("select new com.playgon.model.ShortUrlMapping(m.shortUrl, m.longUrl) from UrlMappings m"
+            + " where m.longUrlHash in :hashes and m.expiresAt is null order by m.id")
+    List<ShortUrlMapping> findByLongUrlHashIn(@Param("hashes") Collection<Long> hashes);
+
+    // Codes among the given ones that already have a row, read on the primary
+    @Transactional
+    @Query("select m.shortUrl from UrlMappings m where m.shortUrl in :shortUrls")
+    List<String> findExistingShortUrls(@Param("shortUrls") Collection<String> shortUrls);
+
     // This will gather top 10 accessed URLs
     List<UrlMappings> findTop10ByOrderByAccessCountDesc();
-}
\ No newline at end of file
+}
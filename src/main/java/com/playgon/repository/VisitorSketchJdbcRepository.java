@@ -0,0 +1,92 @@
+package com.playgon.repository;
+
+import com.playgon.model.VisitorSketch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Plain JDBC access to the VisitorSketches table. Every node writes its own rows, so an update
+ * never contends with another node.
+ */
+@Repository
+public class VisitorSketchJdbcRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO visitor_sketches (short_url, window_start, node_id, registers) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_SQL =
+            "UPDATE visitor_sketches SET registers = ? WHERE short_url = ? AND window_start = ? AND node_id = ?";
+    private static final String FIND_SQL =
+            "SELECT registers FROM visitor_sketches WHERE short_url = ? AND window_start >= ? AND window_start < ?";
+    private static final String DELETE_OLDER_THAN_SQL =
+            "DELETE FROM visitor_sketches WHERE window_start < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor to inject the JdbcTemplate dependency.
+     *
+     * @param jdbcTemplate the JDBC template bound to the application DataSource
+     */
+    @Autowired
+    public VisitorSketchJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the given sketches in a single JDBC batch.
+     *
+     * @param sketches the sketches to insert
+     */
+    public void insertAll(List<VisitorSketch> sketches) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, sketches, sketches.size(), (ps, sketch) -> {
+            ps.setString(1, sketch.getShortUrl());
+            ps.setTimestamp(2, sketch.getWindowStart());
+            ps.setString(3, sketch.getNodeId());
+            ps.setBytes(4, sketch.getRegisters());
+        });
+    }
+
+    /**
+     * Replaces the registers of previously inserted sketches in a single JDBC batch.
+     *
+     * @param sketches the sketches to update, identified by short URL, window start and node
+     */
+    public void updateAll(List<VisitorSketch> sketches) {
+        jdbcTemplate.batchUpdate(UPDATE_SQL, sketches, sketches.size(), (ps, sketch) -> {
+            ps.setBytes(1, sketch.getRegisters());
+            ps.setString(2, sketch.getShortUrl());
+            ps.setTimestamp(3, sketch.getWindowStart());
+            ps.setString(4, sketch.getNodeId());
+        });
+    }
+
+    /**
+     * Reads the serialized sketches of a short URL of all nodes.
+     *
+     * @param shortUrl the short URL
+     * @param from     the start of the first window, inclusive
+     * @param to       the end of the range, exclusive
+     * @return the serialized sketches, in no particular order
+     */
+    @Transactional(readOnly = true)
+    public List<byte[]> findSketches(String shortUrl, Instant from, Instant to) {
+        return jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> rs.getBytes(1),
+                shortUrl, Timestamp.from(from), Timestamp.from(to));
+    }
+
+    /**
+     * Deletes the sketches of windows that start before the given time.
+     *
+     * @param cutoff the start of the oldest window to keep
+     * @return the number of deleted rows
+     */
+    public int deleteOlderThan(Instant cutoff) {
+        return jdbcTemplate.update(DELETE_OLDER_THAN_SQL, Timestamp.from(cutoff));
+    }
+}
@@ -0,0 +1,110 @@
+package com.playgon.service;
+
+import com.playgon.invalidation.InvalidationBus;
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Deletes the mappings whose {@code expiresAt} has passed. Expired links already stop resolving when
+ * they expire; this only reclaims their rows.
+ *
+ * Each run deletes at most {@code app.expiry.purge.max-batches} batches of {@code app.expiry.purge.batch-size}
+ * rows per shard, each batch found through the expires_at index and deleted by primary key in a statement
+ * of its own, with {@code app.expiry.purge.pause} between batches. The purge therefore never holds locks
+ * for long, and a backlog of expired rows is worked off over several runs instead of competing with
+ * redirect traffic. Deleted codes are dropped from the resolution cache of every node.
+ */
+@Component
+public class ExpiredLinkReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiredLinkReaper.class);
+
+    private final UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+    private final InvalidationBus invalidationBus;
+    private final ShortenerMetrics metrics;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration pause;
+    private final Clock clock;
+
+    /**
+     * Constructor to inject the JDBC repository, invalidation bus, metrics and purge configuration.
+     *
+     * @param urlMappingsJdbcRepository the repository the expired mappings are deleted from
+     * @param invalidationBus           the bus dropping deleted codes from the caches of every node
+     * @param metrics                   the domain metrics
+     * @param enabled                   whether expired mappings are purged
+     * @param batchSize                 the maximum number of rows deleted per statement
+     * @param maxBatches                the maximum number of batches per shard and run
+     * @param pause                     the pause between two batches
+     */
+    @Autowired
+    public ExpiredLinkReaper(UrlMappingsJdbcRepository urlMappingsJdbcRepository, InvalidationBus invalidationBus,
+                             ShortenerMetrics metrics,
+                             @Value("${app.expiry.purge.enabled:true}") boolean enabled,
+                             @Value("${app.expiry.purge.batch-size:500}") int batchSize,
+                             @Value("${app.expiry.purge.max-batches:100}") int maxBatches,
+                             @Value("${app.expiry.purge.pause:PT0.05S}") Duration pause) {
+        this(urlMappingsJdbcRepository, invalidationBus, metrics, enabled, batchSize, maxBatches, pause,
+                Clock.systemUTC());
+    }
+
+    ExpiredLinkReaper(UrlMappingsJdbcRepository urlMappingsJdbcRepository, InvalidationBus invalidationBus,
+                      ShortenerMetrics metrics, boolean enabled, int batchSize, int maxBatches, Duration pause,
+                      Clock clock) {
+        this.urlMappingsJdbcRepository = urlMappingsJdbcRepository;
+        this.invalidationBus = invalidationBus;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.pause = pause;
+        this.clock = clock;
+    }
+
+    /**
+     * Deletes expired mappings, shard by shard. A shard that fails is retried on the next run.
+     */
+    @Scheduled(fixedDelayString = "${app.expiry.purge.interval-ms:60000}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        Instant now = clock.instant();
+        for (int shard = 0; shard < urlMappingsJdbcRepository.shardCount(); shard++) {
+            try {
+                purge(shard, now);
+            } catch (RuntimeException e) {
+                log.warn("Failed to purge expired mappings of shard {}, will retry", shard, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void purge(int shard, Instant now) throws InterruptedException {
+        for (int batch = 0; batch < maxBatches; batch++) {
+            if (batch > 0 && !pause.isZero()) {
+                Thread.sleep(pause);
+            }
+            int deleted = urlMappingsJdbcRepository.deleteExpired(shard, now, batchSize, invalidationBus::invalidate);
+            metrics.recordExpiredPurged(deleted);
+            if (deleted < batchSize) {
+                return;
+            }
+        }
+        log.info("Expired mappings of shard {} left after {} batches, continuing on the next run", shard, maxBatches);
+    }
+}
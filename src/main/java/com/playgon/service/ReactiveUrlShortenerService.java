@@ -0,0 +1,13 @@
+package com.playgon.service;
+
+import com.playgon.model.ResolvedUrl;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public interface ReactiveUrlShortenerService {
+    Mono<String> createShortUrl(String longUrl);
+    Mono<String> createShortUrl(String longUrl, Instant expiresAt);
+    Mono<String> getOriginalUrl(String shortUrl);
+    Mono<ResolvedUrl> resolveUrl(String shortUrl);
+}
@@ -0,0 +1,181 @@
+package com.playgon.service;
+
+import com.playgon.cache.MappingSnapshot;
+import com.playgon.cache.ShortCodeFilter;
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.model.ResolvedUrl;
+import com.playgon.repository.ReactiveUrlMappingsRepository;
+import com.playgon.shard.ShardRouter;
+import com.playgon.stats.AccessCountAggregator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Non-blocking service for the reactive profile.
+ *
+ * Redirects never block the event loop: cache hits are answered in place, misses are resolved with
+ * the R2DBC repository, and the access is counted in memory just like on the servlet stack. When the
+ * database fails, codes are resolved from the local {@link MappingSnapshot}. Creating
+ * a short URL still goes through {@link UrlShortenerService}, because row ids come from the JPA-managed
+ * sequence and codes from the block allocator; it runs on the bounded elastic scheduler instead.
+ *
+ * The R2DBC repository reads shard 0 only, so the profile refuses to start when the mappings are sharded.
+ * Codes written behind are served from the {@link WriteBehindQueue} until they are committed.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveUrlShortenerServiceImpl implements ReactiveUrlShortenerService {
+
+    private final ReactiveUrlMappingsRepository urlMappingRepository;
+    private final UrlShortenerService urlShortenerService;
+    private final ShortUrlCache shortUrlCache;
+    private final ShortCodeFilter shortCodeFilter;
+    private final MappingSnapshot mappingSnapshot;
+    private final WriteBehindQueue writeBehindQueue;
+    private final AccessCountAggregator accessCountAggregator;
+    private final ShortenerMetrics metrics;
+
+    /**
+     * Constructor to inject the repository, blocking service, cache, filter, snapshot, write-behind, shard
+     * routing, access counting and metrics dependencies.
+     *
+     * @param urlMappingRepository  the R2DBC URL mappings repository
+     * @param urlShortenerService   the blocking service short URLs are created with
+     * @param shortUrlCache         the cache in front of the repository
+     * @param shortCodeFilter       the filter rejecting codes that do not exist
+     * @param mappingSnapshot       the local snapshot lookups fall back to
+     * @param writeBehindQueue      the queue serving codes that are not committed yet
+     * @param shardRouter           the router, which must not be sharded
+     * @param accessCountAggregator the batched access counter
+     * @param metrics               the domain metrics
+     */
+    @Autowired
+    public ReactiveUrlShortenerServiceImpl(ReactiveUrlMappingsRepository urlMappingRepository,
+                                           UrlShortenerService urlShortenerService, ShortUrlCache shortUrlCache,
+                                           ShortCodeFilter shortCodeFilter, MappingSnapshot mappingSnapshot,
+                                           WriteBehindQueue writeBehindQueue, ShardRouter shardRouter,
+                                           AccessCountAggregator accessCountAggregator, ShortenerMetrics metrics) {
+        if (shardRouter.isSharded()) {
+            throw new IllegalStateException("The reactive profile does not support app.sharding.urls");
+        }
+        this.urlMappingRepository = urlMappingRepository;
+        this.urlShortenerService = urlShortenerService;
+        this.shortUrlCache = shortUrlCache;
+        this.shortCodeFilter = shortCodeFilter;
+        this.mappingSnapshot = mappingSnapshot;
+        this.writeBehindQueue = writeBehindQueue;
+        this.accessCountAggregator = accessCountAggregator;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Creates a shortened URL for the given long URL on the bounded elastic scheduler.
+     *
+     * @param longUrl the original long URL
+     * @return the shortened URL
+     */
+    @Override
+    public Mono<String> createShortUrl(String longUrl) {
+        return createShortUrl(longUrl, null);
+    }
+
+    /**
+     * Creates a shortened URL that stops resolving at the given time, on the bounded elastic scheduler.
+     *
+     * @param longUrl   the original long URL
+     * @param expiresAt when the short URL stops resolving, or null if it never expires
+     * @return the shortened URL
+     */
+    @Override
+    public Mono<String> createShortUrl(String longUrl, Instant expiresAt) {
+        return Mono.fromCallable(() -> urlShortenerService.createShortUrl(longUrl, expiresAt))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Retrieves the original URL corresponding to the given shortened URL and counts the access.
+     * Expired links are answered like unknown codes.
+     *
+     * @param shortUrl the shortened URL
+     * @return the original long URL, or an empty Mono if not found
+     */
+    @Override
+    public Mono<String> getOriginalUrl(String shortUrl) {
+        return resolveUrl(shortUrl).map(ResolvedUrl::longUrl);
+    }
+
+    /**
+     * Like {@link #getOriginalUrl}, but also returns when the link expires.
+     *
+     * @param shortUrl the shortened URL
+     * @return the resolved URL, or an empty Mono if not found
+     */
+    @Override
+    public Mono<ResolvedUrl> resolveUrl(String shortUrl) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return resolve(shortUrl).flatMap(resolved -> {
+                metrics.recordRedirect(System.nanoTime() - start, resolved.isPresent());
+                if (resolved.isPresent()) {
+                    accessCountAggregator.recordAccess(shortUrl); // Update access count
+                }
+                return Mono.justOrEmpty(resolved);
+            });
+        });
+    }
+
+    private Mono<Optional<ResolvedUrl>> resolve(String shortUrl) {
+        if (!shortCodeFilter.mightContain(shortUrl)) {
+            return Mono.just(Optional.empty());
+        }
+        Optional<ResolvedUrl> cached = shortUrlCache.resolveIfPresent(shortUrl);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        // Links written behind never expire
+        Optional<ResolvedUrl> pending = writeBehindQueue.find(shortUrl).map(ResolvedUrl::permanent);
+        if (pending.isPresent()) {
+            shortUrlCache.putLookup(shortUrl, pending);
+            return Mono.just(pending);
+        }
+        if (mappingSnapshot.isPrimary()) {
+            // The snapshot only holds links that never expire
+            Optional<ResolvedUrl> snapshotUrl = mappingSnapshot.find(shortUrl).map(ResolvedUrl::permanent);
+            if (snapshotUrl.isPresent()) {
+                shortUrlCache.putLookup(shortUrl, snapshotUrl);
+                return Mono.just(snapshotUrl);
+            }
+        }
+        return urlMappingRepository.findLongUrlByShortUrl(shortUrl)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .map(resolved -> {
+                    if (resolved.isEmpty()) {
+                        shortCodeFilter.recordFalsePositive();
+                    }
+                    Optional<ResolvedUrl> current = resolved.filter(url -> !url.isExpired(System.currentTimeMillis()));
+                    shortUrlCache.putLookup(shortUrl, current);
+                    return current;
+                })
+                .onErrorResume(e -> fallback(shortUrl, e));
+    }
+
+    private Mono<Optional<ResolvedUrl>> fallback(String shortUrl, Throwable t) {
+        metrics.recordFallback("getOriginalUrl");
+        Optional<String> longUrl = mappingSnapshot.find(shortUrl);
+        if (longUrl.isPresent()) {
+            return Mono.just(longUrl.map(ResolvedUrl::permanent));
+        }
+        return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Service is currently unavailable. Please try again later.", t));
+    }
+}
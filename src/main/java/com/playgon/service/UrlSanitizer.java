@@ -0,0 +1,114 @@
+package com.playgon.service;
+
+import com.playgon.model.UrlMappings;
+
+/**
+ * Validation and sanitization of long URLs on the shorten path, each in a single pass over the characters
+ * and without allocating unless a sanitized URL differs from its input.
+ *
+ * A valid URL is at most {@link #MAX_LENGTH} characters, starts with {@code http://} or {@code https://}
+ * (in any case) and has a non-empty host of letters, digits, {@code .-_%} and an optional {@code :port}.
+ * User info and IPv6 literals are rejected, as sanitization would strip their {@code @} and brackets and
+ * leave a different host. Sanitization removes every character outside {@code a-zA-Z0-9:/?&.=-_%}.
+ */
+public final class UrlSanitizer {
+
+    /**
+     * The longest URL accepted, the width of the long URL column.
+     */
+    public static final int MAX_LENGTH = UrlMappings.MAX_LONG_URL_LENGTH;
+
+    // Per ASCII character, whether it is kept by sanitize and whether it may appear in the host
+    private static final boolean[] ALLOWED = new boolean[128];
+    private static final boolean[] HOST = new boolean[128];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            ALLOWED[c] = HOST[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            ALLOWED[c] = HOST[c] = true;
+            ALLOWED[c - 32] = HOST[c - 32] = true;
+        }
+        for (char c : ".-_%:".toCharArray()) {
+            ALLOWED[c] = HOST[c] = true;
+        }
+        for (char c : "/?&=".toCharArray()) {
+            ALLOWED[c] = true;
+        }
+    }
+
+    private UrlSanitizer() {
+    }
+
+    /**
+     * Checks whether the URL can be shortened.
+     *
+     * @param url the long URL, may be null
+     * @return whether the URL is an http or https URL with a host and within the maximum length
+     */
+    public static boolean isValid(String url) {
+        if (url == null || url.length() > MAX_LENGTH) {
+            return false;
+        }
+        int hostStart = authorityStart(url);
+        if (hostStart < 0) {
+            return false;
+        }
+        int i = hostStart;
+        for (; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            if (c >= HOST.length || !HOST[c]) {
+                return false;
+            }
+        }
+        return i > hostStart;
+    }
+
+    /**
+     * Removes the characters that are not allowed in a stored URL.
+     *
+     * @param url the long URL
+     * @return the URL without disallowed characters; the same instance if it had none
+     */
+    public static String sanitize(String url) {
+        int length = url.length();
+        int i = 0;
+        while (i < length && isAllowed(url.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return url;
+        }
+        char[] sanitized = new char[length - 1];
+        url.getChars(0, i, sanitized, 0);
+        int n = i;
+        for (i++; i < length; i++) {
+            char c = url.charAt(i);
+            if (isAllowed(c)) {
+                sanitized[n++] = c;
+            }
+        }
+        return new String(sanitized, 0, n);
+    }
+
+    private static boolean isAllowed(char c) {
+        return c < ALLOWED.length && ALLOWED[c];
+    }
+
+    /**
+     * @return the index after {@code http://} or {@code https://}, or -1 if the URL starts with neither
+     */
+    private static int authorityStart(String url) {
+        if (url.regionMatches(true, 0, "https://", 0, 8)) {
+            return 8;
+        }
+        if (url.regionMatches(true, 0, "http://", 0, 7)) {
+            return 7;
+        }
+        return -1;
+    }
+}
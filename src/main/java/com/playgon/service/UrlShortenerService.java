@@ -1,6 +1,15 @@
 package com.playgon.service;
 
+import com.playgon.model.ResolvedUrl;
+
+import java.time.Instant;
+import java.util.List;
+
 public interface UrlShortenerService {
     String createShortUrl(String longUrl);
+    String createShortUrl(String longUrl, Instant expiresAt);
+    List<String> createShortUrls(List<String> longUrls);
+    List<String> createShortUrls(List<String> longUrls, List<Instant> expiresAt);
     String getOriginalUrl(String shortUrl);
+    ResolvedUrl resolveUrl(String shortUrl);
 }
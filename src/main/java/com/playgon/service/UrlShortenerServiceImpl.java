@@ -1,13 +1,32 @@
 package com.playgon.service;
 
+import com.playgon.cache.LongUrlIndex;
+import com.playgon.cache.MappingSnapshot;
+import com.playgon.cache.ShortCodeFilter;
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.invalidation.InvalidationBus;
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.model.ResolvedUrl;
 import com.playgon.model.UrlMappings;
 import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.shortcode.ShortCodeGenerator;
+import com.playgon.stats.AccessCountAggregator;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import org.apache.commons.lang3.RandomStringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 /**
  * Service implementation for URL shortening and retrieval.
@@ -23,19 +42,54 @@ import java.util.Optional;
 public class UrlShortenerServiceImpl implements UrlShortenerService {
 
     private final UrlMappingsRepository urlMappingRepository;
+    private final ShortUrlCache shortUrlCache;
+    private final ShortCodeFilter shortCodeFilter;
+    private final LongUrlIndex longUrlIndex;
+    private final MappingSnapshot mappingSnapshot;
+    private final WriteBehindQueue writeBehindQueue;
+    private final AccessCountAggregator accessCountAggregator;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final ShortenerMetrics metrics;
+    private final InvalidationBus invalidationBus;
 
     /**
-     * Constructor to inject the UrlMappingsRepository dependency.
+     * Constructor to inject the repository, cache, filter, long URL index, snapshot, write-behind queue,
+     * access counting, code generation, metrics and invalidation dependencies.
      *
-     * @param urlMappingRepository the URL mappings repository
+     * @param urlMappingRepository  the URL mappings repository
+     * @param shortUrlCache         the read-through cache in front of the repository
+     * @param shortCodeFilter       the filter rejecting codes that do not exist
+     * @param longUrlIndex          the index finding existing codes of a long URL
+     * @param mappingSnapshot       the local snapshot redirects fall back to
+     * @param writeBehindQueue      the log new mappings are written behind to, when enabled
+     * @param accessCountAggregator the batched access counter
+     * @param shortCodeGenerator    the strategy generating new short codes
+     * @param metrics               the domain metrics
+     * @param invalidationBus       the channel keeping the caches of the other nodes coherent
      */
     @Autowired
-    public UrlShortenerServiceImpl(UrlMappingsRepository urlMappingRepository) {
+    public UrlShortenerServiceImpl(UrlMappingsRepository urlMappingRepository, ShortUrlCache shortUrlCache,
+                                   ShortCodeFilter shortCodeFilter, LongUrlIndex longUrlIndex,
+                                   MappingSnapshot mappingSnapshot, WriteBehindQueue writeBehindQueue,
+                                   AccessCountAggregator accessCountAggregator, ShortCodeGenerator shortCodeGenerator,
+                                   ShortenerMetrics metrics, InvalidationBus invalidationBus) {
         this.urlMappingRepository = urlMappingRepository;
+        this.shortUrlCache = shortUrlCache;
+        this.shortCodeFilter = shortCodeFilter;
+        this.longUrlIndex = longUrlIndex;
+        this.mappingSnapshot = mappingSnapshot;
+        this.writeBehindQueue = writeBehindQueue;
+        this.accessCountAggregator = accessCountAggregator;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.metrics = metrics;
+        this.invalidationBus = invalidationBus;
     }
 
     /**
      * Creates a shortened URL for the given long URL. Uses a circuit breaker to handle failures gracefully.
+     * When deduplication is enabled, the code of an identical sanitized long URL is returned instead of
+     * creating a new one. In write-behind mode the mapping is only appended to the local log here and
+     * committed to the database in the background.
      *
      * @param longUrl the original long URL
      * @return the shortened URL
@@ -43,18 +97,116 @@ public class UrlShortenerServiceImpl implements UrlShortenerService {
     @Override
     @CircuitBreaker(name = "urlShortenerService", fallbackMethod = "fallbackCreateShortUrl")
     public String createShortUrl(String longUrl) {
-        String shortUrl = generateShortUrl();
-        UrlMappings mapping = new UrlMappings();
-        mapping.setLongUrl(sanitizeUrl(longUrl));
-        mapping.setShortUrl(shortUrl);
-        mapping.setAccessCount(0);
-        mapping.setCreatedAt(new java.sql.Timestamp(System.currentTimeMillis()));
-        urlMappingRepository.save(mapping);
-        return shortUrl;
+        return createShortUrl(longUrl, null);
+    }
+
+    /**
+     * Creates a shortened URL that stops resolving at the given time. A link with an expiry always gets
+     * a code of its own, without deduplication, and is saved right away rather than written behind, so
+     * that its expiry is known to every read path.
+     *
+     * @param longUrl   the original long URL
+     * @param expiresAt when the short URL stops resolving, or null if it never expires
+     * @return the shortened URL
+     */
+    @Override
+    @CircuitBreaker(name = "urlShortenerService", fallbackMethod = "fallbackCreateShortUrl")
+    public String createShortUrl(String longUrl, Instant expiresAt) {
+        return metrics.createTimer().record(() -> {
+            String sanitized = sanitizeUrl(longUrl);
+            long hash = LongUrlIndex.hash(sanitized);
+            if (longUrlIndex.isEnabled() && expiresAt == null) {
+                Optional<String> existing = longUrlIndex.find(sanitized, hash);
+                if (existing.isPresent()) {
+                    metrics.recordDeduplicated(1);
+                    return existing.get();
+                }
+            }
+            UrlMappings mapping = newMapping(sanitized, hash, expiresAt);
+            boolean writtenBehind = writeBehindQueue.isEnabled() && expiresAt == null;
+            if (writtenBehind) {
+                writeBehindQueue.append(mapping);
+            } else {
+                urlMappingRepository.save(mapping);
+            }
+            created(mapping, !writtenBehind);
+            return mapping.getShortUrl();
+        });
+    }
+
+    /**
+     * Creates shortened URLs for a batch of long URLs in a single transaction per shard. The URLs are sanitized
+     * and assigned codes in parallel and inserted with JDBC batching. When deduplication is enabled,
+     * existing codes are looked up with a single query, and identical URLs within the batch share one code.
+     *
+     * @param longUrls the original long URLs
+     * @return the shortened URLs, in the same order as the given long URLs
+     */
+    @Override
+    @CircuitBreaker(name = "urlShortenerService")
+    public List<String> createShortUrls(List<String> longUrls) {
+        return createShortUrls(longUrls, null);
     }
 
     /**
-     * Retrieves the original URL corresponding to the given shortened URL. Uses a circuit breaker to handle failures gracefully.
+     * Creates shortened URLs for a batch of long URLs, each with an optional expiry. URLs with an expiry
+     * are never deduplicated.
+     *
+     * @param longUrls  the original long URLs
+     * @param expiresAt the expiry of each long URL, null entries for URLs that never expire, or null if none expires
+     * @return the shortened URLs, in the same order as the given long URLs
+     */
+    @Override
+    @CircuitBreaker(name = "urlShortenerService")
+    public List<String> createShortUrls(List<String> longUrls, List<Instant> expiresAt) {
+        return metrics.createBatchTimer().record(() -> {
+            List<String> sanitized = longUrls.parallelStream().map(this::sanitizeUrl).toList();
+            long[] hashes = sanitized.parallelStream().mapToLong(LongUrlIndex::hash).toArray();
+            Instant[] expiries = IntStream.range(0, sanitized.size())
+                    .mapToObj(i -> expiresAt != null ? expiresAt.get(i) : null)
+                    .toArray(Instant[]::new);
+            boolean dedup = longUrlIndex.isEnabled();
+            Map<String, String> codes = dedup ? new HashMap<>(longUrlIndex.findAll(sanitized, hashes)) : Map.of();
+            Set<String> seen = new HashSet<>();
+            int[] toCreate = IntStream.range(0, sanitized.size())
+                    .filter(i -> !dedup || expiries[i] != null
+                            || (!codes.containsKey(sanitized.get(i)) && seen.add(sanitized.get(i))))
+                    .toArray();
+            List<UrlMappings> mappings = Arrays.stream(toCreate).parallel()
+                    .mapToObj(i -> newMapping(sanitized.get(i), hashes[i], expiries[i]))
+                    .toList();
+            urlMappingRepository.saveAll(mappings);
+            for (UrlMappings mapping : mappings) {
+                created(mapping, true);
+            }
+            if (!dedup) {
+                return mappings.stream().map(UrlMappings::getShortUrl).toList();
+            }
+            String[] shortUrls = new String[sanitized.size()];
+            for (int i = 0; i < toCreate.length; i++) {
+                UrlMappings mapping = mappings.get(i);
+                shortUrls[toCreate[i]] = mapping.getShortUrl();
+                if (mapping.getExpiresAt() == null) {
+                    codes.put(mapping.getLongUrl(), mapping.getShortUrl());
+                }
+            }
+            for (int i = 0; i < shortUrls.length; i++) {
+                if (shortUrls[i] == null) {
+                    shortUrls[i] = codes.get(sanitized.get(i));
+                }
+            }
+            metrics.recordDeduplicated(sanitized.size() - mappings.size());
+            return Arrays.asList(shortUrls);
+        });
+    }
+
+    /**
+     * Retrieves the original URL corresponding to the given shortened URL. Uses a circuit breaker to
+     * handle failures gracefully. Codes rejected by the short code filter are answered right away. Other
+     * lookups go through the in-process cache first, so only cache misses reach the database, where only
+     * the long URL column is selected instead of loading a managed entity. When the local snapshot is the
+     * primary read path, misses are looked up there before the database. Expired links are answered like
+     * unknown codes. The access is counted in memory and flushed to the database asynchronously.
      *
      * @param shortUrl the shortened URL
      * @return the original long URL, or null if not found
@@ -62,23 +214,92 @@ public class UrlShortenerServiceImpl implements UrlShortenerService {
     @Override
     @CircuitBreaker(name = "urlShortenerService", fallbackMethod = "fallbackGetOriginalUrl")
     public String getOriginalUrl(String shortUrl) {
-        Optional<UrlMappings> mapping = urlMappingRepository.findByShortUrl(shortUrl);
-        if (mapping.isPresent()) {
-            UrlMappings urlMapping = mapping.get();
-            urlMapping.setAccessCount(urlMapping.getAccessCount() + 1);
-            urlMappingRepository.save(urlMapping); // Update access count
-            return urlMapping.getLongUrl();
+        ResolvedUrl resolved = resolve(shortUrl);
+        return resolved != null ? resolved.longUrl() : null;
+    }
+
+    /**
+     * Like {@link #getOriginalUrl}, but also returns when the link expires, for redirects that must not be
+     * cached beyond it.
+     *
+     * @param shortUrl the shortened URL
+     * @return the resolved URL, or null if not found
+     */
+    @Override
+    @CircuitBreaker(name = "urlShortenerService", fallbackMethod = "fallbackResolveUrl")
+    public ResolvedUrl resolveUrl(String shortUrl) {
+        return resolve(shortUrl);
+    }
+
+    private ResolvedUrl resolve(String shortUrl) {
+        return metrics.timeRedirect(() -> {
+            if (!shortCodeFilter.mightContain(shortUrl)) {
+                return null;
+            }
+            Optional<ResolvedUrl> resolved = shortUrlCache.resolve(shortUrl, this::findLongUrl);
+            if (resolved.isPresent()) {
+                accessCountAggregator.recordAccess(shortUrl); // Update access count
+                return resolved.get();
+            }
+            return null;
+        });
+    }
+
+    // Other nodes are only told about committed codes, or they could cache them as unknown before the commit;
+    // the write-behind queue tells them about codes written behind once their batch is committed
+    private void created(UrlMappings mapping, boolean committed) {
+        shortCodeFilter.put(mapping.getShortUrl());
+        shortUrlCache.put(mapping.getShortUrl(), mapping.getLongUrl(), mapping.getExpiresAt());
+        if (longUrlIndex.isEnabled() && mapping.getExpiresAt() == null) {
+            longUrlIndex.put(mapping.getLongUrlHash(), mapping.getShortUrl());
+        }
+        if (committed) {
+            invalidationBus.created(mapping.getShortUrl());
         }
-        return null;
+    }
+
+    // Links written behind and links in the snapshot never expire
+    private Optional<ResolvedUrl> findLongUrl(String shortUrl) {
+        Optional<String> pending = writeBehindQueue.find(shortUrl);
+        if (pending.isPresent()) {
+            return pending.map(ResolvedUrl::permanent);
+        }
+        if (mappingSnapshot.isPrimary()) {
+            Optional<String> snapshotUrl = mappingSnapshot.find(shortUrl);
+            if (snapshotUrl.isPresent()) {
+                return snapshotUrl.map(ResolvedUrl::permanent);
+            }
+        }
+        Optional<ResolvedUrl> resolved = urlMappingRepository.findLongUrlByShortUrl(shortUrl);
+        if (resolved.isEmpty()) {
+            // The code passed the filter, so it may have been created too recently to be on the read replica
+            resolved = urlMappingRepository.findLongUrlByShortUrlOnPrimary(shortUrl);
+        }
+        if (resolved.isEmpty()) {
+            shortCodeFilter.recordFalsePositive();
+        }
+        // Expired rows are only deleted by the reaper some time later
+        return resolved.filter(url -> !url.isExpired(System.currentTimeMillis()));
     }
 
     /**
-     * Generates a random alphanumeric string to be used as a short URL.
+     * Generates a new short URL code using the configured generation strategy.
      *
      * @return the generated short URL
      */
     String generateShortUrl() {
-        return RandomStringUtils.randomAlphanumeric(6);
+        return shortCodeGenerator.nextCode();
+    }
+
+    private UrlMappings newMapping(String sanitizedUrl, long hash, Instant expiresAt) {
+        UrlMappings mapping = new UrlMappings();
+        mapping.setLongUrl(sanitizedUrl);
+        mapping.setLongUrlHash(hash);
+        mapping.setShortUrl(generateShortUrl());
+        mapping.setAccessCount(0);
+        mapping.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        mapping.setExpiresAt(expiresAt != null ? Timestamp.from(expiresAt) : null);
+        return mapping;
     }
 
     /**
@@ -87,9 +308,9 @@ public class UrlShortenerServiceImpl implements UrlShortenerService {
      * @param url the URL to sanitize
      * @return the sanitized URL
      */
-    private String sanitizeUrl(String url) {
+    String sanitizeUrl(String url) {
         // Basic sanitization logic to remove harmful characters
-        return url.replaceAll("[^a-zA-Z0-9:/?&.=\\-_%]", "");
+        return UrlSanitizer.sanitize(url);
     }
 
     /**
@@ -100,17 +321,37 @@ public class UrlShortenerServiceImpl implements UrlShortenerService {
      * @return a fallback message indicating service unavailability
      */
     String fallbackCreateShortUrl(String longUrl, Throwable t) {
+        metrics.recordFallback("createShortUrl");
         return "Service is currently unavailable. Please try again later.";
     }
 
+    String fallbackCreateShortUrl(String longUrl, Instant expiresAt, Throwable t) {
+        return fallbackCreateShortUrl(longUrl, t);
+    }
+
     /**
-     * Fallback method for getOriginalUrl in case of circuit breaker triggering.
+     * Fallback method for getOriginalUrl in case of circuit breaker triggering. The code is resolved from
+     * the mappings waiting to be written behind or the local snapshot; there is no message to return,
+     * since the result is used as the redirect target.
      *
      * @param shortUrl the shortened URL
      * @param t        the throwable causing the fallback
-     * @return a fallback message indicating service unavailability
+     * @return the original long URL as of the last snapshot refresh
+     * @throws ResponseStatusException with status 503 if the snapshot does not know the code
      */
     String fallbackGetOriginalUrl(String shortUrl, Throwable t) {
-        return "Service is currently unavailable. Please try again later.";
+        metrics.recordFallback("getOriginalUrl");
+        Optional<String> longUrl = writeBehindQueue.find(shortUrl).or(() -> mappingSnapshot.find(shortUrl));
+        if (longUrl.isPresent()) {
+            accessCountAggregator.recordAccess(shortUrl); // Update access count
+            return longUrl.get();
+        }
+        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Service is currently unavailable. Please try again later.", t);
+    }
+
+    // The log and the snapshot only hold links that never expire
+    ResolvedUrl fallbackResolveUrl(String shortUrl, Throwable t) {
+        return ResolvedUrl.permanent(fallbackGetOriginalUrl(shortUrl, t));
     }
 }
@@ -0,0 +1,483 @@
+package com.playgon.service;
+
+import com.playgon.invalidation.InvalidationBus;
+import com.playgon.model.UrlMappings;
+import com.playgon.repository.UrlMappingsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Optional write-behind mode for {@code POST /shorten}, enabled with {@code app.write-behind.enabled}. A new
+ * mapping is appended to a local log, and its code is returned as soon as the log is on disk, without a
+ * database transaction. A background committer inserts the logged mappings in batches.
+ *
+ * Appends are group committed: callers hand their record to a single writer thread, which writes everything
+ * queued since its previous write and fsyncs once for the whole group, so a burst of creations costs one
+ * fsync per group instead of one transaction per request. Until its batch is committed, a mapping is served
+ * from {@link #find}; accesses counted in that window are not persisted. The log is split into segments of
+ * {@code app.write-behind.segment-size} bytes, which are deleted once all their mappings are committed. On
+ * startup, the mappings of the remaining segments are committed again, skipping those already in the database.
+ * Other nodes are told about the codes of every committed batch, since a commit delayed by a database outage
+ * or a restart may fall behind the window their short code filter refreshes scan.
+ *
+ * Codes are handed out before their row exists, so a code that later collides cannot be taken back. The mode
+ * therefore requires the collision-free {@code block} code strategy.
+ */
+@Component
+public class WriteBehindQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    private static final String SEGMENT_PREFIX = "creations-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // Length and CRC32C of the payload
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_GROUP_SIZE = 1024;
+
+    private final UrlMappingsRepository urlMappingRepository;
+    private final InvalidationBus invalidationBus;
+    private final boolean enabled;
+    private final Path directory;
+    private final int maxBatchSize;
+    private final int maxPending;
+    private final long segmentSize;
+
+    private final BlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+    // Durable but not yet committed, in log order; only the committer removes from the head
+    private final ConcurrentLinkedQueue<Logged> logged = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, String> pendingUrls = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Long> segments = new ConcurrentSkipListSet<>();
+    // Not synchronized: committing blocks on the database, which must not pin a virtual thread
+    private final ReentrantLock commitLock = new ReentrantLock();
+    // Mappings at the head of the log that may already be in the database: those replayed on startup and
+    // those of a batch whose commit failed, possibly after the transaction committed; guarded by commitLock
+    private int uncertain;
+
+    private final DistributionSummary groupSize;
+    private final Counter committed;
+    private final Timer commitTimer;
+
+    private volatile boolean open;
+    private volatile long currentSegment;
+    private FileChannel channel;
+    private Thread writer;
+
+    /**
+     * Constructor to inject the repository, the invalidation bus, the write-behind configuration and the
+     * meter registry.
+     *
+     * @param urlMappingRepository the repository logged mappings are committed to
+     * @param invalidationBus      the bus other nodes are told about committed codes through
+     * @param enabled              whether creations are written behind
+     * @param directory            the directory holding the log segments
+     * @param maxBatchSize         the maximum number of mappings inserted per transaction
+     * @param maxPending           the maximum number of logged mappings not yet committed
+     * @param segmentSize          the size after which a new log segment is started
+     * @param codeStrategy         the short code strategy, which must be collision-free
+     * @param meterRegistry        the registry the write-behind metrics are published to
+     */
+    @Autowired
+    public WriteBehindQueue(UrlMappingsRepository urlMappingRepository, InvalidationBus invalidationBus,
+                            @Value("${app.write-behind.enabled:false}") boolean enabled,
+                            @Value("${app.write-behind.directory:${java.io.tmpdir}/playgon-write-behind}") Path directory,
+                            @Value("${app.write-behind.max-batch-size:500}") int maxBatchSize,
+                            @Value("${app.write-behind.max-pending:100000}") int maxPending,
+                            @Value("${app.write-behind.segment-size:67108864}") long segmentSize,
+                            @Value("${app.shortcode.strategy:block}") String codeStrategy,
+                            MeterRegistry meterRegistry) {
+        if (enabled && !"block".equals(codeStrategy)) {
+            throw new IllegalStateException("app.write-behind.enabled requires app.shortcode.strategy=block");
+        }
+        this.urlMappingRepository = urlMappingRepository;
+        this.invalidationBus = invalidationBus;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = maxPending;
+        this.segmentSize = segmentSize;
+        this.groupSize = DistributionSummary.builder("shortener.writebehind.group.size")
+                .description("Mappings made durable per fsync of the write-behind log")
+                .register(meterRegistry);
+        this.committed = Counter.builder("shortener.writebehind.committed")
+                .description("Logged mappings inserted into the database")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("shortener.writebehind.commit")
+                .description("Time to insert one batch of logged mappings")
+                .register(meterRegistry);
+        Gauge.builder("shortener.writebehind.pending", pendingUrls, ConcurrentHashMap::size)
+                .description("Logged mappings not yet committed to the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Replays the segments left by the previous run and starts the log writer. If the log cannot be opened,
+     * creations are written to the database directly.
+     */
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            long last = 0;
+            int replayed = 0;
+            for (long segment : existingSegments()) {
+                replayed += replay(segment);
+                segments.add(segment);
+                last = segment;
+            }
+            uncertain = replayed;
+            startSegment(last + 1);
+            open = true;
+            writer = new Thread(this::writeLoop, "write-behind-log");
+            writer.setDaemon(true);
+            writer.start();
+            log.info("Write-behind log opened in {} with {} mappings to commit", directory, replayed);
+        } catch (IOException e) {
+            log.warn("Failed to open the write-behind log in {}, creations are written directly", directory, e);
+        }
+    }
+
+    /**
+     * @return whether creations are to be appended here instead of saved to the database
+     */
+    public boolean isEnabled() {
+        return open;
+    }
+
+    /**
+     * Appends the mapping to the log and returns once it is on disk. The mapping is committed to the
+     * database later.
+     *
+     * @param mapping the new mapping
+     * @throws IllegalStateException if the log is closed, too many mappings are pending or writing fails
+     */
+    public void append(UrlMappings mapping) {
+        if (!open) {
+            throw new IllegalStateException("The write-behind log is closed");
+        }
+        if (pendingUrls.size() >= maxPending) {
+            throw new IllegalStateException("Too many mappings waiting to be committed: " + pendingUrls.size());
+        }
+        Append append = new Append(mapping, encode(mapping), new CompletableFuture<>());
+        appends.add(append);
+        if (!open && appends.remove(append)) {
+            // Closed after the check above, and the writer has already stopped
+            throw new IllegalStateException("The write-behind log is closed");
+        }
+        try {
+            append.durable().join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to log new mapping " + mapping.getShortUrl(), e.getCause());
+        }
+    }
+
+    /**
+     * Returns the long URL of a mapping that is logged but not committed yet.
+     *
+     * @param shortUrl the short code
+     * @return the long URL, or empty if the code is not waiting to be committed
+     */
+    public Optional<String> find(String shortUrl) {
+        return Optional.ofNullable(pendingUrls.get(shortUrl));
+    }
+
+    /**
+     * Inserts the logged mappings into the database in batches of at most {@code maxBatchSize}, each in one
+     * transaction, and deletes the segments that no longer hold uncommitted mappings. A batch that fails
+     * stays queued and is retried on the next run, skipping the mappings it did insert.
+     */
+    @Scheduled(fixedDelayString = "${app.write-behind.commit-interval-ms:100}")
+    public void commit() {
+        if (!enabled) {
+            return;
+        }
+        commitLock.lock();
+        try {
+            while (!logged.isEmpty()) {
+                List<Logged> batch = new ArrayList<>();
+                for (Iterator<Logged> it = logged.iterator(); it.hasNext() && batch.size() < maxBatchSize; ) {
+                    batch.add(it.next());
+                }
+                try {
+                    commitTimer.record(() -> insert(batch));
+                } catch (RuntimeException e) {
+                    // Ids assigned during the failed transaction must not make the retry an update
+                    batch.forEach(entry -> entry.mapping().setId(null));
+                    uncertain = Math.max(uncertain, batch.size());
+                    log.warn("Failed to commit {} logged mappings, will retry", batch.size(), e);
+                    return;
+                }
+                for (Logged entry : batch) {
+                    logged.poll();
+                    pendingUrls.remove(entry.mapping().getShortUrl(), entry.mapping().getLongUrl());
+                    invalidationBus.created(entry.mapping().getShortUrl());
+                }
+                uncertain = Math.max(uncertain - batch.size(), 0);
+                committed.increment(batch.size());
+            }
+            deleteCommittedSegments();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting appends, writes out those already queued and commits what it can. Mappings that cannot
+     * be committed stay in the log for the next start.
+     */
+    @PreDestroy
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Append append; (append = appends.poll()) != null; ) {
+            append.durable().completeExceptionally(new IllegalStateException("The write-behind log is closed"));
+        }
+        commit();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the write-behind log", e);
+        }
+    }
+
+    private void insert(List<Logged> batch) {
+        List<UrlMappings> mappings = new ArrayList<>(batch.size());
+        List<String> uncertainCodes = batch.subList(0, Math.min(uncertain, batch.size())).stream()
+                .map(entry -> entry.mapping().getShortUrl()).toList();
+        // Committed by the previous run or a failed attempt, or on some shards of it; inserting them again would
+        // fail on the unique short code forever
+        Set<String> existing = uncertainCodes.isEmpty() ? Set.of()
+                : new HashSet<>(urlMappingRepository.findExistingShortUrls(uncertainCodes));
+        for (Logged entry : batch) {
+            if (!existing.contains(entry.mapping().getShortUrl())) {
+                mappings.add(entry.mapping());
+            }
+        }
+        urlMappingRepository.saveAll(mappings);
+    }
+
+    private void writeLoop() {
+        List<Append> group = new ArrayList<>();
+        while (open || !appends.isEmpty()) {
+            try {
+                Append first = appends.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                appends.drainTo(group, MAX_GROUP_SIZE - 1);
+                write(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void write(List<Append> group) {
+        long start = -1;
+        try {
+            if (channel.size() >= segmentSize) {
+                channel.close();
+                startSegment(currentSegment + 1);
+            }
+            start = channel.position();
+            ByteBuffer[] buffers = new ByteBuffer[group.size()];
+            long remaining = 0;
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.wrap(group.get(i).record());
+                remaining += buffers[i].remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            log.error("Failed to write {} mappings to the write-behind log", group.size(), e);
+            truncate(start);
+            group.forEach(append -> append.durable().completeExceptionally(e));
+            return;
+        }
+        // Recorded before the callers are released, so that they observe it
+        groupSize.record(group.size());
+        for (Append append : group) {
+            UrlMappings mapping = append.mapping();
+            pendingUrls.put(mapping.getShortUrl(), mapping.getLongUrl());
+            logged.add(new Logged(mapping, currentSegment));
+            append.durable().complete(null);
+        }
+    }
+
+    /**
+     * Cuts a partially written group off the log, so that later groups are not hidden behind a torn record.
+     */
+    private void truncate(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException e) {
+            log.warn("Failed to truncate the write-behind log, starting a new segment", e);
+            try {
+                startSegment(currentSegment + 1);
+            } catch (IOException ignored) {
+                // The next write fails as well and is reported to its callers
+            }
+        }
+    }
+
+    private void startSegment(long segment) throws IOException {
+        channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segments.add(segment);
+        currentSegment = segment;
+    }
+
+    private void deleteCommittedSegments() {
+        // Read before the queue: once the writer has moved on to a segment, all records of earlier ones are queued
+        long current = currentSegment;
+        Logged oldest = logged.peek();
+        long needed = oldest == null ? current : oldest.segment();
+        for (Iterator<Long> it = segments.headSet(needed).iterator(); it.hasNext(); ) {
+            long segment = it.next();
+            try {
+                Files.deleteIfExists(segmentPath(segment));
+                it.remove();
+            } catch (IOException e) {
+                log.warn("Failed to delete committed write-behind segment {}", segment, e);
+                return;
+            }
+        }
+    }
+
+    private List<Long> existingSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name, SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length(), 10))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Queues the mappings of a segment for committing. Reading stops at the first incomplete or corrupt
+     * record, which is what a crash in the middle of a write leaves behind.
+     */
+    private int replay(long segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(segment)));
+        CRC32C crc = new CRC32C();
+        int count = 0;
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            UrlMappings mapping = decode(buffer.slice(buffer.position(), length));
+            buffer.position(buffer.position() + length);
+            pendingUrls.put(mapping.getShortUrl(), mapping.getLongUrl());
+            logged.add(new Logged(mapping, segment));
+            count++;
+        }
+        if (buffer.hasRemaining()) {
+            log.warn("Ignoring {} bytes of an incomplete record at the end of write-behind segment {}", buffer.remaining(), segment);
+        }
+        return count;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    static byte[] encode(UrlMappings mapping) {
+        byte[] code = mapping.getShortUrl().getBytes(StandardCharsets.UTF_8);
+        byte[] url = mapping.getLongUrl().getBytes(StandardCharsets.UTF_8);
+        int length = 8 + 8 + 4 + code.length + 4 + url.length;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        buffer.putInt(length).putInt(0)
+                .putLong(mapping.getCreatedAt().getTime())
+                .putLong(mapping.getLongUrlHash() == null ? 0 : mapping.getLongUrlHash())
+                .putInt(code.length).put(code)
+                .putInt(url.length).put(url);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), RECORD_HEADER_SIZE, length);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    static UrlMappings decode(ByteBuffer payload) {
+        UrlMappings mapping = new UrlMappings();
+        mapping.setCreatedAt(new Timestamp(payload.getLong()));
+        mapping.setLongUrlHash(payload.getLong());
+        byte[] code = new byte[payload.getInt()];
+        payload.get(code);
+        byte[] url = new byte[payload.getInt()];
+        payload.get(url);
+        mapping.setShortUrl(new String(code, StandardCharsets.UTF_8));
+        mapping.setLongUrl(new String(url, StandardCharsets.UTF_8));
+        mapping.setAccessCount(0);
+        return mapping;
+    }
+
+    private record Append(UrlMappings mapping, byte[] record, CompletableFuture<Void> durable) {
+    }
+
+    private record Logged(UrlMappings mapping, long segment) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.playgon.shard;
+
+import java.util.function.Supplier;
+
+/**
+ * The shard the current thread's UrlMappings statements are routed to. Outside of
+ * {@link #callOn} and {@link #runOn} this is shard 0, the database that also holds every
+ * other table.
+ *
+ * The routing happens when a connection is obtained, so a shard must be selected before the
+ * transaction that uses it starts: statements of a transaction that is already running keep
+ * going to the shard its connection came from.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return the shard connections are currently obtained from
+     */
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    /**
+     * Runs the action with connections obtained from the given shard, restoring the previous shard afterwards.
+     *
+     * @param shard  the shard
+     * @param action the action
+     * @return the result of the action
+     */
+    public static <T> T callOn(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Runs the action with connections obtained from the given shard, restoring the previous shard afterwards.
+     *
+     * @param shard  the shard
+     * @param action the action
+     */
+    public static void runOn(int shard, Runnable action) {
+        callOn(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
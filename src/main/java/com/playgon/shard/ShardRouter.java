@@ -0,0 +1,239 @@
+package com.playgon.shard;
+
+import com.playgon.shortcode.Base62;
+import com.playgon.shortcode.Hashing;
+import com.playgon.shortcode.ShortCodeGenerator;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Spreads the UrlMappings table over shard 0, the application database, and the databases listed in
+ * {@code app.sharding.urls}. A new code is placed on a shard chosen by a jump consistent hash of the
+ * code, and that shard is prepended to the code as one base62 digit, so a code is routed by reading its
+ * first character, without a lookup, and stays on its shard when shards are added later.
+ *
+ * Codes created before sharding was enabled are on shard 0; lookups that miss on the shard named by
+ * their first character fall back to shard 0. With no shard URLs configured, codes are left unchanged
+ * and everything runs on shard 0.
+ */
+@Component
+public class ShardRouter {
+
+    // The shard is a single base62 digit
+    public static final int MAX_SHARDS = 62;
+
+    private final int shardCount;
+    // Scatter-gather queries, one virtual thread per shard
+    private final ExecutorService executor;
+
+    /**
+     * Constructor to inject the shard configuration.
+     *
+     * @param shardUrls the JDBC URLs of the shards after shard 0
+     */
+    @Autowired
+    public ShardRouter(@Value("${app.sharding.urls:}") List<String> shardUrls) {
+        this((int) shardUrls.stream().filter(url -> !url.isBlank()).count() + 1);
+    }
+
+    public ShardRouter(int shardCount) {
+        if (shardCount < 1 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + MAX_SHARDS + ": " + shardCount);
+        }
+        this.shardCount = shardCount;
+        this.executor = shardCount > 1
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("shard-gather-", 0).factory())
+                : null;
+    }
+
+    /**
+     * @return the number of shards, including shard 0
+     */
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return whether there is more than one shard
+     */
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    /**
+     * Places a new code on a shard by prepending the shard to it.
+     *
+     * @param code the code handed out by the generation strategy
+     * @return the code to store, unchanged when not sharded
+     */
+    public String assign(String code) {
+        if (!isSharded()) {
+            return code;
+        }
+        return Base62.encode(jumpHash(Hashing.hash(code), shardCount)) + code;
+    }
+
+    /**
+     * Wraps the generation strategy so that its codes are assigned to shards.
+     *
+     * @param generator the generation strategy
+     * @return the generator handing out sharded codes, or the given one when not sharded
+     */
+    public ShortCodeGenerator assigning(ShortCodeGenerator generator) {
+        if (!isSharded()) {
+            return generator;
+        }
+        return () -> assign(generator.nextCode());
+    }
+
+    /**
+     * @param code a short code
+     * @return the shard named by the first character of the code, or 0 if it names none
+     */
+    public int shardOf(String code) {
+        if (!isSharded() || code == null || code.isEmpty()) {
+            return 0;
+        }
+        int shard = Base62.digit(code.charAt(0));
+        return shard >= 0 && shard < shardCount ? shard : 0;
+    }
+
+    /**
+     * Groups the items by the shard of their code, keeping their order within each shard.
+     *
+     * @param items the items
+     * @param code  the short code of an item
+     * @return the items per shard, for the shards that have any
+     */
+    public <T> Map<Integer, List<T>> groupByShard(Collection<T> items, Function<? super T, String> code) {
+        if (!isSharded()) {
+            return Map.of(0, items instanceof List<T> list ? list : new ArrayList<>(items));
+        }
+        Map<Integer, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(shardOf(code.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    /**
+     * Runs the action once per shard, one shard after the other, with connections obtained from that shard.
+     *
+     * @param action receives the shard it runs on
+     */
+    public void forEachShard(IntConsumer action) {
+        for (int shard = 0; shard < shardCount; shard++) {
+            int current = shard;
+            ShardContext.runOn(shard, () -> action.accept(current));
+        }
+    }
+
+    /**
+     * Runs the query on every shard concurrently and concatenates the results in shard order. The
+     * queries run on their own threads, outside the caller's transaction; a read-only caller still
+     * has them read from the replica of shard 0.
+     *
+     * @param query the query, run once per shard
+     * @return the rows of all shards
+     */
+    public <T> List<T> gather(Supplier<? extends Collection<? extends T>> query) {
+        if (!isSharded()) {
+            return new ArrayList<>(query.get());
+        }
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        List<Future<Collection<? extends T>>> results = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int current = shard;
+            results.add(executor.submit(() -> ShardContext.callOn(current, () -> {
+                TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+                try {
+                    return query.get();
+                } finally {
+                    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+                }
+            })));
+        }
+        List<T> rows = new ArrayList<>();
+        for (Future<Collection<? extends T>> result : results) {
+            rows.addAll(join(result));
+        }
+        return rows;
+    }
+
+    /**
+     * Runs a top-K query on every shard concurrently and merges the results.
+     *
+     * @param query the query returning at most {@code limit} rows of one shard
+     * @param score the value the rows are ranked by
+     * @param limit the maximum number of rows to return
+     * @return the highest ranked rows of all shards, in descending order of score
+     */
+    public <T> List<T> gatherTop(Supplier<? extends Collection<? extends T>> query, ToLongFunction<? super T> score,
+                                 int limit) {
+        List<T> rows = gather(query);
+        if (!isSharded()) {
+            return rows;
+        }
+        rows.sort(Comparator.comparingLong(score).reversed());
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static <T> T join(Future<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw new IllegalStateException("Interrupted while waiting for a shard", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new UndeclaredThrowableException(e.getCause());
+        }
+    }
+
+    /**
+     * Jump consistent hash (Lamping and Veach): growing from n to n + 1 buckets only moves 1 / (n + 1)
+     * of the keys, all to the new bucket.
+     */
+    static int jumpHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+}
@@ -0,0 +1,111 @@
+package com.playgon.shard;
+
+import com.playgon.model.UrlMappings;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Routes the calls of {@code UrlMappingsRepository} to the shards, ahead of its transaction handling
+ * so that every shard gets a transaction of its own:
+ * <ul>
+ *     <li>lookups by short code and {@code save} run on the shard of the code; lookups that miss fall
+ *     back to shard 0, which holds the codes created before sharding was enabled,</li>
+ *     <li>{@code saveAll} and {@code findExistingShortUrls} split their argument by shard and run once
+ *     per shard, so a batch is only atomic within each shard,</li>
+ *     <li>{@code findByLongUrlHashIn} runs on every shard and concatenates the results, and
+ *     {@code findTop10ByOrderByAccessCountDesc} merges the top 10 of every shard.</li>
+ * </ul>
+ * Any other method runs on shard 0 only.
+ */
+public class ShardingRepositoryInterceptor implements MethodInterceptor {
+
+    private static final int TOP = 10;
+
+    private final ShardRouter shardRouter;
+
+    public ShardingRepositoryInterceptor(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object[] arguments = invocation.getArguments();
+        return switch (invocation.getMethod().getName()) {
+            case "findByShortUrl", "findLongUrlByShortUrl", "findLongUrlByShortUrlOnPrimary" ->
+                    findByShortUrl(invocation, (String) arguments[0]);
+            case "save", "saveAndFlush" -> onShard(shardOf((UrlMappings) arguments[0]), invocation);
+            case "saveAll", "saveAllAndFlush" -> perShard(invocation, toList((Iterable<UrlMappings>) arguments[0]),
+                    UrlMappings::getShortUrl);
+            case "findExistingShortUrls" -> perShard(invocation, toList((Collection<String>) arguments[0]),
+                    shortUrl -> shortUrl);
+            case "findByLongUrlHashIn" -> shardRouter.gather(() -> (Collection<?>) proceed(invocation));
+            case "findTop10ByOrderByAccessCountDesc" -> shardRouter.gatherTop(
+                    () -> (List<UrlMappings>) proceed(invocation), UrlMappings::getAccessCount, TOP);
+            default -> invocation.proceed();
+        };
+    }
+
+    private Object findByShortUrl(MethodInvocation invocation, String shortUrl) {
+        int shard = shardRouter.shardOf(shortUrl);
+        Object result = onShard(shard, invocation);
+        if (shard != 0 && result instanceof Optional<?> found && found.isEmpty()) {
+            return onShard(0, invocation);
+        }
+        return result;
+    }
+
+    private <T> List<Object> perShard(MethodInvocation invocation, List<T> items, Function<T, String> shortUrl) {
+        List<Object> results = new ArrayList<>(items.size());
+        for (Map.Entry<Integer, List<T>> group : shardRouter.groupByShard(items, shortUrl).entrySet()) {
+            results.addAll((Collection<?>) onShard(group.getKey(), invocation, group.getValue()));
+        }
+        return results;
+    }
+
+    private int shardOf(UrlMappings mapping) {
+        return shardRouter.shardOf(mapping.getShortUrl());
+    }
+
+    private Object onShard(int shard, MethodInvocation invocation, Object... arguments) {
+        // The connection of a running transaction stays on the shard it was obtained from
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Sharded UrlMappings access must not run inside a transaction");
+        }
+        return ShardContext.callOn(shard, () -> proceed(invocation, arguments));
+    }
+
+    /**
+     * Proceeds with a copy of the invocation, so that it can be proceeded with more than once, and on other threads.
+     */
+    private static Object proceed(MethodInvocation invocation, Object... arguments) {
+        ProxyMethodInvocation copy = (ProxyMethodInvocation) ((ProxyMethodInvocation) invocation)
+                .invocableClone(arguments.length == 0 ? invocation.getArguments() : arguments);
+        try {
+            return copy.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    private static <T> List<T> toList(Iterable<T> items) {
+        if (items instanceof List<T> list) {
+            return list;
+        }
+        List<T> list = new ArrayList<>();
+        items.forEach(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,92 @@
+package com.playgon.shortcode;
+
+import java.util.Arrays;
+
+/**
+ * Base62 encoding of non-negative longs using the alphabet {@code 0-9A-Za-z}.
+ */
+public final class Base62 {
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int BASE = ALPHABET.length;
+    // Digit value per ASCII character, -1 outside the alphabet
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < BASE; i++) {
+            DIGITS[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private Base62() {
+    }
+
+    /**
+     * Encodes the value with as few digits as possible.
+     *
+     * @param value the non-negative value
+     * @return the base62 representation
+     */
+    public static String encode(long value) {
+        return encode(value, 1);
+    }
+
+    /**
+     * Encodes the value, left-padding with zeros to at least {@code minWidth} digits.
+     *
+     * @param value    the non-negative value
+     * @param minWidth the minimum number of digits
+     * @return the base62 representation
+     */
+    public static String encode(long value, int minWidth) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        char[] buffer = new char[Math.max(11, minWidth)];
+        int pos = buffer.length;
+        do {
+            buffer[--pos] = ALPHABET[(int) (value % BASE)];
+            value /= BASE;
+        } while (value > 0);
+        while (buffer.length - pos < minWidth) {
+            buffer[--pos] = ALPHABET[0];
+        }
+        return new String(buffer, pos, buffer.length - pos);
+    }
+
+    /**
+     * Returns the value of a single base62 digit.
+     *
+     * @param c the character
+     * @return the digit value, or -1 if the character is outside the alphabet
+     */
+    public static int digit(char c) {
+        return c < DIGITS.length ? DIGITS[c] : -1;
+    }
+
+    /**
+     * Decodes a base62 string.
+     *
+     * @param code the base62 string
+     * @return the decoded value, or -1 if the string is empty, contains a character outside the
+     *         alphabet or does not fit in a long
+     */
+    public static long decode(CharSequence code) {
+        int length = code.length();
+        if (length == 0 || length > 11) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            int digit = digit(c);
+            // Ten digits always fit in a long, only the eleventh can overflow
+            if (digit < 0 || (i == 10 && value > (Long.MAX_VALUE - digit) / BASE)) {
+                return -1;
+            }
+            value = value * BASE + digit;
+        }
+        return value;
+    }
+}
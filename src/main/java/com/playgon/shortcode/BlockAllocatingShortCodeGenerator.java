@@ -0,0 +1,91 @@
+package com.playgon.shortcode;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates short codes from a cluster-wide counter.
+ *
+ * Each node reserves a block of ids from the {@link IdBlockAllocator} and hands them out with a
+ * single atomic increment, so the hot path is lock-free and needs no database round trip. Only
+ * the thread that exhausts a block goes back to the allocator. Since the ids are unique across
+ * nodes the codes are unique by construction and never need a collision check or retry.
+ *
+ * Ids are base62 encoded, optionally after a {@link FeistelPermutation} so that consecutive codes
+ * are not guessable. Permuted codes are always seven characters long.
+ */
+public class BlockAllocatingShortCodeGenerator implements ShortCodeGenerator {
+
+    private static final int PERMUTED_WIDTH = 7;
+
+    private final IdBlockAllocator allocator;
+    private final int blockSize;
+    private final FeistelPermutation permutation;
+    private final AtomicReference<IdRange> current = new AtomicReference<>(IdRange.EMPTY);
+    // Not synchronized: the allocator blocks on the database, which must not pin a virtual thread
+    private final ReentrantLock refillLock = new ReentrantLock();
+
+    /**
+     * @param allocator   the source of id blocks
+     * @param blockSize   the number of ids reserved per allocation
+     * @param permutation the permutation applied to ids, or null to encode ids as they are
+     */
+    public BlockAllocatingShortCodeGenerator(IdBlockAllocator allocator, int blockSize, FeistelPermutation permutation) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.allocator = allocator;
+        this.blockSize = blockSize;
+        this.permutation = permutation;
+    }
+
+    @Override
+    public String nextCode() {
+        long id = nextId();
+        if (permutation == null) {
+            return Base62.encode(id);
+        }
+        if (id >= FeistelPermutation.DOMAIN) {
+            throw new IllegalStateException("Short code id space exhausted");
+        }
+        return Base62.encode(permutation.permute(id), PERMUTED_WIDTH);
+    }
+
+    long nextId() {
+        while (true) {
+            IdRange range = current.get();
+            long id = range.next.getAndIncrement();
+            if (id < range.end) {
+                return id;
+            }
+            refill(range);
+        }
+    }
+
+    private void refill(IdRange exhausted) {
+        refillLock.lock();
+        try {
+            // Another thread may already have replaced the block while we were waiting
+            if (current.get() == exhausted) {
+                long start = allocator.allocate(blockSize);
+                current.set(new IdRange(start, start + blockSize));
+            }
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    private static final class IdRange {
+
+        static final IdRange EMPTY = new IdRange(0, 0);
+
+        final AtomicLong next;
+        final long end;
+
+        IdRange(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.playgon.shortcode;
+
+import com.playgon.model.IdBlock;
+import com.playgon.repository.IdBlockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reserves id blocks from the {@code IdBlocks} table. Each call locks the counter row, advances it
+ * by the block size and commits in its own transaction, so a node only talks to the database once
+ * per block rather than once per short code.
+ */
+@Component
+public class DatabaseIdBlockAllocator implements IdBlockAllocator {
+
+    static final String SHORT_CODE_COUNTER = "shortCode";
+
+    private final IdBlockRepository idBlockRepository;
+
+    /**
+     * Constructor to inject the IdBlockRepository dependency.
+     *
+     * @param idBlockRepository the id block repository
+     */
+    @Autowired
+    public DatabaseIdBlockAllocator(IdBlockRepository idBlockRepository) {
+        this.idBlockRepository = idBlockRepository;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public long allocate(int size) {
+        IdBlock block = idBlockRepository.findForUpdate(SHORT_CODE_COUNTER)
+                .orElseGet(() -> new IdBlock(SHORT_CODE_COUNTER, 1));
+        long start = block.getNextValue();
+        block.setNextValue(start + size);
+        idBlockRepository.saveAndFlush(block);
+        return start;
+    }
+}
@@ -0,0 +1,43 @@
+package com.playgon.shortcode;
+
+/**
+ * Non-cryptographic 64-bit hashing shared by the short code filter, the shard router, the off-heap indexes
+ * and the visitor sketches. The values are persisted in snapshots and decide shard placement, so they must
+ * never change.
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * 64-bit FNV-1a hash finished with the MurmurHash3 mix, so that similar inputs such as neighbouring
+     * codes or IP addresses differ in all bits.
+     *
+     * @param value the value to hash
+     * @return the hash
+     */
+    public static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The MurmurHash3 64-bit finalizer.
+     *
+     * @param value the value to mix
+     * @return the mixed value
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,15 @@
+package com.playgon.shortcode;
+
+/**
+ * Source of disjoint id ranges shared by all nodes.
+ */
+public interface IdBlockAllocator {
+
+    /**
+     * Reserves the next {@code size} ids.
+     *
+     * @param size the number of ids to reserve
+     * @return the first id of the reserved range; the range is {@code [start, start + size)}
+     */
+    long allocate(int size);
+}
@@ -0,0 +1,21 @@
+package com.playgon.shortcode;
+
+import org.apache.commons.lang3.RandomStringUtils;
+
+/**
+ * Legacy generator drawing random alphanumeric codes. Codes are not checked for collisions,
+ * so a duplicate surfaces as a unique constraint violation on insert.
+ */
+public class RandomShortCodeGenerator implements ShortCodeGenerator {
+
+    private final int length;
+
+    public RandomShortCodeGenerator(int length) {
+        this.length = length;
+    }
+
+    @Override
+    public String nextCode() {
+        return RandomStringUtils.randomAlphanumeric(length);
+    }
+}
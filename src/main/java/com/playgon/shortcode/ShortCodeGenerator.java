@@ -0,0 +1,13 @@
+package com.playgon.shortcode;
+
+/**
+ * Strategy for generating the short codes handed out by {@code POST /shorten}.
+ * Implementations must be thread-safe.
+ */
+public interface ShortCodeGenerator {
+
+    /**
+     * @return a new short code
+     */
+    String nextCode();
+}
@@ -0,0 +1,162 @@
+package com.playgon.stats;
+
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects access count increments off the redirect path and applies them to the database in batches.
+ *
+ * Each redirect only bumps a striped {@link LongAdder} for its short URL, so concurrent hits on the
+ * same link neither contend on a lock nor lose increments. A background job periodically drains the
+ * pending counts and applies them with {@code access_count = access_count + ?} JDBC batch updates,
+ * and then to the {@link TopUrlsLeaderboard} and the {@link ClickAnalytics} time series. Whatever is
+ * still pending is flushed when the application shuts down.
+ */
+@Component
+public class AccessCountAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(AccessCountAggregator.class);
+
+    private final ConcurrentHashMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+    // Adders removed by the previous flush, which a redirect that looked them up before may still increment;
+    // guarded by flushLock
+    private List<Map.Entry<String, LongAdder>> retired = new ArrayList<>();
+    // Not synchronized: flushing blocks on the database, which must not pin a virtual thread
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+    private final TopUrlsLeaderboard topUrlsLeaderboard;
+    private final ClickAnalytics clickAnalytics;
+    private final ShortenerMetrics metrics;
+    private final int maxBatchSize;
+
+    /**
+     * Constructor to inject the JDBC repository, leaderboard, click analytics, metrics and batch configuration.
+     *
+     * @param urlMappingsJdbcRepository the repository the counts are flushed to
+     * @param topUrlsLeaderboard        the leaderboard the flushed counts are applied to
+     * @param clickAnalytics            the click time series the flushed counts are added to
+     * @param metrics                   the domain metrics
+     * @param maxBatchSize              the maximum number of rows updated per JDBC batch
+     */
+    @Autowired
+    public AccessCountAggregator(UrlMappingsJdbcRepository urlMappingsJdbcRepository, TopUrlsLeaderboard topUrlsLeaderboard,
+                                 ClickAnalytics clickAnalytics, ShortenerMetrics metrics,
+                                 @Value("${app.access-count.max-batch-size:500}") int maxBatchSize) {
+        this.urlMappingsJdbcRepository = urlMappingsJdbcRepository;
+        this.topUrlsLeaderboard = topUrlsLeaderboard;
+        this.clickAnalytics = clickAnalytics;
+        this.metrics = metrics;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Records one access of the given short URL.
+     *
+     * @param shortUrl the short URL that was resolved
+     */
+    public void recordAccess(String shortUrl) {
+        pending.computeIfAbsent(shortUrl, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Returns the number of accesses recorded for the given short URL that have not been flushed yet.
+     *
+     * @param shortUrl the short URL
+     * @return the pending access count
+     */
+    public long pendingCount(String shortUrl) {
+        LongAdder adder = pending.get(shortUrl);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Drains the pending counts and writes them to the database in batches of at most
+     * {@code maxBatchSize} rows. Counts from a batch that fails are put back and retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${app.access-count.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            collectRetired();
+            List<Map.Entry<String, Long>> batch = new ArrayList<>(Math.min(maxBatchSize, pending.size()));
+            for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+                long delta = drain(entry.getKey(), entry.getValue());
+                if (delta == 0) {
+                    continue;
+                }
+                batch.add(Map.entry(entry.getKey(), delta));
+                if (batch.size() == maxBatchSize) {
+                    write(batch);
+                    batch = new ArrayList<>(maxBatchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    /**
+     * Takes the current count out of the adder without losing increments that race with it.
+     * Adders that stayed idle since the previous flush are removed to keep the map bounded, and
+     * are drained once more by the next flush.
+     */
+    private long drain(String shortUrl, LongAdder adder) {
+        long delta = adder.sum();
+        if (delta != 0) {
+            adder.add(-delta);
+            return delta;
+        }
+        if (pending.remove(shortUrl, adder)) {
+            retired.add(Map.entry(shortUrl, adder));
+        }
+        return 0;
+    }
+
+    // Moves increments that reached an adder after its removal back into the map, to be flushed now
+    private void collectRetired() {
+        List<Map.Entry<String, LongAdder>> removed = retired;
+        retired = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : removed) {
+            long late = entry.getValue().sum();
+            if (late != 0) {
+                entry.getValue().add(-late);
+                pending.computeIfAbsent(entry.getKey(), key -> new LongAdder()).add(late);
+            }
+        }
+    }
+
+    private void write(List<Map.Entry<String, Long>> batch) {
+        try {
+            topUrlsLeaderboard.recordFlush(batch,
+                    () -> metrics.accessCountFlushTimer().record(() -> urlMappingsJdbcRepository.incrementAccessCounts(batch)));
+            clickAnalytics.record(batch);
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush {} access counts, will retry", batch.size(), e);
+            for (Map.Entry<String, Long> delta : batch) {
+                pending.computeIfAbsent(delta.getKey(), key -> new LongAdder()).add(delta.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.playgon.stats;
+
+import com.playgon.model.ClickBucket;
+import com.playgon.model.ClickResolution;
+import com.playgon.model.ClickTimeBucket;
+import com.playgon.repository.ClickBucketJdbcRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-link click time series at minute and hour resolution.
+ *
+ * Clicks are not tracked per redirect: the {@link AccessCountAggregator} hands over the access count
+ * deltas it has just flushed, which are added to the currently open minute and hour bucket of each
+ * link. Once a bucket is over it is written as one compact row per link, so the minute series is the
+ * raw data and the hour series its roll-up. Minute rows are kept for {@code app.analytics.minute-retention}
+ * and hour rows for {@code app.analytics.hour-retention}, after which they are purged. Like expired links,
+ * they are purged in batches of {@code app.analytics.purge.batch-size} rows with {@code app.analytics.purge.pause}
+ * between batches, at most {@code app.analytics.purge.max-batches} per resolution and run, so the purge never
+ * holds locks for long on a table every flush inserts into.
+ *
+ * Each node writes its own rows and queries sum them, so a bucket only becomes visible once it is
+ * over. Open buckets are written when the application shuts down.
+ */
+@Component
+public class ClickAnalytics {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickAnalytics.class);
+
+    private final ClickBucketJdbcRepository clickBucketJdbcRepository;
+    private final Map<ClickResolution, Duration> retention = new EnumMap<>(ClickResolution.class);
+    private final long maxPoints;
+    private final int purgeBatchSize;
+    private final int purgeMaxBatches;
+    private final Duration purgePause;
+    private final Clock clock;
+    // Guards the open buckets and the closed buckets waiting to be written
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<ClickResolution, OpenBuckets> open = new EnumMap<>(ClickResolution.class);
+    private List<ClickBucket> closed = new ArrayList<>();
+
+    /**
+     * Constructor to inject the JDBC repository, the retention and the purge configuration.
+     *
+     * @param clickBucketJdbcRepository the repository the buckets are written to
+     * @param minuteRetention           how long minute buckets are kept
+     * @param hourRetention             how long hour buckets are kept
+     * @param maxPoints                 the maximum number of buckets a single query may span
+     * @param purgeBatchSize            the maximum number of rows deleted per statement
+     * @param purgeMaxBatches           the maximum number of batches per resolution and run
+     * @param purgePause                the pause between two batches
+     */
+    @Autowired
+    public ClickAnalytics(ClickBucketJdbcRepository clickBucketJdbcRepository,
+                          @Value("${app.analytics.minute-retention:P7D}") Duration minuteRetention,
+                          @Value("${app.analytics.hour-retention:P365D}") Duration hourRetention,
+                          @Value("${app.analytics.max-points:10080}") long maxPoints,
+                          @Value("${app.analytics.purge.batch-size:1000}") int purgeBatchSize,
+                          @Value("${app.analytics.purge.max-batches:100}") int purgeMaxBatches,
+                          @Value("${app.analytics.purge.pause:PT0.05S}") Duration purgePause) {
+        this(clickBucketJdbcRepository, minuteRetention, hourRetention, maxPoints, purgeBatchSize, purgeMaxBatches,
+                purgePause, Clock.systemUTC());
+    }
+
+    ClickAnalytics(ClickBucketJdbcRepository clickBucketJdbcRepository, Duration minuteRetention,
+                   Duration hourRetention, long maxPoints, int purgeBatchSize, int purgeMaxBatches,
+                   Duration purgePause, Clock clock) {
+        this.clickBucketJdbcRepository = clickBucketJdbcRepository;
+        this.retention.put(ClickResolution.MINUTE, minuteRetention);
+        this.retention.put(ClickResolution.HOUR, hourRetention);
+        this.maxPoints = maxPoints;
+        this.purgeBatchSize = purgeBatchSize;
+        this.purgeMaxBatches = purgeMaxBatches;
+        this.purgePause = purgePause;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds flushed access counts to the current buckets. Only touches memory.
+     *
+     * @param deltas the access count delta per short URL
+     */
+    public void record(List<Map.Entry<String, Long>> deltas) {
+        lock.lock();
+        try {
+            long now = clock.millis();
+            for (ClickResolution resolution : ClickResolution.values()) {
+                Map<String, Long> counts = roll(resolution, now).counts;
+                for (Map.Entry<String, Long> delta : deltas) {
+                    counts.merge(delta.getKey(), delta.getValue(), Long::sum);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the clicks of a short URL per bucket. Buckets that are still open and buckets
+     * without clicks are not included.
+     *
+     * @param shortUrl   the short URL
+     * @param resolution the bucket width
+     * @param from       the start of the range, inclusive, or null for {@link ClickResolution#defaultRange()} before {@code to}
+     * @param to         the end of the range, exclusive, or null for now
+     * @return the non-empty buckets in the range, in chronological order
+     * @throws IllegalArgumentException if the range is empty or spans more than {@code app.analytics.max-points} buckets
+     */
+    public List<ClickTimeBucket> series(String shortUrl, ClickResolution resolution, Instant from, Instant to) {
+        Instant end = to != null ? to : clock.instant();
+        Instant start = from != null ? from : end.minus(resolution.defaultRange());
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (Duration.between(start, end).dividedBy(resolution.width()) > maxPoints) {
+            throw new IllegalArgumentException("Range spans more than " + maxPoints + " buckets");
+        }
+        return clickBucketJdbcRepository.findSeries(shortUrl, resolution, start, end);
+    }
+
+    /**
+     * Writes the buckets that are over. Buckets that fail to be written are retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.flush-interval-ms:10000}")
+    public void flush() {
+        write(false);
+    }
+
+    /**
+     * Deletes the buckets that are older than their retention, in batches. A resolution that fails is
+     * retried on the next run.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.purge-interval-ms:3600000}")
+    public void purge() {
+        Instant now = clock.instant();
+        for (ClickResolution resolution : ClickResolution.values()) {
+            try {
+                purge(resolution, now.minus(retention.get(resolution)));
+            } catch (RuntimeException e) {
+                log.warn("Failed to purge {} click buckets, will retry", resolution, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void purge(ClickResolution resolution, Instant cutoff) throws InterruptedException {
+        for (int batch = 0; batch < purgeMaxBatches; batch++) {
+            if (batch > 0 && !purgePause.isZero()) {
+                Thread.sleep(purgePause);
+            }
+            if (clickBucketJdbcRepository.deleteOlderThan(resolution, cutoff, purgeBatchSize) < purgeBatchSize) {
+                return;
+            }
+        }
+        log.info("{} click buckets left after {} batches, continuing on the next run", resolution, purgeMaxBatches);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        write(true);
+    }
+
+    private void write(boolean includeOpen) {
+        List<ClickBucket> buckets;
+        lock.lock();
+        try {
+            long now = clock.millis();
+            for (ClickResolution resolution : ClickResolution.values()) {
+                roll(resolution, now);
+                if (includeOpen && open.containsKey(resolution)) {
+                    close(resolution, open.remove(resolution));
+                }
+            }
+            buckets = closed;
+            closed = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        if (buckets.isEmpty()) {
+            return;
+        }
+        try {
+            clickBucketJdbcRepository.insertAll(buckets);
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} click buckets, will retry", buckets.size(), e);
+            lock.lock();
+            try {
+                buckets.addAll(closed);
+                closed = buckets;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the open bucket of the given resolution for the given time, closing the previous one if it is over.
+     */
+    private OpenBuckets roll(ClickResolution resolution, long now) {
+        long start = resolution.bucketStart(now);
+        OpenBuckets current = open.get(resolution);
+        if (current == null || current.start != start) {
+            if (current != null) {
+                close(resolution, current);
+            }
+            current = new OpenBuckets(start);
+            open.put(resolution, current);
+        }
+        return current;
+    }
+
+    private void close(ClickResolution resolution, OpenBuckets buckets) {
+        Timestamp start = new Timestamp(buckets.start);
+        for (Map.Entry<String, Long> count : buckets.counts.entrySet()) {
+            closed.add(new ClickBucket(count.getKey(), resolution, start, count.getValue()));
+        }
+    }
+
+    private static final class OpenBuckets {
+
+        final long start;
+        final Map<String, Long> counts = new HashMap<>();
+
+        OpenBuckets(long start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.playgon.stats;
+
+import com.playgon.shortcode.Hashing;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog cardinality sketch with {@code 2^precision} registers and a standard error of about
+ * {@code 1.04 / sqrt(2^precision)}.
+ *
+ * A sketch starts out sparse, storing only the registers that were set, and switches to a dense
+ * register array once that would take less memory. Most links only ever see a few visitors, so
+ * most sketches stay a few dozen bytes. Sketches of the same precision can be merged, which gives
+ * the sketch of the union of both sets.
+ *
+ * All methods are thread-safe. The critical sections never block, so they do not pin virtual threads.
+ */
+public final class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+
+    private final int precision;
+    private final int registerCount;
+    // Sparse entries are encoded as index << 8 | rank; null once the sketch is dense
+    private int[] sparse = new int[4];
+    private int sparseSize;
+    private byte[] dense;
+
+    /**
+     * @param precision the number of index bits, between {@link #MIN_PRECISION} and {@link #MAX_PRECISION}
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION
+                    + ": " + precision);
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+    }
+
+    /**
+     * @return the number of index bits
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Adds an element given by its 64-bit hash. The hash must be well mixed, e.g. from {@link Hashing#hash(CharSequence)}.
+     *
+     * @param hash the hash of the element
+     * @return true if a register changed, i.e. the serialized sketch is different now
+     */
+    public synchronized boolean add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The sentinel bit caps the rank at 64 - precision + 1
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        return update(index, rank);
+    }
+
+    /**
+     * Merges the registers of another sketch of the same precision into this one.
+     *
+     * @param other the sketch to merge
+     * @throws IllegalArgumentException if the precisions differ
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge precision " + other.precision + " into " + precision);
+        }
+        byte[] registers = other.registers();
+        synchronized (this) {
+            for (int index = 0; index < registers.length; index++) {
+                if (registers[index] != 0) {
+                    update(index, registers[index]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the estimated number of distinct elements added
+     */
+    public synchronized long estimate() {
+        if (dense == null) {
+            return Math.round(linearCounting(registerCount - sparseSize));
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : dense) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha() * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            estimate = linearCounting(zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Serializes the sketch: a header with the precision and format, followed by either the
+     * sparse entries or the dense registers.
+     *
+     * @return the serialized sketch
+     */
+    public synchronized byte[] toBytes() {
+        if (dense == null) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 + 4 * sparseSize).put((byte) precision).put(SPARSE);
+            for (int i = 0; i < sparseSize; i++) {
+                buffer.putInt(sparse[i]);
+            }
+            return buffer.array();
+        }
+        return ByteBuffer.allocate(2 + registerCount).put((byte) precision).put(DENSE).put(dense).array();
+    }
+
+    /**
+     * @param bytes a sketch serialized with {@link #toBytes()}
+     * @return the deserialized sketch
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        byte format = buffer.get();
+        if (format == DENSE) {
+            sketch.sparse = null;
+            sketch.dense = new byte[sketch.registerCount];
+            buffer.get(sketch.dense);
+        } else {
+            while (buffer.hasRemaining()) {
+                int entry = buffer.getInt();
+                sketch.update(entry >>> 8, entry & 0xFF);
+            }
+        }
+        return sketch;
+    }
+
+    private synchronized byte[] registers() {
+        if (dense != null) {
+            return dense.clone();
+        }
+        byte[] registers = new byte[registerCount];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) (sparse[i] & 0xFF);
+        }
+        return registers;
+    }
+
+    private boolean update(int index, int rank) {
+        if (dense != null) {
+            if (dense[index] >= rank) {
+                return false;
+            }
+            dense[index] = (byte) rank;
+            return true;
+        }
+        for (int i = 0; i < sparseSize; i++) {
+            if (sparse[i] >>> 8 == index) {
+                if ((sparse[i] & 0xFF) >= rank) {
+                    return false;
+                }
+                sparse[i] = index << 8 | rank;
+                return true;
+            }
+        }
+        // Four bytes per sparse entry: switch once the entries would outgrow a quarter of the dense array
+        if (sparseSize >= registerCount / 16) {
+            dense = registers();
+            dense[index] = (byte) rank;
+            sparse = null;
+            return true;
+        }
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, sparse.length * 2);
+        }
+        sparse[sparseSize++] = index << 8 | rank;
+        return true;
+    }
+
+    private double linearCounting(int zeros) {
+        return registerCount * Math.log((double) registerCount / zeros);
+    }
+
+    private double alpha() {
+        return switch (registerCount) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / registerCount);
+        };
+    }
+}
@@ -0,0 +1,226 @@
+package com.playgon.stats;
+
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.model.TopUrl;
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory leaderboard of the most accessed URLs, so that {@code /api/stats/top} does not sort the
+ * whole table on every poll.
+ *
+ * The leaderboard tracks up to {@code capacity} URLs with the Space-Saving algorithm: access count
+ * deltas are applied as the {@link AccessCountAggregator} flushes them, and when a URL that is not
+ * tracked yet arrives while the leaderboard is full, it replaces the least accessed entry and
+ * inherits its count. Counts of such newcomers are therefore upper bounds, but no URL accessed more
+ * often than the least accessed entry can be missing. The leaderboard is periodically reloaded
+ * from the database, which makes all counts exact again. The reload sorts the whole table, so it runs
+ * without holding the lock; the deltas flushed meanwhile are applied again on top of its result.
+ *
+ * Readers get an immutable, sorted snapshot that is republished after every change, so queries
+ * never wait for a flush or a reconciliation. The long URLs of new entries are taken from the resolution
+ * cache, and those it does not hold are looked up with one query per flush.
+ */
+@Component
+public class TopUrlsLeaderboard {
+
+    private static final Logger log = LoggerFactory.getLogger(TopUrlsLeaderboard.class);
+
+    private static final Comparator<Entry> BY_COUNT =
+            Comparator.comparingLong((Entry entry) -> entry.count).thenComparing(entry -> entry.shortUrl);
+
+    private final UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+    private final ShortUrlCache shortUrlCache;
+    private final int capacity;
+    // Guards the entries, and orders database writes against the start and end of a reload
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> byCount = new TreeSet<>(BY_COUNT);
+    // Deltas written since the running reload started, or null if none is running
+    private List<Map.Entry<String, Long>> flushedDuringReload;
+    private volatile List<TopUrl> snapshot = List.of();
+
+    /**
+     * Constructor to inject the JDBC repository, cache and leaderboard size.
+     *
+     * @param urlMappingsJdbcRepository the repository the leaderboard is reconciled with
+     * @param shortUrlCache             the cache the long URLs of new entries are taken from first
+     * @param capacity                  the number of URLs tracked, and the largest N that can be queried
+     */
+    @Autowired
+    public TopUrlsLeaderboard(UrlMappingsJdbcRepository urlMappingsJdbcRepository, ShortUrlCache shortUrlCache,
+                              @Value("${app.stats.top.capacity:1000}") int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Leaderboard capacity must be positive: " + capacity);
+        }
+        this.urlMappingsJdbcRepository = urlMappingsJdbcRepository;
+        this.shortUrlCache = shortUrlCache;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the most accessed URLs from the current snapshot, in constant time.
+     *
+     * @param n the number of URLs to return, capped at the leaderboard capacity
+     * @return up to n URLs in descending order of access count
+     */
+    public List<TopUrl> top(int n) {
+        List<TopUrl> current = snapshot;
+        return current.subList(0, Math.max(0, Math.min(n, current.size())));
+    }
+
+    /**
+     * Runs the database write of a batch of access count deltas and applies the same deltas to the
+     * leaderboard if it succeeds. Holding the lock across both orders the write against a concurrent
+     * reconciliation: the deltas are either read back by it or applied again once it is done.
+     *
+     * @param deltas the access count delta per short URL
+     * @param write  the database write of the deltas
+     */
+    public void recordFlush(List<Map.Entry<String, Long>> deltas, Runnable write) {
+        lock.lock();
+        try {
+            write.run();
+            if (flushedDuringReload != null) {
+                flushedDuringReload.addAll(deltas);
+            }
+            apply(deltas);
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reloads the leaderboard with the exact counts from the database. The query runs without the lock,
+     * so flushes go on meanwhile; their deltas are applied again on top of the reloaded counts. A flush
+     * committed just before the query reads its rows is then counted twice, which keeps its count an
+     * upper bound until the next reload. On failure the current leaderboard is kept until the next attempt.
+     */
+    @Scheduled(fixedDelayString = "${app.stats.top.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        lock.lock();
+        try {
+            if (flushedDuringReload != null) {
+                return;
+            }
+            flushedDuringReload = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        List<TopUrl> rows;
+        try {
+            rows = urlMappingsJdbcRepository.findTopAccessed(capacity);
+        } catch (RuntimeException e) {
+            log.warn("Failed to reconcile the top URLs leaderboard, keeping the current one", e);
+            lock.lock();
+            try {
+                flushedDuringReload = null;
+            } finally {
+                lock.unlock();
+            }
+            return;
+        }
+        lock.lock();
+        try {
+            entries.clear();
+            byCount.clear();
+            for (TopUrl row : rows) {
+                add(new Entry(row.shortUrl(), row.longUrl(), row.accessCount()));
+            }
+            apply(flushedDuringReload);
+            flushedDuringReload = null;
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void apply(List<Map.Entry<String, Long>> deltas) {
+        List<Entry> unresolved = new ArrayList<>();
+        for (Map.Entry<String, Long> delta : deltas) {
+            Entry added = increment(delta.getKey(), delta.getValue());
+            if (added != null && added.longUrl == null) {
+                unresolved.add(added);
+            }
+        }
+        resolveLongUrls(unresolved);
+    }
+
+    // Returns the entry if the URL was not tracked yet
+    private Entry increment(String shortUrl, long delta) {
+        Entry entry = entries.get(shortUrl);
+        if (entry != null) {
+            byCount.remove(entry);
+            entry.count += delta;
+            byCount.add(entry);
+            return null;
+        }
+        long inherited = 0;
+        if (entries.size() == capacity) {
+            Entry evicted = byCount.pollFirst();
+            entries.remove(evicted.shortUrl);
+            inherited = evicted.count;
+        }
+        Optional<String> longUrl = shortUrlCache.getIfPresent(shortUrl);
+        Entry added = new Entry(shortUrl, longUrl == null ? null : longUrl.orElse(null), inherited + delta);
+        add(added);
+        return added;
+    }
+
+    // Entries whose lookup fails keep a null long URL until the next reconciliation
+    private void resolveLongUrls(List<Entry> unresolved) {
+        if (unresolved.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, String> longUrls = urlMappingsJdbcRepository.findLongUrls(
+                    unresolved.stream().map(entry -> entry.shortUrl).toList());
+            for (Entry entry : unresolved) {
+                entry.longUrl = longUrls.get(entry.shortUrl);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to look up the long URLs of {} new top URLs", unresolved.size(), e);
+        }
+    }
+
+    private void add(Entry entry) {
+        entries.put(entry.shortUrl, entry);
+        byCount.add(entry);
+    }
+
+    private void publish() {
+        List<TopUrl> sorted = new ArrayList<>(byCount.size());
+        for (Entry entry : byCount.descendingSet()) {
+            sorted.add(new TopUrl(entry.shortUrl, entry.longUrl, entry.count));
+        }
+        snapshot = List.copyOf(sorted);
+    }
+
+    private static final class Entry {
+
+        final String shortUrl;
+        String longUrl;
+        long count;
+
+        Entry(String shortUrl, String longUrl, long count) {
+            this.shortUrl = shortUrl;
+            this.longUrl = longUrl;
+            this.count = count;
+        }
+    }
+}
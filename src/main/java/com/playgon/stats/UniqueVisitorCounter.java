@@ -0,0 +1,253 @@
+package com.playgon.stats;
+
+import com.playgon.model.UniqueVisitors;
+import com.playgon.model.VisitorSketch;
+import com.playgon.ratelimit.ClientKeyResolver;
+import com.playgon.repository.VisitorSketchJdbcRepository;
+import com.playgon.shortcode.Hashing;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Approximate number of distinct visitors per short URL, with one {@link HyperLogLog} sketch per link
+ * and UTC day.
+ *
+ * Visitors are identified by the same key as for rate limiting (API key or client IP), of which only
+ * the hash is added to the sketch, so no visitor identifiers are kept. The sketches of the current day
+ * live in memory and are written periodically as one row per link, day and node; sketches of past days
+ * are dropped from memory once written. Counting the visitors of a range of days merges the rows of all
+ * nodes with the sketches not written yet, so no event history is scanned.
+ *
+ * Sketches are kept for {@code app.analytics.unique.retention}. Changing {@code app.analytics.unique.precision}
+ * makes the sketches written before unreadable; they are ignored until they are purged.
+ */
+@Component
+public class UniqueVisitorCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(UniqueVisitorCounter.class);
+
+    private static final long MILLIS_PER_DAY = Duration.ofDays(1).toMillis();
+
+    private final VisitorSketchJdbcRepository visitorSketchJdbcRepository;
+    private final ClientKeyResolver clientKeyResolver;
+    private final int precision;
+    private final Duration retention;
+    private final int maxDays;
+    private final Clock clock;
+    // Identifies the rows of this node; a restarted node starts new rows, which merge with the old ones
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<Window, Sketch> sketches = new ConcurrentHashMap<>();
+    // Serializes flushes, so that a sketch is never inserted twice
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Constructor to inject the JDBC repository, the client key resolver and the sketch configuration.
+     *
+     * @param visitorSketchJdbcRepository the repository the sketches are written to
+     * @param clientKeyResolver           the resolver identifying the visitor of a request
+     * @param precision                   the number of index bits of a sketch; the standard error is {@code 1.04 / sqrt(2^precision)}
+     * @param retention                   how long sketches are kept
+     * @param maxDays                     the maximum number of days a single query may span
+     */
+    @Autowired
+    public UniqueVisitorCounter(VisitorSketchJdbcRepository visitorSketchJdbcRepository,
+                                ClientKeyResolver clientKeyResolver,
+                                @Value("${app.analytics.unique.precision:12}") int precision,
+                                @Value("${app.analytics.unique.retention:P400D}") Duration retention,
+                                @Value("${app.analytics.unique.max-days:366}") int maxDays) {
+        this(visitorSketchJdbcRepository, clientKeyResolver, precision, retention, maxDays, Clock.systemUTC());
+    }
+
+    UniqueVisitorCounter(VisitorSketchJdbcRepository visitorSketchJdbcRepository, ClientKeyResolver clientKeyResolver,
+                         int precision, Duration retention, int maxDays, Clock clock) {
+        // Fail at startup rather than on the first redirect
+        new HyperLogLog(precision);
+        this.visitorSketchJdbcRepository = visitorSketchJdbcRepository;
+        this.clientKeyResolver = clientKeyResolver;
+        this.precision = precision;
+        this.retention = retention;
+        this.maxDays = maxDays;
+        this.clock = clock;
+    }
+
+    /**
+     * Records a visit of a short URL by the client of the given request. Only touches memory.
+     *
+     * @param shortUrl the visited short URL
+     * @param request  the redirect request
+     */
+    public void recordVisit(String shortUrl, HttpServletRequest request) {
+        recordVisit(shortUrl, clientKeyResolver.resolve(request));
+    }
+
+    /**
+     * Records a visit of a short URL by the client of the given request. Only touches memory.
+     *
+     * @param shortUrl the visited short URL
+     * @param request  the redirect request of the reactive stack
+     */
+    public void recordVisit(String shortUrl, ServerHttpRequest request) {
+        recordVisit(shortUrl, clientKeyResolver.resolve(request));
+    }
+
+    void recordVisit(String shortUrl, String clientKey) {
+        Window window = new Window(shortUrl, today());
+        Sketch sketch = sketches.computeIfAbsent(window, key -> new Sketch(new HyperLogLog(precision)));
+        if (sketch.hyperLogLog.add(Hashing.hash(clientKey))) {
+            sketch.dirty = true;
+        }
+    }
+
+    /**
+     * Estimates the number of distinct visitors of a short URL over a range of UTC days.
+     *
+     * @param shortUrl the short URL
+     * @param from     the first day, inclusive, or null for the seven days before {@code to}
+     * @param to       the last day, exclusive, or null for tomorrow, i.e. including today
+     * @return the estimated number of distinct visitors
+     * @throws IllegalArgumentException if the range is empty or spans more than {@code app.analytics.unique.max-days} days
+     */
+    public UniqueVisitors count(String shortUrl, LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.ofEpochDay(today() + 1);
+        LocalDate start = from != null ? from : end.minusDays(7);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (end.toEpochDay() - start.toEpochDay() > maxDays) {
+            throw new IllegalArgumentException("Range spans more than " + maxDays + " days");
+        }
+
+        HyperLogLog union = new HyperLogLog(precision);
+        for (byte[] bytes : visitorSketchJdbcRepository.findSketches(shortUrl, startOf(start.toEpochDay()),
+                startOf(end.toEpochDay()))) {
+            HyperLogLog stored = HyperLogLog.fromBytes(bytes);
+            if (stored.precision() == precision) {
+                union.merge(stored);
+            }
+        }
+        // Not written yet, or written before the latest visits
+        for (long day = start.toEpochDay(); day < end.toEpochDay(); day++) {
+            Sketch sketch = sketches.get(new Window(shortUrl, day));
+            if (sketch != null) {
+                union.merge(sketch.hyperLogLog);
+            }
+        }
+        return new UniqueVisitors(shortUrl, start, end, union.estimate());
+    }
+
+    /**
+     * Writes the sketches that changed since they were last written, and drops sketches of past days
+     * that are written. Sketches that fail to be written are retried on the next flush; a sketch that
+     * ends up in two rows after a partially failed batch is harmless, since merging is idempotent.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.unique.flush-interval-ms:60000}")
+    public void flush() {
+        writeLock.lock();
+        try {
+            long today = today();
+            List<Map.Entry<Window, Sketch>> inserted = new ArrayList<>();
+            List<VisitorSketch> inserts = new ArrayList<>();
+            List<Map.Entry<Window, Sketch>> updated = new ArrayList<>();
+            List<VisitorSketch> updates = new ArrayList<>();
+            for (Map.Entry<Window, Sketch> entry : sketches.entrySet()) {
+                Window window = entry.getKey();
+                Sketch sketch = entry.getValue();
+                if (!sketch.dirty) {
+                    // Past days are no longer recorded to once a whole flush interval went by without changes
+                    if (window.day < today && sketch.persisted) {
+                        sketches.remove(window, sketch);
+                    }
+                    continue;
+                }
+                // Cleared before serializing, so that a visit recorded meanwhile is written next time
+                sketch.dirty = false;
+                VisitorSketch row = new VisitorSketch(window.shortUrl, Timestamp.from(startOf(window.day)), nodeId,
+                        sketch.hyperLogLog.toBytes());
+                (sketch.persisted ? updated : inserted).add(entry);
+                (sketch.persisted ? updates : inserts).add(row);
+            }
+            write(inserted, inserts, visitorSketchJdbcRepository::insertAll);
+            write(updated, updates, visitorSketchJdbcRepository::updateAll);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the sketches that are older than the retention.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.purge-interval-ms:3600000}")
+    public void purge() {
+        try {
+            visitorSketchJdbcRepository.deleteOlderThan(clock.instant().minus(retention));
+        } catch (RuntimeException e) {
+            log.warn("Failed to purge visitor sketches, will retry", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private void write(List<Map.Entry<Window, Sketch>> entries, List<VisitorSketch> rows,
+                       Consumer<List<VisitorSketch>> statement) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            statement.accept(rows);
+            for (Map.Entry<Window, Sketch> entry : entries) {
+                entry.getValue().persisted = true;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} visitor sketches, will retry", rows.size(), e);
+            for (Map.Entry<Window, Sketch> entry : entries) {
+                entry.getValue().dirty = true;
+            }
+        }
+    }
+
+    private long today() {
+        return Math.floorDiv(clock.millis(), MILLIS_PER_DAY);
+    }
+
+    private static Instant startOf(long epochDay) {
+        return Instant.ofEpochMilli(epochDay * MILLIS_PER_DAY);
+    }
+
+    private record Window(String shortUrl, long day) {
+    }
+
+    private static final class Sketch {
+
+        final HyperLogLog hyperLogLog;
+        volatile boolean dirty;
+        // Only accessed by flushes, which hold the write lock
+        boolean persisted;
+
+        Sketch(HyperLogLog hyperLogLog) {
+            this.hyperLogLog = hyperLogLog;
+        }
+    }
+}
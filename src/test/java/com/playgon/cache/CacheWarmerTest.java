@@ -0,0 +1,130 @@
+package com.playgon.cache;
+
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CacheWarmerTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-06T10:00:00Z");
+
+    @Mock
+    private UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShortUrlCache shortUrlCache;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        shortUrlCache = new ShortUrlCache(100, Duration.ofHours(1), Duration.ofSeconds(30), meterRegistry);
+    }
+
+    private CacheWarmer newWarmer(int size, Duration recentWindow) {
+        return new CacheWarmer(urlMappingsJdbcRepository, shortUrlCache, true, size, 2, recentWindow, 100,
+                meterRegistry, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubMostAccessed(String... shortUrls) {
+        doAnswer(invocation -> {
+            BiConsumer<String, String> consumer = invocation.getArgument(2);
+            for (String shortUrl : shortUrls) {
+                consumer.accept(shortUrl, "https://example.com/" + shortUrl);
+            }
+            return null;
+        }).when(urlMappingsJdbcRepository).forEachMostAccessed(anyInt(), eq(2), any(BiConsumer.class));
+    }
+
+    @Test
+    public void testHealth_OutOfServiceUntilWarmed() {
+        stubMostAccessed("a", "b", "c");
+        CacheWarmer cacheWarmer = newWarmer(10, Duration.ZERO);
+
+        assertEquals(Status.OUT_OF_SERVICE, cacheWarmer.health().getStatus());
+
+        cacheWarmer.warm();
+
+        Health health = cacheWarmer.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(3L, health.getDetails().get("loaded"));
+        assertEquals(Optional.of("https://example.com/b"), shortUrlCache.getIfPresent("b"));
+        assertEquals(3.0, meterRegistry.get("shortener.cache.warmup.loaded").gauge().value());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWarm_SizeIsCappedByCacheSize() {
+        CacheWarmer cacheWarmer = new CacheWarmer(urlMappingsJdbcRepository, shortUrlCache, true, 1_000, 2,
+                Duration.ZERO, 100, meterRegistry, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        cacheWarmer.warm();
+
+        verify(urlMappingsJdbcRepository).forEachMostAccessed(eq(100), eq(2), any(BiConsumer.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWarm_RecentClicksFirstThenAccessCount() {
+        doAnswer(invocation -> {
+            BiConsumer<String, String> consumer = invocation.getArgument(2);
+            consumer.accept("recent", "https://example.com/recent");
+            return null;
+        }).when(urlMappingsJdbcRepository).forEachMostClickedSince(eq(NOW.minus(Duration.ofHours(24))), eq(2),
+                any(BiConsumer.class));
+        stubMostAccessed("recent", "popular", "other");
+        CacheWarmer cacheWarmer = newWarmer(2, Duration.ofHours(24));
+
+        cacheWarmer.warm();
+
+        assertEquals(2L, cacheWarmer.health().getDetails().get("loaded"));
+        assertEquals(Optional.of("https://example.com/popular"), shortUrlCache.getIfPresent("popular"));
+        assertNull(shortUrlCache.getIfPresent("other"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWarm_FailureDoesNotBlockReadiness() {
+        doThrow(new DataAccessResourceFailureException("down"))
+                .when(urlMappingsJdbcRepository).forEachMostAccessed(anyInt(), anyInt(), any(BiConsumer.class));
+        CacheWarmer cacheWarmer = newWarmer(10, Duration.ZERO);
+
+        cacheWarmer.warm();
+
+        Health health = cacheWarmer.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(0L, health.getDetails().get("loaded"));
+    }
+
+    @Test
+    public void testDisabled_ReportsUpWithoutLoading() {
+        CacheWarmer cacheWarmer = new CacheWarmer(urlMappingsJdbcRepository, shortUrlCache, false, 10, 2,
+                Duration.ZERO, 100, meterRegistry, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        cacheWarmer.start();
+
+        assertEquals(Status.UP, cacheWarmer.health().getStatus());
+        verifyNoInteractions(urlMappingsJdbcRepository);
+    }
+}
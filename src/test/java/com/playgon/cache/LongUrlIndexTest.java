@@ -0,0 +1,71 @@
+package com.playgon.cache;
+
+import com.playgon.model.ShortUrlMapping;
+import com.playgon.repository.UrlMappingsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class LongUrlIndexTest {
+
+    private static final String A = "https://a.example.com";
+    private static final String B = "https://b.example.com";
+
+    @Mock
+    private UrlMappingsRepository urlMappingsRepository;
+
+    private LongUrlIndex longUrlIndex;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        longUrlIndex = new LongUrlIndex(urlMappingsRepository, true, 100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testHash_IsStableAndDistinguishesUrls() {
+        assertEquals(LongUrlIndex.hash(A), LongUrlIndex.hash(A));
+        assertNotEquals(LongUrlIndex.hash(A), LongUrlIndex.hash(B));
+    }
+
+    @Test
+    public void testFindAll_QueriesOnlyUrlsNotSeenRecently() {
+        longUrlIndex.put(LongUrlIndex.hash(A), "aaa");
+        when(urlMappingsRepository.findByLongUrlHashIn(List.of(LongUrlIndex.hash(B))))
+                .thenReturn(List.of(new ShortUrlMapping("bbb", B), new ShortUrlMapping("bbb2", B)));
+
+        Map<String, String> found = longUrlIndex.findAll(List.of(A, B), new long[]{LongUrlIndex.hash(A), LongUrlIndex.hash(B)});
+
+        // The oldest row of a URL wins
+        assertEquals(Map.of(A, "aaa", B, "bbb"), found);
+    }
+
+    @Test
+    public void testFind_IgnoresRowsOfOtherUrlsWithTheSameHash() {
+        when(urlMappingsRepository.findByLongUrlHashIn(anyList())).thenReturn(List.of(new ShortUrlMapping("bbb", B)));
+
+        assertEquals(Optional.empty(), longUrlIndex.find(A, LongUrlIndex.hash(A)));
+    }
+
+    @Test
+    public void testFind_RemembersUrlsFoundInDatabase() {
+        when(urlMappingsRepository.findByLongUrlHashIn(anyList())).thenReturn(List.of(new ShortUrlMapping("aaa", A)));
+
+        assertEquals(Optional.of("aaa"), longUrlIndex.find(A, LongUrlIndex.hash(A)));
+        assertEquals(Optional.of("aaa"), longUrlIndex.find(A, LongUrlIndex.hash(A)));
+
+        verify(urlMappingsRepository, times(1)).findByLongUrlHashIn(anyList());
+    }
+}
@@ -0,0 +1,209 @@
+package com.playgon.cache;
+
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import com.playgon.repository.UrlMappingsJdbcRepository.MappingRowConsumer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class MappingSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+
+    private final List<Row> rows = new ArrayList<>();
+    private final List<MappingSnapshot> snapshots = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(urlMappingsJdbcRepository.shardCount()).thenReturn(1);
+        doAnswer(invocation -> {
+            long afterId = invocation.getArgument(1);
+            int limit = invocation.getArgument(2);
+            MappingRowConsumer consumer = invocation.getArgument(3);
+            rows.stream()
+                    .filter(row -> row.id > afterId)
+                    .sorted((a, b) -> Long.compare(a.id, b.id))
+                    .limit(limit)
+                    .forEach(row -> consumer.accept(row.id, row.shortUrl, row.longUrl));
+            return null;
+        }).when(urlMappingsJdbcRepository).forEachMappingAfter(anyInt(), anyLong(), anyInt(), any(MappingRowConsumer.class));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        snapshots.forEach(MappingSnapshot::close);
+    }
+
+    private MappingSnapshot open(int initialCapacity, int segmentBits) {
+        MappingSnapshot snapshot = new MappingSnapshot(urlMappingsJdbcRepository, true, false, directory,
+                initialCapacity, 3, 2, new SimpleMeterRegistry(), segmentBits);
+        snapshot.open();
+        snapshots.add(snapshot);
+        return snapshot;
+    }
+
+    private void reopen(MappingSnapshot snapshot) {
+        snapshot.close();
+        snapshots.remove(snapshot);
+    }
+
+    private void addRows(int from, int to) {
+        for (int i = from; i < to; i++) {
+            rows.add(new Row(i, "code" + i, "https://example.com/" + i));
+        }
+    }
+
+    @Test
+    public void testRefresh_ReadsAllPagesAndFindsCodes() {
+        addRows(1, 11);
+        MappingSnapshot snapshot = open(1024, 30);
+
+        snapshot.refresh();
+
+        assertEquals(10, snapshot.size());
+        assertEquals(Optional.of("https://example.com/7"), snapshot.find("code7"));
+        assertEquals(Optional.empty(), snapshot.find("unknown"));
+        // Four pages of three rows, the last one partial
+        verify(urlMappingsJdbcRepository, times(4)).forEachMappingAfter(anyInt(), anyLong(), eq(3), any(MappingRowConsumer.class));
+    }
+
+    @Test
+    public void testRefresh_RereadsOverlapAndSkipsUnchangedCodes() {
+        addRows(1, 6);
+        MappingSnapshot snapshot = open(1024, 30);
+        snapshot.refresh();
+        long size = snapshot.size();
+
+        rows.set(3, new Row(4, "code4", "https://example.com/changed"));
+        rows.add(new Row(6, "code6", "https://example.com/6"));
+        snapshot.refresh();
+
+        // Once as the second page of the first refresh, once as the watermark 5 minus the overlap of 2
+        verify(urlMappingsJdbcRepository, times(2)).forEachMappingAfter(eq(0), eq(3L), eq(3), any(MappingRowConsumer.class));
+        assertEquals(size + 1, snapshot.size());
+        assertEquals(Optional.of("https://example.com/changed"), snapshot.find("code4"));
+    }
+
+    @Test
+    public void testOpen_ServesPersistedCodesWithoutDatabase() {
+        addRows(1, 11);
+        MappingSnapshot snapshot = open(1024, 30);
+        snapshot.refresh();
+        reopen(snapshot);
+
+        MappingSnapshot reopened = open(1024, 30);
+
+        assertEquals(10, reopened.size());
+        assertEquals(Optional.of("https://example.com/3"), reopened.find("code3"));
+    }
+
+    @Test
+    public void testIndexGrowsBeyondInitialCapacity() {
+        addRows(1, 501);
+        MappingSnapshot snapshot = open(16, 30);
+
+        snapshot.refresh();
+
+        assertEquals(500, snapshot.size());
+        for (int i = 1; i < 501; i++) {
+            assertEquals(Optional.of("https://example.com/" + i), snapshot.find("code" + i));
+        }
+    }
+
+    @Test
+    public void testRecordsDoNotStraddleSegments() {
+        addRows(1, 101);
+        MappingSnapshot snapshot = open(16, 8);
+        snapshot.refresh();
+        reopen(snapshot);
+        directory.resolve(MappingSnapshot.INDEX_FILE).toFile().delete();
+
+        // The index is rebuilt by scanning the log across the padded segment ends
+        MappingSnapshot reopened = open(16, 8);
+
+        assertEquals(100, reopened.size());
+        for (int i = 1; i < 101; i++) {
+            assertEquals(Optional.of("https://example.com/" + i), reopened.find("code" + i));
+        }
+    }
+
+    @Test
+    public void testOpen_RebuildsIndexNotMatchingTheLog() throws Exception {
+        addRows(1, 6);
+        MappingSnapshot snapshot = open(1024, 30);
+        snapshot.refresh();
+        reopen(snapshot);
+        Files.write(directory.resolve(MappingSnapshot.INDEX_FILE), new byte[64]);
+
+        MappingSnapshot reopened = open(1024, 30);
+
+        assertEquals(5, reopened.size());
+        assertEquals(Optional.of("https://example.com/5"), reopened.find("code5"));
+    }
+
+    @Test
+    public void testOpen_SecondInstanceOnSameDirectoryStaysClosed() {
+        addRows(1, 3);
+        MappingSnapshot snapshot = open(1024, 30);
+        snapshot.refresh();
+
+        MappingSnapshot second = open(1024, 30);
+
+        assertEquals(Optional.empty(), second.find("code1"));
+        assertEquals(Optional.of("https://example.com/1"), snapshot.find("code1"));
+    }
+
+    @Test
+    public void testDisabled_FindsNothing() {
+        addRows(1, 3);
+        MappingSnapshot snapshot = new MappingSnapshot(urlMappingsJdbcRepository, false, true, directory, 1024, 3, 2,
+                new SimpleMeterRegistry(), 30);
+        snapshot.open();
+
+        snapshot.refresh();
+
+        assertFalse(snapshot.isPrimary());
+        assertEquals(Optional.empty(), snapshot.find("code1"));
+        assertFalse(Files.exists(directory.resolve(MappingSnapshot.DATA_FILE)));
+        verifyNoInteractions(urlMappingsJdbcRepository);
+    }
+
+    @Test
+    public void testPrimary_OnlyOnceOpen() {
+        MappingSnapshot snapshot = new MappingSnapshot(urlMappingsJdbcRepository, true, true, directory, 1024, 3, 2,
+                new SimpleMeterRegistry(), 30);
+        assertFalse(snapshot.isPrimary());
+
+        snapshot.open();
+        snapshots.add(snapshot);
+
+        assertTrue(snapshot.isPrimary());
+    }
+
+    private record Row(long id, String shortUrl, String longUrl) {
+    }
+}
@@ -0,0 +1,118 @@
+package com.playgon.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OffHeapUrlIndexTest {
+
+    @Test
+    public void testPutAndGet() {
+        OffHeapUrlIndex index = new OffHeapUrlIndex(100, 1024);
+
+        assertTrue(index.put("abc123", "https://example.com/a"));
+        assertTrue(index.put("Zz9", "https://example.com/ü"));
+
+        assertEquals("https://example.com/a", index.get("abc123"));
+        assertEquals("https://example.com/ü", index.get("Zz9"));
+        assertNull(index.get("abc124"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testKey_KeepsLeadingZerosApart() {
+        OffHeapUrlIndex index = new OffHeapUrlIndex(100, 1024);
+        assertNotEquals(OffHeapUrlIndex.key("0a"), OffHeapUrlIndex.key("a"));
+
+        index.put("a", "https://example.com/a");
+        index.put("0a", "https://example.com/0a");
+
+        assertEquals("https://example.com/a", index.get("a"));
+        assertEquals("https://example.com/0a", index.get("0a"));
+    }
+
+    @Test
+    public void testPut_RejectsCodesThatCannotBeKeyed() {
+        OffHeapUrlIndex index = new OffHeapUrlIndex(100, 1024);
+
+        assertFalse(index.put("abc-12", "https://example.com"));
+        assertFalse(index.put("zzzzzzzzzzz", "https://example.com"));
+        assertFalse(index.put("", "https://example.com"));
+        assertNull(index.get("abc-12"));
+    }
+
+    @Test
+    public void testPut_ReplacesAndRemoveLeavesOthersReachable() {
+        OffHeapUrlIndex index = new OffHeapUrlIndex(100, 1024);
+        for (int i = 0; i < 50; i++) {
+            index.put("code" + i, "https://example.com/" + i);
+        }
+
+        index.put("code7", "https://example.com/changed");
+        assertTrue(index.remove("code8"));
+        assertFalse(index.remove("code8"));
+
+        assertEquals("https://example.com/changed", index.get("code7"));
+        assertNull(index.get("code8"));
+        assertEquals(49, index.size());
+        for (int i = 9; i < 50; i++) {
+            assertEquals("https://example.com/" + i, index.get("code" + i));
+        }
+    }
+
+    @Test
+    public void testPut_RefusesOnceFullAndAllocatesSlabsAsNeeded() {
+        OffHeapUrlIndex index = new OffHeapUrlIndex(10, 64);
+        int stored = 0;
+        for (int i = 0; i < 100; i++) {
+            if (index.put("code" + i, "https://example.com/" + i)) {
+                stored++;
+            }
+        }
+
+        // 16 slots, at most 70% used
+        assertEquals(11, stored);
+        assertEquals(16 * 16 + 64 * 6, index.memoryUsed());
+        assertTrue(index.put("code0", "https://example.com/still-replaceable"));
+    }
+
+    @Test
+    public void testConcurrentReadersSeeCompleteEntries() throws Exception {
+        OffHeapUrlIndex index = new OffHeapUrlIndex(20_000, 4096);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    index.put("w" + i, "https://example.com/" + i);
+                }
+            });
+            Future<?>[] readers = new Future<?>[3];
+            for (int r = 0; r < readers.length; r++) {
+                readers[r] = executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        String longUrl = index.get("w" + i);
+                        if (longUrl != null && !longUrl.equals("https://example.com/" + i)) {
+                            throw new AssertionError("Torn entry for w" + i + ": " + longUrl);
+                        }
+                    }
+                });
+            }
+            writer.get(10, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(10_000, index.size());
+    }
+}
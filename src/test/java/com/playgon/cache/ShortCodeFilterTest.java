@@ -0,0 +1,129 @@
+package com.playgon.cache;
+
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ShortCodeFilterTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-06T10:00:00Z");
+
+    @Mock
+    private UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShortCodeFilter shortCodeFilter;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(urlMappingsJdbcRepository.shardCount()).thenReturn(1);
+        meterRegistry = new SimpleMeterRegistry();
+        shortCodeFilter = new ShortCodeFilter(urlMappingsJdbcRepository, true, 10_000, 0.01, 2, Duration.ofMinutes(1),
+                meterRegistry, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    public void testMightContain_LetsEverythingThroughUntilBuilt() {
+        assertTrue(shortCodeFilter.mightContain("random"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBuild_ReadsAllPagesAndRejectsUnknownCodes() {
+        doAnswer(invocation -> {
+            ObjLongConsumer<String> consumer = invocation.getArgument(3);
+            consumer.accept("a", 1);
+            consumer.accept("b", 2);
+            return null;
+        }).when(urlMappingsJdbcRepository).forEachShortUrlAfter(eq(0), eq(Long.MIN_VALUE), eq(2), any(ObjLongConsumer.class));
+        doAnswer(invocation -> {
+            ObjLongConsumer<String> consumer = invocation.getArgument(3);
+            consumer.accept("c", 3);
+            return null;
+        }).when(urlMappingsJdbcRepository).forEachShortUrlAfter(eq(0), eq(2L), eq(2), any(ObjLongConsumer.class));
+
+        shortCodeFilter.build();
+
+        assertTrue(shortCodeFilter.mightContain("a"));
+        assertTrue(shortCodeFilter.mightContain("b"));
+        assertTrue(shortCodeFilter.mightContain("c"));
+        assertFalse(shortCodeFilter.mightContain("random"));
+        verify(urlMappingsJdbcRepository, times(2)).forEachShortUrlAfter(anyInt(), anyLong(), anyInt(), any(ObjLongConsumer.class));
+        assertEquals(1.0, meterRegistry.get("shortener.bloom.rejected").counter().count());
+    }
+
+    @Test
+    public void testPut_AddsCreatedCodes() {
+        shortCodeFilter.build();
+
+        shortCodeFilter.put("created");
+
+        assertTrue(shortCodeFilter.mightContain("created"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRefresh_AddsCodesCreatedOnOtherNodes() {
+        shortCodeFilter.build();
+        doAnswer(invocation -> {
+            Consumer<String> consumer = invocation.getArgument(1);
+            consumer.accept("remote");
+            return null;
+        }).when(urlMappingsJdbcRepository).forEachShortUrlCreatedSince(eq(NOW.minus(Duration.ofMinutes(1))), any(Consumer.class));
+
+        shortCodeFilter.refresh();
+
+        assertTrue(shortCodeFilter.mightContain("remote"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBuild_FailureKeepsLettingEverythingThrough() {
+        doThrow(new IllegalStateException("database down"))
+                .when(urlMappingsJdbcRepository).forEachShortUrlAfter(anyInt(), anyLong(), anyInt(), any(ObjLongConsumer.class));
+
+        shortCodeFilter.build();
+
+        assertTrue(shortCodeFilter.mightContain("random"));
+    }
+
+    @Test
+    public void testExpectedFpp_StaysBelowConfiguredRateAtExpectedInsertions() {
+        shortCodeFilter.build();
+        for (int i = 0; i < 10_000; i++) {
+            shortCodeFilter.put("code" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (shortCodeFilter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(shortCodeFilter.expectedFpp() < 0.015, "expected " + shortCodeFilter.expectedFpp());
+        assertTrue(falsePositives < 200, "observed " + falsePositives);
+        assertEquals(shortCodeFilter.expectedFpp(), meterRegistry.get("shortener.bloom.false.positive.rate")
+                .tag("type", "expected").gauge().value());
+    }
+}
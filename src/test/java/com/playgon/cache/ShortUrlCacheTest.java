@@ -0,0 +1,158 @@
+package com.playgon.cache;
+
+import com.playgon.model.ResolvedUrl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShortUrlCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShortUrlCache shortUrlCache;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        shortUrlCache = new ShortUrlCache(2, Duration.ofMinutes(1), Duration.ofSeconds(30), meterRegistry);
+    }
+
+    @Test
+    public void testGet_LoadsOnceAndCountsHitsAndMisses() {
+        AtomicInteger loads = new AtomicInteger();
+
+        shortUrlCache.get("abc123", code -> {
+            loads.incrementAndGet();
+            return Optional.of(ResolvedUrl.permanent("https://example.com"));
+        });
+        Optional<String> result = shortUrlCache.get("abc123", code -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        assertEquals(Optional.of("https://example.com"), result);
+        assertEquals(1, loads.get());
+        assertEquals(1, shortUrlCache.stats().hitCount());
+        assertEquals(1, shortUrlCache.stats().missCount());
+    }
+
+    @Test
+    public void testGet_CachesNegativeLookups() {
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            Optional<String> result = shortUrlCache.get("missing", code -> {
+                loads.incrementAndGet();
+                return Optional.empty();
+            });
+            assertTrue(result.isEmpty());
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testGet_MissDoesNotReplaceCodeCreatedDuringTheLookup() {
+        Optional<String> result = shortUrlCache.get("abc123", code -> {
+            // Created and cached by another request while this lookup read a lagging replica
+            shortUrlCache.put("abc123", "https://example.com");
+            return Optional.empty();
+        });
+
+        assertTrue(result.isEmpty());
+        assertEquals(Optional.of("https://example.com"), shortUrlCache.getIfPresent("abc123"));
+    }
+
+    @Test
+    public void testPut_EvictsBeyondMaximumSize() {
+        shortUrlCache.put("a", "https://a.example.com");
+        shortUrlCache.put("b", "https://b.example.com");
+        shortUrlCache.put("c", "https://c.example.com");
+        shortUrlCache.cleanUp();
+
+        assertEquals(2, shortUrlCache.size());
+        assertEquals(1, shortUrlCache.stats().evictionCount());
+    }
+
+    @Test
+    public void testMetrics_AreRegistered() {
+        shortUrlCache.get("abc123", code -> Optional.empty());
+
+        assertEquals(1.0, meterRegistry.get("cache.gets")
+                .tag("cache", ShortUrlCache.CACHE_NAME)
+                .tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    public void testOffHeap_StoresResolvedUrlsOutsideTheOnHeapCache() {
+        ShortUrlCache offHeapCache = new ShortUrlCache(2, Duration.ofMinutes(1), Duration.ofSeconds(30),
+                new OffHeapUrlIndex(100, 1024), meterRegistry);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            offHeapCache.put("code" + i, "https://example.com/" + i);
+        }
+        Optional<String> result = offHeapCache.get("code0", code -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        // Not limited by the on-heap maximum size of 2
+        assertEquals(Optional.of("https://example.com/0"), result);
+        assertEquals(0, loads.get());
+        assertEquals(3, offHeapCache.size());
+        assertEquals(3.0, meterRegistry.get("shortener.cache.offheap.entries").gauge().value());
+    }
+
+    @Test
+    public void testOffHeap_KeepsNegativeAndUnkeyableEntriesOnHeap() {
+        ShortUrlCache offHeapCache = new ShortUrlCache(10, Duration.ofMinutes(1), Duration.ofSeconds(30),
+                new OffHeapUrlIndex(100, 1024), meterRegistry);
+
+        offHeapCache.putLookup("missing", Optional.empty());
+        offHeapCache.put("not-base62", "https://example.com");
+
+        assertEquals(Optional.empty(), offHeapCache.getIfPresent("missing"));
+        assertEquals(Optional.of("https://example.com"), offHeapCache.getIfPresent("not-base62"));
+
+        offHeapCache.put("missing", "https://example.com/created");
+        offHeapCache.invalidate("not-base62");
+
+        assertEquals(Optional.of("https://example.com/created"), offHeapCache.getIfPresent("missing"));
+        assertNull(offHeapCache.getIfPresent("not-base62"));
+    }
+
+    @Test
+    public void testPut_KeepsExpiringLinksOnHeapUntilTheyExpire() {
+        AtomicLong nanos = new AtomicLong();
+        ShortUrlCache offHeapCache = new ShortUrlCache(10, Duration.ofMinutes(1), Duration.ofSeconds(30),
+                new OffHeapUrlIndex(100, 1024), nanos::get, meterRegistry);
+
+        offHeapCache.put("abc123", "https://example.com", new Timestamp(System.currentTimeMillis() + 10_000));
+
+        assertEquals(Optional.of("https://example.com"), offHeapCache.getIfPresent("abc123"));
+        assertEquals(0.0, meterRegistry.get("shortener.cache.offheap.entries").gauge().value());
+
+        nanos.addAndGet(Duration.ofSeconds(11).toNanos());
+
+        assertNull(offHeapCache.getIfPresent("abc123"));
+    }
+
+    @Test
+    public void testPutLookup_CachesExpiredLinksAsUnknown() {
+        shortUrlCache.putLookup("abc123", Optional.of(
+                new ResolvedUrl("https://example.com", new Timestamp(System.currentTimeMillis() - 1000))));
+
+        assertEquals(Optional.empty(), shortUrlCache.getIfPresent("abc123"));
+    }
+}
@@ -0,0 +1,21 @@
+package com.playgon.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShortCodeConfigTest {
+
+    @Test
+    public void testParseSecret_AcceptsSignedLong() {
+        assertEquals(-8_123_456_789L, ShortCodeConfig.parseSecret(" -8123456789 "));
+    }
+
+    @Test
+    public void testParseSecret_RejectsMissingOrMalformedSecret() {
+        assertThrows(IllegalStateException.class, () -> ShortCodeConfig.parseSecret(""));
+        assertThrows(IllegalStateException.class, () -> ShortCodeConfig.parseSecret(null));
+        assertThrows(IllegalStateException.class, () -> ShortCodeConfig.parseSecret("not-a-number"));
+    }
+}
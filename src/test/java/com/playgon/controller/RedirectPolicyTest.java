@@ -0,0 +1,64 @@
+package com.playgon.controller;
+
+import com.playgon.model.ResolvedUrl;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RedirectPolicyTest {
+
+    @Test
+    public void testPermanentRedirect_IsCachedForMaxAge() {
+        RedirectPolicy policy = new RedirectPolicy(301, Duration.ofDays(1));
+
+        assertTrue(policy.isPermanent());
+        assertEquals(HttpStatus.MOVED_PERMANENTLY, policy.status());
+        assertEquals("max-age=86400, public", policy.cacheControl().getHeaderValue());
+    }
+
+    @Test
+    public void testTemporaryRedirect_IsRevalidated() {
+        RedirectPolicy policy = new RedirectPolicy(307, Duration.ofDays(1));
+
+        assertFalse(policy.isPermanent());
+        assertEquals("no-cache", policy.cacheControl().getHeaderValue());
+    }
+
+    @Test
+    public void testPermanentRedirect_OfExpiringLinkIsNotCachedPastExpiry() {
+        RedirectPolicy policy = new RedirectPolicy(301, Duration.ofDays(1));
+        long now = 1_700_000_000_000L;
+
+        assertEquals("max-age=600, public", policy.cacheControl(
+                new ResolvedUrl("https://example.com", new Timestamp(now + 600_500)), now).getHeaderValue());
+        assertEquals("max-age=86400, public", policy.cacheControl(
+                new ResolvedUrl("https://example.com", new Timestamp(now + 172_800_000)), now).getHeaderValue());
+        assertEquals("no-cache", policy.cacheControl(
+                new ResolvedUrl("https://example.com", new Timestamp(now + 500)), now).getHeaderValue());
+        assertEquals("max-age=86400, public", policy.cacheControl(ResolvedUrl.permanent("https://example.com"), now)
+                .getHeaderValue());
+    }
+
+    @Test
+    public void testEtag_ChangesWithTargetAndStatus() {
+        RedirectPolicy temporary = new RedirectPolicy(302, Duration.ofHours(1));
+        RedirectPolicy permanent = new RedirectPolicy(308, Duration.ofHours(1));
+
+        assertEquals(temporary.etag("https://example.com"), temporary.etag("https://example.com"));
+        assertNotEquals(temporary.etag("https://example.com"), temporary.etag("https://example.org"));
+        assertNotEquals(temporary.etag("https://example.com"), permanent.etag("https://example.com"));
+    }
+
+    @Test
+    public void testConstructor_RejectsOtherStatuses() {
+        assertThrows(IllegalArgumentException.class, () -> new RedirectPolicy(303, Duration.ofHours(1)));
+    }
+}
@@ -1,8 +1,16 @@
 package com.playgon.controller;
 
 import com.playgon.config.SecurityConfig;
+import com.playgon.model.ClickResolution;
+import com.playgon.model.ClickTimeBucket;
+import com.playgon.model.TopUrl;
+import com.playgon.model.UniqueVisitors;
 import com.playgon.model.UrlMappings;
 import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.stats.AccessCountAggregator;
+import com.playgon.stats.ClickAnalytics;
+import com.playgon.stats.TopUrlsLeaderboard;
+import com.playgon.stats.UniqueVisitorCounter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockitoAnnotations;
@@ -14,10 +22,15 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -33,6 +46,18 @@ public class StatisticsControllerTest {
     @MockBean
     private UrlMappingsRepository urlMappingsRepository;
 
+    @MockBean
+    private AccessCountAggregator accessCountAggregator;
+
+    @MockBean
+    private TopUrlsLeaderboard topUrlsLeaderboard;
+
+    @MockBean
+    private ClickAnalytics clickAnalytics;
+
+    @MockBean
+    private UniqueVisitorCounter uniqueVisitorCounter;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -40,26 +65,29 @@ public class StatisticsControllerTest {
 
     @Test
     void testGetTopUrls() throws Exception {
-        UrlMappings url1 = new UrlMappings();
-        url1.setShortUrl("short1");
-        url1.setLongUrl("https://example1.com");
-        url1.setAccessCount(100);
-
-        UrlMappings url2 = new UrlMappings();
-        url2.setShortUrl("short2");
-        url2.setLongUrl("https://example2.com");
-        url2.setAccessCount(200);
+        TopUrl url1 = new TopUrl("short1", "https://example1.com", 200);
+        TopUrl url2 = new TopUrl("short2", "https://example2.com", 100);
 
-        when(urlMappingsRepository.findTop10ByOrderByAccessCountDesc()).thenReturn(Arrays.asList(url1, url2));
+        when(topUrlsLeaderboard.top(10)).thenReturn(Arrays.asList(url1, url2));
 
         mockMvc.perform(get("/api/stats/top"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].shortUrl", is("short1")))
                 .andExpect(jsonPath("$[0].longUrl", is("https://example1.com")))
-                .andExpect(jsonPath("$[0].accessCount", is(100)))
+                .andExpect(jsonPath("$[0].accessCount", is(200)))
                 .andExpect(jsonPath("$[1].shortUrl", is("short2")))
                 .andExpect(jsonPath("$[1].longUrl", is("https://example2.com")))
-                .andExpect(jsonPath("$[1].accessCount", is(200)));
+                .andExpect(jsonPath("$[1].accessCount", is(100)));
+        verify(urlMappingsRepository, never()).findTop10ByOrderByAccessCountDesc();
+    }
+
+    @Test
+    void testGetTopUrls_WithN() throws Exception {
+        when(topUrlsLeaderboard.top(100)).thenReturn(List.of(new TopUrl("short1", "https://example1.com", 200)));
+
+        mockMvc.perform(get("/api/stats/top").param("n", "100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].shortUrl", is("short1")));
     }
 
     @Test
@@ -76,6 +104,21 @@ public class StatisticsControllerTest {
                 .andExpect(jsonPath("$", is(100)));
     }
 
+    @Test
+    void testGetUrlAccessCount_IncludesPendingAccesses() throws Exception {
+        UrlMappings urlMapping = new UrlMappings();
+        urlMapping.setShortUrl("short1");
+        urlMapping.setLongUrl("https://example1.com");
+        urlMapping.setAccessCount(100);
+
+        when(urlMappingsRepository.findByShortUrl("short1")).thenReturn(Optional.of(urlMapping));
+        when(accessCountAggregator.pendingCount("short1")).thenReturn(5L);
+
+        mockMvc.perform(get("/api/stats/count/short1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", is(105)));
+    }
+
     @Test
     void testGetUrlAccessCount_NotFound() throws Exception {
         when(urlMappingsRepository.findByShortUrl("nonexistent")).thenReturn(Optional.empty());
@@ -84,4 +127,50 @@ public class StatisticsControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$", is("URL not found")));
     }
+
+    @Test
+    void testGetClickSeries() throws Exception {
+        Instant from = Instant.parse("2024-05-06T00:00:00Z");
+        Instant to = Instant.parse("2024-05-13T00:00:00Z");
+        when(clickAnalytics.series("short1", ClickResolution.HOUR, from, to))
+                .thenReturn(List.of(new ClickTimeBucket(Instant.parse("2024-05-06T10:00:00Z"), 7)));
+
+        mockMvc.perform(get("/api/stats/clicks/short1")
+                        .param("resolution", "hour")
+                        .param("from", from.toString())
+                        .param("to", to.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].start", is("2024-05-06T10:00:00Z")))
+                .andExpect(jsonPath("$[0].clicks", is(7)));
+    }
+
+    @Test
+    void testGetClickSeries_UnknownResolution() throws Exception {
+        mockMvc.perform(get("/api/stats/clicks/short1").param("resolution", "day"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$", is("Unknown resolution: day")));
+    }
+
+    @Test
+    void testGetUniqueVisitors() throws Exception {
+        LocalDate from = LocalDate.parse("2024-05-06");
+        LocalDate to = LocalDate.parse("2024-05-13");
+        when(uniqueVisitorCounter.count("short1", from, to)).thenReturn(new UniqueVisitors("short1", from, to, 42));
+
+        mockMvc.perform(get("/api/stats/visitors/short1")
+                        .param("from", "2024-05-06")
+                        .param("to", "2024-05-13"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.from", is("2024-05-06")))
+                .andExpect(jsonPath("$.uniqueVisitors", is(42)));
+    }
+
+    @Test
+    void testGetUniqueVisitors_InvalidRange() throws Exception {
+        when(uniqueVisitorCounter.count("short1", null, null)).thenThrow(new IllegalArgumentException("from must be before to"));
+
+        mockMvc.perform(get("/api/stats/visitors/short1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$", is("from must be before to")));
+    }
 }
@@ -1,12 +1,14 @@
 package com.playgon.controller;
 
 import com.playgon.config.SecurityConfig;
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.model.ResolvedUrl;
 import com.playgon.model.UrlRequest;
+import com.playgon.ratelimit.RateLimitedOperation;
+import com.playgon.ratelimit.RateLimiter;
 import com.playgon.service.UrlShortenerService;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Bucket4j;
-import io.github.bucket4j.Refill;
+import com.playgon.stats.UniqueVisitorCounter;
+import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -23,17 +25,24 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
-import java.time.Duration;
+import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(controllers = UrlShortenerController.class)
-@Import(SecurityConfig.class) // Import the security configuration for the tests
+@WebMvcTest(controllers = UrlShortenerController.class, properties = "app.batch.max-size=3")
+@Import({SecurityConfig.class, RedirectPolicy.class}) // Import the security configuration for the tests
 @ActiveProfiles("test") // Use a test profile if needed
 public class UrlShortenerControllerTest {
 
@@ -47,14 +56,18 @@ public class UrlShortenerControllerTest {
     private String baseUrl;
 
     @MockBean
-    private Bucket bucket;
+    private RateLimiter rateLimiter;
+
+    @MockBean
+    private ShortenerMetrics metrics;
+
+    @MockBean
+    private UniqueVisitorCounter uniqueVisitorCounter;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        this.bucket = Bucket4j.builder()
-                .addLimit(Bandwidth.classic(10, Refill.greedy(10, Duration.ofMinutes(1))))
-                .build();
+        when(rateLimiter.tryConsume(any(), any(HttpServletRequest.class), anyLong())).thenReturn(true);
     }
 
     @Test
@@ -68,7 +81,7 @@ public class UrlShortenerControllerTest {
     public void testShortenUrl_Success() throws Exception {
         UrlRequest request = new UrlRequest();
         request.setLongUrl("https://example.com");
-        when(urlShortenerService.createShortUrl(anyString())).thenReturn("abc123");
+        when(urlShortenerService.createShortUrl(anyString(), any())).thenReturn("abc123");
 
         mockMvc.perform(MockMvcRequestBuilders.post("/shorten")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -86,21 +99,116 @@ public class UrlShortenerControllerTest {
                 .andExpect(jsonPath("$.shortUrl").value("Invalid URL format"));
     }
 
+    @Test
+    public void testShortenUrl_PastExpiry() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/shorten")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"longUrl\": \"https://example.com\", \"expiresAt\": \"2020-01-01T00:00:00Z\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.shortUrl").value("Invalid expiry"));
+        verify(urlShortenerService, never()).createShortUrl(anyString(), any());
+    }
+
+    @Test
+    public void testShortenBatch_JsonArray() throws Exception {
+        when(urlShortenerService.createShortUrls(List.of("https://a.example.com", "https://b.example.com")))
+                .thenReturn(List.of("abc123", "def456"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/shorten/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"longUrl\": \"https://a.example.com\"}, {\"longUrl\": \"invalid-url\"}, "
+                                + "{\"longUrl\": \"https://b.example.com\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].shortUrl").value("http://localhost/abc123"))
+                .andExpect(jsonPath("$[1].shortUrl").value("Invalid URL format"))
+                .andExpect(jsonPath("$[2].shortUrl").value("http://localhost/def456"));
+    }
+
+    @Test
+    public void testShortenBatch_RequestsBeyondMaxSizeAreRejected() throws Exception {
+        when(urlShortenerService.createShortUrls(anyList())).thenReturn(List.of("abc123", "def456", "ghi789"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/shorten/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"longUrl\": \"https://a.example.com\"}, {\"longUrl\": \"https://b.example.com\"}, "
+                                + "{\"longUrl\": \"https://c.example.com\"}, {\"longUrl\": \"https://d.example.com\"}, "
+                                + "{\"longUrl\": \"https://e.example.com\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[2].shortUrl").value("http://localhost/ghi789"))
+                .andExpect(jsonPath("$[3].shortUrl").value("Batch too large"))
+                .andExpect(jsonPath("$[4].shortUrl").value("Batch too large"));
+        verify(urlShortenerService).createShortUrls(
+                List.of("https://a.example.com", "https://b.example.com", "https://c.example.com"));
+    }
+
+    @Test
+    public void testShortenBatch_Ndjson() throws Exception {
+        when(urlShortenerService.createShortUrls(anyList())).thenReturn(List.of("abc123", "def456"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/shorten/batch")
+                        .contentType("application/x-ndjson")
+                        .content("{\"longUrl\": \"https://a.example.com\"}\n{\"longUrl\": \"https://b.example.com\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"shortUrl\":\"http://localhost/abc123\"}\n"
+                        + "{\"shortUrl\":\"http://localhost/def456\"}"));
+    }
+
     @Test
     public void testRedirectUrl_Success() throws Exception {
-        when(urlShortenerService.getOriginalUrl(anyString())).thenReturn("https://example.com");
+        when(urlShortenerService.resolveUrl(anyString())).thenReturn(ResolvedUrl.permanent("https://example.com"));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/abc123"))
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("https://example.com"));
+        verify(uniqueVisitorCounter).recordVisit(eq("abc123"), any(HttpServletRequest.class));
+    }
+
+    @Test
+    public void testRedirectUrl_TemporaryRedirectIsRevalidated() throws Exception {
+        when(urlShortenerService.resolveUrl(anyString())).thenReturn(ResolvedUrl.permanent("https://example.com"));
+
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/abc123"))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/abc123").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(header().doesNotExist("Location"));
+        verify(urlShortenerService, times(2)).resolveUrl("abc123");
+    }
+
+    @Test
+    public void testShortenUrl_TooManyRequests() throws Exception {
+        when(rateLimiter.tryConsume(eq(RateLimitedOperation.CREATE), any(HttpServletRequest.class), anyLong())).thenReturn(false);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/shorten")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"longUrl\": \"https://example.com\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.shortUrl").value("Too many requests"));
+    }
+
+    @Test
+    public void testRedirectUrl_TooManyRequests() throws Exception {
+        when(rateLimiter.tryConsume(eq(RateLimitedOperation.REDIRECT), any(HttpServletRequest.class), anyLong())).thenReturn(false);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/abc123"))
+                .andExpect(status().isTooManyRequests());
+        verify(metrics).recordRateLimited(RateLimitedOperation.REDIRECT);
     }
 
     @Test
     public void testRedirectUrl_NotFound() throws Exception {
-        when(urlShortenerService.getOriginalUrl(anyString())).thenReturn(null);
+        when(urlShortenerService.resolveUrl(anyString())).thenReturn(null);
 
         mockMvc.perform(MockMvcRequestBuilders.get("/abc123"))
                 .andExpect(status().isNotFound());
+        verify(metrics).recordNotFound();
+        verify(uniqueVisitorCounter, never()).recordVisit(anyString(), any(HttpServletRequest.class));
     }
 
 }
\ No newline at end of file
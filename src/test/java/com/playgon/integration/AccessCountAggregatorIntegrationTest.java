@@ -0,0 +1,48 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.model.UrlMappings;
+import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.stats.AccessCountAggregator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class)
+@ActiveProfiles("dev")
+public class AccessCountAggregatorIntegrationTest {
+
+    @Autowired
+    private UrlMappingsRepository urlMappingsRepository;
+
+    @Autowired
+    private AccessCountAggregator accessCountAggregator;
+
+    @AfterEach
+    void tearDown() {
+        urlMappingsRepository.deleteAll();
+    }
+
+    @Test
+    void testFlush_AppliesPendingCountsToDatabase() {
+        UrlMappings urlMapping = new UrlMappings();
+        urlMapping.setShortUrl("counted");
+        urlMapping.setLongUrl("https://example.com");
+        urlMapping.setAccessCount(10);
+        urlMapping.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        urlMappingsRepository.save(urlMapping);
+
+        for (int i = 0; i < 3; i++) {
+            accessCountAggregator.recordAccess("counted");
+        }
+        accessCountAggregator.flush();
+
+        assertEquals(13, urlMappingsRepository.findByShortUrl("counted").orElseThrow().getAccessCount());
+    }
+}
@@ -0,0 +1,89 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.model.ClickBucket;
+import com.playgon.model.ClickResolution;
+import com.playgon.model.UrlMappings;
+import com.playgon.repository.ClickBucketJdbcRepository;
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import com.playgon.repository.UrlMappingsRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.CompositeHealth;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class)
+@Transactional
+@ActiveProfiles("dev")
+public class CacheWarmerIntegrationTest {
+
+    // Far enough ahead that no other test writes clicks in the window
+    private static final Instant HOUR = Instant.parse("2100-05-06T10:00:00Z");
+
+    @Autowired
+    private UrlMappingsRepository urlMappingsRepository;
+
+    @Autowired
+    private UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+
+    @Autowired
+    private ClickBucketJdbcRepository clickBucketJdbcRepository;
+
+    @Autowired
+    private HealthEndpoint healthEndpoint;
+
+    @Test
+    void testForEachMostAccessed_StreamsInDescendingAccessCount() {
+        save("warm2", 2_000_000_002);
+        save("warm1", 2_000_000_001);
+        save("warm3", 2_000_000_003);
+
+        List<String> loaded = new ArrayList<>();
+        urlMappingsJdbcRepository.forEachMostAccessed(2, 1, (shortUrl, longUrl) -> loaded.add(shortUrl));
+
+        assertEquals(List.of("warm3", "warm2"), loaded);
+    }
+
+    @Test
+    void testForEachMostClickedSince_RanksByRecentHourClicks() {
+        save("clicked1", 0);
+        save("clicked2", 0);
+        clickBucketJdbcRepository.insertAll(List.of(
+                new ClickBucket("clicked1", ClickResolution.HOUR, Timestamp.from(HOUR), 5),
+                new ClickBucket("clicked2", ClickResolution.HOUR, Timestamp.from(HOUR), 4),
+                new ClickBucket("clicked2", ClickResolution.HOUR, Timestamp.from(HOUR.plusSeconds(3600)), 4),
+                new ClickBucket("clicked1", ClickResolution.HOUR, Timestamp.from(HOUR.minusSeconds(3600)), 100)));
+
+        List<String> loaded = new ArrayList<>();
+        urlMappingsJdbcRepository.forEachMostClickedSince(HOUR, 10, (shortUrl, longUrl) -> loaded.add(shortUrl));
+
+        assertEquals(List.of("clicked2", "clicked1"), loaded);
+    }
+
+    @Test
+    void testReadinessGroup_IncludesCacheWarmer() {
+        CompositeHealth readiness = (CompositeHealth) healthEndpoint.healthForPath("readiness");
+
+        assertTrue(readiness.getComponents().containsKey("cacheWarmer"));
+    }
+
+    private void save(String shortUrl, int accessCount) {
+        UrlMappings urlMapping = new UrlMappings();
+        urlMapping.setShortUrl(shortUrl);
+        urlMapping.setLongUrl("https://example.com/" + shortUrl);
+        urlMapping.setAccessCount(accessCount);
+        urlMapping.setCreatedAt(Timestamp.from(Instant.now()));
+        urlMappingsRepository.saveAndFlush(urlMapping);
+    }
+}
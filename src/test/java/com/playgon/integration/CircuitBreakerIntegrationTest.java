@@ -0,0 +1,82 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.cache.MappingSnapshot;
+import com.playgon.cache.ShortCodeFilter;
+import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.service.UrlShortenerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The database is reachable for the snapshot refresh, but every repository lookup fails
+@SpringBootTest(classes = PlaygonBackendApplication.class, properties = {
+        "app.snapshot.enabled=true",
+        "app.snapshot.directory=${java.io.tmpdir}/playgon-snapshot-circuit-breaker"})
+@AutoConfigureMockMvc
+@ActiveProfiles("dev")
+public class CircuitBreakerIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MappingSnapshot mappingSnapshot;
+
+    @Autowired
+    private ShortCodeFilter shortCodeFilter;
+
+    @Autowired
+    private UrlShortenerService urlShortenerService;
+
+    @MockBean
+    private UrlMappingsRepository urlMappingsRepository;
+
+    @Test
+    void testRedirect_DatabaseDownIsServedFromSnapshot() throws Exception {
+        jdbcTemplate.update("insert into url_mappings (id, short_url, long_url, created_at, access_count)"
+                + " values (next value for url_mappings_seq, 'cbsnap1', 'https://example.com/snapshot', current_timestamp, 0)");
+        mappingSnapshot.refresh();
+        shortCodeFilter.refresh();
+        when(urlMappingsRepository.findLongUrlByShortUrl(anyString()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+        when(urlMappingsRepository.findLongUrlByShortUrlOnPrimary(anyString()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        assertTrue(AopUtils.isAopProxy(urlShortenerService));
+        mockMvc.perform(get("/cbsnap1"))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Location", "https://example.com/snapshot"));
+    }
+
+    @Test
+    void testRedirect_DatabaseDownAndUnknownToSnapshotIsUnavailable() throws Exception {
+        jdbcTemplate.update("insert into url_mappings (id, short_url, long_url, created_at, access_count)"
+                + " values (next value for url_mappings_seq, 'cbnew01', 'https://example.com/new', current_timestamp, 0)");
+        shortCodeFilter.refresh();
+        when(urlMappingsRepository.findLongUrlByShortUrl(anyString()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+        when(urlMappingsRepository.findLongUrlByShortUrlOnPrimary(anyString()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        mockMvc.perform(get("/cbnew01"))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
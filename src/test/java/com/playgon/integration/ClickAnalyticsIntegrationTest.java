@@ -0,0 +1,60 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.model.ClickBucket;
+import com.playgon.model.ClickResolution;
+import com.playgon.model.ClickTimeBucket;
+import com.playgon.repository.ClickBucketJdbcRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class)
+@Transactional
+@ActiveProfiles("dev")
+public class ClickAnalyticsIntegrationTest {
+
+    private static final Instant TEN = Instant.parse("2024-05-06T10:00:00Z");
+    private static final Instant ELEVEN = Instant.parse("2024-05-06T11:00:00Z");
+
+    @Autowired
+    private ClickBucketJdbcRepository clickBucketJdbcRepository;
+
+    @Test
+    void testFindSeries_SumsRowsOfTheSameBucket() {
+        clickBucketJdbcRepository.insertAll(List.of(
+                new ClickBucket("series", ClickResolution.HOUR, Timestamp.from(TEN), 3),
+                new ClickBucket("series", ClickResolution.HOUR, Timestamp.from(TEN), 4),
+                new ClickBucket("series", ClickResolution.HOUR, Timestamp.from(ELEVEN), 1),
+                new ClickBucket("series", ClickResolution.MINUTE, Timestamp.from(TEN), 9),
+                new ClickBucket("other", ClickResolution.HOUR, Timestamp.from(TEN), 5)));
+
+        List<ClickTimeBucket> series = clickBucketJdbcRepository.findSeries("series", ClickResolution.HOUR,
+                TEN, ELEVEN.plusSeconds(3600));
+
+        assertEquals(List.of(new ClickTimeBucket(TEN, 7), new ClickTimeBucket(ELEVEN, 1)), series);
+    }
+
+    @Test
+    void testDeleteOlderThan_OnlyDeletesGivenResolution() {
+        clickBucketJdbcRepository.insertAll(List.of(
+                new ClickBucket("purged", ClickResolution.MINUTE, Timestamp.from(TEN), 1),
+                new ClickBucket("purged", ClickResolution.MINUTE, Timestamp.from(ELEVEN), 1),
+                new ClickBucket("purged", ClickResolution.HOUR, Timestamp.from(TEN), 2)));
+
+        assertEquals(1, clickBucketJdbcRepository.deleteOlderThan(ClickResolution.MINUTE, ELEVEN, 100));
+
+        assertEquals(List.of(new ClickTimeBucket(ELEVEN, 1)),
+                clickBucketJdbcRepository.findSeries("purged", ClickResolution.MINUTE, TEN, ELEVEN.plusSeconds(60)));
+        assertEquals(List.of(new ClickTimeBucket(TEN, 2)),
+                clickBucketJdbcRepository.findSeries("purged", ClickResolution.HOUR, TEN, ELEVEN));
+    }
+}
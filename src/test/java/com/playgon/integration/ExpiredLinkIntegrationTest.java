@@ -0,0 +1,113 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.cache.ShortCodeFilter;
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.model.UrlMappings;
+import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.service.ExpiredLinkReaper;
+import com.playgon.service.UrlShortenerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("dev")
+public class ExpiredLinkIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UrlShortenerService urlShortenerService;
+
+    @Autowired
+    private UrlMappingsRepository urlMappingsRepository;
+
+    @Autowired
+    private ShortUrlCache shortUrlCache;
+
+    @Autowired
+    private ShortCodeFilter shortCodeFilter;
+
+    @Autowired
+    private ExpiredLinkReaper expiredLinkReaper;
+
+    private void save(String shortUrl, Instant expiresAt) {
+        UrlMappings mapping = new UrlMappings();
+        mapping.setShortUrl(shortUrl);
+        mapping.setLongUrl("https://example.com/" + shortUrl);
+        mapping.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        mapping.setExpiresAt(expiresAt != null ? Timestamp.from(expiresAt) : null);
+        urlMappingsRepository.save(mapping);
+        shortCodeFilter.put(shortUrl);
+    }
+
+    @Test
+    void testShorten_StoresExpiry() throws Exception {
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+
+        mockMvc.perform(post("/shorten")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"longUrl\": \"https://example.com/expiring\", \"expiresAt\": \"" + expiresAt + "\"}"))
+                .andExpect(status().isOk());
+
+        assertTrue(urlMappingsRepository.findAll().stream()
+                .anyMatch(mapping -> mapping.getExpiresAt() != null && mapping.getExpiresAt().toInstant().equals(expiresAt)));
+    }
+
+    @Test
+    void testRedirect_ExpiredLinkIsNotFound() throws Exception {
+        save("expd01", Instant.now().minusSeconds(60));
+
+        mockMvc.perform(get("/expd01"))
+                .andExpect(status().isNotFound());
+        assertNull(urlShortenerService.getOriginalUrl("expd01"));
+    }
+
+    @Test
+    void testShorten_PastExpiryIsRejected() throws Exception {
+        mockMvc.perform(post("/shorten")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"longUrl\": \"https://example.com\", \"expiresAt\": \"2020-01-01T00:00:00Z\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.shortUrl").value("Invalid expiry"));
+    }
+
+    @Test
+    void testPurge_DeletesOnlyExpiredMappings() {
+        for (int i = 0; i < 5; i++) {
+            save("reap0" + i, Instant.now().minusSeconds(60));
+        }
+        save("keep01", Instant.now().plusSeconds(3600));
+        save("keep02", null);
+        String expiring = urlShortenerService.createShortUrl("https://example.com/soon", Instant.now().plusSeconds(3600));
+
+        expiredLinkReaper.purge();
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(urlMappingsRepository.findByShortUrl("reap0" + i).isEmpty());
+        }
+        assertTrue(urlMappingsRepository.findByShortUrl("keep01").isPresent());
+        assertTrue(urlMappingsRepository.findByShortUrl("keep02").isPresent());
+        assertEquals("https://example.com/soon", urlShortenerService.getOriginalUrl(expiring));
+        assertNull(shortUrlCache.getIfPresent("reap00"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.cache.MappingSnapshot;
+import com.playgon.model.UrlMappings;
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import com.playgon.repository.UrlMappingsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class)
+@Transactional
+@ActiveProfiles("dev")
+public class MappingSnapshotIntegrationTest {
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private UrlMappingsRepository urlMappingsRepository;
+
+    @Autowired
+    private UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+
+    @Test
+    void testRefresh_CopiesMappingsAndServesThemAfterReopen() {
+        save("snap1", "https://example.com/1");
+        save("snap2", "https://example.com/2");
+
+        MappingSnapshot snapshot = new MappingSnapshot(urlMappingsJdbcRepository, true, false, directory, 1024,
+                1, 100, new SimpleMeterRegistry());
+        snapshot.open();
+        snapshot.refresh();
+        snapshot.close();
+
+        MappingSnapshot reopened = new MappingSnapshot(urlMappingsJdbcRepository, true, false, directory, 1024,
+                1, 100, new SimpleMeterRegistry());
+        reopened.open();
+        try {
+            assertEquals(Optional.of("https://example.com/1"), reopened.find("snap1"));
+            assertEquals(Optional.of("https://example.com/2"), reopened.find("snap2"));
+            assertEquals(Optional.empty(), reopened.find("missing"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private void save(String shortUrl, String longUrl) {
+        UrlMappings urlMapping = new UrlMappings();
+        urlMapping.setShortUrl(shortUrl);
+        urlMapping.setLongUrl(longUrl);
+        urlMapping.setCreatedAt(Timestamp.from(Instant.now()));
+        urlMappingsRepository.saveAndFlush(urlMapping);
+    }
+}
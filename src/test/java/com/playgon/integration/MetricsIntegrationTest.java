@@ -0,0 +1,37 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class)
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("dev")
+public class MetricsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testPrometheusEndpoint_PublishesShortenerMetrics() throws Exception {
+        mockMvc.perform(get("/nonexistent"));
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("shortener_redirect_seconds_bucket")))
+                .andExpect(content().string(containsString("shortener_not_found_total")))
+                .andExpect(content().string(containsString("cache_gets_total{cache=\"shortUrlCache\"")))
+                .andExpect(content().string(containsString("hikaricp_connections_active{pool=\"primary\"")));
+    }
+}
@@ -0,0 +1,109 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.model.UrlMappingsRow;
+import com.playgon.repository.ReactiveUrlMappingsRepository;
+import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.service.UrlShortenerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles({"dev", "reactive"})
+public class ReactiveUrlShortenerIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private UrlShortenerService urlShortenerService;
+
+    @Autowired
+    private ReactiveUrlMappingsRepository reactiveUrlMappingsRepository;
+
+    @Autowired
+    private UrlMappingsRepository urlMappingsRepository;
+
+    @Autowired
+    private ShortUrlCache shortUrlCache;
+
+    @AfterEach
+    void tearDown() {
+        urlMappingsRepository.deleteAll();
+    }
+
+    @Test
+    void testShortenUrl() {
+        webTestClient.post().uri("/shorten")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"longUrl\": \"https://example.com\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.shortUrl").exists();
+    }
+
+    @Test
+    void testShortenUrl_InvalidUrl() {
+        webTestClient.post().uri("/shorten")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"longUrl\": \"invalid-url\"}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.shortUrl").isEqualTo("Invalid URL format");
+    }
+
+    @Test
+    void testRedirectUrl() {
+        String shortUrl = urlShortenerService.createShortUrl("https://example.com");
+
+        webTestClient.get().uri("/" + shortUrl)
+                .exchange()
+                .expectStatus().isFound()
+                .expectHeader().location("https://example.com");
+    }
+
+    @Test
+    void testRedirectUrl_RevalidationIsNotModified() {
+        String shortUrl = urlShortenerService.createShortUrl("https://example.com/etag");
+        shortUrlCache.invalidate(shortUrl);
+
+        String etag = webTestClient.get().uri("/" + shortUrl)
+                .exchange()
+                .expectStatus().isFound()
+                .expectHeader().cacheControl(CacheControl.noCache())
+                .returnResult(Void.class).getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/" + shortUrl)
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("ETag", etag);
+    }
+
+    @Test
+    void testRedirectUrl_NotFound() {
+        webTestClient.get().uri("/nonexistent")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testRepository_ReadsRowsWrittenThroughJpa() {
+        String shortUrl = urlShortenerService.createShortUrl("https://example.com/reactive");
+
+        UrlMappingsRow mapping = reactiveUrlMappingsRepository.findByShortUrl(shortUrl).block();
+
+        assertEquals("https://example.com/reactive", mapping.getLongUrl());
+        assertEquals(1, reactiveUrlMappingsRepository.findTop10ByOrderByAccessCountDesc().count().block());
+    }
+}
@@ -0,0 +1,53 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.service.UrlShortenerService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The replica is the same in-memory database, so it is never behind; the pool metrics show which one served a query
+@SpringBootTest(classes = PlaygonBackendApplication.class, properties = "app.datasource.replica.url=jdbc:h2:mem:testdb")
+@ActiveProfiles("dev")
+public class ReadReplicaIntegrationTest {
+
+    @Autowired
+    private UrlShortenerService urlShortenerService;
+
+    @Autowired
+    private ShortUrlCache shortUrlCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testRedirect_ResolvedOnReplica() {
+        String shortUrl = urlShortenerService.createShortUrl("https://example.com/replica");
+        shortUrlCache.invalidate(shortUrl);
+        long primaryUsage = connectionsUsed("primary");
+        long replicaUsage = connectionsUsed("replica");
+
+        assertEquals("https://example.com/replica", urlShortenerService.getOriginalUrl(shortUrl));
+
+        assertEquals(replicaUsage + 1, connectionsUsed("replica"));
+        assertEquals(primaryUsage, connectionsUsed("primary"));
+    }
+
+    @Test
+    void testCreate_WritesToPrimary() {
+        long replicaUsage = connectionsUsed("replica");
+
+        urlShortenerService.createShortUrl("https://example.com/primary");
+
+        assertEquals(replicaUsage, connectionsUsed("replica"));
+    }
+
+    private long connectionsUsed(String pool) {
+        return meterRegistry.get("hikaricp.connections.usage").tag("pool", pool).timer().count();
+    }
+}
@@ -0,0 +1,215 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.cache.ShortCodeFilter;
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.model.ClickBucket;
+import com.playgon.model.ClickResolution;
+import com.playgon.model.ResolvedUrl;
+import com.playgon.model.TopUrl;
+import com.playgon.model.UrlMappings;
+import com.playgon.repository.ClickBucketJdbcRepository;
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.service.UrlShortenerService;
+import com.playgon.shard.ShardRouter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Three in-memory databases of their own, shard 0 being the application database
+@SpringBootTest(classes = PlaygonBackendApplication.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "app.sharding.urls=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1"})
+@ActiveProfiles("dev")
+public class ShardingIntegrationTest {
+
+    private static final List<String> SHARD_URLS = List.of(
+            "jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1", "jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1", "jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1");
+
+    @Autowired
+    private UrlShortenerService urlShortenerService;
+
+    @Autowired
+    private UrlMappingsRepository urlMappingsRepository;
+
+    @Autowired
+    private UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+
+    @Autowired
+    private ClickBucketJdbcRepository clickBucketJdbcRepository;
+
+    @Autowired
+    private ShortUrlCache shortUrlCache;
+
+    @Autowired
+    private ShortCodeFilter shortCodeFilter;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private static JdbcTemplate shard(int shard) {
+        return new JdbcTemplate(new DriverManagerDataSource(SHARD_URLS.get(shard), "sa", "password"));
+    }
+
+    // Written to the only database before sharding was enabled, whatever shard its first character names
+    private static void insertLegacy(String shortUrl, long accessCount) {
+        shard(0).update("insert into url_mappings (id, short_url, long_url, created_at, access_count)"
+                + " values (next value for url_mappings_seq, ?, ?, current_timestamp, ?)",
+                shortUrl, "https://example.com/" + shortUrl, accessCount);
+    }
+
+    private static int rows(int shard, String shortUrl) {
+        return shard(shard).queryForObject("select count(*) from url_mappings where short_url = ?", Integer.class, shortUrl);
+    }
+
+    @Test
+    void testCreate_StoresEachCodeOnTheShardItNames() {
+        assertEquals(3, shardRouter.shardCount());
+        Set<Integer> used = new HashSet<>();
+
+        for (int i = 0; i < 30; i++) {
+            String shortUrl = urlShortenerService.createShortUrl("https://example.com/sharded/" + i);
+            int shard = shardRouter.shardOf(shortUrl);
+            used.add(shard);
+
+            assertEquals(1, rows(shard, shortUrl));
+            assertEquals(0, rows((shard + 1) % 3, shortUrl));
+            shortUrlCache.invalidate(shortUrl);
+            assertEquals("https://example.com/sharded/" + i, urlShortenerService.getOriginalUrl(shortUrl));
+            assertEquals("https://example.com/sharded/" + i,
+                    urlMappingsRepository.findByShortUrl(shortUrl).map(UrlMappings::getLongUrl).orElseThrow());
+        }
+        assertEquals(Set.of(0, 1, 2), used);
+    }
+
+    @Test
+    void testCreateBatch_SplitsAcrossShards() {
+        List<String> longUrls = IntStream.range(0, 50).mapToObj(i -> "https://example.com/batch-sharded/" + i).toList();
+
+        List<String> shortUrls = urlShortenerService.createShortUrls(longUrls);
+
+        for (int i = 0; i < shortUrls.size(); i++) {
+            assertEquals(1, rows(shardRouter.shardOf(shortUrls.get(i)), shortUrls.get(i)));
+            assertEquals(longUrls.get(i), urlMappingsRepository.findLongUrlByShortUrl(shortUrls.get(i)).orElseThrow().longUrl());
+        }
+        assertEquals(Set.copyOf(shortUrls), Set.copyOf(urlMappingsRepository.findExistingShortUrls(shortUrls)));
+    }
+
+    @Test
+    void testFindTop_MergesTopOfEveryShard() {
+        // Codes named after their shard, created with access counts above any other
+        List<String> codes = List.of("1top10a", "2top10b", "0top10c", "2top10d");
+        for (int i = 0; i < codes.size(); i++) {
+            UrlMappings mapping = new UrlMappings();
+            mapping.setShortUrl(codes.get(i));
+            mapping.setLongUrl("https://example.com/top/" + i);
+            mapping.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+            mapping.setAccessCount(1_000_000 - i);
+            urlMappingsRepository.save(mapping);
+        }
+        assertEquals(1, rows(1, "1top10a"));
+        assertEquals(1, rows(2, "2top10d"));
+
+        List<String> top = urlMappingsRepository.findTop10ByOrderByAccessCountDesc().stream()
+                .map(UrlMappings::getShortUrl).toList();
+        List<String> topAccessed = urlMappingsJdbcRepository.findTopAccessed(4).stream()
+                .map(TopUrl::shortUrl).toList();
+
+        assertTrue(top.size() <= 10);
+        assertEquals(codes, top.subList(0, 4));
+        assertEquals(codes, topAccessed);
+    }
+
+    @Test
+    void testFindByShortUrl_FallsBackToShardZeroForCodesCreatedBeforeSharding() {
+        // Names shard 1, but was written to the only database before sharding was enabled
+        shard(0).update("insert into url_mappings (id, short_url, long_url, created_at, access_count)"
+                + " values (next value for url_mappings_seq, '1legacy', 'https://example.com/legacy', current_timestamp, 0)");
+
+        shortCodeFilter.refresh();
+
+        assertEquals(Optional.of("https://example.com/legacy"),
+                urlMappingsRepository.findLongUrlByShortUrl("1legacy").map(ResolvedUrl::longUrl));
+        assertEquals("https://example.com/legacy", urlShortenerService.getOriginalUrl("1legacy"));
+    }
+
+    @Test
+    void testIncrementAccessCounts_UpdatesEveryShard() {
+        String first = urlShortenerService.createShortUrl("https://example.com/count/1");
+        String second = urlShortenerService.createShortUrl("https://example.com/count/2");
+        String third = urlShortenerService.createShortUrl("https://example.com/count/3");
+
+        urlMappingsJdbcRepository.incrementAccessCounts(List.of(
+                Map.entry(first, 3L), Map.entry(second, 5L), Map.entry(third, 7L)));
+
+        assertEquals(3, urlMappingsRepository.findByShortUrl(first).orElseThrow().getAccessCount());
+        assertEquals(5, urlMappingsRepository.findByShortUrl(second).orElseThrow().getAccessCount());
+        assertEquals(7, urlMappingsRepository.findByShortUrl(third).orElseThrow().getAccessCount());
+    }
+
+    @Test
+    void testIncrementAccessCounts_FallsBackToShardZeroForCodesCreatedBeforeSharding() {
+        insertLegacy("1clicks", 0);
+        String sharded = urlShortenerService.createShortUrl("https://example.com/count/sharded");
+
+        urlMappingsJdbcRepository.incrementAccessCounts(List.of(Map.entry("1clicks", 4L), Map.entry(sharded, 2L)));
+
+        assertEquals(4, shard(0).queryForObject("select access_count from url_mappings where short_url = '1clicks'",
+                Long.class));
+        assertEquals(2, urlMappingsRepository.findByShortUrl(sharded).orElseThrow().getAccessCount());
+    }
+
+    @Test
+    void testForEachMostAccessed_MergesShardsByAccessCount() {
+        List<String> codes = List.of("2warm1", "2warm2", "1warm3");
+        for (int i = 0; i < codes.size(); i++) {
+            UrlMappings mapping = new UrlMappings();
+            mapping.setShortUrl(codes.get(i));
+            mapping.setLongUrl("https://example.com/warm/" + i);
+            mapping.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+            mapping.setAccessCount(2_000_000_000 - i);
+            urlMappingsRepository.save(mapping);
+        }
+        try {
+            List<String> loaded = new ArrayList<>();
+            urlMappingsJdbcRepository.forEachMostAccessed(2, 10, (shortUrl, longUrl) -> loaded.add(shortUrl));
+
+            // Both on shard 2, which an equal share of the limit per shard would have cut to one
+            assertEquals(List.of("2warm1", "2warm2"), loaded);
+        } finally {
+            codes.forEach(code -> shard(shardRouter.shardOf(code)).update(
+                    "delete from url_mappings where short_url = ?", code));
+        }
+    }
+
+    @Test
+    void testForEachMostClickedSince_FindsCodesCreatedBeforeSharding() {
+        Instant hour = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        insertLegacy("2hot", 0);
+        clickBucketJdbcRepository.insertAll(List.of(
+                new ClickBucket("2hot", ClickResolution.HOUR, Timestamp.from(hour), 1_000_000)));
+
+        List<String> loaded = new ArrayList<>();
+        urlMappingsJdbcRepository.forEachMostClickedSince(hour, 1, (shortUrl, longUrl) -> loaded.add(shortUrl));
+
+        assertEquals(List.of("2hot"), loaded);
+    }
+}
@@ -0,0 +1,70 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.model.UrlMappings;
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import com.playgon.repository.UrlMappingsRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class)
+@Transactional
+@ActiveProfiles("dev")
+public class ShortCodeFilterIntegrationTest {
+
+    private static final Instant MONDAY = Instant.parse("2024-05-06T10:00:00Z");
+
+    @Autowired
+    private UrlMappingsRepository urlMappingsRepository;
+
+    @Autowired
+    private UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+
+    @Test
+    void testForEachShortUrlAfter_PagesInIdOrder() {
+        save("paged1", MONDAY);
+        save("paged2", MONDAY);
+        save("paged3", MONDAY);
+
+        List<String> firstPage = new ArrayList<>();
+        long[] lastId = {Long.MIN_VALUE};
+        urlMappingsJdbcRepository.forEachShortUrlAfter(0, Long.MIN_VALUE, 2, (shortUrl, id) -> {
+            firstPage.add(shortUrl);
+            lastId[0] = id;
+        });
+        List<String> rest = new ArrayList<>();
+        urlMappingsJdbcRepository.forEachShortUrlAfter(0, lastId[0], 2, (shortUrl, id) -> rest.add(shortUrl));
+
+        assertEquals(List.of("paged1", "paged2"), firstPage);
+        assertEquals(List.of("paged3"), rest);
+    }
+
+    @Test
+    void testForEachShortUrlCreatedSince_SkipsOlderRows() {
+        save("old", MONDAY);
+        save("new", MONDAY.plusSeconds(60));
+
+        List<String> created = new ArrayList<>();
+        urlMappingsJdbcRepository.forEachShortUrlCreatedSince(MONDAY.plusSeconds(1), created::add);
+
+        assertEquals(List.of("new"), created);
+    }
+
+    private void save(String shortUrl, Instant createdAt) {
+        UrlMappings urlMapping = new UrlMappings();
+        urlMapping.setShortUrl(shortUrl);
+        urlMapping.setLongUrl("https://example.com");
+        urlMapping.setCreatedAt(Timestamp.from(createdAt));
+        urlMappingsRepository.saveAndFlush(urlMapping);
+    }
+}
@@ -3,6 +3,7 @@ package com.playgon.integration;
 import com.playgon.PlaygonBackendApplication;
 import com.playgon.model.UrlMappings;
 import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.stats.TopUrlsLeaderboard;
 import org.springframework.core.env.Environment;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -36,6 +37,9 @@ public class StatisticsControllerIntegrationTest {
     @Autowired
     private UrlMappingsRepository urlMappingsRepository;
 
+    @Autowired
+    private TopUrlsLeaderboard topUrlsLeaderboard;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -61,7 +65,8 @@ public class StatisticsControllerIntegrationTest {
         url2.setCreatedAt(new Timestamp(System.currentTimeMillis()));
 
         urlMappingsRepository.save(url1);
-        urlMappingsRepository.save(url2);
+        urlMappingsRepository.saveAndFlush(url2);
+        topUrlsLeaderboard.reconcile();
 
         mockMvc.perform(get("/api/stats/top"))
                 .andExpect(status().isOk())
@@ -0,0 +1,67 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.model.VisitorSketch;
+import com.playgon.repository.VisitorSketchJdbcRepository;
+import com.playgon.shortcode.Hashing;
+import com.playgon.stats.HyperLogLog;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class)
+@Transactional
+@ActiveProfiles("dev")
+public class UniqueVisitorsIntegrationTest {
+
+    private static final Instant MONDAY = Instant.parse("2024-05-06T00:00:00Z");
+    private static final Instant TUESDAY = Instant.parse("2024-05-07T00:00:00Z");
+
+    @Autowired
+    private VisitorSketchJdbcRepository visitorSketchJdbcRepository;
+
+    @Test
+    void testUpdateAll_OnlyReplacesRowOfSameNode() {
+        byte[] dense = sketch(5_000, 10);
+        visitorSketchJdbcRepository.insertAll(List.of(
+                new VisitorSketch("visited", Timestamp.from(MONDAY), "node-1", sketch(1, 10)),
+                new VisitorSketch("visited", Timestamp.from(MONDAY), "node-2", sketch(2, 10))));
+
+        visitorSketchJdbcRepository.updateAll(List.of(
+                new VisitorSketch("visited", Timestamp.from(MONDAY), "node-1", dense)));
+
+        List<byte[]> sketches = visitorSketchJdbcRepository.findSketches("visited", MONDAY, TUESDAY);
+        assertEquals(2, sketches.size());
+        assertEquals(1, sketches.stream().filter(bytes -> bytes.length == dense.length).count());
+        assertArrayEquals(dense, sketches.stream().filter(bytes -> bytes.length == dense.length).findFirst().orElseThrow());
+    }
+
+    @Test
+    void testDeleteOlderThan_KeepsNewerWindows() {
+        visitorSketchJdbcRepository.insertAll(List.of(
+                new VisitorSketch("purged", Timestamp.from(MONDAY), "node-1", sketch(1, 10)),
+                new VisitorSketch("purged", Timestamp.from(TUESDAY), "node-1", sketch(1, 10))));
+
+        assertEquals(1, visitorSketchJdbcRepository.deleteOlderThan(TUESDAY));
+
+        assertEquals(0, visitorSketchJdbcRepository.findSketches("purged", MONDAY, TUESDAY).size());
+        assertEquals(1, visitorSketchJdbcRepository.findSketches("purged", TUESDAY, TUESDAY.plusSeconds(86400)).size());
+    }
+
+    private static byte[] sketch(int visitors, int precision) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        for (int i = 0; i < visitors; i++) {
+            sketch.add(Hashing.hash("ip:" + i));
+        }
+        return sketch.toBytes();
+    }
+}
@@ -1,6 +1,9 @@
 package com.playgon.integration;
 
 import com.playgon.PlaygonBackendApplication;
+import com.playgon.cache.LongUrlIndex;
+import com.playgon.model.ResolvedUrl;
+import com.playgon.model.ShortUrlMapping;
 import com.playgon.repository.UrlMappingsRepository;
 import com.playgon.service.UrlShortenerServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,7 +17,11 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Optional;
+
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -70,6 +77,18 @@ public class UrlShortenerIntegrationTest {
                 .andExpect(jsonPath("$.shortUrl", is("Invalid URL format")));
     }
 
+    @Test
+    void testShortenBatch() throws Exception {
+        mockMvc.perform(post("/shorten/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"longUrl\": \"https://example1.com\"}, {\"longUrl\": \"https://example2.com\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].shortUrl").exists())
+                .andExpect(jsonPath("$[1].shortUrl").exists());
+
+        assertEquals(2, urlMappingsRepository.count());
+    }
+
     @Test
     void testRedirectUrl() throws Exception {
         String longUrl = "https://example.com";
@@ -84,4 +103,27 @@ public class UrlShortenerIntegrationTest {
         mockMvc.perform(get("/nonexistent"))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    void testFindLongUrlByShortUrl() {
+        String shortUrl = urlShortenerService.createShortUrl("https://example.com/projection");
+
+        assertEquals(Optional.of("https://example.com/projection"),
+                urlMappingsRepository.findLongUrlByShortUrl(shortUrl).map(ResolvedUrl::longUrl));
+        assertEquals(Optional.empty(), urlMappingsRepository.findLongUrlByShortUrl("nonexistent"));
+    }
+
+    @Test
+    void testFindByLongUrlHashIn() {
+        String first = urlShortenerService.createShortUrl("https://example.com/hashed");
+        String second = urlShortenerService.createShortUrl("https://example.com/hashed");
+        urlShortenerService.createShortUrl("https://example.com/other");
+
+        List<ShortUrlMapping> mappings = urlMappingsRepository.findByLongUrlHashIn(
+                List.of(LongUrlIndex.hash("https://example.com/hashed")));
+
+        // Deduplication is disabled in dev, so both creations have a row, in creation order
+        assertEquals(List.of(new ShortUrlMapping(first, "https://example.com/hashed"),
+                new ShortUrlMapping(second, "https://example.com/hashed")), mappings);
+    }
 }
@@ -0,0 +1,47 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.service.UrlShortenerServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles({"dev", "virtual"})
+public class VirtualThreadsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AsyncTaskExecutor applicationTaskExecutor;
+
+    @Autowired
+    private UrlShortenerServiceImpl urlShortenerService;
+
+    @Test
+    void testTaskExecutor_UsesVirtualThreads() throws Exception {
+        Future<Boolean> virtual = applicationTaskExecutor.submit(() -> Thread.currentThread().isVirtual());
+
+        assertTrue(virtual.get());
+    }
+
+    @Test
+    void testRedirectUrl() throws Exception {
+        String shortUrl = urlShortenerService.createShortUrl("https://example.com");
+
+        mockMvc.perform(get("/" + shortUrl))
+                .andExpect(status().is3xxRedirection());
+    }
+}
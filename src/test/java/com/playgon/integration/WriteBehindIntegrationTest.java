@@ -0,0 +1,62 @@
+package com.playgon.integration;
+
+import com.playgon.PlaygonBackendApplication;
+import com.playgon.model.UrlMappings;
+import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.service.UrlShortenerService;
+import com.playgon.service.WriteBehindQueue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(classes = PlaygonBackendApplication.class)
+@ActiveProfiles("dev")
+public class WriteBehindIntegrationTest {
+
+    @TempDir
+    static Path directory;
+
+    @DynamicPropertySource
+    static void writeBehindProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.write-behind.enabled", () -> "true");
+        registry.add("app.write-behind.directory", () -> directory.toString());
+        // Committed by the test instead of the scheduler
+        registry.add("app.write-behind.commit-interval-ms", () -> "3600000");
+    }
+
+    @Autowired
+    private UrlShortenerService urlShortenerService;
+
+    @Autowired
+    private WriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    private UrlMappingsRepository urlMappingsRepository;
+
+    @Test
+    void testCreate_ResolvableBeforeAndAfterCommit() {
+        assertTrue(writeBehindQueue.isEnabled());
+
+        String shortUrl = urlShortenerService.createShortUrl("https://example.com/write-behind");
+
+        assertEquals("https://example.com/write-behind", urlShortenerService.getOriginalUrl(shortUrl));
+
+        writeBehindQueue.commit();
+
+        Optional<UrlMappings> mapping = urlMappingsRepository.findByShortUrl(shortUrl);
+        assertTrue(mapping.isPresent());
+        assertEquals("https://example.com/write-behind", mapping.get().getLongUrl());
+        assertEquals(Optional.empty(), writeBehindQueue.find(shortUrl));
+        assertEquals("https://example.com/write-behind", urlShortenerService.getOriginalUrl(shortUrl));
+    }
+}
@@ -0,0 +1,107 @@
+package com.playgon.invalidation;
+
+import com.playgon.cache.ShortCodeFilter;
+import com.playgon.cache.ShortUrlCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class InvalidationBusTest {
+
+    @Mock
+    private ShortCodeFilter shortCodeFilter;
+
+    @Mock
+    private ShortCodeFilter otherShortCodeFilter;
+
+    private SimpleMeterRegistry meterRegistry;
+    private LoopbackInvalidationTransport transport;
+    private ShortUrlCache shortUrlCache;
+    private ShortUrlCache otherShortUrlCache;
+    private InvalidationBus bus;
+    private InvalidationBus otherBus;
+    private final List<InvalidationBatch> sent = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        transport = new LoopbackInvalidationTransport();
+        transport.subscribe(sent::add);
+        shortUrlCache = new ShortUrlCache(100, Duration.ofMinutes(1), Duration.ofSeconds(30), meterRegistry);
+        otherShortUrlCache = new ShortUrlCache(100, Duration.ofMinutes(1), Duration.ofSeconds(30), new SimpleMeterRegistry());
+        // Two nodes sharing one transport
+        bus = new InvalidationBus(transport, shortUrlCache, shortCodeFilter, 3, meterRegistry);
+        otherBus = new InvalidationBus(transport, otherShortUrlCache, otherShortCodeFilter, 3, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testInvalidate_DropsEntryOnEveryNode() {
+        shortUrlCache.put("abc123", "https://example.com");
+        otherShortUrlCache.put("abc123", "https://example.com");
+
+        bus.invalidate("abc123");
+
+        assertNull(shortUrlCache.getIfPresent("abc123"));
+        assertEquals(Optional.of("https://example.com"), otherShortUrlCache.getIfPresent("abc123"));
+        bus.flush();
+        assertNull(otherShortUrlCache.getIfPresent("abc123"));
+        assertEquals(1.0, meterRegistry.get("shortener.invalidation.sent").counter().count());
+    }
+
+    @Test
+    public void testCreated_AddsCodeToFilterAndDropsUnknownEntryOfOtherNodes() {
+        otherShortUrlCache.putLookup("new123", Optional.empty());
+
+        bus.created("new123");
+        bus.flush();
+
+        verify(otherShortCodeFilter).put("new123");
+        verify(shortCodeFilter, never()).put("new123");
+        assertNull(otherShortUrlCache.getIfPresent("new123"));
+    }
+
+    @Test
+    public void testFlush_CoalescesAndSplitsIntoBatches() {
+        bus.invalidate("a");
+        bus.invalidate("b");
+        bus.invalidate("a");
+        bus.created("b");
+        bus.created("c");
+        bus.created("d");
+
+        bus.flush();
+
+        assertEquals(List.of(
+                new InvalidationBatch(sent.get(0).origin(), List.of("a", "b"), List.of("c")),
+                new InvalidationBatch(sent.get(0).origin(), List.of(), List.of("d"))), sent);
+    }
+
+    @Test
+    public void testFlush_SendsNothingWhenIdle() {
+        bus.flush();
+
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void testReceive_IgnoresOwnBatches() {
+        bus.created("own123");
+        bus.flush();
+
+        verify(shortCodeFilter, never()).put(anyString());
+        assertEquals(0.0, meterRegistry.get("shortener.invalidation.received").counter().count());
+    }
+}
@@ -0,0 +1,72 @@
+package com.playgon.invalidation;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UdpInvalidationTransportTest {
+
+    @Test
+    public void testEncode_RoundTrips() {
+        InvalidationBatch batch = new InvalidationBatch(42L, List.of("abc123", "1xyz"), List.of("ünï"));
+
+        List<byte[]> datagrams = UdpInvalidationTransport.encode(batch, 1400);
+
+        assertEquals(1, datagrams.size());
+        assertEquals(batch, UdpInvalidationTransport.decode(datagrams.get(0), datagrams.get(0).length));
+    }
+
+    @Test
+    public void testEncode_SplitsDatagramsBySize() {
+        List<String> codes = IntStream.range(0, 500).mapToObj(i -> "code" + i).toList();
+        InvalidationBatch batch = new InvalidationBatch(7L, codes, List.of("created"));
+
+        List<byte[]> datagrams = UdpInvalidationTransport.encode(batch, 300);
+
+        assertTrue(datagrams.size() > 1);
+        List<String> invalidated = new ArrayList<>();
+        List<String> created = new ArrayList<>();
+        for (byte[] datagram : datagrams) {
+            assertTrue(datagram.length <= 300);
+            InvalidationBatch decoded = UdpInvalidationTransport.decode(datagram, datagram.length);
+            assertEquals(7L, decoded.origin());
+            invalidated.addAll(decoded.invalidated());
+            created.addAll(decoded.created());
+        }
+        assertEquals(codes, invalidated);
+        assertEquals(List.of("created"), created);
+    }
+
+    @Test
+    public void testDecode_RejectsForeignDatagrams() {
+        byte[] data = new byte[20];
+
+        assertThrows(IllegalArgumentException.class, () -> UdpInvalidationTransport.decode(data, data.length));
+    }
+
+    @Test
+    public void testSend_DeliversToPeer() throws Exception {
+        BlockingQueue<InvalidationBatch> received = new ArrayBlockingQueue<>(1);
+        try (UdpInvalidationTransport receiver = new UdpInvalidationTransport(0, List.of(), 1400)) {
+            receiver.subscribe(received::add);
+            try (UdpInvalidationTransport sender = new UdpInvalidationTransport(0,
+                    List.of(new InetSocketAddress("127.0.0.1", receiver.port())), 1400)) {
+                InvalidationBatch batch = new InvalidationBatch(1L, List.of("abc123"), List.of());
+
+                sender.send(batch);
+
+                assertEquals(batch, received.poll(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+}
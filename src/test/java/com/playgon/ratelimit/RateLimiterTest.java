@@ -0,0 +1,100 @@
+package com.playgon.ratelimit;
+
+import io.github.bucket4j.grid.GridBucketState;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimiterTest {
+
+    private final ClientKeyResolver clientKeyResolver = new ClientKeyResolver(false);
+
+    private RateLimiter rateLimiter(BucketStore bucketStore) {
+        return new RateLimiter(bucketStore, clientKeyResolver, 3, Duration.ofMinutes(1), 1, Duration.ofMinutes(1));
+    }
+
+    private static MockHttpServletRequest requestFrom(String ip) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(ip);
+        return request;
+    }
+
+    @Test
+    public void testTryConsume_LimitsEachClientSeparately() {
+        RateLimiter rateLimiter = rateLimiter(new LocalBucketStore(100, Duration.ofMinutes(10)));
+        MockHttpServletRequest first = requestFrom("10.0.0.1");
+        MockHttpServletRequest second = requestFrom("10.0.0.2");
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimiter.tryConsume(RateLimitedOperation.REDIRECT, first, 1));
+        }
+        assertFalse(rateLimiter.tryConsume(RateLimitedOperation.REDIRECT, first, 1));
+        assertTrue(rateLimiter.tryConsume(RateLimitedOperation.REDIRECT, second, 1));
+    }
+
+    @Test
+    public void testTryConsume_LimitsOperationsSeparately() {
+        RateLimiter rateLimiter = rateLimiter(new LocalBucketStore(100, Duration.ofMinutes(10)));
+        MockHttpServletRequest request = requestFrom("10.0.0.1");
+
+        assertTrue(rateLimiter.tryConsume(RateLimitedOperation.CREATE, request, 1));
+        assertFalse(rateLimiter.tryConsume(RateLimitedOperation.CREATE, request, 1));
+        assertTrue(rateLimiter.tryConsume(RateLimitedOperation.REDIRECT, request, 1));
+    }
+
+    @Test
+    public void testTryConsume_SharesBucketsThroughJCache() {
+        CacheManager cacheManager = Caching.getCachingProvider().getCacheManager();
+        Cache<String, GridBucketState> cache = cacheManager.createCache("rate-limiter-test",
+                new MutableConfiguration<String, GridBucketState>().setTypes(String.class, GridBucketState.class));
+        try {
+            // Two limiters on the same cache behave like two nodes of a cluster
+            RateLimiter nodeA = rateLimiter(new JCacheBucketStore(cache));
+            RateLimiter nodeB = rateLimiter(new JCacheBucketStore(cache));
+            MockHttpServletRequest request = requestFrom("10.0.0.1");
+
+            assertTrue(nodeA.tryConsume(RateLimitedOperation.CREATE, request, 1));
+            assertFalse(nodeB.tryConsume(RateLimitedOperation.CREATE, request, 1));
+        } finally {
+            cacheManager.destroyCache("rate-limiter-test");
+        }
+    }
+
+    @Test
+    public void testClientKeyResolver_PrefersApiKey() {
+        ClientKeyResolver resolver = new ClientKeyResolver(false, List.of("secret"));
+        MockHttpServletRequest request = requestFrom("10.0.0.1");
+        request.addHeader(ClientKeyResolver.API_KEY_HEADER, "secret");
+
+        assertEquals("key:secret", resolver.resolve(request));
+        assertEquals("ip:10.0.0.1", resolver.resolve(requestFrom("10.0.0.1")));
+    }
+
+    @Test
+    public void testClientKeyResolver_IgnoresUnknownApiKey() {
+        ClientKeyResolver resolver = new ClientKeyResolver(false, List.of("secret"));
+        MockHttpServletRequest request = requestFrom("10.0.0.1");
+        request.addHeader(ClientKeyResolver.API_KEY_HEADER, "random-" + System.nanoTime());
+
+        assertEquals("ip:10.0.0.1", resolver.resolve(request));
+    }
+
+    @Test
+    public void testClientKeyResolver_UsesForwardedForWhenTrusted() {
+        MockHttpServletRequest request = requestFrom("10.0.0.1");
+        request.addHeader("X-Forwarded-For", "203.0.113.7, 10.0.0.1");
+
+        assertEquals("ip:203.0.113.7", new ClientKeyResolver(true).resolve(request));
+        assertEquals("ip:10.0.0.1", clientKeyResolver.resolve(request));
+    }
+}
@@ -0,0 +1,108 @@
+package com.playgon.service;
+
+import com.playgon.cache.ShortCodeFilter;
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.invalidation.InvalidationBatch;
+import com.playgon.invalidation.InvalidationBus;
+import com.playgon.invalidation.LoopbackInvalidationTransport;
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ExpiredLinkReaperTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-06T10:00:00Z");
+
+    @Mock
+    private UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+
+    @Mock
+    private ShortCodeFilter shortCodeFilter;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShortUrlCache shortUrlCache;
+    private LoopbackInvalidationTransport transport;
+    private InvalidationBus invalidationBus;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        shortUrlCache = new ShortUrlCache(100, Duration.ofMinutes(1), Duration.ofSeconds(30), meterRegistry);
+        transport = new LoopbackInvalidationTransport();
+        invalidationBus = new InvalidationBus(transport, shortUrlCache, shortCodeFilter, 100, meterRegistry);
+        when(urlMappingsJdbcRepository.shardCount()).thenReturn(1);
+    }
+
+    private ExpiredLinkReaper reaper(boolean enabled, int maxBatches) {
+        return new ExpiredLinkReaper(urlMappingsJdbcRepository, invalidationBus, new ShortenerMetrics(meterRegistry),
+                enabled, 2, maxBatches, Duration.ZERO, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPurge_DeletesBatchesUntilOneIsShort() {
+        shortUrlCache.put("gone1", "https://example.com/1");
+        List<InvalidationBatch> sent = new ArrayList<>();
+        transport.subscribe(sent::add);
+        when(urlMappingsJdbcRepository.deleteExpired(eq(0), eq(NOW), eq(2), any())).thenAnswer(invocation -> {
+            invocation.getArgument(3, Consumer.class).accept("gone1");
+            return 2;
+        }).thenReturn(2, 1);
+
+        reaper(true, 10).purge();
+
+        verify(urlMappingsJdbcRepository, times(3)).deleteExpired(eq(0), eq(NOW), eq(2), any());
+        assertNull(shortUrlCache.getIfPresent("gone1"));
+        invalidationBus.flush();
+        assertEquals(List.of("gone1"), sent.get(0).invalidated());
+        assertEquals(5.0, meterRegistry.get("shortener.expired.purged").counter().count());
+    }
+
+    @Test
+    public void testPurge_StopsAfterMaxBatches() {
+        when(urlMappingsJdbcRepository.deleteExpired(anyInt(), any(), anyInt(), any())).thenReturn(2);
+
+        reaper(true, 3).purge();
+
+        verify(urlMappingsJdbcRepository, times(3)).deleteExpired(anyInt(), any(), anyInt(), any());
+    }
+
+    @Test
+    public void testPurge_ContinuesWithNextShardAfterFailure() {
+        when(urlMappingsJdbcRepository.shardCount()).thenReturn(2);
+        when(urlMappingsJdbcRepository.deleteExpired(eq(0), any(), anyInt(), any()))
+                .thenThrow(new IllegalStateException("shard down"));
+        doReturn(0).when(urlMappingsJdbcRepository).deleteExpired(eq(1), any(), anyInt(), any());
+
+        reaper(true, 10).purge();
+
+        verify(urlMappingsJdbcRepository, times(1)).deleteExpired(eq(1), any(), anyInt(), any());
+    }
+
+    @Test
+    public void testPurge_DisabledDoesNothing() {
+        reaper(false, 10).purge();
+
+        verify(urlMappingsJdbcRepository, never()).deleteExpired(anyInt(), any(), anyInt(), any());
+    }
+}
@@ -0,0 +1,74 @@
+package com.playgon.service;
+
+import com.playgon.cache.MappingSnapshot;
+import com.playgon.cache.ShortCodeFilter;
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.repository.ReactiveUrlMappingsRepository;
+import com.playgon.shard.ShardRouter;
+import com.playgon.stats.AccessCountAggregator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ReactiveUrlShortenerServiceImplTest {
+
+    @Mock
+    private ReactiveUrlMappingsRepository urlMappingsRepository;
+
+    @Mock
+    private UrlShortenerService urlShortenerService;
+
+    @Mock
+    private ShortCodeFilter shortCodeFilter;
+
+    @Mock
+    private MappingSnapshot mappingSnapshot;
+
+    @Mock
+    private WriteBehindQueue writeBehindQueue;
+
+    @Mock
+    private AccessCountAggregator accessCountAggregator;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShortUrlCache shortUrlCache;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        shortUrlCache = new ShortUrlCache(100, Duration.ofMinutes(1), Duration.ofSeconds(30), meterRegistry);
+        when(shortCodeFilter.mightContain(anyString())).thenReturn(true);
+    }
+
+    private ReactiveUrlShortenerServiceImpl newService(ShardRouter shardRouter) {
+        return new ReactiveUrlShortenerServiceImpl(urlMappingsRepository, urlShortenerService, shortUrlCache,
+                shortCodeFilter, mappingSnapshot, writeBehindQueue, shardRouter, accessCountAggregator,
+                new ShortenerMetrics(meterRegistry));
+    }
+
+    @Test
+    public void testGetOriginalUrl_ServesCodesWrittenBehind() {
+        when(writeBehindQueue.find("wb1")).thenReturn(Optional.of("https://example.com/pending"));
+
+        assertEquals("https://example.com/pending", newService(new ShardRouter(1)).getOriginalUrl("wb1").block());
+        verifyNoInteractions(urlMappingsRepository);
+        verify(accessCountAggregator).recordAccess("wb1");
+    }
+
+    @Test
+    public void testConstructor_RefusesShardedMappings() {
+        assertThrows(IllegalStateException.class, () -> newService(new ShardRouter(2)));
+    }
+}
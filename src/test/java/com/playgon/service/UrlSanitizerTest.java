@@ -0,0 +1,78 @@
+package com.playgon.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UrlSanitizerTest {
+
+    @Test
+    public void testIsValid_AcceptsHttpAndHttpsUrls() {
+        assertTrue(UrlSanitizer.isValid("https://example.com"));
+        assertTrue(UrlSanitizer.isValid("http://example.com/path?a=1&b=2"));
+        assertTrue(UrlSanitizer.isValid("HTTPS://Example.com:8443/"));
+        assertTrue(UrlSanitizer.isValid("https://sub_domain.example.com?q"));
+        assertTrue(UrlSanitizer.isValid("https://127.0.0.1#top"));
+    }
+
+    @Test
+    public void testIsValid_RejectsOtherSchemesAndMissingHosts() {
+        assertFalse(UrlSanitizer.isValid(null));
+        assertFalse(UrlSanitizer.isValid(""));
+        assertFalse(UrlSanitizer.isValid("invalid-url"));
+        assertFalse(UrlSanitizer.isValid("example.com/path"));
+        assertFalse(UrlSanitizer.isValid("ftp://example.com"));
+        assertFalse(UrlSanitizer.isValid("javascript://example.com"));
+        assertFalse(UrlSanitizer.isValid("https:/example.com"));
+        assertFalse(UrlSanitizer.isValid("https://"));
+        assertFalse(UrlSanitizer.isValid("https:///path"));
+    }
+
+    @Test
+    public void testIsValid_RejectsHostsChangedBySanitization() {
+        assertFalse(UrlSanitizer.isValid("https://user@example.com"));
+        assertFalse(UrlSanitizer.isValid("https://[::1]/"));
+        assertFalse(UrlSanitizer.isValid("https://exa mple.com"));
+        assertFalse(UrlSanitizer.isValid("https://exämple.com"));
+    }
+
+    @Test
+    public void testIsValid_EnforcesMaximumLength() {
+        String prefix = "https://example.com/";
+        String longest = prefix + "a".repeat(UrlSanitizer.MAX_LENGTH - prefix.length());
+
+        assertTrue(UrlSanitizer.isValid(longest));
+        assertFalse(UrlSanitizer.isValid(longest + "a"));
+    }
+
+    @Test
+    public void testSanitize_ReturnsSameInstanceWhenNothingIsRemoved() {
+        String url = "https://example.com/campaigns?utm_source=news&id=42%20";
+
+        assertSame(url, UrlSanitizer.sanitize(url));
+    }
+
+    @Test
+    public void testSanitize_RemovesDisallowedCharacters() {
+        assertEquals("https://example.com/ab", UrlSanitizer.sanitize("https://example.com/a b"));
+        assertEquals("https://example.com/path", UrlSanitizer.sanitize("<https://example.com/path#>"));
+        assertEquals("https://example.com/caf", UrlSanitizer.sanitize("https://example.com/café😀"));
+        assertEquals("", UrlSanitizer.sanitize("<>\"'"));
+    }
+
+    @Test
+    public void testSanitize_MatchesRegexSanitization() {
+        String[] urls = {
+                "https://example.com/path?a=1&b=2",
+                "https://example.com/<script>alert('x')</script>",
+                "https://example.com/a+b;c,d!e*f(g)h~i#frag",
+                "https://example.com/é中😀\t\n",
+        };
+        for (String url : urls) {
+            assertEquals(url.replaceAll("[^a-zA-Z0-9:/?&.=\\-_%]", ""), UrlSanitizer.sanitize(url));
+        }
+    }
+}
@@ -1,17 +1,38 @@
 package com.playgon.service;
 
+import com.playgon.cache.LongUrlIndex;
+import com.playgon.cache.MappingSnapshot;
+import com.playgon.cache.ShortCodeFilter;
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.invalidation.InvalidationBus;
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.model.ResolvedUrl;
+import com.playgon.model.ShortUrlMapping;
 import com.playgon.model.UrlMappings;
 import com.playgon.repository.UrlMappingsRepository;
+import com.playgon.shortcode.RandomShortCodeGenerator;
+import com.playgon.stats.AccessCountAggregator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -20,12 +41,31 @@ public class UrlShortenerServiceImplTest {
     @Mock
     private UrlMappingsRepository urlMappingsRepository;
 
-    @InjectMocks
+    @Mock
+    private AccessCountAggregator accessCountAggregator;
+
+    @Mock
+    private ShortCodeFilter shortCodeFilter;
+
+    @Mock
+    private MappingSnapshot mappingSnapshot;
+
+    @Mock
+    private WriteBehindQueue writeBehindQueue;
+
+    @Mock
+    private InvalidationBus invalidationBus;
+
+    private SimpleMeterRegistry meterRegistry;
+
     private UrlShortenerServiceImpl urlShortenerService;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        urlShortenerService = newService(false);
+        when(shortCodeFilter.mightContain(anyString())).thenReturn(true);
     }
 
     @Test
@@ -46,24 +86,70 @@ public class UrlShortenerServiceImplTest {
         verify(urlMappingsRepository, times(1)).save(any(UrlMappings.class));
     }
 
+    @Test
+    public void testCreateShortUrls_SavesAllInOrder() {
+        List<String> longUrls = List.of("https://a.example.com", "https://b.example.com", "https://c.example.com");
+
+        List<String> result = urlShortenerService.createShortUrls(longUrls);
+
+        assertEquals(3, result.size());
+        verify(urlMappingsRepository, times(1)).saveAll(anyList());
+        for (int i = 0; i < longUrls.size(); i++) {
+            assertEquals(longUrls.get(i), urlShortenerService.getOriginalUrl(result.get(i)));
+        }
+        verify(urlMappingsRepository, never()).findLongUrlByShortUrl(anyString());
+    }
+
     @Test
     public void testGetOriginalUrl_Success() {
         String shortUrl = "abc123";
         String longUrl = "https://example.com";
 
-        UrlMappings urlMapping = new UrlMappings();
-        urlMapping.setShortUrl(shortUrl);
-        urlMapping.setLongUrl(longUrl);
-        urlMapping.setAccessCount(0);
-
         // Mock the behavior of the repository
-        when(urlMappingsRepository.findByShortUrl(shortUrl)).thenReturn(Optional.of(urlMapping));
+        when(urlMappingsRepository.findLongUrlByShortUrl(shortUrl)).thenReturn(Optional.of(ResolvedUrl.permanent(longUrl)));
 
         String result = urlShortenerService.getOriginalUrl(shortUrl);
 
         assertEquals(longUrl, result);
-        assertEquals(1, urlMapping.getAccessCount());
-        verify(urlMappingsRepository, times(1)).save(urlMapping);
+        verify(accessCountAggregator, times(1)).recordAccess(shortUrl);
+        verify(urlMappingsRepository, never()).save(any(UrlMappings.class));
+    }
+
+    @Test
+    public void testGetOriginalUrl_ServedFromCache() {
+        String shortUrl = "abc123";
+        String longUrl = "https://example.com";
+
+        when(urlMappingsRepository.findLongUrlByShortUrl(shortUrl)).thenReturn(Optional.of(ResolvedUrl.permanent(longUrl)));
+
+        assertEquals(longUrl, urlShortenerService.getOriginalUrl(shortUrl));
+        assertEquals(longUrl, urlShortenerService.getOriginalUrl(shortUrl));
+
+        verify(urlMappingsRepository, times(1)).findLongUrlByShortUrl(shortUrl);
+        verify(accessCountAggregator, times(2)).recordAccess(shortUrl);
+    }
+
+    @Test
+    public void testGetOriginalUrl_CreatedUrlIsCached() {
+        String longUrl = "https://example.com";
+        when(urlMappingsRepository.save(any(UrlMappings.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        String shortUrl = urlShortenerService.createShortUrl(longUrl);
+
+        assertEquals(longUrl, urlShortenerService.getOriginalUrl(shortUrl));
+        verify(urlMappingsRepository, never()).findLongUrlByShortUrl(anyString());
+        verify(shortCodeFilter).put(shortUrl);
+    }
+
+    @Test
+    public void testGetOriginalUrl_RejectedByFilter() {
+        when(shortCodeFilter.mightContain("random")).thenReturn(false);
+
+        assertEquals(null, urlShortenerService.getOriginalUrl("random"));
+
+        verify(urlMappingsRepository, never()).findLongUrlByShortUrl(anyString());
+        verify(accessCountAggregator, never()).recordAccess(anyString());
+        assertEquals(1, meterRegistry.get("shortener.redirect").tag("result", "not_found").timer().count());
     }
 
     @Test
@@ -71,12 +157,145 @@ public class UrlShortenerServiceImplTest {
         String shortUrl = "nonexistent";
 
         // Mock the behavior of the repository
-        when(urlMappingsRepository.findByShortUrl(shortUrl)).thenReturn(Optional.empty());
+        when(urlMappingsRepository.findLongUrlByShortUrl(shortUrl)).thenReturn(Optional.empty());
 
         String result = urlShortenerService.getOriginalUrl(shortUrl);
+        String secondResult = urlShortenerService.getOriginalUrl(shortUrl);
 
         assertEquals(null, result);
+        assertEquals(null, secondResult);
+        verify(urlMappingsRepository, times(1)).findLongUrlByShortUrl(shortUrl);
+        verify(urlMappingsRepository, never()).save(any(UrlMappings.class));
+        verify(shortCodeFilter, times(1)).recordFalsePositive();
+        assertEquals(2, meterRegistry.get("shortener.redirect").tag("result", "not_found").timer().count());
+    }
+
+    @Test
+    public void testGetOriginalUrl_ReplicaMissFallsBackToPrimary() {
+        String shortUrl = "fresh1";
+        String longUrl = "https://example.com/fresh";
+        when(urlMappingsRepository.findLongUrlByShortUrl(shortUrl)).thenReturn(Optional.empty());
+        when(urlMappingsRepository.findLongUrlByShortUrlOnPrimary(shortUrl)).thenReturn(Optional.of(ResolvedUrl.permanent(longUrl)));
+
+        String result = urlShortenerService.getOriginalUrl(shortUrl);
+
+        assertEquals(longUrl, result);
+        verify(shortCodeFilter, never()).recordFalsePositive();
+        verify(accessCountAggregator, times(1)).recordAccess(shortUrl);
+    }
+
+    @Test
+    public void testGetOriginalUrl_ExpiredLinkIsNotFound() {
+        String shortUrl = "old123";
+        when(urlMappingsRepository.findLongUrlByShortUrl(shortUrl)).thenReturn(Optional.of(
+                new ResolvedUrl("https://example.com", new Timestamp(System.currentTimeMillis() - 1000))));
+
+        assertEquals(null, urlShortenerService.getOriginalUrl(shortUrl));
+        assertEquals(null, urlShortenerService.getOriginalUrl(shortUrl));
+
+        verify(urlMappingsRepository, times(1)).findLongUrlByShortUrl(shortUrl);
+        verify(accessCountAggregator, never()).recordAccess(anyString());
+        verify(shortCodeFilter, never()).recordFalsePositive();
+    }
+
+    @Test
+    public void testCreateShortUrl_ExpiringLinkIsSavedWithoutDedupOrWriteBehind() {
+        UrlShortenerServiceImpl dedupService = newService(true);
+        when(writeBehindQueue.isEnabled()).thenReturn(true);
+        Instant expiresAt = Instant.now().plusSeconds(3600);
+
+        String shortUrl = dedupService.createShortUrl("https://example.com", expiresAt);
+
+        verify(urlMappingsRepository, never()).findByLongUrlHashIn(anyList());
+        verify(writeBehindQueue, never()).append(any(UrlMappings.class));
+        verify(urlMappingsRepository).save(argThat(mapping -> mapping.getShortUrl().equals(shortUrl)
+                && mapping.getExpiresAt().toInstant().equals(expiresAt)));
+        assertEquals("https://example.com", dedupService.getOriginalUrl(shortUrl));
+        verify(urlMappingsRepository, never()).findLongUrlByShortUrl(anyString());
+    }
+
+    @Test
+    public void testResolveUrl_ReturnsExpiryOfCachedLink() {
+        Instant expiresAt = Instant.now().plusSeconds(3600);
+        String shortUrl = urlShortenerService.createShortUrl("https://example.com", expiresAt);
+
+        ResolvedUrl resolved = urlShortenerService.resolveUrl(shortUrl);
+
+        assertEquals("https://example.com", resolved.longUrl());
+        assertEquals(expiresAt, resolved.expiresAt().toInstant());
+        verify(urlMappingsRepository, never()).findLongUrlByShortUrl(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreateShortUrls_ExpiringLinksGetCodesOfTheirOwn() {
+        UrlShortenerServiceImpl dedupService = newService(true);
+        when(urlMappingsRepository.findByLongUrlHashIn(anyList())).thenReturn(List.of());
+        Instant expiresAt = Instant.now().plusSeconds(3600);
+
+        List<String> result = dedupService.createShortUrls(
+                List.of("https://a.example.com", "https://a.example.com", "https://a.example.com"),
+                Arrays.asList(null, expiresAt, null));
+
+        assertEquals(result.get(0), result.get(2));
+        assertEquals(2, result.stream().distinct().count());
+        ArgumentCaptor<List<UrlMappings>> saved = ArgumentCaptor.forClass(List.class);
+        verify(urlMappingsRepository).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+        assertEquals(expiresAt, saved.getValue().get(1).getExpiresAt().toInstant());
+    }
+
+    @Test
+    public void testCreateShortUrl_DedupReturnsExistingCode() {
+        UrlShortenerServiceImpl dedupService = newService(true);
+        when(urlMappingsRepository.findByLongUrlHashIn(anyList()))
+                .thenReturn(List.of(new ShortUrlMapping("old123", "https://example.com")));
+
+        assertEquals("old123", dedupService.createShortUrl("https://example.com"));
+        assertEquals("old123", dedupService.createShortUrl("https://example.com"));
+
+        // The second creation is answered from the recent URLs without a query
+        verify(urlMappingsRepository, times(1)).findByLongUrlHashIn(anyList());
         verify(urlMappingsRepository, never()).save(any(UrlMappings.class));
+        assertEquals(2.0, meterRegistry.get("shortener.create.deduplicated").counter().count());
+    }
+
+    @Test
+    public void testCreateShortUrl_DedupRemembersCreatedCode() {
+        UrlShortenerServiceImpl dedupService = newService(true);
+        when(urlMappingsRepository.findByLongUrlHashIn(anyList())).thenReturn(List.of());
+
+        String shortUrl = dedupService.createShortUrl("https://example.com");
+
+        assertEquals(shortUrl, dedupService.createShortUrl("https://example.com"));
+        verify(urlMappingsRepository, times(1)).save(any(UrlMappings.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreateShortUrls_DedupSharesCodesWithinBatch() {
+        UrlShortenerServiceImpl dedupService = newService(true);
+        when(urlMappingsRepository.findByLongUrlHashIn(anyList()))
+                .thenReturn(List.of(new ShortUrlMapping("old123", "https://a.example.com")));
+
+        List<String> result = dedupService.createShortUrls(List.of(
+                "https://a.example.com", "https://b.example.com", "https://b.example.com", "https://a.example.com"));
+
+        assertEquals("old123", result.get(0));
+        assertEquals("old123", result.get(3));
+        assertEquals(result.get(1), result.get(2));
+        ArgumentCaptor<List<UrlMappings>> saved = ArgumentCaptor.forClass(List.class);
+        verify(urlMappingsRepository).saveAll(saved.capture());
+        assertEquals(1, saved.getValue().size());
+        assertEquals(LongUrlIndex.hash("https://b.example.com"), saved.getValue().get(0).getLongUrlHash());
+    }
+
+    @Test
+    public void testCreateShortUrls_WithoutDedupCreatesEveryUrl() {
+        List<String> result = urlShortenerService.createShortUrls(List.of("https://a.example.com", "https://a.example.com"));
+
+        assertEquals(2, result.stream().distinct().count());
+        verify(urlMappingsRepository, never()).findByLongUrlHashIn(anyList());
     }
 
     @Test
@@ -90,13 +309,81 @@ public class UrlShortenerServiceImplTest {
     }
 
     @Test
-    public void testFallbackGetOriginalUrl() {
+    public void testFallbackGetOriginalUrl_ResolvesFromSnapshot() {
         String shortUrl = "abc123";
-        String expectedMessage = "Service is currently unavailable. Please try again later.";
+        when(mappingSnapshot.find(shortUrl)).thenReturn(Optional.of("https://example.com"));
 
         String result = urlShortenerService.fallbackGetOriginalUrl(shortUrl, new Exception("Test Exception"));
 
-        assertEquals(expectedMessage, result);
+        assertEquals("https://example.com", result);
+        verify(accessCountAggregator).recordAccess(shortUrl);
+        assertEquals(1.0, meterRegistry.get("shortener.fallback").tag("method", "getOriginalUrl").counter().count());
     }
 
+    @Test
+    public void testFallbackGetOriginalUrl_UnavailableWhenNotInSnapshot() {
+        String shortUrl = "abc123";
+        when(mappingSnapshot.find(shortUrl)).thenReturn(Optional.empty());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> urlShortenerService.fallbackGetOriginalUrl(shortUrl, new Exception("Test Exception")));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals(1.0, meterRegistry.get("shortener.fallback").tag("method", "getOriginalUrl").counter().count());
+    }
+
+    @Test
+    public void testGetOriginalUrl_PrimarySnapshotSkipsDatabase() {
+        when(mappingSnapshot.isPrimary()).thenReturn(true);
+        when(mappingSnapshot.find("abc123")).thenReturn(Optional.of("https://example.com"));
+
+        assertEquals("https://example.com", urlShortenerService.getOriginalUrl("abc123"));
+        verify(urlMappingsRepository, never()).findLongUrlByShortUrl(anyString());
+    }
+
+    @Test
+    public void testGetOriginalUrl_PrimarySnapshotMissFallsThroughToDatabase() {
+        when(mappingSnapshot.isPrimary()).thenReturn(true);
+        when(mappingSnapshot.find("new123")).thenReturn(Optional.empty());
+        when(urlMappingsRepository.findLongUrlByShortUrl("new123"))
+                .thenReturn(Optional.of(ResolvedUrl.permanent("https://example.com")));
+
+        assertEquals("https://example.com", urlShortenerService.getOriginalUrl("new123"));
+    }
+
+    @Test
+    public void testCreateShortUrl_WriteBehindAppendsInsteadOfSaving() {
+        when(writeBehindQueue.isEnabled()).thenReturn(true);
+
+        String shortUrl = urlShortenerService.createShortUrl("https://example.com/behind");
+
+        verify(writeBehindQueue, times(1)).append(argThat(mapping -> mapping.getShortUrl().equals(shortUrl)));
+        verify(urlMappingsRepository, never()).save(any(UrlMappings.class));
+        verify(shortCodeFilter, times(1)).put(shortUrl);
+        // Not committed yet, so the other nodes are not told about it
+        verify(invalidationBus, never()).created(anyString());
+    }
+
+    @Test
+    public void testCreateShortUrl_TellsOtherNodesAboutSavedCode() {
+        String shortUrl = urlShortenerService.createShortUrl("https://example.com/hint");
+
+        verify(invalidationBus, times(1)).created(shortUrl);
+    }
+
+    @Test
+    public void testGetOriginalUrl_ServesUncommittedMappingWithoutDatabase() {
+        when(writeBehindQueue.find("pend01")).thenReturn(Optional.of("https://example.com/pending"));
+
+        assertEquals("https://example.com/pending", urlShortenerService.getOriginalUrl("pend01"));
+        verify(urlMappingsRepository, never()).findLongUrlByShortUrl(anyString());
+    }
+
+    private UrlShortenerServiceImpl newService(boolean dedup) {
+        ShortUrlCache shortUrlCache = new ShortUrlCache(100, Duration.ofMinutes(1), Duration.ofSeconds(30), meterRegistry);
+        LongUrlIndex longUrlIndex = new LongUrlIndex(urlMappingsRepository, dedup, 100, Duration.ofMinutes(1), meterRegistry);
+        return new UrlShortenerServiceImpl(urlMappingsRepository, shortUrlCache, shortCodeFilter, longUrlIndex,
+                mappingSnapshot, writeBehindQueue, accessCountAggregator, new RandomShortCodeGenerator(6), new ShortenerMetrics(meterRegistry),
+                invalidationBus);
+    }
 }
@@ -0,0 +1,295 @@
+package com.playgon.service;
+
+import com.playgon.invalidation.InvalidationBus;
+import com.playgon.model.UrlMappings;
+import com.playgon.repository.UrlMappingsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindQueueTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private UrlMappingsRepository urlMappingsRepository;
+    @Mock
+    private InvalidationBus invalidationBus;
+
+    private SimpleMeterRegistry meterRegistry;
+    private final List<WriteBehindQueue> queues = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        queues.forEach(WriteBehindQueue::close);
+    }
+
+    private WriteBehindQueue open(long segmentSize) {
+        WriteBehindQueue queue = new WriteBehindQueue(urlMappingsRepository, invalidationBus, true, directory, 2, 1000,
+                segmentSize, "block", meterRegistry);
+        queue.open();
+        queues.add(queue);
+        return queue;
+    }
+
+    private static UrlMappings mapping(String shortUrl) {
+        UrlMappings mapping = new UrlMappings();
+        mapping.setShortUrl(shortUrl);
+        mapping.setLongUrl("https://example.com/" + shortUrl);
+        mapping.setLongUrlHash(42L);
+        mapping.setCreatedAt(new Timestamp(1_700_000_000_000L));
+        return mapping;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> savedCodes() {
+        ArgumentCaptor<List<UrlMappings>> captor = ArgumentCaptor.forClass(List.class);
+        verify(urlMappingsRepository, atLeastOnce()).saveAll(captor.capture());
+        return captor.getAllValues().stream().flatMap(List::stream).map(UrlMappings::getShortUrl).toList();
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testAppend_ServesMappingUntilCommitted() {
+        WriteBehindQueue queue = open(1 << 20);
+
+        queue.append(mapping("aaa"));
+
+        assertEquals(Optional.of("https://example.com/aaa"), queue.find("aaa"));
+        verifyNoInteractions(urlMappingsRepository);
+
+        queue.commit();
+
+        assertEquals(List.of("aaa"), savedCodes());
+        assertEquals(Optional.empty(), queue.find("aaa"));
+        assertEquals(1, meterRegistry.get("shortener.writebehind.committed").counter().count());
+    }
+
+    @Test
+    public void testCommit_InsertsInBatchesInLogOrder() {
+        WriteBehindQueue queue = open(1 << 20);
+        for (String code : List.of("a1", "a2", "a3", "a4", "a5")) {
+            queue.append(mapping(code));
+        }
+
+        queue.commit();
+
+        // Batches of at most two mappings, each in its own transaction
+        verify(urlMappingsRepository, times(3)).saveAll(anyList());
+        assertEquals(List.of("a1", "a2", "a3", "a4", "a5"), savedCodes());
+    }
+
+    @Test
+    public void testCommit_FailedBatchIsRetried() {
+        WriteBehindQueue queue = open(1 << 20);
+        UrlMappings mapping = mapping("bbb");
+        queue.append(mapping);
+        when(urlMappingsRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            mapping.setId(7L);
+            throw new IllegalStateException("database down");
+        }).thenReturn(List.of());
+
+        queue.commit();
+
+        assertEquals(Optional.of("https://example.com/bbb"), queue.find("bbb"));
+        assertNull(mapping.getId());
+
+        queue.commit();
+
+        assertEquals(Optional.empty(), queue.find("bbb"));
+        verify(urlMappingsRepository, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    public void testCommit_TellsOtherNodesAboutCodesCommittedLate() {
+        WriteBehindQueue queue = open(1 << 20);
+        // Created long before the commit, outside the window of the other nodes' filter refresh
+        queue.append(mapping("c1"));
+        queue.append(mapping("c2"));
+        when(urlMappingsRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database down"))
+                .thenReturn(List.of());
+
+        queue.commit();
+
+        verifyNoInteractions(invalidationBus);
+
+        queue.commit();
+
+        verify(invalidationBus).created("c1");
+        verify(invalidationBus).created("c2");
+    }
+
+    @Test
+    public void testCommit_RetrySkipsMappingsTheFailedAttemptInserted() {
+        WriteBehindQueue queue = open(1 << 20);
+        queue.append(mapping("d1"));
+        queue.append(mapping("d2"));
+        // d1 was inserted, on its shard or before the connection dropped, but the attempt reported failure
+        when(urlMappingsRepository.saveAll(anyList())).thenThrow(new IllegalStateException("connection reset"))
+                .thenReturn(List.of());
+        when(urlMappingsRepository.findExistingShortUrls(anyList())).thenReturn(List.of("d1"));
+
+        queue.commit();
+        queue.commit();
+
+        verify(urlMappingsRepository, times(1)).findExistingShortUrls(List.of("d1", "d2"));
+        assertEquals(List.of("d1", "d2", "d2"), savedCodes());
+        assertEquals(Optional.empty(), queue.find("d1"));
+        assertEquals(Optional.empty(), queue.find("d2"));
+
+        queue.append(mapping("d3"));
+        queue.commit();
+
+        // Once the uncertain batch is through, new batches are inserted without a lookup
+        verify(urlMappingsRepository, times(1)).findExistingShortUrls(anyList());
+    }
+
+    @Test
+    public void testOpen_ReplaysUncommittedMappingsAndSkipsExistingOnes() {
+        when(urlMappingsRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database down"));
+        WriteBehindQueue queue = open(1 << 20);
+        queue.append(mapping("c1"));
+        queue.append(mapping("c2"));
+        queue.close();
+        queues.remove(queue);
+
+        reset(urlMappingsRepository);
+        // c1 was committed right before the crash, but its segment had not been deleted yet
+        when(urlMappingsRepository.findExistingShortUrls(anyList())).thenReturn(List.of("c1"));
+        WriteBehindQueue reopened = open(1 << 20);
+
+        assertEquals(Optional.of("https://example.com/c1"), reopened.find("c1"));
+        assertEquals(Optional.of("https://example.com/c2"), reopened.find("c2"));
+
+        reopened.commit();
+
+        assertEquals(List.of("c2"), savedCodes());
+        assertEquals(Optional.empty(), reopened.find("c2"));
+    }
+
+    @Test
+    public void testOpen_IgnoresTornRecordAtEndOfSegment() throws Exception {
+        when(urlMappingsRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database down"));
+        WriteBehindQueue queue = open(1 << 20);
+        queue.append(mapping("d1"));
+        queue.close();
+        queues.remove(queue);
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] torn = WriteBehindQueue.encode(mapping("d2"));
+        Files.write(segment, Arrays.copyOf(torn, torn.length - 3), StandardOpenOption.APPEND);
+
+        reset(urlMappingsRepository);
+        WriteBehindQueue reopened = open(1 << 20);
+
+        assertEquals(Optional.of("https://example.com/d1"), reopened.find("d1"));
+        assertEquals(Optional.empty(), reopened.find("d2"));
+    }
+
+    @Test
+    public void testCommit_DeletesFullyCommittedSegments() throws Exception {
+        // Every group rolls over to a new segment
+        WriteBehindQueue queue = open(1);
+        queue.append(mapping("e1"));
+        queue.append(mapping("e2"));
+        queue.append(mapping("e3"));
+        assertEquals(3, segmentCount());
+
+        queue.commit();
+
+        // Only the segment being written to is kept
+        assertEquals(1, segmentCount());
+    }
+
+    @Test
+    public void testAppend_ConcurrentCallersAreAllMadeDurable() throws Exception {
+        WriteBehindQueue queue = open(1 << 20);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String code = "f" + i;
+                futures.add(executor.submit(() -> queue.append(mapping(code))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < 200; i++) {
+            assertTrue(queue.find("f" + i).isPresent());
+        }
+        // Each group is fsync'd once, however many callers it holds
+        assertEquals(200, meterRegistry.get("shortener.writebehind.group.size").summary().totalAmount());
+    }
+
+    @Test
+    public void testAppend_RejectedOnceClosed() {
+        WriteBehindQueue queue = open(1 << 20);
+        queue.close();
+
+        assertFalse(queue.isEnabled());
+        assertThrows(IllegalStateException.class, () -> queue.append(mapping("g1")));
+    }
+
+    @Test
+    public void testConstructor_RequiresCollisionFreeCodes() {
+        assertThrows(IllegalStateException.class, () -> new WriteBehindQueue(urlMappingsRepository, invalidationBus,
+                true, directory, 2, 1000, 1 << 20, "random", meterRegistry));
+    }
+
+    @Test
+    public void testDisabled_DoesNothing() {
+        WriteBehindQueue queue = new WriteBehindQueue(urlMappingsRepository, invalidationBus, false, directory, 2, 1000,
+                1 << 20, "random", meterRegistry);
+        queue.open();
+
+        queue.commit();
+
+        assertFalse(queue.isEnabled());
+        assertEquals(Optional.empty(), queue.find("any"));
+        verifyNoInteractions(urlMappingsRepository);
+    }
+}
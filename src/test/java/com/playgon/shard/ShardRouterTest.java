@@ -0,0 +1,113 @@
+package com.playgon.shard;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardRouterTest {
+
+    private final List<ShardRouter> routers = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        routers.forEach(ShardRouter::close);
+    }
+
+    private ShardRouter router(int shardCount) {
+        ShardRouter router = new ShardRouter(shardCount);
+        routers.add(router);
+        return router;
+    }
+
+    @Test
+    public void testAssign_LeavesCodesUnchangedWithOneShard() {
+        ShardRouter router = router(1);
+
+        assertEquals("abc1234", router.assign("abc1234"));
+        assertEquals(0, router.shardOf("zbc1234"));
+    }
+
+    @Test
+    public void testAssign_EmbedsShardThatRoutesTheCode() {
+        ShardRouter router = router(4);
+        int[] codesPerShard = new int[4];
+
+        for (int i = 0; i < 4000; i++) {
+            String code = router.assign("code" + i);
+            assertEquals("code" + i, code.substring(1));
+            codesPerShard[router.shardOf(code)]++;
+        }
+
+        for (int codes : codesPerShard) {
+            assertTrue(codes > 800 && codes < 1200, "Uneven spread: " + codes);
+        }
+    }
+
+    @Test
+    public void testShardOf_UnknownShardIsShardZero() {
+        ShardRouter router = router(3);
+
+        assertEquals(2, router.shardOf("2abc"));
+        // Codes created before sharding was enabled may start with any character
+        assertEquals(0, router.shardOf("zabc"));
+        assertEquals(0, router.shardOf(""));
+    }
+
+    @Test
+    public void testJumpHash_AddingAShardOnlyMovesKeysToIt() {
+        for (long key = 0; key < 10_000; key++) {
+            int before = ShardRouter.jumpHash(key * 0x9e3779b97f4a7c15L, 5);
+            int after = ShardRouter.jumpHash(key * 0x9e3779b97f4a7c15L, 6);
+            assertTrue(after == before || after == 5);
+        }
+    }
+
+    @Test
+    public void testGroupByShard_KeepsOrderWithinShard() {
+        ShardRouter router = router(3);
+
+        Map<Integer, List<String>> groups = router.groupByShard(List.of("1a", "2b", "1c", "0d"), code -> code);
+
+        assertEquals(Map.of(0, List.of("0d"), 1, List.of("1a", "1c"), 2, List.of("2b")), groups);
+    }
+
+    @Test
+    public void testGatherTop_MergesTopOfEveryShard() {
+        ShardRouter router = router(3);
+
+        List<Long> top = router.gatherTop(() -> {
+            long shard = ShardContext.current();
+            return List.of(shard * 10 + 2, shard * 10 + 1);
+        }, value -> value, 4);
+
+        assertEquals(List.of(22L, 21L, 12L, 11L), top);
+    }
+
+    @Test
+    public void testGather_PropagatesFailures() {
+        ShardRouter router = router(2);
+        IllegalStateException failure = new IllegalStateException("shard down");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> router.gather(() -> {
+            if (ShardContext.current() == 1) {
+                throw failure;
+            }
+            return List.of();
+        }));
+
+        assertSame(failure, thrown);
+    }
+
+    @Test
+    public void testConstructor_RejectsMoreShardsThanOneDigitHolds() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(ShardRouter.MAX_SHARDS + 1));
+    }
+}
@@ -0,0 +1,86 @@
+package com.playgon.shortcode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BlockAllocatingShortCodeGeneratorTest {
+
+    private final AtomicLong counter = new AtomicLong(1);
+    private final AtomicInteger allocations = new AtomicInteger();
+    private final IdBlockAllocator allocator = size -> {
+        allocations.incrementAndGet();
+        return counter.getAndAdd(size);
+    };
+
+    @Test
+    public void testNextCode_EncodesSequentialIdsWithoutPermutation() {
+        BlockAllocatingShortCodeGenerator generator = new BlockAllocatingShortCodeGenerator(allocator, 100, null);
+
+        assertEquals("1", generator.nextCode());
+        assertEquals("2", generator.nextCode());
+        assertEquals(1, allocations.get());
+    }
+
+    @Test
+    public void testNextCode_ReservesNewBlockWhenExhausted() {
+        BlockAllocatingShortCodeGenerator generator = new BlockAllocatingShortCodeGenerator(allocator, 2, null);
+
+        for (int i = 0; i < 5; i++) {
+            generator.nextCode();
+        }
+
+        assertEquals(3, allocations.get());
+    }
+
+    @Test
+    public void testNextCode_PermutedCodesAreFixedWidthAndUnique() throws Exception {
+        BlockAllocatingShortCodeGenerator generator =
+                new BlockAllocatingShortCodeGenerator(allocator, 50, new FeistelPermutation(42));
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    codes.add(generator.nextCode());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(8000, codes.size());
+        assertTrue(codes.stream().allMatch(code -> code.length() == 7));
+    }
+
+    @Test
+    public void testFeistelPermutation_IsInvertible() {
+        FeistelPermutation permutation = new FeistelPermutation(7);
+
+        for (long value : new long[]{0, 1, 2, 12345, FeistelPermutation.DOMAIN - 1}) {
+            long permuted = permutation.permute(value);
+            assertTrue(permuted >= 0 && permuted < FeistelPermutation.DOMAIN);
+            assertEquals(value, permutation.inverse(permuted));
+        }
+    }
+
+    @Test
+    public void testBase62_RoundTrip() {
+        assertEquals("0", Base62.encode(0));
+        assertEquals("z", Base62.encode(61));
+        assertEquals("10", Base62.encode(62));
+        assertEquals("0000010", Base62.encode(62, 7));
+        assertEquals(Long.MAX_VALUE, Base62.decode(Base62.encode(Long.MAX_VALUE)));
+        assertEquals(-1, Base62.decode("abc-12"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.playgon.stats;
+
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.metrics.ShortenerMetrics;
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class AccessCountAggregatorTest {
+
+    @Mock
+    private UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+
+    @Mock
+    private ClickAnalytics clickAnalytics;
+
+    private AccessCountAggregator accessCountAggregator;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ShortUrlCache shortUrlCache = new ShortUrlCache(10, Duration.ofMinutes(1), Duration.ofSeconds(30), meterRegistry);
+        accessCountAggregator = new AccessCountAggregator(urlMappingsJdbcRepository,
+                new TopUrlsLeaderboard(urlMappingsJdbcRepository, shortUrlCache, 10), clickAnalytics,
+                new ShortenerMetrics(meterRegistry), 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlush_WritesDeltasInBatches() {
+        accessCountAggregator.recordAccess("a");
+        accessCountAggregator.recordAccess("a");
+        accessCountAggregator.recordAccess("b");
+        accessCountAggregator.recordAccess("c");
+
+        accessCountAggregator.flush();
+
+        ArgumentCaptor<List<Map.Entry<String, Long>>> captor = ArgumentCaptor.forClass(List.class);
+        verify(urlMappingsJdbcRepository, times(2)).incrementAccessCounts(captor.capture());
+        long total = captor.getAllValues().stream()
+                .flatMap(List::stream)
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+        assertEquals(4, total);
+        assertTrue(captor.getAllValues().stream().allMatch(batch -> batch.size() <= 2));
+        assertEquals(0, accessCountAggregator.pendingCount("a"));
+        verify(clickAnalytics, times(2)).record(anyList());
+    }
+
+    @Test
+    public void testFlush_NothingPending() {
+        accessCountAggregator.flush();
+
+        verify(urlMappingsJdbcRepository, never()).incrementAccessCounts(anyList());
+    }
+
+    @Test
+    public void testFlush_FailedBatchIsRetained() {
+        doThrow(new RuntimeException("DB down")).when(urlMappingsJdbcRepository).incrementAccessCounts(anyList());
+        accessCountAggregator.recordAccess("a");
+
+        accessCountAggregator.flush();
+
+        assertEquals(1, accessCountAggregator.pendingCount("a"));
+        verify(clickAnalytics, never()).record(anyList());
+    }
+
+    @Test
+    public void testRecordAccess_ConcurrentIncrementsAreNotLost() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    accessCountAggregator.recordAccess("hot");
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(8000, accessCountAggregator.pendingCount("hot"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlush_ConcurrentWithIncrementsLosesNone() throws Exception {
+        AtomicLong flushed = new AtomicLong();
+        doAnswer(invocation -> {
+            List<Map.Entry<String, Long>> batch = invocation.getArgument(0);
+            batch.forEach(delta -> flushed.addAndGet(delta.getValue()));
+            return null;
+        }).when(urlMappingsJdbcRepository).incrementAccessCounts(anyList());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                // Short bursts over many codes, so that idle adders are removed while others are incremented
+                for (int j = 0; j < 20_000; j++) {
+                    accessCountAggregator.recordAccess("code" + (j / 10 % 50));
+                }
+            });
+        }
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+            accessCountAggregator.flush();
+        }
+        accessCountAggregator.flush();
+        accessCountAggregator.flush();
+
+        assertEquals(160_000, flushed.get());
+    }
+}
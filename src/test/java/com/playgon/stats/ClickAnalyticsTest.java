@@ -0,0 +1,172 @@
+package com.playgon.stats;
+
+import com.playgon.model.ClickBucket;
+import com.playgon.model.ClickResolution;
+import com.playgon.repository.ClickBucketJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ClickAnalyticsTest {
+
+    private static final Instant START = Instant.parse("2024-05-06T10:00:30Z");
+
+    @Mock
+    private ClickBucketJdbcRepository clickBucketJdbcRepository;
+
+    private MutableClock clock;
+    private ClickAnalytics clickAnalytics;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        clock = new MutableClock(START);
+        clickAnalytics = new ClickAnalytics(clickBucketJdbcRepository, Duration.ofDays(7), Duration.ofDays(365), 100, 2, 3,
+                Duration.ZERO, clock);
+    }
+
+    @Test
+    public void testFlush_WritesOnlyBucketsThatAreOver() {
+        clickAnalytics.record(List.of(Map.entry("a", 2L), Map.entry("b", 1L)));
+        clickAnalytics.record(List.of(Map.entry("a", 3L)));
+
+        clickAnalytics.flush();
+        verify(clickBucketJdbcRepository, never()).insertAll(anyList());
+
+        clock.advance(Duration.ofSeconds(40));
+        clickAnalytics.flush();
+
+        List<ClickBucket> written = captureWritten(1).get(0);
+        assertEquals(2, written.size());
+        assertEquals(Map.of("a", 5L, "b", 1L), clicksByShortUrl(written, ClickResolution.MINUTE));
+        assertEquals(Instant.parse("2024-05-06T10:00:00Z"), written.get(0).getBucketStart().toInstant());
+    }
+
+    @Test
+    public void testFlush_RollsUpIntoHourBuckets() {
+        clickAnalytics.record(List.of(Map.entry("a", 2L)));
+        clock.advance(Duration.ofMinutes(5));
+        clickAnalytics.record(List.of(Map.entry("a", 3L)));
+        clock.advance(Duration.ofHours(1));
+
+        clickAnalytics.flush();
+
+        List<ClickBucket> written = captureWritten(1).get(0);
+        assertEquals(Map.of("a", 5L), clicksByShortUrl(written, ClickResolution.HOUR));
+        assertEquals(2, written.stream().filter(bucket -> bucket.getResolution() == ClickResolution.MINUTE).count());
+    }
+
+    @Test
+    public void testShutdown_WritesOpenBuckets() {
+        clickAnalytics.record(List.of(Map.entry("a", 2L)));
+
+        clickAnalytics.shutdown();
+
+        List<ClickBucket> written = captureWritten(1).get(0);
+        assertEquals(Map.of("a", 2L), clicksByShortUrl(written, ClickResolution.MINUTE));
+        assertEquals(Map.of("a", 2L), clicksByShortUrl(written, ClickResolution.HOUR));
+    }
+
+    @Test
+    public void testFlush_FailedWriteIsRetried() {
+        doThrow(new RuntimeException("DB down")).doNothing().when(clickBucketJdbcRepository).insertAll(anyList());
+        clickAnalytics.record(List.of(Map.entry("a", 2L)));
+        clock.advance(Duration.ofMinutes(1));
+
+        clickAnalytics.flush();
+        clickAnalytics.flush();
+
+        List<List<ClickBucket>> attempts = captureWritten(2);
+        assertEquals(Map.of("a", 2L), clicksByShortUrl(attempts.get(1), ClickResolution.MINUTE));
+    }
+
+    @Test
+    public void testSeries_DefaultsAndValidatesRange() {
+        clickAnalytics.series("a", ClickResolution.MINUTE, null, null);
+        verify(clickBucketJdbcRepository).findSeries("a", ClickResolution.MINUTE, START.minus(Duration.ofHours(1)), START);
+
+        assertThrows(IllegalArgumentException.class, () -> clickAnalytics.series("a", ClickResolution.HOUR, START, START));
+        assertThrows(IllegalArgumentException.class,
+                () -> clickAnalytics.series("a", ClickResolution.MINUTE, START.minus(Duration.ofHours(2)), START));
+    }
+
+    @Test
+    public void testPurge_DeletesPerResolutionRetention() {
+        clickAnalytics.purge();
+
+        verify(clickBucketJdbcRepository).deleteOlderThan(ClickResolution.MINUTE, START.minus(Duration.ofDays(7)), 2);
+        verify(clickBucketJdbcRepository).deleteOlderThan(ClickResolution.HOUR, START.minus(Duration.ofDays(365)), 2);
+    }
+
+    @Test
+    public void testPurge_DeletesInBatchesUpToTheLimitPerRun() {
+        when(clickBucketJdbcRepository.deleteOlderThan(eq(ClickResolution.MINUTE), any(), eq(2))).thenReturn(2, 2, 1);
+        when(clickBucketJdbcRepository.deleteOlderThan(eq(ClickResolution.HOUR), any(), eq(2))).thenReturn(2);
+
+        clickAnalytics.purge();
+
+        verify(clickBucketJdbcRepository, times(3)).deleteOlderThan(eq(ClickResolution.MINUTE), any(), eq(2));
+        // Still full after three batches, left for the next run
+        verify(clickBucketJdbcRepository, times(3)).deleteOlderThan(eq(ClickResolution.HOUR), any(), eq(2));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<ClickBucket>> captureWritten(int times) {
+        ArgumentCaptor<List<ClickBucket>> captor = ArgumentCaptor.forClass(List.class);
+        verify(clickBucketJdbcRepository, times(times)).insertAll(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static Map<String, Long> clicksByShortUrl(List<ClickBucket> buckets, ClickResolution resolution) {
+        return buckets.stream()
+                .filter(bucket -> bucket.getResolution() == resolution)
+                .collect(Collectors.groupingBy(ClickBucket::getShortUrl,
+                        Collectors.summingLong(ClickBucket::getClicks)));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
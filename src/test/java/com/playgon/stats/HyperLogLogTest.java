@@ -0,0 +1,88 @@
+package com.playgon.stats;
+
+import com.playgon.shortcode.Hashing;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void testEstimate_SmallCardinalityIsNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < 50; i++) {
+            sketch.add(Hashing.hash("ip:10.0.0." + i));
+            sketch.add(Hashing.hash("ip:10.0.0." + i));
+        }
+
+        // Linear counting only undercounts when two elements share a register
+        assertEquals(50, sketch.estimate(), 1);
+    }
+
+    @Test
+    public void testEstimate_LargeCardinalityWithinThreeStandardErrors() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        int distinct = 200_000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.add(Hashing.hash("ip:" + i));
+        }
+
+        double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+        assertTrue(error < 3 * 1.04 / Math.sqrt(4096), "error " + error);
+    }
+
+    @Test
+    public void testAdd_ReportsWhetherARegisterChanged() {
+        HyperLogLog sketch = new HyperLogLog(12);
+
+        assertTrue(sketch.add(Hashing.hash("key:a")));
+        assertFalse(sketch.add(Hashing.hash("key:a")));
+    }
+
+    @Test
+    public void testMerge_EstimatesUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (int i = 0; i < 30_000; i++) {
+            first.add(Hashing.hash("ip:" + i));
+            second.add(Hashing.hash("ip:" + (i + 10_000)));
+        }
+
+        first.merge(second);
+
+        double error = Math.abs(first.estimate() - 40_000) / 40_000.0;
+        assertTrue(error < 0.05, "error " + error);
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    public void testToBytes_SparseSketchIsCompactAndRoundTrips() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int i = 0; i < 10; i++) {
+            sketch.add(Hashing.hash("ip:" + i));
+        }
+
+        byte[] bytes = sketch.toBytes();
+
+        assertEquals(2 + 4 * 10, bytes.length);
+        assertEquals(10, HyperLogLog.fromBytes(bytes).estimate());
+    }
+
+    @Test
+    public void testToBytes_DenseSketchRoundTrips() {
+        HyperLogLog sketch = new HyperLogLog(8);
+        for (int i = 0; i < 5_000; i++) {
+            sketch.add(Hashing.hash("ip:" + i));
+        }
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertEquals(2 + 256, bytes.length);
+        assertEquals(sketch.estimate(), restored.estimate());
+        assertEquals(8, restored.precision());
+    }
+}
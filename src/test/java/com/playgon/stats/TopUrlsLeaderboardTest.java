@@ -0,0 +1,139 @@
+package com.playgon.stats;
+
+import com.playgon.cache.ShortUrlCache;
+import com.playgon.model.TopUrl;
+import com.playgon.repository.UrlMappingsJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+public class TopUrlsLeaderboardTest {
+
+    @Mock
+    private UrlMappingsJdbcRepository urlMappingsJdbcRepository;
+
+    private ShortUrlCache shortUrlCache;
+    private TopUrlsLeaderboard topUrlsLeaderboard;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        shortUrlCache = new ShortUrlCache(10, Duration.ofMinutes(1), Duration.ofSeconds(30), new SimpleMeterRegistry());
+        topUrlsLeaderboard = new TopUrlsLeaderboard(urlMappingsJdbcRepository, shortUrlCache, 3);
+        when(urlMappingsJdbcRepository.findTopAccessed(3)).thenReturn(List.of(
+                new TopUrl("a", "https://a.example.com", 30),
+                new TopUrl("b", "https://b.example.com", 20),
+                new TopUrl("c", "https://c.example.com", 10)));
+        topUrlsLeaderboard.reconcile();
+    }
+
+    @Test
+    public void testTop_ReturnsReconciledCountsInOrder() {
+        assertEquals(List.of(
+                new TopUrl("a", "https://a.example.com", 30),
+                new TopUrl("b", "https://b.example.com", 20)), topUrlsLeaderboard.top(2));
+        assertEquals(3, topUrlsLeaderboard.top(100).size());
+        assertEquals(0, topUrlsLeaderboard.top(-1).size());
+    }
+
+    @Test
+    public void testRecordFlush_ReordersByNewCounts() {
+        topUrlsLeaderboard.recordFlush(List.of(Map.entry("c", 25L)), () -> { });
+
+        assertEquals(List.of("c", "a", "b"), shortUrls(topUrlsLeaderboard.top(3)));
+        assertEquals(35, topUrlsLeaderboard.top(1).get(0).accessCount());
+    }
+
+    @Test
+    public void testRecordFlush_NewcomerReplacesLeastAccessed() {
+        shortUrlCache.put("d", "https://d.example.com");
+
+        topUrlsLeaderboard.recordFlush(List.of(Map.entry("d", 5L)), () -> { });
+
+        // The newcomer inherits the count of the evicted entry, an upper bound of its real count
+        assertEquals(List.of(
+                new TopUrl("a", "https://a.example.com", 30),
+                new TopUrl("b", "https://b.example.com", 20),
+                new TopUrl("d", "https://d.example.com", 15)), topUrlsLeaderboard.top(3));
+    }
+
+    @Test
+    public void testRecordFlush_LooksUpLongUrlsMissingFromTheCache() {
+        when(urlMappingsJdbcRepository.findLongUrls(List.of("d"))).thenReturn(Map.of("d", "https://d.example.com"));
+
+        topUrlsLeaderboard.recordFlush(List.of(Map.entry("d", 25L)), () -> { });
+
+        assertEquals(new TopUrl("d", "https://d.example.com", 35), topUrlsLeaderboard.top(1).get(0));
+    }
+
+    @Test
+    public void testRecordFlush_FailedWriteIsNotApplied() {
+        assertThrows(IllegalStateException.class, () -> topUrlsLeaderboard.recordFlush(List.of(Map.entry("c", 25L)), () -> {
+            throw new IllegalStateException("database down");
+        }));
+
+        assertEquals(List.of("a", "b", "c"), shortUrls(topUrlsLeaderboard.top(3)));
+    }
+
+    @Test
+    public void testReconcile_RestoresExactCounts() {
+        topUrlsLeaderboard.recordFlush(List.of(Map.entry("d", 5L)), () -> { });
+        when(urlMappingsJdbcRepository.findTopAccessed(3)).thenReturn(List.of(
+                new TopUrl("a", "https://a.example.com", 30),
+                new TopUrl("b", "https://b.example.com", 20),
+                new TopUrl("c", "https://c.example.com", 10)));
+
+        topUrlsLeaderboard.reconcile();
+
+        assertEquals(List.of("a", "b", "c"), shortUrls(topUrlsLeaderboard.top(3)));
+    }
+
+    @Test
+    public void testReconcile_ReappliesDeltasFlushedDuringTheQuery() {
+        ExecutorService flusher = Executors.newSingleThreadExecutor();
+        try {
+            when(urlMappingsJdbcRepository.findTopAccessed(3)).thenAnswer(invocation -> {
+                // Would time out if the query ran under the lock
+                flusher.submit(() -> topUrlsLeaderboard.recordFlush(List.of(Map.entry("c", 25L)), () -> { }))
+                        .get(5, TimeUnit.SECONDS);
+                return List.of(
+                        new TopUrl("a", "https://a.example.com", 30),
+                        new TopUrl("b", "https://b.example.com", 20),
+                        new TopUrl("c", "https://c.example.com", 10));
+            });
+
+            topUrlsLeaderboard.reconcile();
+        } finally {
+            flusher.shutdown();
+        }
+
+        assertEquals(List.of("c", "a", "b"), shortUrls(topUrlsLeaderboard.top(3)));
+        assertEquals(35, topUrlsLeaderboard.top(1).get(0).accessCount());
+    }
+
+    @Test
+    public void testReconcile_KeepsLeaderboardOnFailure() {
+        when(urlMappingsJdbcRepository.findTopAccessed(3)).thenThrow(new IllegalStateException("database down"));
+
+        topUrlsLeaderboard.reconcile();
+
+        assertEquals(List.of("a", "b", "c"), shortUrls(topUrlsLeaderboard.top(3)));
+    }
+
+    private static List<String> shortUrls(List<TopUrl> topUrls) {
+        return topUrls.stream().map(TopUrl::shortUrl).toList();
+    }
+}
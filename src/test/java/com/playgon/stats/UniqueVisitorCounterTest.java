@@ -0,0 +1,178 @@
+package com.playgon.stats;
+
+import com.playgon.model.UniqueVisitors;
+import com.playgon.model.VisitorSketch;
+import com.playgon.ratelimit.ClientKeyResolver;
+import com.playgon.repository.VisitorSketchJdbcRepository;
+import com.playgon.shortcode.Hashing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class UniqueVisitorCounterTest {
+
+    private static final Instant START = Instant.parse("2024-05-06T10:00:00Z");
+
+    @Mock
+    private VisitorSketchJdbcRepository visitorSketchJdbcRepository;
+
+    private MutableClock clock;
+    private UniqueVisitorCounter uniqueVisitorCounter;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        clock = new MutableClock(START);
+        uniqueVisitorCounter = new UniqueVisitorCounter(visitorSketchJdbcRepository, new ClientKeyResolver(false),
+                12, Duration.ofDays(90), 31, clock);
+        when(visitorSketchJdbcRepository.findSketches(anyString(), any(), any())).thenReturn(List.of());
+    }
+
+    @Test
+    public void testCount_IncludesVisitsNotWrittenYet() {
+        uniqueVisitorCounter.recordVisit("a", "ip:1");
+        uniqueVisitorCounter.recordVisit("a", "ip:2");
+        uniqueVisitorCounter.recordVisit("a", "ip:1");
+        uniqueVisitorCounter.recordVisit("b", "ip:3");
+
+        UniqueVisitors visitors = uniqueVisitorCounter.count("a", null, null);
+
+        assertEquals(new UniqueVisitors("a", LocalDate.parse("2024-04-30"), LocalDate.parse("2024-05-07"), 2), visitors);
+        verify(visitorSketchJdbcRepository).findSketches("a", Instant.parse("2024-04-30T00:00:00Z"),
+                Instant.parse("2024-05-07T00:00:00Z"));
+    }
+
+    @Test
+    public void testCount_MergesStoredSketchesOfOtherNodes() {
+        HyperLogLog otherNode = new HyperLogLog(12);
+        otherNode.add(Hashing.hash("ip:1"));
+        otherNode.add(Hashing.hash("ip:9"));
+        when(visitorSketchJdbcRepository.findSketches(anyString(), any(), any())).thenReturn(List.of(
+                otherNode.toBytes(), new HyperLogLog(10).toBytes()));
+        uniqueVisitorCounter.recordVisit("a", "ip:1");
+        uniqueVisitorCounter.recordVisit("a", "ip:2");
+
+        // ip:1 is counted once, the sketch of another precision is ignored
+        assertEquals(3, uniqueVisitorCounter.count("a", null, null).uniqueVisitors());
+    }
+
+    @Test
+    public void testCount_RejectsInvalidRanges() {
+        LocalDate day = LocalDate.parse("2024-05-06");
+
+        assertThrows(IllegalArgumentException.class, () -> uniqueVisitorCounter.count("a", day, day));
+        assertThrows(IllegalArgumentException.class, () -> uniqueVisitorCounter.count("a", day, day.plusDays(32)));
+    }
+
+    @Test
+    public void testFlush_InsertsOnceThenUpdatesChangedSketches() {
+        uniqueVisitorCounter.recordVisit("a", "ip:1");
+        uniqueVisitorCounter.recordVisit("b", "ip:1");
+
+        uniqueVisitorCounter.flush();
+        List<VisitorSketch> inserted = captureInserted(1).get(0);
+        assertEquals(2, inserted.size());
+        assertEquals(START.minus(Duration.ofHours(10)), inserted.get(0).getWindowStart().toInstant());
+
+        uniqueVisitorCounter.recordVisit("a", "ip:2");
+        uniqueVisitorCounter.recordVisit("b", "ip:1");
+        uniqueVisitorCounter.flush();
+
+        verify(visitorSketchJdbcRepository, times(1)).insertAll(anyList());
+        List<VisitorSketch> updated = captureUpdated(1).get(0);
+        assertEquals(1, updated.size());
+        assertEquals("a", updated.get(0).getShortUrl());
+        assertEquals(2, HyperLogLog.fromBytes(updated.get(0).getRegisters()).estimate());
+    }
+
+    @Test
+    public void testFlush_DropsWrittenSketchesOfPastDays() {
+        uniqueVisitorCounter.recordVisit("a", "ip:1");
+        uniqueVisitorCounter.flush();
+
+        clock.advance(Duration.ofDays(1));
+        uniqueVisitorCounter.flush();
+
+        // Only the stored sketch is left
+        assertEquals(0, uniqueVisitorCounter.count("a", null, null).uniqueVisitors());
+    }
+
+    @Test
+    public void testFlush_RetriesFailedWrites() {
+        doThrow(new IllegalStateException("database down")).doNothing()
+                .when(visitorSketchJdbcRepository).insertAll(anyList());
+        uniqueVisitorCounter.recordVisit("a", "ip:1");
+
+        uniqueVisitorCounter.flush();
+        uniqueVisitorCounter.flush();
+
+        assertEquals(2, captureInserted(2).size());
+        verify(visitorSketchJdbcRepository, never()).updateAll(anyList());
+    }
+
+    @Test
+    public void testPurge_DeletesSketchesOlderThanRetention() {
+        uniqueVisitorCounter.purge();
+
+        verify(visitorSketchJdbcRepository).deleteOlderThan(eq(START.minus(Duration.ofDays(90))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<VisitorSketch>> captureInserted(int times) {
+        ArgumentCaptor<List<VisitorSketch>> captor = ArgumentCaptor.forClass(List.class);
+        verify(visitorSketchJdbcRepository, times(times)).insertAll(captor.capture());
+        return captor.getAllValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<VisitorSketch>> captureUpdated(int times) {
+        ArgumentCaptor<List<VisitorSketch>> captor = ArgumentCaptor.forClass(List.class);
+        verify(visitorSketchJdbcRepository, times(times)).updateAll(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}